@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An append-optimized {@link DataSeries} that keeps its x values in primitive {@code long} chunks and its y values in object chunks.
+ * Searching only touches the primitive x values, and range queries return read-only views over the columns. The views create their
+ * {@link SeriesData} entries as they are read, so the x values are only ever stored once.
+ * <p>
+ * Data is expected to be added in increasing x order. Out-of-order values are still supported, but are inserted by shifting the
+ * entries that follow them. If views have been handed out since the last such insert, the shifted chunks are copied first so that the
+ * existing views keep returning the data they were created over.
+ */
+public class ColumnarDataSeries<E> implements DataSeries<E> {
+  private static final int CHUNK_SHIFT = 10;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  @NotNull private long[][] myXChunks = new long[0][];
+  @NotNull private Object[][] myYChunks = new Object[0][];
+  private int myChunkCount;
+  private int mySize;
+  /**
+   * Whether a view may still be reading the current chunks, in which case they must be copied before an out-of-order insert.
+   */
+  private boolean myChunksShared;
+
+  @Override
+  public List<SeriesData<E>> getDataForRange(Range range) {
+    //If the size of our data is 0, early return an empty list.
+    if (mySize == 0 || range.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    int fromIndex = getNearestXIndex((long)range.getMin());
+    int toIndex = getNearestXIndex((long)range.getMax()) + 1;
+    return getView(fromIndex, toIndex);
+  }
+
+  /**
+   * @return a read-only view of the data in [fromIndex, toIndex). The view is backed by this series and is not copied; it is not affected
+   * by data added to the series after it was created.
+   */
+  @NotNull
+  public List<SeriesData<E>> getView(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > mySize || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException(String.format("[%d, %d) out of [0, %d)", fromIndex, toIndex, mySize));
+    }
+    if (fromIndex == toIndex) {
+      return Collections.emptyList();
+    }
+    myChunksShared = true;
+    return new View<>(myXChunks, myYChunks, fromIndex, toIndex);
+  }
+
+  @NotNull
+  public List<SeriesData<E>> getAllData() {
+    return getView(0, mySize);
+  }
+
+  public void add(long x, E y) {
+    int lastIndex = mySize;
+    int index = lastIndex > 0 && x < getX(lastIndex - 1) ? getFirstIndexAfter(x) : lastIndex;
+    ensureCapacity(mySize + 1);
+    if (index < lastIndex && myChunksShared) {
+      copyChunks();
+    }
+    mySize++;
+    // Out of order data: shift the entries after the insertion point one slot to the right.
+    for (int i = lastIndex; i > index; i--) {
+      set(i, getX(i - 1), getY(i - 1));
+    }
+    set(index, x, y);
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public long getX(int index) {
+    return myXChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+  /**
+   * Returns the value of Y at a given index.
+   */
+  @SuppressWarnings("unchecked")
+  public E getY(int index) {
+    return (E)myYChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+  /**
+   * @return the index of the last element whose x is less than or equal to the given value, clamped to the valid indices of the series.
+   */
+  public int getNearestXIndex(long x) {
+    return Math.max(0, Math.min(getFirstIndexAfter(x) - 1, mySize - 1));
+  }
+
+  /**
+   * @return the index of the first element whose x is strictly greater than the given value, or {@link #size()} if there is none.
+   */
+  protected int getFirstIndexAfter(long x) {
+    int low = 0;
+    int high = mySize;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getX(mid) <= x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private void set(int index, long x, E y) {
+    myXChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = x;
+    myYChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = y;
+  }
+
+  /**
+   * Replaces all chunks with copies, so that shifting entries does not change the data seen by existing views. Shifting is linear in the
+   * size of the series anyway, so copying does not change the cost of an out-of-order insert.
+   */
+  private void copyChunks() {
+    long[][] xChunks = myXChunks.clone();
+    Object[][] yChunks = myYChunks.clone();
+    for (int chunk = 0; chunk < myChunkCount; chunk++) {
+      xChunks[chunk] = xChunks[chunk].clone();
+      yChunks[chunk] = yChunks[chunk].clone();
+    }
+    myXChunks = xChunks;
+    myYChunks = yChunks;
+    myChunksShared = false;
+  }
+
+  private void ensureCapacity(int capacity) {
+    int chunkCount = (capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+    if (chunkCount <= myChunkCount) {
+      return;
+    }
+    if (chunkCount > myXChunks.length) {
+      // Only the arrays of chunk references are grown; existing chunks are never copied.
+      int newLength = Math.max(chunkCount, myXChunks.length * 2);
+      long[][] xChunks = new long[newLength][];
+      Object[][] yChunks = new Object[newLength][];
+      System.arraycopy(myXChunks, 0, xChunks, 0, myChunkCount);
+      System.arraycopy(myYChunks, 0, yChunks, 0, myChunkCount);
+      myXChunks = xChunks;
+      myYChunks = yChunks;
+    }
+    for (; myChunkCount < chunkCount; myChunkCount++) {
+      myXChunks[myChunkCount] = new long[CHUNK_SIZE];
+      myYChunks[myChunkCount] = new Object[CHUNK_SIZE];
+    }
+  }
+
+  /**
+   * A view over a range of the columns. It holds on to the chunk arrays it was created over: appends only write past its range and
+   * out-of-order inserts replace the chunks they shift, so the data it sees never changes.
+   */
+  private static final class View<E> extends AbstractList<SeriesData<E>> implements RandomAccess {
+    @NotNull private final long[][] myXChunks;
+    @NotNull private final Object[][] myYChunks;
+    private final int myFromIndex;
+    private final int myViewSize;
+
+    private View(@NotNull long[][] xChunks, @NotNull Object[][] yChunks, int fromIndex, int toIndex) {
+      myXChunks = xChunks;
+      myYChunks = yChunks;
+      myFromIndex = fromIndex;
+      myViewSize = toIndex - fromIndex;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public SeriesData<E> get(int index) {
+      if (index < 0 || index >= myViewSize) {
+        throw new IndexOutOfBoundsException(String.format("%d out of [0, %d)", index, myViewSize));
+      }
+      int seriesIndex = myFromIndex + index;
+      return new SeriesData<>(myXChunks[seriesIndex >>> CHUNK_SHIFT][seriesIndex & CHUNK_MASK],
+                              (E)myYChunks[seriesIndex >>> CHUNK_SHIFT][seriesIndex & CHUNK_MASK]);
+    }
+
+    @Override
+    public int size() {
+      return myViewSize;
+    }
+  }
+}
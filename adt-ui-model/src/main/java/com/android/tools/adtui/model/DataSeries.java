@@ -23,4 +23,13 @@ import java.util.List;
 public interface DataSeries<E> {
 
   List<SeriesData<E>> getDataForRange(Range range);
+
+  /**
+   * @return true if data points returned by this series never change once they have been returned, and new data points only ever show up
+   * after the existing ones. This lets live {@link RangedSeries} fetch only the data newer than what they already have, instead of
+   * re-querying their whole range on every update.
+   */
+  default boolean isAppendOnly() {
+    return false;
+  }
 }
@@ -15,7 +15,9 @@
  */
 package com.android.tools.adtui.model;
 
+import java.util.AbstractList;
 import java.util.Collections;
+import java.util.Objects;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
@@ -40,6 +42,11 @@ public class RangedSeries<E> {
   @NotNull private Range myLastQueriedRange = new Range();
   @NotNull private List<SeriesData<E>> myLastQueriedSeries = Collections.emptyList();
 
+  /**
+   * Sliding window of the data for live queries of {@link DataSeries#isAppendOnly() append-only} series.
+   */
+  @NotNull private StreamingWindow<E> myStreamingWindow = new StreamingWindow<>();
+
   /**
    * Creates a new RangedSeries with the {@link DataSeries} object scoped by view and data {@link Range} objects. getSeries will return
    * a series that is the intersection of our view and data ranges.
@@ -68,6 +75,8 @@ public class RangedSeries<E> {
    * Note - this call is frequently made by UI components on the main thread, so the last queried results are cached and returned if the
    * query range is determined to not have changed to avoid hitting the Datastore redundantly. If the query range's max value is
    * Long.MAX_VALUE or Double.MAX_VALUE, however, then the cache is bypassed since there might be new data that are still streaming in.
+   * In that case, append-only series are only asked for the data after the last data point already fetched, and the result is merged into
+   * a sliding window that drops the data falling off the start of the range.
    *
    * @return A new, immutable {@link SeriesDataList} consisting of items in the DataStore scoped to the range(s) that the RangedSeries was
    * initialized with.
@@ -76,7 +85,7 @@ public class RangedSeries<E> {
   public List<SeriesData<E>> getSeries() {
     Range queryRange = myRange.getIntersection(myIntersectRange);
     if (queryRange.getMax() == Long.MAX_VALUE || queryRange.getMax() == Double.MAX_VALUE) {
-      return getSeriesForRange(queryRange);
+      return mySeries.isAppendOnly() ? getStreamingSeries(queryRange) : getSeriesForRange(queryRange);
     }
 
     if (myLastQueriedRange.isSameAs(queryRange)) {
@@ -97,6 +106,21 @@ public class RangedSeries<E> {
     return mySeries.getDataForRange(range);
   }
 
+  @NotNull
+  private List<SeriesData<E>> getStreamingSeries(@NotNull Range queryRange) {
+    long min = (long)queryRange.getMin();
+    // On the first query, or if the range moved backwards past data we already dropped, or if the series returned a data point older than
+    // the ones we already have (so the window may be missing data), query the whole range.
+    if (myStreamingWindow.isEmpty() ||
+        min < myStreamingWindow.getMin() ||
+        !myStreamingWindow.append(getSeriesForRange(new Range(myStreamingWindow.getLastX(), queryRange.getMax())))) {
+      myStreamingWindow = new StreamingWindow<>();
+      myStreamingWindow.appendAll(getSeriesForRange(queryRange));
+    }
+    myStreamingWindow.trimBefore(min);
+    return myStreamingWindow.getView();
+  }
+
   /**
    * @return A new range object that represents the intersection between the default and intersect ranges.
    */
@@ -111,4 +135,144 @@ public class RangedSeries<E> {
   public Range getXRange() {
     return myRange;
   }
+
+  /**
+   * Append-only buffer of {@link SeriesData} that can drop data from its start. Data is never overwritten in place (compaction copies the
+   * data into a new array), so views returned by {@link #getView()} stay valid as more data is appended or trimmed.
+   */
+  private static final class StreamingWindow<E> {
+    private static final int MIN_CAPACITY = 16;
+
+    @NotNull private Object[] myData = new Object[0];
+    private int myStart;
+    private int myEnd;
+    /**
+     * The min of the last range the window was trimmed to.
+     */
+    private long myMin = Long.MIN_VALUE;
+
+    boolean isEmpty() {
+      return myStart == myEnd;
+    }
+
+    long getMin() {
+      return myMin;
+    }
+
+    long getLastX() {
+      return get(myEnd - 1).x;
+    }
+
+    /**
+     * Appends the data points that are newer than the ones already in the window. Since the data series may return data points it already
+     * returned (e.g. the one right before the requested range, or several points sharing the last timestamp), data points before the last
+     * x are skipped if the window already contains them, and so are as many points at the last x as the window already contains.
+     *
+     * @return false if a data point before the last x is not in the window, i.e. the series did not only append data. The window is left
+     * in an unspecified state.
+     */
+    boolean append(@NotNull List<SeriesData<E>> data) {
+      int toSkip = 0;
+      long lastX = Long.MIN_VALUE;
+      if (!isEmpty()) {
+        lastX = getLastX();
+        for (int i = myEnd - 1; i >= myStart && get(i).x == lastX; i--) {
+          toSkip++;
+        }
+      }
+      for (SeriesData<E> point : data) {
+        if (point.x < lastX) {
+          if (!contains(point)) {
+            return false;
+          }
+          continue;
+        }
+        if (point.x == lastX && toSkip > 0) {
+          toSkip--;
+          continue;
+        }
+        add(point);
+      }
+      return true;
+    }
+
+    /**
+     * Appends all the data points, as returned by the data series.
+     */
+    void appendAll(@NotNull List<SeriesData<E>> data) {
+      for (SeriesData<E> point : data) {
+        add(point);
+      }
+    }
+
+    private void add(@NotNull SeriesData<E> point) {
+      if (myEnd == myData.length) {
+        compact();
+      }
+      myData[myEnd++] = point;
+    }
+
+    private boolean contains(@NotNull SeriesData<E> point) {
+      if (point.x < get(myStart).x) {
+        // Trimmed from the window.
+        return true;
+      }
+      for (int i = myEnd - 1; i >= myStart && get(i).x >= point.x; i--) {
+        if (get(i).x == point.x && Objects.equals(get(i).value, point.value)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Drops the data points that fall before min, keeping the last one at or before min since it is part of the range query results.
+     */
+    void trimBefore(long min) {
+      myMin = min;
+      while (myEnd - myStart > 1 && get(myStart + 1).x <= min) {
+        myStart++;
+      }
+    }
+
+    @NotNull
+    List<SeriesData<E>> getView() {
+      if (isEmpty()) {
+        return Collections.emptyList();
+      }
+      Object[] data = myData;
+      int start = myStart;
+      int size = myEnd - myStart;
+      return new AbstractList<SeriesData<E>>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        public SeriesData<E> get(int index) {
+          if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("%d out of [0, %d)", index, size));
+          }
+          return (SeriesData<E>)data[start + index];
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private SeriesData<E> get(int index) {
+      return (SeriesData<E>)myData[index];
+    }
+
+    private void compact() {
+      int size = myEnd - myStart;
+      Object[] data = new Object[Math.max(MIN_CAPACITY, size * 2)];
+      System.arraycopy(myData, myStart, data, 0, size);
+      myData = data;
+      myStart = 0;
+      myEnd = size;
+    }
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import org.junit.Test;
+
+public class ColumnarDataSeriesTest {
+
+  @Test
+  public void testDataSpanningMultipleChunks() {
+    ColumnarDataSeries<Long> series = new ColumnarDataSeries<>();
+    int count = 5000;
+    for (int i = 0; i < count; i++) {
+      series.add(i * 10, (long)i);
+    }
+    assertThat(series.size()).isEqualTo(count);
+    assertThat(series.getX(4999)).isEqualTo(49990);
+    assertThat(series.getY(1024)).isEqualTo(1024L);
+    assertThat(series.getAllData()).hasSize(count);
+  }
+
+  @Test
+  public void testGetNearestXIndex() {
+    ColumnarDataSeries<Long> series = new ColumnarDataSeries<>();
+    for (int i = 0; i < 5; i++) {
+      series.add(i * 10, (long)i);
+    }
+    assertThat(series.getNearestXIndex(-5)).isEqualTo(0);
+    assertThat(series.getNearestXIndex(0)).isEqualTo(0);
+    // No exact match rounds down.
+    assertThat(series.getNearestXIndex(25)).isEqualTo(2);
+    assertThat(series.getNearestXIndex(30)).isEqualTo(3);
+    assertThat(series.getNearestXIndex(100)).isEqualTo(4);
+  }
+
+  @Test
+  public void testGetDataForRange() {
+    ColumnarDataSeries<Long> series = new ColumnarDataSeries<>();
+    assertThat(series.getDataForRange(new Range(0, 100))).isEmpty();
+    for (int i = 0; i < 10; i++) {
+      series.add(i * 10, (long)i);
+    }
+    // The data point right before the range start is included.
+    List<SeriesData<Long>> data = series.getDataForRange(new Range(15, 42));
+    assertThat(data).hasSize(4);
+    assertThat(data.get(0).x).isEqualTo(10);
+    assertThat(data.get(3).x).isEqualTo(40);
+
+    // Views keep returning the same entries as data gets appended.
+    series.add(100, 10L);
+    assertThat(data).hasSize(4);
+    assertThat(data.get(3).x).isEqualTo(40);
+    assertThat(data.get(3).value).isEqualTo(4L);
+  }
+
+  @Test
+  public void testOutOfOrderDataDoesNotChangeExistingViews() {
+    ColumnarDataSeries<Long> series = new ColumnarDataSeries<>();
+    for (int i = 0; i < 2000; i++) {
+      series.add(i * 10, (long)i);
+    }
+    List<SeriesData<Long>> data = series.getAllData();
+    series.add(5, -1L);
+    assertThat(data).hasSize(2000);
+    assertThat(data.get(1).x).isEqualTo(10);
+    assertThat(data.get(1999).value).isEqualTo(1999L);
+
+    List<SeriesData<Long>> sorted = series.getAllData();
+    assertThat(sorted).hasSize(2001);
+    assertThat(sorted.get(1).x).isEqualTo(5);
+    assertThat(sorted.get(1).value).isEqualTo(-1L);
+    assertThat(sorted.get(2000).value).isEqualTo(1999L);
+
+    // Views created after an out-of-order insert are protected from the next one as well.
+    series.add(15, -2L);
+    assertThat(sorted.get(3).x).isEqualTo(20);
+    assertThat(series.getY(3)).isEqualTo(-2L);
+  }
+
+  @Test
+  public void testOutOfOrderDataIsSorted() {
+    ColumnarDataSeries<Long> series = new ColumnarDataSeries<>();
+    series.add(10, 1L);
+    series.add(30, 3L);
+    series.add(20, 2L);
+    series.add(0, 0L);
+    assertThat(series.size()).isEqualTo(4);
+    for (int i = 0; i < 4; i++) {
+      assertThat(series.getX(i)).isEqualTo(i * 10);
+      assertThat(series.getY(i)).isEqualTo((long)i);
+    }
+  }
+}
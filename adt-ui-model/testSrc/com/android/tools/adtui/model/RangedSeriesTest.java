@@ -17,6 +17,8 @@ package com.android.tools.adtui.model;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 
 public class RangedSeriesTest {
@@ -67,4 +69,79 @@ public class RangedSeriesTest {
     }
     assertThat(rangedSeries.getSeries()).hasSize(100);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testGetSeriesStreamsAppendOnlyData() {
+    Range queryRange = new Range(0, Long.MAX_VALUE);
+    AppendOnlyDataSeries testSeries = new AppendOnlyDataSeries();
+    for (int i = 0; i < 50; i++) {
+      testSeries.add(i, (long)i);
+    }
+    RangedSeries<Long> rangedSeries = new RangedSeries<>(queryRange, testSeries);
+    assertThat(rangedSeries.getSeries()).hasSize(50);
+    assertThat(testSeries.myLastQueriedRange.getMin()).isEqualTo(0.0);
+
+    // Only the data after the last fetched data point is requested.
+    for (int i = 50; i < 60; i++) {
+      testSeries.add(i, (long)i);
+    }
+    List<SeriesData<Long>> series = rangedSeries.getSeries();
+    assertThat(testSeries.myLastQueriedRange.getMin()).isEqualTo(49.0);
+    assertThat(series).hasSize(60);
+    assertThat(series.get(59).x).isEqualTo(59L);
+
+    // Data falling off the start of the range is dropped, except for the last data point before the range.
+    queryRange.setMin(30.5);
+    series = rangedSeries.getSeries();
+    assertThat(series.get(0).x).isEqualTo(30L);
+    assertThat(series).hasSize(30);
+
+    // Moving the range backwards fetches the whole range again.
+    queryRange.setMin(10);
+    assertThat(rangedSeries.getSeries()).hasSize(50);
+    assertThat(testSeries.myLastQueriedRange.getMin()).isEqualTo(10.0);
+  }
+
+  @Test
+  public void testGetSeriesQueriesWholeRangeOnOutOfOrderData() {
+    Range queryRange = new Range(0, Long.MAX_VALUE);
+    AppendOnlyDataSeries testSeries = new AppendOnlyDataSeries();
+    for (int i = 0; i < 50; i++) {
+      testSeries.add(i, (long)i);
+    }
+    RangedSeries<Long> rangedSeries = new RangedSeries<>(queryRange, testSeries);
+    assertThat(rangedSeries.getSeries()).hasSize(50);
+
+    // A data point older than the last fetched one, which the ranged series hasn't seen.
+    testSeries.myOutOfOrderPoint = new SeriesData<>(45, 1000L);
+    for (int i = 50; i < 60; i++) {
+      testSeries.add(i, (long)i);
+    }
+    List<SeriesData<Long>> series = rangedSeries.getSeries();
+    assertThat(testSeries.myLastQueriedRange.getMin()).isEqualTo(0.0);
+    assertThat(series).hasSize(61);
+    assertThat(series.get(60).value).isEqualTo(1000L);
+  }
+
+  private static final class AppendOnlyDataSeries extends DefaultDataSeries<Long> {
+    private Range myLastQueriedRange;
+    private SeriesData<Long> myOutOfOrderPoint;
+
+    @Override
+    public List<SeriesData<Long>> getDataForRange(Range range) {
+      myLastQueriedRange = new Range(range);
+      List<SeriesData<Long>> data = super.getDataForRange(range);
+      if (myOutOfOrderPoint == null) {
+        return data;
+      }
+      List<SeriesData<Long>> dataWithOutOfOrderPoint = new ArrayList<>(data);
+      dataWithOutOfOrderPoint.add(myOutOfOrderPoint);
+      return dataWithOutOfOrderPoint;
+    }
+
+    @Override
+    public boolean isAppendOnly() {
+      return true;
+    }
+  }
+}
@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
@@ -244,6 +245,9 @@ public class FutureCallbackExecutor implements Executor {
    * <p>The goal is to serialize the execution of multiple tasks that would otherwise
    * execute in parallel, typically as a way of throttling tasks.
    *
+   * <p>If the {@code taskFactory} throws, no further element is processed and the returned
+   * future fails with the exception.
+   *
    * <p>Returns a {@link ListenableFuture} that completes when all tasks have completed.
    *
    * @param iterator    The source of elements to process
@@ -258,11 +262,78 @@ public class FutureCallbackExecutor implements Executor {
     return finalResult;
   }
 
+  /**
+   * Execute a task from the {@code taskFactory} for each element of the {@code iterator},
+   * with at most {@code maxConcurrency} tasks running at the same time. As with
+   * {@link #executeFuturesInSequence(Iterator, Function)}, a failed task does not prevent the
+   * remaining elements from being processed, but if the {@code taskFactory} itself throws, no
+   * further element is processed and the returned future fails with the exception.
+   *
+   * <p>Returns a {@link ListenableFuture} that completes when all tasks have completed.
+   *
+   * @param iterator       The source of elements to process
+   * @param taskFactory    A factory {@link Function} that returns a {@link ListenableFuture} for a given element
+   * @param maxConcurrency The maximum number of tasks running at the same time
+   * @param <T>            The type of the elements to process
+   */
+  @NotNull
+  public <T> ListenableFuture<Void> executeFuturesInParallel(@NotNull Iterator<T> iterator,
+                                                             @NotNull Function<T, ListenableFuture<Void>> taskFactory,
+                                                             int maxConcurrency) {
+    assert maxConcurrency > 0;
+    SettableFuture<Void> finalResult = SettableFuture.create();
+    AtomicInteger activeWorkers = new AtomicInteger(maxConcurrency);
+    for (int i = 0; i < maxConcurrency; i++) {
+      executeFuturesInParallelWorker(iterator, taskFactory, activeWorkers, finalResult);
+    }
+    return finalResult;
+  }
+
+  private <T> void executeFuturesInParallelWorker(@NotNull Iterator<T> iterator,
+                                                  @NotNull Function<T, ListenableFuture<Void>> taskFactory,
+                                                  @NotNull AtomicInteger activeWorkers,
+                                                  @NotNull SettableFuture<Void> finalResult) {
+    T element = null;
+    boolean hasElement;
+    // Workers may run concurrently if this executor is multi-threaded
+    synchronized (iterator) {
+      // Stop processing elements once a task factory has failed
+      hasElement = !finalResult.isDone() && iterator.hasNext();
+      if (hasElement) {
+        element = iterator.next();
+      }
+    }
+    if (hasElement) {
+      ListenableFuture<Void> future;
+      try {
+        future = taskFactory.apply(element);
+      }
+      catch (Throwable t) {
+        finalResult.setException(t);
+        activeWorkers.decrementAndGet();
+        return;
+      }
+      addConsumer(future, (aVoid, throwable) -> executeFuturesInParallelWorker(iterator, taskFactory, activeWorkers, finalResult));
+      return;
+    }
+
+    if (activeWorkers.decrementAndGet() == 0) {
+      finalResult.set(null);
+    }
+  }
+
   private <T> void executeFuturesInSequenceWorker(@NotNull Iterator<T> iterator,
                                                   @NotNull Function<T, ListenableFuture<Void>> taskFactory,
                                                   @NotNull SettableFuture<Void> finalResult) {
     if (iterator.hasNext()) {
-      ListenableFuture<Void> future = taskFactory.apply(iterator.next());
+      ListenableFuture<Void> future;
+      try {
+        future = taskFactory.apply(iterator.next());
+      }
+      catch (Throwable t) {
+        finalResult.setException(t);
+        return;
+      }
       addConsumer(future, (aVoid, throwable) -> executeFuturesInSequenceWorker(iterator, taskFactory, finalResult));
     }
     else {
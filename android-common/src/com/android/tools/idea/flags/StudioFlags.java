@@ -135,6 +135,11 @@ public final class StudioFlags {
     "If enabled, simpleperf report-sample commands are going to be run on the host instead of the device.",
     true);
 
+  public static final Flag<Boolean> PROFILER_SIMPLEPERF_PARALLEL_IMPORT = Flag.create(
+    PROFILER, "cpu.simpleperf.parallel.import", "Parse simpleperf traces in parallel",
+    "If enabled, simpleperf trace records are decoded and the call tree of each thread is built on a fork-join pool.",
+    false);
+
   public static final Flag<Boolean> PROFILER_OPEN_CAPTURES = Flag.create(
     PROFILER, "profiler.open.captures", "Enable opening .trace and .hprof files",
     "Allow opening .hprof and .trace files (e.g. File -> Open; via Drag & Drop) which imports them into Android Profiler.",
@@ -433,6 +438,11 @@ public final class StudioFlags {
 
   public static final Flag<Boolean> ALLOW_DIFFERENT_JDK_VERSION = Flag.create(
     GRADLE_IDE, "jdk.allow.different", "Allow different Gradle JDK", "Allow usage of a different JDK version when running Gradle.", true);
+
+  public static final Flag<Boolean> ANDROID_MODEL_STORE = Flag.create(
+    GRADLE_IDE, "android.model.store", "Store synced Android models in a binary cache",
+    "Write the Android models of all modules to a compact binary cache after sync, sharing the libraries used by several modules, " +
+    "and set up the project from that cache when it is reopened.", false);
   //endregion
 
   //region SQLite Inspector
@@ -608,6 +618,22 @@ public final class StudioFlags {
     true
   );
 
+  public static final Flag<Boolean> LINT_PROFILING = Flag.create(
+    EDITOR, "lint.profiling",
+    "Profile lint detectors",
+    "If enabled, lint runs in the editor and in batch inspections are sampled to record the wall time, CPU time and allocations " +
+    "of each detector and each file. See Tools > Internal Actions > Android > Show Lint Profile.",
+    false
+  );
+
+  public static final Flag<Integer> LINT_EDITOR_DETECTOR_BUDGET_MS = Flag.create(
+    EDITOR, "lint.editor.detector.budget.ms",
+    "Lint detector budget in the editor, in milliseconds",
+    "If positive and lint profiling is enabled, lint detectors whose average cost in the editor exceeds this budget only run " +
+    "once every few editor runs. 0 disables the budget.",
+    0
+  );
+
   //endregion
 
   //region Analyzer
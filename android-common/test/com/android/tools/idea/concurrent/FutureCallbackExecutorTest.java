@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.concurrent;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FutureCallbackExecutor}.
+ */
+public class FutureCallbackExecutorTest {
+  private final FutureCallbackExecutor myExecutor = new FutureCallbackExecutor(MoreExecutors.directExecutor());
+
+  @Test
+  public void executeFuturesInParallelRunsAtMostMaxConcurrencyTasks() throws Exception {
+    List<SettableFuture<Void>> tasks = new ArrayList<>();
+    ListenableFuture<Void> result = myExecutor.executeFuturesInParallel(Arrays.asList(1, 2, 3, 4, 5).iterator(), i -> {
+      SettableFuture<Void> task = SettableFuture.create();
+      tasks.add(task);
+      return task;
+    }, 2);
+
+    assertThat(tasks).hasSize(2);
+    tasks.get(0).set(null);
+    assertThat(tasks).hasSize(3);
+    tasks.get(1).set(null);
+    tasks.get(2).set(null);
+    assertThat(tasks).hasSize(5);
+    assertThat(result.isDone()).isFalse();
+
+    tasks.get(4).set(null);
+    assertThat(result.isDone()).isFalse();
+    tasks.get(3).set(null);
+    assertThat(result.isDone()).isTrue();
+    assertThat(result.get()).isNull();
+  }
+
+  @Test
+  public void executeFuturesInParallelProcessesElementsAfterFailedTask() throws Exception {
+    List<Integer> processed = new ArrayList<>();
+    ListenableFuture<Void> result = myExecutor.executeFuturesInParallel(Arrays.asList(1, 2, 3).iterator(), i -> {
+      processed.add(i);
+      return i == 1 ? Futures.immediateFailedFuture(new IllegalStateException()) : Futures.immediateFuture(null);
+    }, 2);
+
+    assertThat(result.get()).isNull();
+    assertThat(processed).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  public void executeFuturesInParallelWithNoElements() throws Exception {
+    ListenableFuture<Void> result =
+      myExecutor.executeFuturesInParallel(new ArrayList<Integer>().iterator(), i -> Futures.immediateFuture(null), 4);
+
+    assertThat(result.isDone()).isTrue();
+    assertThat(result.get()).isNull();
+  }
+
+  @Test
+  public void executeFuturesInParallelFailsWhenTaskFactoryThrows() throws Exception {
+    IllegalStateException error = new IllegalStateException();
+    List<Integer> processed = new ArrayList<>();
+    SettableFuture<Void> firstTask = SettableFuture.create();
+    ListenableFuture<Void> result = myExecutor.executeFuturesInParallel(Arrays.asList(1, 2, 3, 4).iterator(), i -> {
+      processed.add(i);
+      if (i == 2) {
+        throw error;
+      }
+      return i == 1 ? firstTask : Futures.immediateFuture(null);
+    }, 2);
+
+    firstTask.set(null);
+    assertThat(processed).containsExactly(1, 2);
+    assertFailsWith(result, error);
+  }
+
+  @Test
+  public void executeFuturesInSequenceFailsWhenTaskFactoryThrows() throws Exception {
+    IllegalStateException error = new IllegalStateException();
+    List<Integer> processed = new ArrayList<>();
+    ListenableFuture<Void> result = myExecutor.executeFuturesInSequence(Arrays.asList(1, 2, 3).iterator(), i -> {
+      processed.add(i);
+      if (i == 2) {
+        throw error;
+      }
+      return Futures.immediateFuture(null);
+    });
+
+    assertThat(processed).containsExactly(1, 2);
+    assertFailsWith(result, error);
+  }
+
+  private static void assertFailsWith(ListenableFuture<Void> future, Throwable error) throws InterruptedException {
+    assertThat(future.isDone()).isTrue();
+    try {
+      future.get();
+      fail("The future should have failed");
+    }
+    catch (ExecutionException e) {
+      assertThat(e.getCause()).isSameAs(error);
+    }
+  }
+}
@@ -17,6 +17,9 @@ package com.android.tools.idea.transport;
 
 import com.android.tools.idea.protobuf.ByteString;
 import com.android.tools.profiler.proto.Transport;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -37,4 +40,22 @@ public interface TransportBytesPreprocessor {
    */
   @NotNull
   ByteString preprocessBytes(String id, ByteString event);
+
+  /**
+   * Streaming variant of {@link #preprocessBytes(String, ByteString)}, used for large payloads: reads the data to preprocess from
+   * {@code data} and writes the new data to {@code out}. The default implementation reads the whole data into memory, so preprocessors
+   * of large payloads should override it.
+   */
+  default void preprocessBytes(@NotNull String id, @NotNull InputStream data, @NotNull OutputStream out) throws IOException {
+    preprocessBytes(id, ByteString.readFrom(data)).writeTo(out);
+  }
+
+  /**
+   * @return the data returned in place of the new data when {@link #preprocessBytes(String, InputStream, OutputStream)} fails, which should
+   * be the same data {@link #preprocessBytes(String, ByteString)} returns when it fails.
+   */
+  @NotNull
+  default ByteString getFailureBytes() {
+    return ByteString.EMPTY;
+  }
 }
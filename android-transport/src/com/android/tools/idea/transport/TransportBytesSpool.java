@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport;
+
+import com.android.tools.idea.protobuf.ByteString;
+import com.android.tools.idea.protobuf.UnsafeByteOperations;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A temporary file that a payload of the proxy is written to in fixed-size chunks, and read back memory-mapped, so that large payloads
+ * such as CPU traces and heap dumps do not have to be held in the heap while they are preprocessed.
+ */
+final class TransportBytesSpool implements Closeable {
+  static final int CHUNK_SIZE = 1024 * 1024;
+
+  // Mappings of closed spools, whose files are deleted once the mappings are collected.
+  private static final ReferenceQueue<ByteBuffer> ourReleasedMappings = new ReferenceQueue<>();
+  private static final Set<MappingReference> ourPendingMappings = ConcurrentHashMap.newKeySet();
+
+  @NotNull private final File myFile;
+  @NotNull private final OutputStream myOutput;
+  @Nullable private ByteBuffer myMapping;
+
+  TransportBytesSpool() throws IOException {
+    deleteReleasedFiles();
+    myFile = FileUtil.createTempFile("transport_bytes", ".tmp", true);
+    myOutput = new BufferedOutputStream(new FileOutputStream(myFile), CHUNK_SIZE);
+  }
+
+  @NotNull
+  OutputStream getOutputStream() {
+    return myOutput;
+  }
+
+  /**
+   * Returns the bytes written to the spool, backed by a read-only mapping of the file rather than by the heap.
+   */
+  @NotNull
+  ByteString toByteString() throws IOException {
+    myOutput.close();
+    try (FileChannel channel = FileChannel.open(myFile.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size == 0) {
+        return ByteString.EMPTY;
+      }
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(String.format("Payload of %d bytes is too large", size));
+      }
+      myMapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return UnsafeByteOperations.unsafeWrap(myMapping);
+    }
+  }
+
+  /**
+   * Deletes the spool file, or, if it was mapped by {@link #toByteString()}, once the mapping is collected: a mapped file cannot be deleted
+   * on Windows, and the mapping stays valid for as long as the returned bytes are in use. Such files are deleted by a later spool, or on
+   * exit.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      myOutput.close();
+    }
+    finally {
+      if (myMapping == null) {
+        FileUtil.delete(myFile);
+      }
+      else {
+        ourPendingMappings.add(new MappingReference(myMapping, myFile));
+        myMapping = null;
+      }
+      deleteReleasedFiles();
+    }
+  }
+
+  private static void deleteReleasedFiles() {
+    Reference<? extends ByteBuffer> reference;
+    while ((reference = ourReleasedMappings.poll()) != null) {
+      MappingReference mappingReference = (MappingReference)reference;
+      ourPendingMappings.remove(mappingReference);
+      FileUtil.delete(mappingReference.myFile);
+    }
+  }
+
+  private static final class MappingReference extends PhantomReference<ByteBuffer> {
+    @NotNull private final File myFile;
+
+    private MappingReference(@NotNull ByteBuffer mapping, @NotNull File file) {
+      super(mapping, ourReleasedMappings);
+      myFile = file;
+    }
+  }
+}
@@ -46,9 +46,11 @@ import com.android.tools.profiler.proto.Transport.GetProcessesResponse;
 import com.android.tools.profiler.proto.Transport.TimeRequest;
 import com.android.tools.profiler.proto.Transport.TimeResponse;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
 import gnu.trove.TLongObjectHashMap;
@@ -76,6 +78,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -94,6 +97,8 @@ public class TransportServiceProxy extends ServiceProxy
 
   private static final String EMULATOR = "Emulator";
   static final String PRE_LOLLIPOP_FAILURE_REASON = "Pre-Lollipop devices are not supported.";
+  // Payloads of at least this size are preprocessed as streams into a TransportBytesSpool instead of in memory.
+  @VisibleForTesting static final int SPOOL_THRESHOLD_BYTES = 8 * 1024 * 1024;
 
   private final TransportServiceGrpc.TransportServiceBlockingStub myServiceStub;
   @NotNull private final IDevice myDevice;
@@ -106,6 +111,9 @@ public class TransportServiceProxy extends ServiceProxy
   private final List<TransportEventPreprocessor> myEventPreprocessors = new ArrayList<>();
   private final List<TransportBytesPreprocessor> myDataPreprocessors = new ArrayList<>();
   @NotNull private final Map<String, ByteString> myProxyBytesCache;
+  // Serializes the getBytes calls for the same id, so that cached bytes and preprocessors are consumed once, while calls for other ids
+  // proceed concurrently.
+  @NotNull private final Striped<Lock> myBytesLocks = Striped.lazyWeakLock(64);
 
   // Cache the latest event timestamp we received from the daemon, which is used for closing all still-opened event groups when
   // the proxy lost connection with the device.
@@ -353,11 +361,13 @@ public class TransportServiceProxy extends ServiceProxy
 
   public void getBytes(@NotNull BytesRequest request, StreamObserver<BytesResponse> responseObserver) {
     BytesResponse.Builder response;
-    synchronized (myProxyBytesCache) {
-      if (myProxyBytesCache.containsKey(request.getId())) {
-        response = BytesResponse.newBuilder().setContents(myProxyBytesCache.get(request.getId()));
-        // Removes cache to save memory once it has been requested/cached by the datastore.
-        myProxyBytesCache.remove(request.getId());
+    Lock lock = myBytesLocks.get(request.getId());
+    lock.lock();
+    try {
+      // Removes cache to save memory once it has been requested/cached by the datastore.
+      ByteString cachedBytes = myProxyBytesCache.remove(request.getId());
+      if (cachedBytes != null) {
+        response = BytesResponse.newBuilder().setContents(cachedBytes);
       }
       else {
         response = myServiceStub.getBytes(request).toBuilder();
@@ -365,11 +375,33 @@ public class TransportServiceProxy extends ServiceProxy
       // Run registered preprocessors.
       for (TransportBytesPreprocessor preprocessor : myDataPreprocessors) {
         if (preprocessor.shouldPreprocess(request)) {
-          response.setContents(preprocessor.preprocessBytes(request.getId(), response.getContents()));
+          response.setContents(preprocessBytes(preprocessor, request.getId(), response.getContents()));
         }
       }
-      responseObserver.onNext(response.build());
-      responseObserver.onCompleted();
+    }
+    finally {
+      lock.unlock();
+    }
+    responseObserver.onNext(response.build());
+    responseObserver.onCompleted();
+  }
+
+  /**
+   * Runs the preprocessor on the given bytes. Large payloads are streamed through the preprocessor into a {@link TransportBytesSpool}, so
+   * that its output is memory-mapped rather than held in the heap.
+   */
+  @NotNull
+  private static ByteString preprocessBytes(@NotNull TransportBytesPreprocessor preprocessor, @NotNull String id, @NotNull ByteString bytes) {
+    if (bytes.size() < SPOOL_THRESHOLD_BYTES) {
+      return preprocessor.preprocessBytes(id, bytes);
+    }
+    try (TransportBytesSpool spool = new TransportBytesSpool()) {
+      preprocessor.preprocessBytes(id, bytes.newInput(), spool.getOutputStream());
+      return spool.toByteString();
+    }
+    catch (IOException e) {
+      getLog().warn(String.format("Failed to preprocess %d bytes of %s", bytes.size(), id), e);
+      return preprocessor.getFailureBytes();
     }
   }
 
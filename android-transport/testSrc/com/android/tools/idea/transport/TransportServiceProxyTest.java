@@ -38,6 +38,7 @@ import com.android.tools.profiler.proto.Transport;
 import com.android.tools.profiler.proto.Transport.TimeRequest;
 import com.android.tools.profiler.proto.Transport.TimeResponse;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
+import com.intellij.openapi.util.io.FileUtil;
 import io.grpc.ManagedChannel;
 import io.grpc.MethodDescriptor;
 import io.grpc.ServerServiceDefinition;
@@ -46,6 +47,8 @@ import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.internal.ServerImpl;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -336,6 +339,127 @@ public class TransportServiceProxyTest {
     assertThat(receivedData.get(1)).isEqualTo(preprocessor.preprocessBytes("1", FakeTransportService.TEST_BYTES));
   }
 
+  @Test
+  public void testLargeBytesArePreprocessedAsStream() throws Exception {
+    Client client = createMockClient(1, "test", "testClientDescription");
+    IDevice mockDevice = createMockDevice(AndroidVersion.VersionCodes.O, new Client[]{client});
+    Common.Device transportMockDevice = TransportServiceProxy.transportDeviceFromIDevice(mockDevice);
+    FakeTransportService thruService = new FakeTransportService();
+    ManagedChannel thruChannel = startNamedChannel("testLargeBytesArePreprocessedAsStream", thruService);
+    byte[] largeBytes = new byte[TransportServiceProxy.SPOOL_THRESHOLD_BYTES + 1];
+    for (int i = 0; i < largeBytes.length; i++) {
+      largeBytes[i] = (byte)i;
+    }
+    Map<String, ByteString> bytesCache = new HashMap<>();
+    bytesCache.put("1", ByteString.copyFrom(largeBytes));
+    TransportServiceProxy proxy =
+      new TransportServiceProxy(mockDevice, transportMockDevice, thruChannel, new LinkedBlockingDeque<>(), bytesCache);
+    // Fake Data Preprocessor that reverses the bytes, and only supports streaming.
+    proxy.registerDataPreprocessor(new TransportBytesPreprocessor() {
+      @Override
+      public boolean shouldPreprocess(Transport.BytesRequest request) {
+        return true;
+      }
+
+      @NotNull
+      @Override
+      public ByteString preprocessBytes(String id, ByteString event) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void preprocessBytes(@NotNull String id, @NotNull InputStream data, @NotNull OutputStream out) throws IOException {
+        byte[] bytes = FileUtil.loadBytes(data);
+        for (int i = bytes.length - 1; i >= 0; i--) {
+          out.write(bytes[i]);
+        }
+      }
+    });
+
+    List<ByteString> receivedData = new ArrayList<>();
+    proxy.getBytes(Transport.BytesRequest.newBuilder().setId("1").build(), new StreamObserver<Transport.BytesResponse>() {
+      @Override
+      public void onNext(Transport.BytesResponse response) {
+        receivedData.add(response.getContents());
+      }
+
+      @Override
+      public void onError(Throwable throwable) { assert false;}
+
+      @Override
+      public void onCompleted() {}
+    });
+    thruService.stopEventThread();
+    thruChannel.shutdownNow();
+    proxy.disconnect();
+
+    assertThat(bytesCache).isEmpty();
+    assertThat(receivedData).hasSize(1);
+    byte[] reversedBytes = new byte[largeBytes.length];
+    for (int i = 0; i < largeBytes.length; i++) {
+      reversedBytes[i] = largeBytes[largeBytes.length - 1 - i];
+    }
+    assertThat(receivedData.get(0).toByteArray()).isEqualTo(reversedBytes);
+  }
+
+  @Test
+  public void testFailedStreamPreprocessingReturnsFailureBytes() throws Exception {
+    Client client = createMockClient(1, "test", "testClientDescription");
+    IDevice mockDevice = createMockDevice(AndroidVersion.VersionCodes.O, new Client[]{client});
+    Common.Device transportMockDevice = TransportServiceProxy.transportDeviceFromIDevice(mockDevice);
+    FakeTransportService thruService = new FakeTransportService();
+    ManagedChannel thruChannel = startNamedChannel("testFailedStreamPreprocessingReturnsFailureBytes", thruService);
+    Map<String, ByteString> bytesCache = new HashMap<>();
+    bytesCache.put("1", ByteString.copyFrom(new byte[TransportServiceProxy.SPOOL_THRESHOLD_BYTES + 1]));
+    TransportServiceProxy proxy =
+      new TransportServiceProxy(mockDevice, transportMockDevice, thruChannel, new LinkedBlockingDeque<>(), bytesCache);
+    ByteString failure = ByteString.copyFromUtf8("Failure");
+    // Fake Data Preprocessor that fails after writing part of its output.
+    proxy.registerDataPreprocessor(new TransportBytesPreprocessor() {
+      @Override
+      public boolean shouldPreprocess(Transport.BytesRequest request) {
+        return true;
+      }
+
+      @NotNull
+      @Override
+      public ByteString preprocessBytes(String id, ByteString event) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void preprocessBytes(@NotNull String id, @NotNull InputStream data, @NotNull OutputStream out) throws IOException {
+        out.write(1);
+        throw new IOException();
+      }
+
+      @NotNull
+      @Override
+      public ByteString getFailureBytes() {
+        return failure;
+      }
+    });
+
+    List<ByteString> receivedData = new ArrayList<>();
+    proxy.getBytes(Transport.BytesRequest.newBuilder().setId("1").build(), new StreamObserver<Transport.BytesResponse>() {
+      @Override
+      public void onNext(Transport.BytesResponse response) {
+        receivedData.add(response.getContents());
+      }
+
+      @Override
+      public void onError(Throwable throwable) { assert false;}
+
+      @Override
+      public void onCompleted() {}
+    });
+    thruService.stopEventThread();
+    thruChannel.shutdownNow();
+    proxy.disconnect();
+
+    assertThat(receivedData).containsExactly(failure);
+  }
+
   /**
    * @param uniqueName Name should be unique across tests.
    */
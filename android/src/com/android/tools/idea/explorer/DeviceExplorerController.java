@@ -109,6 +109,11 @@ public class DeviceExplorerController {
   private static final String DEVICE_EXPLORER_BUSY_MESSAGE = "Device Explorer is busy, please retry later or cancel current operation";
   private static final long FILE_ENTRY_CREATION_TIMEOUT_MILLIS = 10_000;
   private static final long FILE_ENTRY_DELETION_TIMEOUT_MILLIS = 10_000;
+  /**
+   * The maximum number of entries of a directory transferred at the same time. The number of
+   * concurrent connections to a device is also limited by the device file system.
+   */
+  private static final int MAX_CONCURRENT_TRANSFERS = 4;
 
   private int myShowLoadingNodeDelayMillis = 200;
   private int myTransferringNodeRepaintMillis = 100;
@@ -706,10 +711,10 @@ public class DeviceExplorerController {
 
       return wrapFileTransfer(
         tracker -> addDownloadOperationWork(tracker, treeNodes),
-        tracker -> executeFuturesInSequence(treeNodes.iterator(), treeNode -> {
+        tracker -> myEdtExecutor.executeFuturesInParallel(treeNodes.iterator(), treeNode -> {
           Path nodePath = localDirectory.resolve(treeNode.getEntry().getName());
           return downloadSingleNode(treeNode, nodePath, tracker);
-        }));
+        }, MAX_CONCURRENT_TRANSFERS));
     }
 
     /**
@@ -717,9 +722,9 @@ public class DeviceExplorerController {
      * shows various UI elements related to progress (and resets them when the operation
      * is over).
      *
-     * @param prepareTransfer An operation to run before the transfer, typically
-     *                        to estimate the amount of work, used for tracking progress
-     *                        later on
+     * @param prepareTransfer An operation to run alongside the transfer, typically
+     *                        to estimate the amount of work, used for tracking progress.
+     *                        Progress is indeterminate until this operation completes.
      * @param performTransfer The transfer operation itself
      * @return A {@link ListenableFuture}&lt;{@link FileTransferSummary}&gt; that completes
      * when the whole transfer operation finishes. In case of cancellation, the future
@@ -745,11 +750,14 @@ public class DeviceExplorerController {
       Disposer.register(myProject, tracker);
 
       myView.startTreeBusyIndicator();
+      // Start transferring without waiting for the estimate, since estimating the work of a large
+      // directory tree takes about as many round trips to the device as transferring it.
       ListenableFuture<Void> futurePrepare = prepareTransfer.apply(tracker);
-      ListenableFuture<Void> futureTransfer = myEdtExecutor.transformAsync(futurePrepare, aVoid -> {
-        tracker.setIndeterminate(false);
-        return performTransfer.apply(tracker);
-      });
+      myEdtExecutor.addListener(futurePrepare, () -> tracker.setIndeterminate(false));
+      ListenableFuture<Void> futurePerform = performTransfer.apply(tracker);
+
+      // The estimate usually completes first, and a transfer error is reported as soon as it happens
+      ListenableFuture<Void> futureTransfer = myEdtExecutor.transformAsync(futurePerform, aVoid -> futurePrepare);
       myEdtExecutor.addListener(futureTransfer, myView::stopTreeBusyIndicator);
       myEdtExecutor.addListener(futureTransfer, () -> Disposer.dispose(tracker));
       return myEdtExecutor.transform(futureTransfer, aVoid -> tracker.getSummary());
@@ -869,10 +877,11 @@ public class DeviceExplorerController {
       myEdtExecutor.addCallback(futureLoadChildren, new FutureCallback<Void>() {
         @Override
         public void onSuccess(@Nullable Void result) {
-          ListenableFuture<Void> futureDownloadChildren = executeFuturesInSequence(treeNode.getChildEntryNodes().iterator(), node -> {
-            Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
-            return downloadSingleNode(node, nodePath, tracker);
-          });
+          ListenableFuture<Void> futureDownloadChildren = myEdtExecutor.executeFuturesInParallel(
+            treeNode.getChildEntryNodes().iterator(), node -> {
+              Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
+              return downloadSingleNode(node, nodePath, tracker);
+            }, MAX_CONCURRENT_TRANSFERS);
           myEdtExecutor.addConsumer(futureDownloadChildren, (aVoid, throwable) -> {
             if (throwable != null) {
               tracker.addProblem(throwable);
@@ -914,6 +923,12 @@ public class DeviceExplorerController {
         return;
       }
 
+      // Make sure directories are listed again instead of coming from the device cache
+      DeviceFileSystem device = myModel.getActiveDevice();
+      if (device != null) {
+        device.invalidateCache();
+      }
+
       // Collect directories as well as parent directories of files
       Set<DeviceFileEntryNode> directoryNodes = nodes.stream()
         .map(x -> {
@@ -1181,9 +1196,15 @@ public class DeviceExplorerController {
     private ListenableFuture<Void> uploadVirtualFiles(@NotNull DeviceFileEntryNode parentNode,
                                                       @NotNull List<VirtualFile> files,
                                                       @NotNull FileTransferOperationTracker tracker) {
-      // Upload each file
-      ListenableFuture<Void> futureUploadFiles =
-        executeFuturesInSequence(files.iterator(), file -> uploadVirtualFile(parentNode, file, tracker));
+      // Upload files concurrently, then directories one at a time, since creating a directory
+      // reloads the children of the parent node.
+      List<VirtualFile> regularFiles = files.stream().filter(x -> !x.isDirectory()).collect(Collectors.toList());
+      List<VirtualFile> directories = files.stream().filter(VirtualFile::isDirectory).collect(Collectors.toList());
+      ListenableFuture<Void> futureUploadRegularFiles =
+        myEdtExecutor.executeFuturesInParallel(regularFiles.iterator(), file -> uploadFile(parentNode, file, tracker),
+                                               MAX_CONCURRENT_TRANSFERS);
+      ListenableFuture<Void> futureUploadFiles = myEdtExecutor.transformAsync(futureUploadRegularFiles, aVoid ->
+        executeFuturesInSequence(directories.iterator(), directory -> uploadDirectory(parentNode, directory, tracker)));
 
       // Refresh children nodes
       return myEdtExecutor.transformAsync(futureUploadFiles, aVoid -> {
@@ -1192,18 +1213,6 @@ public class DeviceExplorerController {
       });
     }
 
-    @NotNull
-    private ListenableFuture<Void> uploadVirtualFile(@NotNull DeviceFileEntryNode treeNode,
-                                                     @NotNull VirtualFile file,
-                                                     @NotNull FileTransferOperationTracker tracker) {
-      if (file.isDirectory()) {
-        return uploadDirectory(treeNode, file, tracker);
-      }
-      else {
-        return uploadFile(treeNode, file, tracker);
-      }
-    }
-
     @NotNull
     private ListenableFuture<Void> uploadDirectory(@NotNull DeviceFileEntryNode parentNode,
                                                    @NotNull VirtualFile file,
@@ -24,6 +24,7 @@ import java.util.Locale;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link LongRunningOperationTracker} class that tracks progress of a file transfer
@@ -35,6 +36,7 @@ import java.util.concurrent.CancellationException;
  */
 public class FileTransferOperationTracker extends LongRunningOperationTracker {
   private static final int MAX_PATH_DISPLAY_LENGTH = 50;
+  private static final long MIN_THROUGHPUT_DISPLAY_NANOS = TimeUnit.SECONDS.toNanos(1);
   @NotNull private final FileTransferSummary mySummary;
   private long myFinishedWorkUnits;
   private long myTotalWorkUnits;
@@ -42,6 +44,11 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   private int myTotalFileCount;
   @SuppressWarnings("unused") private int myCurrentDirectoryCount;
   @SuppressWarnings("unused") private int myTotalDirectoryCount;
+  /**
+   * The time the first file started transferring, or 0 if no file has started transferring yet.
+   */
+  private long myTransferStartNanos;
+  private long myTransferredByteCount;
 
   public FileTransferOperationTracker(@NotNull DeviceExplorerView view) {
     super(view);
@@ -72,7 +79,8 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
       return;
     }
 
-    setProgress((double)myFinishedWorkUnits / (double)myTotalWorkUnits);
+    // Files may be transferred before the work estimate is complete
+    setProgress(Math.min(1.0, (double)myFinishedWorkUnits / (double)myTotalWorkUnits));
   }
 
   public void processDirectory() {
@@ -82,6 +90,9 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   }
 
   public void processFile() {
+    if (myTransferStartNanos == 0) {
+      myTransferStartNanos = System.nanoTime();
+    }
     myFinishedWorkUnits += FileTransferWorkEstimator.getFileWorkUnits();
     myCurrentFileCount++;
     showProgress();
@@ -89,6 +100,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
 
   public void processFileBytes(long byteCount) {
     myFinishedWorkUnits += FileTransferWorkEstimator.getFileContentsWorkUnits(byteCount);
+    myTransferredByteCount += byteCount;
     showProgress();
   }
 
@@ -108,7 +120,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
                             ApkViewPanel.getHumanizedSize(currentBytes),
                             ApkViewPanel.getHumanizedSize(totalBytes));
     }
-    setStatusText(text);
+    setStatusText(text + getThroughputText());
   }
 
   public void setDownloadFileText(@NotNull DeviceFileEntry entry, long currentBytes, long totalBytes) {
@@ -126,7 +138,23 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
                             ApkViewPanel.getHumanizedSize(currentBytes),
                             ApkViewPanel.getHumanizedSize(totalBytes));
     }
-    setStatusText(text);
+    setStatusText(text + getThroughputText());
+  }
+
+  /**
+   * Returns the number of files and bytes transferred per second so far, or an empty string
+   * if the transfer has not been running long enough for these to be meaningful.
+   */
+  @NotNull
+  private String getThroughputText() {
+    long elapsedNanos = System.nanoTime() - myTransferStartNanos;
+    if (myTransferStartNanos == 0 || elapsedNanos < MIN_THROUGHPUT_DISPLAY_NANOS) {
+      return "";
+    }
+    double elapsedSeconds = elapsedNanos / (double)TimeUnit.SECONDS.toNanos(1);
+    return String.format(Locale.US, " - %,.1f files/sec, %,.2f MB/sec",
+                         mySummary.getFileCount() / elapsedSeconds,
+                         myTransferredByteCount / (1024.0 * 1024.0) / elapsedSeconds);
   }
 
   public void addWorkEstimate(FileTransferWorkEstimate estimate) {
@@ -136,6 +164,11 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   }
 
   public void setCalculatingText(int fileCount, int directoryCount) {
+    // The work is estimated while files are transferred, in which case the transfer status is more useful
+    if (myTransferStartNanos != 0) {
+      return;
+    }
+
     // Note: We may be called for multiple directories or files, so we need
     // to add what we already know to the parameter value.
     fileCount += myTotalFileCount;
@@ -70,6 +70,11 @@ public class FileTransferWorkEstimator {
   private static final int DIRECTORY_TRANSFER_WORK_UNITS = 64_000;
   private static final int FILE_TRANSFER_WORK_UNITS = 64_000;
   private static final int PROGRESS_REPORT_INTERVAL_MILLIS = 50;
+  /**
+   * The maximum number of child entries estimated at the same time, so that the
+   * listings of sibling directories do not wait on each other.
+   */
+  private static final int MAX_CONCURRENT_ESTIMATES = 4;
   @NotNull private final FutureCallbackExecutor myEdtExecutor;
   @NotNull private final FutureCallbackExecutor myTaskExecutor;
   @NotNull private final ThrottledProgress myThrottledProgress;
@@ -115,8 +120,9 @@ public class FileTransferWorkEstimator {
         assert entries != null;
         estimate.addDirectoryCount(1);
         estimate.addWorkUnits(getDirectoryWorkUnits());
-        return myEdtExecutor.executeFuturesInSequence(entries.iterator(),
-                                                      childEntry -> estimateDownloadWorkWorker(childEntry, false, estimate, progress));
+        return myEdtExecutor.executeFuturesInParallel(entries.iterator(),
+                                                      childEntry -> estimateDownloadWorkWorker(childEntry, false, estimate, progress),
+                                                      MAX_CONCURRENT_ESTIMATES);
       });
     }
     else {
@@ -250,10 +250,10 @@ public class AdbDeviceDataDirectoryEntry extends AdbDeviceForwardingFileEntry {
       //
       // We do this directly instead of doing it as a fallback to attempting a regular push
       // because of https://code.google.com/p/android/issues/detail?id=241157.
-      return myDevice.getAdbFileTransfer().uploadFileViaTempLocation(localPath,
-                                                                     AdbPathUtil.resolve(getFullPath(), fileName),
-                                                                     progress,
-                                                                     myPackageName);
+      ListenableFuture<Void> futureUpload =
+        myDevice.getAdbFileTransfer().uploadFileViaTempLocation(localPath, AdbPathUtil.resolve(getFullPath(), fileName), progress,
+                                                                myPackageName);
+      return invalidateListingWhenDone(futureUpload, getFullPath());
     }
   }
 }
\ No newline at end of file
@@ -63,24 +63,29 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
   @NotNull
   @Override
   public ListenableFuture<Void> delete() {
+    ListenableFuture<Void> futureDelete;
     if (isDirectory()) {
-      return myDevice.getAdbFileOperations().deleteRecursiveRunAs(getFullPath(), myRunAs);
+      futureDelete = myDevice.getAdbFileOperations().deleteRecursiveRunAs(getFullPath(), myRunAs);
     }
     else {
-      return myDevice.getAdbFileOperations().deleteFileRunAs(getFullPath(), myRunAs);
+      futureDelete = myDevice.getAdbFileOperations().deleteFileRunAs(getFullPath(), myRunAs);
     }
+    // Invalidating the parent directory also invalidates the deleted directory.
+    return invalidateListingWhenDone(futureDelete, AdbPathUtil.getParentPath(getFullPath()));
   }
 
   @NotNull
   @Override
   public ListenableFuture<Void> createNewFile(@NotNull String fileName) {
-    return myDevice.getAdbFileOperations().createNewFileRunAs(getFullPath(), fileName, myRunAs);
+    return invalidateListingWhenDone(myDevice.getAdbFileOperations().createNewFileRunAs(getFullPath(), fileName, myRunAs),
+                                     getFullPath());
   }
 
   @NotNull
   @Override
   public ListenableFuture<Void> createNewDirectory(@NotNull String directoryName) {
-    return myDevice.getAdbFileOperations().createNewDirectoryRunAs(getFullPath(), directoryName, myRunAs);
+    return invalidateListingWhenDone(myDevice.getAdbFileOperations().createNewDirectoryRunAs(getFullPath(), directoryName, myRunAs),
+                                     getFullPath());
   }
 
   @NotNull
@@ -124,7 +129,7 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
 
     ListenableFuture<Boolean> futureShouldCreateRemote = myDevice.getTaskExecutor().executeAsync(this::isDeviceSuAndNotRoot);
 
-    return myDevice.getTaskExecutor().transformAsync(futureShouldCreateRemote, shouldCreateRemote -> {
+    ListenableFuture<Void> futureResult = myDevice.getTaskExecutor().transformAsync(futureShouldCreateRemote, shouldCreateRemote -> {
       assert shouldCreateRemote != null;
       if (shouldCreateRemote) {
         ListenableFuture<Void> futureTouchFile = myDevice.getAdbFileOperations().touchFileAsDefaultUser(remotePath);
@@ -142,6 +147,7 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
         return myDevice.getAdbFileTransfer().uploadFile(localPath, remotePath, progress);
       }
     });
+    return invalidateListingWhenDone(futureResult, getFullPath());
   }
 
   private static boolean isSyncPermissionError(@NotNull SyncException pullError) {
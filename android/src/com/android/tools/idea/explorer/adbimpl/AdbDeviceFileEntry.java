@@ -17,6 +17,8 @@ package com.android.tools.idea.explorer.adbimpl;
 
 import com.android.tools.idea.explorer.fs.DeviceFileEntry;
 import com.android.tools.idea.explorer.fs.DeviceFileSystem;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -45,6 +47,20 @@ public abstract class AdbDeviceFileEntry implements DeviceFileEntry {
     return myEntry.toString();
   }
 
+  /**
+   * Returns a future that completes like {@code future}, once the cached listing of {@code directoryPath}
+   * has been discarded, since the operation may have modified the directory.
+   */
+  @NotNull
+  protected <V> ListenableFuture<V> invalidateListingWhenDone(@NotNull ListenableFuture<V> future, @NotNull String directoryPath) {
+    SettableFuture<V> futureResult = SettableFuture.create();
+    myDevice.getTaskExecutor().addListener(future, () -> {
+      myDevice.getAdbFileListing().invalidateCache(directoryPath);
+      futureResult.setFuture(future);
+    });
+    return futureResult;
+  }
+
   @NotNull
   @Override
   public DeviceFileSystem getFileSystem() {
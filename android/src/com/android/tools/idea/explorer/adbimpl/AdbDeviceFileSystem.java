@@ -156,6 +156,11 @@ public class AdbDeviceFileSystem implements DeviceFileSystem {
     return resultFuture;
   }
 
+  @Override
+  public void invalidateCache() {
+    myFileListing.invalidateCache();
+  }
+
   private void resolvePathSegments(@NotNull SettableFuture<DeviceFileEntry> future,
                                    @NotNull DeviceFileEntry currentEntry,
                                    @NotNull String[] segments,
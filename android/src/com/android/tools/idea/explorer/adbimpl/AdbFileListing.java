@@ -17,9 +17,11 @@ package com.android.tools.idea.explorer.adbimpl;
 
 import com.android.ddmlib.AdbCommandRejectedException;
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.MultiLineReceiver;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
 import com.android.tools.idea.concurrent.FutureCallbackExecutor;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.openapi.diagnostic.Logger;
@@ -27,9 +29,19 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -38,20 +50,57 @@ import java.util.stream.Collectors;
 import static com.android.ddmlib.FileListingService.LS_LD_PATTERN;
 import static com.android.ddmlib.FileListingService.LS_L_PATTERN;
 
+/**
+ * Lists the directories of a device with "ls" shell commands.
+ *
+ * <p>Directory listings are cached for {@link #CACHE_TIMEOUT_MILLIS}, so that navigating the tree
+ * and refreshing it does not list the same directories over and over. The symbolic links of a
+ * cached directory are resolved all at once, with a single shell command, the first time one of
+ * them is queried with {@link #isDirectoryLink}.
+ */
 public class AdbFileListing {
   @NotNull public static final Logger LOGGER = Logger.getInstance(AdbFileListing.class);
   @NotNull private static final Pattern BACKSLASH = Pattern.compile("\\", Pattern.LITERAL);
 
+  @VisibleForTesting static final long CACHE_TIMEOUT_MILLIS = 5_000;
+  /**
+   * Older devices reject long shell commands, so symbolic links are resolved in batches.
+   */
+  private static final int MAX_BATCH_COMMAND_LENGTH = 1_000;
+  @NotNull private static final String BATCH_SEPARATOR = "END-OF-LS-OUTPUT";
+
   @NotNull private final IDevice myDevice;
   @NotNull private AdbDeviceCapabilities myDeviceCapabilities;
   @NotNull private final FutureCallbackExecutor myExecutor;
   @NotNull private final AdbFileListingEntry myRoot;
+  @NotNull private final LongSupplier myClock;
+  /**
+   * Cached listings, keyed by "run-as" package and directory path. Guarded by itself.
+   */
+  @NotNull private final Map<String, CachedListing> myCache = new HashMap<>();
+  /**
+   * The number of times the cached listings of each path and of its descendants have been invalidated. Guarded by {@link #myCache}.
+   */
+  @NotNull private final Map<String, Long> myInvalidationCounts = new HashMap<>();
+  /**
+   * The number of times all the cached listings have been invalidated. Guarded by {@link #myCache}.
+   */
+  private long myFullInvalidationCount;
 
   public AdbFileListing(@NotNull IDevice device, @NotNull AdbDeviceCapabilities deviceCapabilities, @NotNull Executor taskExecutor) {
+    this(device, deviceCapabilities, taskExecutor, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  AdbFileListing(@NotNull IDevice device,
+                 @NotNull AdbDeviceCapabilities deviceCapabilities,
+                 @NotNull Executor taskExecutor,
+                 @NotNull LongSupplier nanoClock) {
     myDevice = device;
     myDeviceCapabilities = deviceCapabilities;
     myExecutor = FutureCallbackExecutor.wrap(taskExecutor);
     myRoot = new AdbFileListingEntryBuilder().setPath("/").setKind(AdbFileListingEntry.EntryKind.DIRECTORY).build();
+    myClock = nanoClock;
   }
 
   @NotNull
@@ -67,7 +116,17 @@ public class AdbFileListing {
   @NotNull
   public ListenableFuture<List<AdbFileListingEntry>> getChildrenRunAs(@NotNull AdbFileListingEntry parentEntry,
                                                                       @Nullable String runAs) {
+    String cacheKey = getCacheKey(parentEntry.getFullPath(), runAs);
+    CachedListing cachedListing = getCachedListing(cacheKey);
+    if (cachedListing != null) {
+      return Futures.immediateFuture(cachedListing.myEntries);
+    }
+
+    // The listing is not cached if the directory is invalidated before the command completes, since the command may not see the change
+    long invalidationCount = getInvalidationCount(parentEntry.getFullPath());
     return myExecutor.executeAsync(() -> {
+      long timestamp = myClock.getAsLong();
+
       // Run "ls -l" command and process matching output lines
       String command = getCommand(runAs, "ls -l ").withDirectoryEscapedPath(parentEntry.getFullPath()).build(); //$NON-NLS-1$
 
@@ -82,10 +141,32 @@ public class AdbFileListing {
       if (entries.isEmpty() && commandResult.isError()) {
         commandResult.throwIfError();
       }
-      return entries;
+      return putCachedListing(cacheKey, parentEntry.getFullPath(), invalidationCount, timestamp, entries);
     });
   }
 
+  /**
+   * Discards the cached listings of {@code path} and of its descendants, e.g. after files have been
+   * created or deleted in that directory.
+   */
+  public void invalidateCache(@NotNull String path) {
+    String prefix = path.endsWith(AdbPathUtil.FILE_SEPARATOR) ? path : path + AdbPathUtil.FILE_SEPARATOR;
+    synchronized (myCache) {
+      myInvalidationCounts.merge(getInvalidationKey(path), 1L, Long::sum);
+      myCache.values().removeIf(listing -> listing.myPath.equals(path) || listing.myPath.startsWith(prefix));
+    }
+  }
+
+  /**
+   * Discards all the cached listings.
+   */
+  public void invalidateCache() {
+    synchronized (myCache) {
+      myFullInvalidationCount++;
+      myCache.clear();
+    }
+  }
+
   /**
    * Determine if a symlink entry points to a directory. This is a best effort process,
    * as the target of the symlink might not be accessible, in which case the future value
@@ -104,6 +185,22 @@ public class AdbFileListing {
       return Futures.immediateFuture(false);
     }
 
+    // Resolve all the links of the parent directory at once if it has been listed recently.
+    ListenableFuture<Set<String>> futureDirectoryLinks = getDirectoryLinks(entry, runAs);
+    if (futureDirectoryLinks == null) {
+      return isSingleDirectoryLink(entry, runAs);
+    }
+    ListenableFuture<Boolean> futureResult =
+      myExecutor.transform(futureDirectoryLinks, directoryLinks -> directoryLinks.contains(entry.getFullPath()));
+    return myExecutor.catchingAsync(futureResult, Exception.class, error -> {
+      LOGGER.info(String.format("Error resolving symbolic links of %s, resolving them one at a time",
+                                AdbPathUtil.getParentPath(entry.getFullPath())), error);
+      return isSingleDirectoryLink(entry, runAs);
+    });
+  }
+
+  @NotNull
+  private ListenableFuture<Boolean> isSingleDirectoryLink(@NotNull AdbFileListingEntry entry, @Nullable String runAs) {
     return myExecutor.executeAsync(() -> {
       // We simply need to determine whether the referent is a directory or not.
       // We do this by running `ls -ld ${link}/`.  If the referent exists and is a
@@ -130,6 +227,159 @@ public class AdbFileListing {
     });
   }
 
+  /**
+   * Returns the paths of the symbolic links to directories among the siblings of {@code entry},
+   * or {@code null} if the parent directory listing is not cached.
+   */
+  @Nullable
+  private ListenableFuture<Set<String>> getDirectoryLinks(@NotNull AdbFileListingEntry entry, @Nullable String runAs) {
+    String cacheKey = getCacheKey(AdbPathUtil.getParentPath(entry.getFullPath()), runAs);
+    synchronized (myCache) {
+      CachedListing listing = getCachedListing(cacheKey);
+      if (listing == null || !listing.myLinkPaths.contains(entry.getFullPath())) {
+        return null;
+      }
+      if (listing.myDirectoryLinks == null) {
+        List<String> linkPaths = new ArrayList<>(listing.myLinkPaths);
+        listing.myDirectoryLinks = myExecutor.executeAsync(() -> resolveDirectoryLinks(linkPaths, runAs));
+      }
+      return listing.myDirectoryLinks;
+    }
+  }
+
+  /**
+   * Runs "ls -l -d" on each of the given links with as few shell commands as possible. The output
+   * of each "ls" is followed by a separator line, since older versions of "ls" do not print the path
+   * of the directory.
+   */
+  @NotNull
+  private Set<String> resolveDirectoryLinks(@NotNull List<String> linkPaths, @Nullable String runAs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    Set<String> directoryLinks = new HashSet<>();
+    Iterator<String> iterator = linkPaths.iterator();
+    while (iterator.hasNext()) {
+      List<String> batch = new ArrayList<>();
+      StringBuilder text = new StringBuilder();
+      while (iterator.hasNext() && text.length() < MAX_BATCH_COMMAND_LENGTH) {
+        String path = iterator.next();
+        if (text.length() > 0) {
+          text.append("; ");
+        }
+        text.append(new AdbShellCommandBuilder().withText("ls -l -d ").withDirectoryEscapedPath(path)
+                      .withText("; echo ").withText(BATCH_SEPARATOR).build());
+        batch.add(path);
+      }
+
+      String command = getCommand(runAs, text.toString()).build();
+      AdbShellCommandsUtil.executeRawCommand(myDevice, command, new MultiLineReceiver() {
+        private int myIndex;
+
+        @Override
+        public void processNewLines(@NotNull String[] lines) {
+          for (String line : lines) {
+            if (line.equals(BATCH_SEPARATOR)) {
+              myIndex++;
+            }
+            else if (myIndex < batch.size() && LS_LD_PATTERN.matcher(line).matches()) {
+              directoryLinks.add(batch.get(myIndex));
+            }
+          }
+        }
+
+        @Override
+        public boolean isCancelled() {
+          return false;
+        }
+      });
+    }
+    return directoryLinks;
+  }
+
+  @NotNull
+  private static String getCacheKey(@NotNull String path, @Nullable String runAs) {
+    return (runAs == null ? "" : runAs) + ":" + path;
+  }
+
+  @Nullable
+  private CachedListing getCachedListing(@NotNull String cacheKey) {
+    synchronized (myCache) {
+      CachedListing listing = myCache.get(cacheKey);
+      if (listing == null) {
+        return null;
+      }
+      if (myClock.getAsLong() - listing.myTimestamp > TimeUnit.MILLISECONDS.toNanos(CACHE_TIMEOUT_MILLIS)) {
+        myCache.remove(cacheKey);
+        return null;
+      }
+      return listing;
+    }
+  }
+
+  /**
+   * Caches the listing of {@code path}, unless the cached listings of {@code path} have been invalidated since
+   * {@code invalidationCount} was read with {@link #getInvalidationCount(String)}. Returns the entries of the listing.
+   */
+  @NotNull
+  private List<AdbFileListingEntry> putCachedListing(@NotNull String cacheKey,
+                                                     @NotNull String path,
+                                                     long invalidationCount,
+                                                     long timestamp,
+                                                     @NotNull List<AdbFileListingEntry> entries) {
+    CachedListing listing = new CachedListing(path, timestamp, entries);
+    synchronized (myCache) {
+      if (getInvalidationCount(path) == invalidationCount) {
+        myCache.put(cacheKey, listing);
+      }
+    }
+    return listing.myEntries;
+  }
+
+  /**
+   * Returns a number that changes whenever the cached listings of {@code path} are invalidated, either directly or through
+   * one of its ancestors.
+   */
+  private long getInvalidationCount(@NotNull String path) {
+    synchronized (myCache) {
+      long count = myFullInvalidationCount;
+      for (String ancestor = getInvalidationKey(path); !ancestor.isEmpty(); ancestor = AdbPathUtil.getParentPath(ancestor)) {
+        count += myInvalidationCounts.getOrDefault(ancestor, 0L);
+      }
+      return count;
+    }
+  }
+
+  @NotNull
+  private static String getInvalidationKey(@NotNull String path) {
+    if (path.length() > 1 && path.endsWith(AdbPathUtil.FILE_SEPARATOR)) {
+      return path.substring(0, path.length() - 1);
+    }
+    return path;
+  }
+
+  private static final class CachedListing {
+    @NotNull final String myPath;
+    /**
+     * The time the listing command was started at, used to expire the listing.
+     */
+    final long myTimestamp;
+    @NotNull final List<AdbFileListingEntry> myEntries;
+    @NotNull final Set<String> myLinkPaths;
+    /**
+     * The paths of {@link #myLinkPaths} that point to directories, once they have been resolved. Guarded by the cache.
+     */
+    @Nullable ListenableFuture<Set<String>> myDirectoryLinks;
+
+    CachedListing(@NotNull String path, long timestamp, @NotNull List<AdbFileListingEntry> entries) {
+      myPath = path;
+      myTimestamp = timestamp;
+      myEntries = Collections.unmodifiableList(entries);
+      myLinkPaths = entries.stream()
+        .filter(AdbFileListingEntry::isSymbolicLink)
+        .map(AdbFileListingEntry::getFullPath)
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+  }
+
   @Nullable
   private static AdbFileListingEntry processLsOutputLine(@NotNull String line, boolean escaping, @NotNull AdbFileListingEntry parentEntry) {
     // no need to handle empty lines.
@@ -23,23 +23,36 @@ import com.android.ddmlib.SyncService;
 import com.android.tools.idea.concurrent.FutureCallbackExecutor;
 import com.android.tools.idea.explorer.fs.FileTransferProgress;
 import com.android.tools.idea.explorer.fs.ThrottledProgress;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.Locale;
+import java.util.Queue;
 import java.util.concurrent.Executor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class AdbFileTransfer {
   @NotNull private static Logger LOGGER = Logger.getInstance(AdbFileTransfer.class);
+  /**
+   * The maximum number of files transferred at the same time. Each transfer uses its own
+   * {@link SyncService} connection to the device, and more connections than this do not
+   * transfer faster.
+   */
+  @VisibleForTesting static final int MAX_CONCURRENT_SYNC_SESSIONS = 4;
 
   @NotNull private final IDevice myDevice;
   @NotNull private final AdbFileOperations myFileOperations;
   @NotNull private final FutureCallbackExecutor myProgressExecutor;
   @NotNull private final FutureCallbackExecutor myTaskExecutor;
+  @NotNull private final Object mySyncSessionLock = new Object();
+  private int myActiveSyncSessions;
+  @NotNull private final Queue<SettableFuture<Void>> myPendingSyncSessions = new ArrayDeque<>();
 
   public AdbFileTransfer(@NotNull IDevice device,
                          @NotNull AdbFileOperations fileOperations,
@@ -127,7 +140,8 @@ public class AdbFileTransfer {
                                                     @NotNull Path localPath,
                                                     @NotNull FileTransferProgress progress) {
 
-    ListenableFuture<SyncService> futureSyncService = getSyncService();
+    ListenableFuture<Void> futureSession = acquireSyncSession();
+    ListenableFuture<SyncService> futureSyncService = myTaskExecutor.transformAsync(futureSession, aVoid -> getSyncService());
 
     ListenableFuture<Void> futurePull = myTaskExecutor.transform(futureSyncService, syncService -> {
       assert syncService != null;
@@ -146,7 +160,7 @@ public class AdbFileTransfer {
       }
     });
 
-    return myTaskExecutor.catchingAsync(futurePull, SyncException.class, syncError -> {
+    ListenableFuture<Void> futureResult = myTaskExecutor.catchingAsync(futurePull, SyncException.class, syncError -> {
       assert syncError != null;
       if (syncError.wasCanceled()) {
         // Simply forward cancellation as the cancelled exception
@@ -155,6 +169,8 @@ public class AdbFileTransfer {
       LOGGER.info(String.format("Error pulling file from \"%s\" to \"%s\"", remotePath, localPath), syncError);
       return Futures.immediateFailedFuture(syncError);
     });
+    myTaskExecutor.addListener(futureResult, () -> releaseSyncSession(futureSession));
+    return futureResult;
   }
 
   @NotNull
@@ -162,7 +178,8 @@ public class AdbFileTransfer {
                                                   @NotNull String remotePath,
                                                   @NotNull FileTransferProgress progress) {
 
-    ListenableFuture<SyncService> futureSyncService = getSyncService();
+    ListenableFuture<Void> futureSession = acquireSyncSession();
+    ListenableFuture<SyncService> futureSyncService = myTaskExecutor.transformAsync(futureSession, aVoid -> getSyncService());
 
     ListenableFuture<Void> futurePush = myTaskExecutor.transform(futureSyncService, syncService -> {
       assert syncService != null;
@@ -183,7 +200,7 @@ public class AdbFileTransfer {
       }
     });
 
-    return myTaskExecutor.catchingAsync(futurePush, SyncException.class, syncError -> {
+    ListenableFuture<Void> futureResult = myTaskExecutor.catchingAsync(futurePush, SyncException.class, syncError -> {
       assert syncError != null;
       if (syncError.wasCanceled()) {
         // Simply forward cancellation as the cancelled exception
@@ -192,6 +209,56 @@ public class AdbFileTransfer {
       LOGGER.info(String.format("Error pushing file from \"%s\" to \"%s\"", localPath, remotePath), syncError);
       return Futures.immediateFailedFuture(syncError);
     });
+    myTaskExecutor.addListener(futureResult, () -> releaseSyncSession(futureSession));
+    return futureResult;
+  }
+
+  /**
+   * Returns a {@link ListenableFuture} that completes when fewer than {@link #MAX_CONCURRENT_SYNC_SESSIONS}
+   * transfers are running. The transfer must call {@link #releaseSyncSession(ListenableFuture)} when done,
+   * whether or not the returned future completed.
+   */
+  @VisibleForTesting
+  @NotNull
+  ListenableFuture<Void> acquireSyncSession() {
+    synchronized (mySyncSessionLock) {
+      if (myActiveSyncSessions < MAX_CONCURRENT_SYNC_SESSIONS) {
+        myActiveSyncSessions++;
+        return Futures.immediateFuture(null);
+      }
+      SettableFuture<Void> futureSession = SettableFuture.create();
+      myPendingSyncSessions.add(futureSession);
+      return futureSession;
+    }
+  }
+
+  @VisibleForTesting
+  void releaseSyncSession(@NotNull ListenableFuture<Void> futureSession) {
+    // Cancelling fails if another release handed a session over to this transfer in the meantime, in which case it owns the session and
+    // must pass it on like any other.
+    if (futureSession.cancel(false) || futureSession.isCancelled()) {
+      // The transfer ended before getting a session
+      synchronized (mySyncSessionLock) {
+        //noinspection SuspiciousMethodCalls
+        myPendingSyncSessions.remove(futureSession);
+      }
+      return;
+    }
+
+    // Hand the session over to the next pending transfer, skipping the ones that were cancelled
+    while (true) {
+      SettableFuture<Void> nextSession;
+      synchronized (mySyncSessionLock) {
+        nextSession = myPendingSyncSessions.poll();
+        if (nextSession == null) {
+          myActiveSyncSessions--;
+          return;
+        }
+      }
+      if (nextSession.set(null)) {
+        return;
+      }
+    }
   }
 
   @NotNull
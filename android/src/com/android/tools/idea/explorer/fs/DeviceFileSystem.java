@@ -48,4 +48,10 @@ public interface DeviceFileSystem {
    */
   @NotNull
   ListenableFuture<DeviceFileEntry> getEntry(@NotNull String path);
+
+  /**
+   * Discards any information cached about the file system, so that the entries returned
+   * afterwards reflect the current state of the device.
+   */
+  void invalidateCache();
 }
\ No newline at end of file
@@ -28,14 +28,21 @@ import com.android.tools.idea.gradle.dsl.parser.BuildModelContext;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleBuildFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleDslFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleSettingsFile;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.lang.ASTNode;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Consumer;
@@ -46,6 +53,12 @@ import org.jetbrains.annotations.Nullable;
 public class ProjectBuildModelImpl implements ProjectBuildModel {
   @NotNull private final BuildModelContext myBuildModelContext;
   @Nullable private final GradleBuildFile myProjectBuildFile;
+  private boolean myModuleBuildFilesParsed;
+  /**
+   * The trees of the module build files parsed up front, kept for as long as this model so that they are not collected before their
+   * element trees are built.
+   */
+  @NotNull private final List<ASTNode> myParsedModuleBuildFiles = new ArrayList<>();
 
   @NotNull
   public static ProjectBuildModel get(@NotNull Project project) {
@@ -177,6 +190,7 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
       return allModels;
     }
 
+    parseModuleBuildFiles();
     allModels.addAll(settingsModel.modulePaths().stream().map((modulePath) -> {
       // This should have already been added above
       if (modulePath.equals(":")) {
@@ -198,6 +212,56 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
     return allModels;
   }
 
+  /**
+   * Parses the build files of all the modules included by the settings file concurrently, the first time all their models are
+   * requested, so that they are not parsed one at a time. A model requested for a single module only parses that module. Their element trees are still built on demand and one at
+   * a time, as they resolve references into each other through the shared {@link BuildModelContext}.
+   * <p>
+   * Does nothing if the caller holds read access, since the workers could then wait on a pending write action forever.
+   */
+  private void parseModuleBuildFiles() {
+    if (myModuleBuildFilesParsed) {
+      return;
+    }
+    myModuleBuildFilesParsed = true;
+    if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+      return;
+    }
+
+    GradleSettingsModel settingsModel = getProjectSettingsModel();
+    if (settingsModel == null) {
+      return;
+    }
+
+    LinkedHashSet<VirtualFile> files = new LinkedHashSet<>();
+    for (String modulePath : settingsModel.modulePaths()) {
+      File moduleDir = settingsModel.moduleDirectory(modulePath);
+      VirtualFile file = moduleDir == null ? null : getGradleBuildFile(moduleDir);
+      if (file != null) {
+        files.add(file);
+      }
+    }
+    if (files.size() < 2) {
+      return;
+    }
+
+    PsiManager psiManager = PsiManager.getInstance(myBuildModelContext.getProject());
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(
+      new ArrayList<>(files), ProgressManager.getInstance().getProgressIndicator(),
+      file -> {
+        ASTNode node = ReadAction.compute(() -> {
+          PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+          return psiFile == null ? null : psiFile.getNode();
+        });
+        if (node != null) {
+          synchronized (myParsedModuleBuildFiles) {
+            myParsedModuleBuildFiles.add(node);
+          }
+        }
+        return true;
+      });
+  }
+
   private void runOverProjectTree(@NotNull Consumer<GradleDslFile> func) {
     myBuildModelContext.getAllRequestedFiles().forEach(func);
   }
@@ -45,6 +45,7 @@ import com.android.tools.idea.gradle.project.sync.GradleSyncInvoker;
 import com.android.tools.idea.gradle.project.sync.GradleSyncListener;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
 import com.android.tools.idea.gradle.project.sync.PsdModuleModels;
+import com.android.tools.idea.gradle.project.sync.idea.data.AndroidModelStore;
 import com.android.tools.idea.gradle.project.sync.idea.data.DataNodeCaches;
 import com.android.tools.idea.gradle.project.sync.setup.post.PostSyncProjectSetup;
 import com.google.common.collect.ImmutableList;
@@ -101,6 +102,10 @@ public class GradleSyncExecutor {
       if (buildFileChecksums != null && buildFileChecksums.canUseCachedData()) {
         DataNodeCaches dataNodeCaches = DataNodeCaches.getInstance(myProject);
         DataNode<ProjectData> cache = dataNodeCaches.getCachedProjectData();
+        if (cache != null && StudioFlags.ANDROID_MODEL_STORE.get()) {
+          // Set up the project from the stored models, which share the libraries used by several modules.
+          AndroidModelStore.restoreModels(myProject, cache, buildFileChecksums.getLastGradleSyncTimestamp());
+        }
         if (cache != null && !dataNodeCaches.isCacheMissingModels(cache) && !areCachedFilesMissing(myProject)) {
           PostSyncProjectSetup.Request setupRequest = new PostSyncProjectSetup.Request();
           setupRequest.usingCachedGradleModels = true;
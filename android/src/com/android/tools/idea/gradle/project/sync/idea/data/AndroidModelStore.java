@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.idea.data;
+
+import static com.android.tools.idea.gradle.project.sync.idea.data.service.AndroidProjectKeys.ANDROID_MODEL;
+import static com.android.tools.idea.gradle.util.GradleUtil.getCacheFolderRootPath;
+import static com.intellij.openapi.externalSystem.model.ProjectKeys.MODULE;
+import static com.intellij.openapi.externalSystem.util.ExternalSystemApiUtil.find;
+import static com.intellij.openapi.externalSystem.util.ExternalSystemApiUtil.findAll;
+import static com.intellij.openapi.util.io.FileUtil.delete;
+import static com.intellij.openapi.util.io.FileUtil.ensureExists;
+
+import com.android.builder.model.MavenCoordinates;
+import com.android.builder.model.level2.Library;
+import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
+import com.android.tools.idea.gradle.project.sync.GradleSyncState;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.externalSystem.model.DataNode;
+import com.intellij.openapi.externalSystem.model.project.ModuleData;
+import com.intellij.openapi.externalSystem.model.project.ProjectData;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binary store of the {@link AndroidModuleModel}s of a project, written after each successful sync and used to set up the project when
+ * it is reopened from cached models.
+ * <p>
+ * The models of all modules are written to a single compressed object stream. Libraries, Maven coordinates, files and strings are
+ * interned before they are written, so each one is stored once however many modules refer to it, and the models read back share a single
+ * instance of each.
+ */
+public class AndroidModelStore {
+  // Increase the value when changing the layout of the store.
+  private static final int FORMAT_VERSION = 1;
+
+  private static final ExecutorService ourWriteExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("AndroidModelStore", 1);
+  // Guards the store files, so that a store is not deleted while it is being written.
+  private static final Object ourLock = new Object();
+
+  private AndroidModelStore() {
+  }
+
+  /**
+   * Persists the Android models of all the modules of the given project in the background, deleting the previous store if they cannot be
+   * written. The models and the sync timestamp are collected on the calling thread, and the stores are written one at a time, in the order
+   * they were requested.
+   */
+  public static void saveToDisk(@NotNull Project project) {
+    Map<String, AndroidModuleModel> models = new LinkedHashMap<>();
+    for (Module module : ModuleManager.getInstance(project).getModules()) {
+      AndroidModuleModel model = AndroidModuleModel.get(module);
+      if (model != null) {
+        models.put(module.getName(), model);
+      }
+    }
+    long syncTimestamp = GradleSyncState.getInstance(project).getLastSyncFinishedTimeStamp();
+    File file = getStoreFile(project);
+    String projectName = project.getName();
+    ourWriteExecutor.execute(() -> writeToDisk(file, projectName, syncTimestamp, models));
+  }
+
+  /**
+   * Writes the store to a temporary file next to {@code file}, then renames it, so that a store being written or left behind by a failed
+   * write is never read.
+   */
+  private static void writeToDisk(@NotNull File file,
+                                  @NotNull String projectName,
+                                  long syncTimestamp,
+                                  @NotNull Map<String, AndroidModuleModel> models) {
+    synchronized (ourLock) {
+      long start = System.currentTimeMillis();
+      File tempFile = null;
+      try {
+        ensureExists(file.getParentFile());
+        tempFile = FileUtilRt.createTempFile(file.getParentFile(), file.getName(), ".tmp", true, false);
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+          write(out, syncTimestamp, models);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        getLog().info(String.format("Stored %1$d Android models of project '%2$s' (%3$d bytes) in %4$d ms", models.size(), projectName,
+                                    file.length(), System.currentTimeMillis() - start));
+      }
+      catch (Throwable e) {
+        getLog().info(String.format("Failed to store the Android models of project '%1$s'", projectName), e);
+        if (tempFile != null) {
+          delete(tempFile);
+        }
+        delete(file);
+      }
+    }
+  }
+
+  /**
+   * Replaces the Android models in the given cached project data with the ones of the store, if the store was written by the sync that
+   * produced {@code cache}. Models that the cached project data is missing are added.
+   *
+   * @return whether the models were restored from the store.
+   */
+  public static boolean restoreModels(@NotNull Project project, @NotNull DataNode<ProjectData> cache, long lastSyncTimestamp) {
+    File file = getStoreFile(project);
+    if (!file.isFile()) {
+      return false;
+    }
+
+    long start = System.currentTimeMillis();
+    Map<String, AndroidModuleModel> models;
+    try (InputStream in = new FileInputStream(file)) {
+      models = read(in, lastSyncTimestamp);
+    }
+    catch (IOException | ClassNotFoundException | ClassCastException e) {
+      getLog().warn(String.format("Cannot recover the stored Android models of project '%1$s'", project.getName()), e);
+      return false;
+    }
+    if (models == null) {
+      return false;
+    }
+
+    for (DataNode<ModuleData> moduleNode : findAll(cache, MODULE)) {
+      AndroidModuleModel model = models.get(moduleNode.getData().getExternalName());
+      if (model == null) {
+        continue;
+      }
+      DataNode<AndroidModuleModel> androidModelNode = find(moduleNode, ANDROID_MODEL);
+      if (androidModelNode != null) {
+        androidModelNode.clear(true);
+      }
+      moduleNode.createChild(ANDROID_MODEL, model);
+    }
+    getLog().info(String.format("Restored %1$d Android models of project '%2$s' in %3$d ms", models.size(), project.getName(),
+                                System.currentTimeMillis() - start));
+    return true;
+  }
+
+  public static void removeFrom(@NotNull Project project) {
+    File file = getStoreFile(project);
+    synchronized (ourLock) {
+      if (file.isFile()) {
+        delete(file);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static void write(@NotNull OutputStream out, long syncTimestamp, @NotNull Map<String, AndroidModuleModel> models) throws IOException {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try (ObjectOutputStream oos = new InterningObjectOutputStream(new BufferedOutputStream(new DeflaterOutputStream(out, deflater)))) {
+      oos.writeInt(FORMAT_VERSION);
+      oos.writeLong(syncTimestamp);
+      oos.writeInt(models.size());
+      for (Map.Entry<String, AndroidModuleModel> entry : models.entrySet()) {
+        oos.writeUTF(entry.getKey());
+        oos.writeObject(entry.getValue());
+      }
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * @return the models by module name, or {@code null} if the store has a different format or was written by a different sync.
+   */
+  @VisibleForTesting
+  @Nullable
+  static Map<String, AndroidModuleModel> read(@NotNull InputStream in, long syncTimestamp) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new InflaterInputStream(in)))) {
+      if (ois.readInt() != FORMAT_VERSION || ois.readLong() != syncTimestamp) {
+        return null;
+      }
+      int count = ois.readInt();
+      Map<String, AndroidModuleModel> models = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        String moduleName = ois.readUTF();
+        models.put(moduleName, (AndroidModuleModel)ois.readObject());
+      }
+      return models;
+    }
+  }
+
+  @NotNull
+  private static File getStoreFile(@NotNull Project project) {
+    return new File(getCacheFolderRootPath(project), "android_models.bin");
+  }
+
+  @NotNull
+  private static Logger getLog() {
+    return Logger.getInstance(AndroidModelStore.class);
+  }
+
+  /**
+   * Replaces objects by the first equal object written to the stream, so that the stream refers back to it instead of writing a copy.
+   */
+  private static class InterningObjectOutputStream extends ObjectOutputStream {
+    @NotNull private final Map<Object, Object> myInternedObjects = new HashMap<>();
+
+    private InterningObjectOutputStream(@NotNull OutputStream out) throws IOException {
+      super(out);
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj instanceof String || obj instanceof File || obj instanceof Library || obj instanceof MavenCoordinates) {
+        Object interned = myInternedObjects.putIfAbsent(obj, obj);
+        return interned != null ? interned : obj;
+      }
+      return obj;
+    }
+  }
+}
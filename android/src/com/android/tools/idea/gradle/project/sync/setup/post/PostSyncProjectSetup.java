@@ -42,6 +42,7 @@ import com.android.tools.idea.gradle.project.sync.GradleSyncInvoker;
 import com.android.tools.idea.gradle.project.sync.GradleSyncListener;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
 import com.android.tools.idea.gradle.project.sync.compatibility.VersionCompatibilityChecker;
+import com.android.tools.idea.gradle.project.sync.idea.data.AndroidModelStore;
 import com.android.tools.idea.gradle.project.sync.messages.GradleSyncMessages;
 import com.android.tools.idea.gradle.project.sync.setup.module.common.DependencySetupIssues;
 import com.android.tools.idea.gradle.project.sync.setup.post.project.DisposedModules;
@@ -367,6 +368,9 @@ public final class PostSyncProjectSetup {
         mySyncState.syncSucceeded();
       }
       ProjectBuildFileChecksums.saveToDisk(myProject);
+      if (StudioFlags.ANDROID_MODEL_STORE.get()) {
+        AndroidModelStore.saveToDisk(myProject);
+      }
     }
   }
 
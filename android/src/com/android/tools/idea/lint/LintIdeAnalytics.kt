@@ -57,7 +57,7 @@ class LintIdeAnalytics(private val project: com.intellij.openapi.project.Project
   /** Logs feedback from user on a lint run (either on-the-fly in the editor, or explicit full inspection run) */
   fun logSession(
     type: LintSession.AnalysisType,
-    driver: LintDriver,
+    driver: LintDriver?,
     severityModule: Module?,
     warnings1: List<ProblemData>?,
     warnings2: Map<Issue, Map<File, List<ProblemData>>>?
@@ -67,11 +67,14 @@ class LintIdeAnalytics(private val project: com.intellij.openapi.project.Project
     val session = LintSession.newBuilder().apply {
       analysisType = type
       projectId = computeProjectId(project)
-      lintPerformance = computePerformance(driver, type == LintSession.AnalysisType.IDE_FILE)
-      baselineEnabled = driver.baseline != null
-      includingGeneratedSources = driver.checkGeneratedSources
-      includingTestSources = driver.checkTestSources
-      includingDependencies = driver.checkDependencies
+      // Without a driver, all the results were reused from a previous run and there is no performance data
+      if (driver != null) {
+        lintPerformance = computePerformance(driver, type == LintSession.AnalysisType.IDE_FILE)
+        baselineEnabled = driver.baseline != null
+        includingGeneratedSources = driver.checkGeneratedSources
+        includingTestSources = driver.checkTestSources
+        includingDependencies = driver.checkDependencies
+      }
       for (issueBuilder in computeIssueData(warnings1, warnings2, severityModule).values) {
         addIssueIds(issueBuilder)
       }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint;
+
+import com.android.tools.idea.lint.LintProfiler.Stats;
+import com.intellij.ide.scratch.ScratchFileService;
+import com.intellij.ide.scratch.ScratchRootType;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileTypes.PlainTextLanguage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTabbedPane;
+import com.intellij.ui.table.JBTable;
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A non-modal dialog showing the costs recorded by {@link LintProfiler}, refreshed while lint runs.
+ */
+public class LintProfileViewer extends DialogWrapper {
+  public static final String TITLE = "Lint Profile";
+  private static final int REFRESH_INTERVAL_MILLIS = 1000;
+
+  @NotNull private final Project myProject;
+  @NotNull private final StatsTableModel myDetectorModel;
+  @NotNull private final StatsTableModel myFileModel;
+  @NotNull private final Timer myRefreshTimer;
+
+  public LintProfileViewer(@NotNull Project project) {
+    super(project, false);
+    myProject = project;
+    LintProfiler profiler = LintProfiler.getInstance();
+    myDetectorModel = new StatsTableModel("Detector", profiler::getDetectorStats, true);
+    myFileModel = new StatsTableModel("File", profiler::getFileStats, false);
+    myRefreshTimer = new Timer(REFRESH_INTERVAL_MILLIS, event -> refresh());
+
+    setModal(false);
+    setTitle(TITLE);
+    init();
+    refresh();
+    myRefreshTimer.start();
+  }
+
+  private void refresh() {
+    myDetectorModel.refresh();
+    myFileModel.refresh();
+  }
+
+  @Nullable
+  @Override
+  protected JComponent createCenterPanel() {
+    JBTabbedPane tabs = new JBTabbedPane();
+    tabs.addTab("Detectors", new JBScrollPane(new JBTable(myDetectorModel)));
+    tabs.addTab("Files", new JBScrollPane(new JBTable(myFileModel)));
+    return tabs;
+  }
+
+  @Override
+  protected String getDimensionServiceKey() {
+    return LintProfileViewer.class.getName();
+  }
+
+  @NotNull
+  @Override
+  protected Action[] createActions() {
+    return new Action[]{
+      new AbstractAction("Reset") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+          LintProfiler.getInstance().reset();
+          refresh();
+        }
+      },
+      new AbstractAction("Export") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+          export();
+        }
+      },
+      getOKAction()
+    };
+  }
+
+  private void export() {
+    VirtualFile report = ScratchRootType.getInstance().createScratchFile(
+      myProject, "lint-profile.csv", PlainTextLanguage.INSTANCE, LintProfiler.getInstance().createReport(),
+      ScratchFileService.Option.create_new_always);
+    if (report != null) {
+      FileEditorManager.getInstance(myProject).openFile(report, true);
+    }
+  }
+
+  @Override
+  protected void dispose() {
+    myRefreshTimer.stop();
+    super.dispose();
+  }
+
+  private static class StatsTableModel extends AbstractTableModel {
+    private static final String[] STATS_COLUMNS = {"Runs", "Wall ms", "CPU ms", "Allocated KB"};
+    private static final String[] DETECTOR_COLUMNS = {"Issues", "Samples", "Average editor ms"};
+
+    @NotNull private final String myKeyColumn;
+    @NotNull private final Supplier<Map<String, Stats>> myStats;
+    private final boolean myDetectors;
+    @NotNull private List<Map.Entry<String, Stats>> myRows = new ArrayList<>();
+
+    private StatsTableModel(@NotNull String keyColumn, @NotNull Supplier<Map<String, Stats>> stats, boolean detectors) {
+      myKeyColumn = keyColumn;
+      myStats = stats;
+      myDetectors = detectors;
+    }
+
+    private void refresh() {
+      List<Map.Entry<String, Stats>> rows = new ArrayList<>(myStats.get().entrySet());
+      rows.sort(Comparator.comparingLong((Map.Entry<String, Stats> entry) -> entry.getValue().getWallNanos()).reversed());
+      myRows = rows;
+      fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+      return myRows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return 1 + STATS_COLUMNS.length + (myDetectors ? DETECTOR_COLUMNS.length : 0);
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      if (column == 0) {
+        return myKeyColumn;
+      }
+      column--;
+      return column < STATS_COLUMNS.length ? STATS_COLUMNS[column] : DETECTOR_COLUMNS[column - STATS_COLUMNS.length];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+      return column == 0 || column == 1 + STATS_COLUMNS.length ? String.class : Long.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+      Map.Entry<String, Stats> entry = myRows.get(row);
+      Stats stats = entry.getValue();
+      switch (column) {
+        case 0:
+          return entry.getKey();
+        case 1:
+          return stats.getRuns();
+        case 2:
+          return TimeUnit.NANOSECONDS.toMillis(stats.getWallNanos());
+        case 3:
+          return TimeUnit.NANOSECONDS.toMillis(stats.getCpuNanos());
+        case 4:
+          return stats.getAllocatedBytes() / 1024;
+        case 5:
+          return String.join(", ", stats.getIssueIds());
+        case 6:
+          return stats.getSamples();
+        case 7:
+          return TimeUnit.NANOSECONDS.toMillis(stats.getAverageEditorWallNanos());
+        default:
+          throw new IndexOutOfBoundsException("Unexpected column " + column);
+      }
+    }
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint;
+
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.lint.client.api.LintDriver;
+import com.android.tools.lint.client.api.LintListener;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Records the cost of lint analysis per detector and per file, for both the editor and the batch lint clients.
+ * <p>
+ * Lint calls its detectors itself, so their cost is measured by sampling: while a lint driver runs, the stack of its
+ * thread is sampled periodically and each sample is attributed to the innermost detector on the stack. The wall time,
+ * CPU time and allocated bytes of a run are then split between its detectors in proportion to their samples. The cost
+ * of each file is measured directly, from the scanning events of the lint driver.
+ * <p>
+ * Profiling is enabled by the {@link StudioFlags#LINT_PROFILING} flag.
+ */
+public final class LintProfiler {
+  private static final Logger LOG = Logger.getInstance(LintProfiler.class);
+  private static final LintProfiler ourInstance = new LintProfiler();
+
+  /**
+   * The key of the samples which are not in any detector, such as parsing and the lint infrastructure.
+   */
+  public static final String OTHER = "(lint)";
+  private static final long SAMPLING_INTERVAL_MILLIS = 5;
+  /**
+   * Detectors over the editor latency budget still run once every this many editor runs, so that their cost keeps being measured.
+   */
+  @VisibleForTesting
+  static final int DEFERRED_RUN_INTERVAL = 10;
+
+  private final ConcurrentMap<String, Stats> myDetectorStats = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Stats> myFileStats = new ConcurrentHashMap<>();
+  private final Set<Run> myActiveRuns = ConcurrentHashMap.newKeySet();
+  @Nullable private ScheduledFuture<?> mySampler;
+
+  @NotNull
+  public static LintProfiler getInstance() {
+    return ourInstance;
+  }
+
+  public static boolean isEnabled() {
+    return StudioFlags.LINT_PROFILING.get();
+  }
+
+  @VisibleForTesting
+  LintProfiler() {
+  }
+
+  /**
+   * Starts measuring an analysis by {@code driver} on the current thread, with {@code issues} enabled.
+   * Returns null if profiling is disabled. The returned run must be closed when the analysis is done.
+   */
+  @Nullable
+  public Run startRun(@NotNull LintDriver driver, @NotNull Collection<Issue> issues, boolean editor) {
+    if (!isEnabled()) {
+      return null;
+    }
+
+    Run run = new Run(Thread.currentThread(), issues, editor);
+    driver.addLintListener((lintDriver, type, project, context) -> {
+      if (type == LintListener.EventType.SCANNING_FILE && context != null) {
+        run.startFile(context.file.getPath());
+      }
+    });
+
+    synchronized (this) {
+      myActiveRuns.add(run);
+      if (mySampler == null) {
+        mySampler = AppExecutorUtil.getAppScheduledExecutorService()
+          .scheduleWithFixedDelay(this::sample, SAMPLING_INTERVAL_MILLIS, SAMPLING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    }
+    return run;
+  }
+
+  private void sample() {
+    for (Run run : myActiveRuns) {
+      StackTraceElement[] stack = run.myThread.getStackTrace();
+      String detector = OTHER;
+      for (StackTraceElement frame : stack) {
+        String className = frame.getClassName();
+        int nested = className.indexOf('$');
+        if (nested > 0) {
+          className = className.substring(0, nested);
+        }
+        if (run.myDetectorIssues.containsKey(className)) {
+          detector = className;
+          break;
+        }
+      }
+      run.addSample(detector);
+    }
+  }
+
+  private synchronized void stopRun(@NotNull Run run) {
+    myActiveRuns.remove(run);
+    if (myActiveRuns.isEmpty() && mySampler != null) {
+      mySampler.cancel(false);
+      mySampler = null;
+    }
+  }
+
+  /**
+   * Returns the issues of {@code issues} which should run in the editor, leaving out the issues of the detectors
+   * whose average cost per editor run is over {@code budgetMillis}. Those detectors are deferred: they still run
+   * once every {@link #DEFERRED_RUN_INTERVAL} editor runs.
+   */
+  @NotNull
+  public Set<Issue> getIssuesWithinBudget(@NotNull Set<Issue> issues, long budgetMillis) {
+    if (budgetMillis <= 0) {
+      return issues;
+    }
+
+    long budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    Map<String, Boolean> runDetectors = new HashMap<>();
+    Set<Issue> result = new HashSet<>(issues.size());
+    for (Issue issue : issues) {
+      String detector = issue.getImplementation().getDetectorClass().getName();
+      boolean run = runDetectors.computeIfAbsent(detector, name -> {
+        Stats stats = myDetectorStats.get(name);
+        return stats == null || stats.shouldRunInEditor(budgetNanos);
+      });
+      if (run) {
+        result.add(issue);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the cost of each detector, by detector class name. Samples outside of any detector are under {@link #OTHER}.
+   */
+  @NotNull
+  public Map<String, Stats> getDetectorStats() {
+    return Collections.unmodifiableMap(myDetectorStats);
+  }
+
+  /**
+   * Returns the cost of each file, by path.
+   */
+  @NotNull
+  public Map<String, Stats> getFileStats() {
+    return Collections.unmodifiableMap(myFileStats);
+  }
+
+  public void reset() {
+    myDetectorStats.clear();
+    myFileStats.clear();
+  }
+
+  /**
+   * Returns a CSV report of the costs of the detectors, then of the files, most expensive first.
+   */
+  @NotNull
+  public String createReport() {
+    StringBuilder report = new StringBuilder();
+    report.append("Detector,Issues,Samples,Wall ms,CPU ms,Allocated KB,Editor runs,Average editor wall ms\n");
+    myDetectorStats.entrySet().stream()
+      .sorted(Comparator.comparingLong((Map.Entry<String, Stats> entry) -> entry.getValue().getWallNanos()).reversed())
+      .forEach(entry -> {
+        Stats stats = entry.getValue();
+        report.append(entry.getKey()).append(',')
+          .append(String.join(" ", stats.getIssueIds())).append(',')
+          .append(stats.getSamples()).append(',')
+          .append(TimeUnit.NANOSECONDS.toMillis(stats.getWallNanos())).append(',')
+          .append(TimeUnit.NANOSECONDS.toMillis(stats.getCpuNanos())).append(',')
+          .append(stats.getAllocatedBytes() / 1024).append(',')
+          .append(stats.getEditorRuns()).append(',')
+          .append(TimeUnit.NANOSECONDS.toMillis(stats.getAverageEditorWallNanos())).append('\n');
+      });
+
+    report.append("\nFile,Runs,Wall ms,CPU ms,Allocated KB\n");
+    myFileStats.entrySet().stream()
+      .sorted(Comparator.comparingLong((Map.Entry<String, Stats> entry) -> entry.getValue().getWallNanos()).reversed())
+      .forEach(entry -> {
+        Stats stats = entry.getValue();
+        report.append(entry.getKey()).append(',')
+          .append(stats.getRuns()).append(',')
+          .append(TimeUnit.NANOSECONDS.toMillis(stats.getWallNanos())).append(',')
+          .append(TimeUnit.NANOSECONDS.toMillis(stats.getCpuNanos())).append(',')
+          .append(stats.getAllocatedBytes() / 1024).append('\n');
+      });
+    return report.toString();
+  }
+
+  private static long getCpuNanos(@NotNull Thread thread) {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    return bean.isThreadCpuTimeSupported() ? Math.max(0, bean.getThreadCpuTime(thread.getId())) : 0;
+  }
+
+  private static long getAllocatedBytes(@NotNull Thread thread) {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return Math.max(0, ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(thread.getId()));
+    }
+    return 0;
+  }
+
+  /**
+   * The measurements of one analysis by a lint driver.
+   */
+  public final class Run implements AutoCloseable {
+    @NotNull private final Thread myThread;
+    /**
+     * The enabled issue ids, by detector class name.
+     */
+    @NotNull private final Map<String, Set<String>> myDetectorIssues = new HashMap<>();
+    private final boolean myEditor;
+    private final long myStartWallNanos;
+    private final long myStartCpuNanos;
+    private final long myStartAllocatedBytes;
+
+    private final Map<String, Integer> mySamples = new HashMap<>();
+    @Nullable private String myFile;
+    private long myFileStartWallNanos;
+    private long myFileStartCpuNanos;
+    private long myFileStartAllocatedBytes;
+
+    @VisibleForTesting
+    Run(@NotNull Thread thread, @NotNull Collection<Issue> issues, boolean editor) {
+      myThread = thread;
+      for (Issue issue : issues) {
+        myDetectorIssues.computeIfAbsent(issue.getImplementation().getDetectorClass().getName(), name -> new TreeSet<>()).add(issue.getId());
+      }
+      myEditor = editor;
+      myStartWallNanos = System.nanoTime();
+      myStartCpuNanos = getCpuNanos(thread);
+      myStartAllocatedBytes = getAllocatedBytes(thread);
+    }
+
+    @VisibleForTesting
+    synchronized void addSample(@NotNull String detector) {
+      mySamples.merge(detector, 1, Integer::sum);
+    }
+
+    private void startFile(@NotNull String path) {
+      finishFile();
+      myFile = path;
+      myFileStartWallNanos = System.nanoTime();
+      myFileStartCpuNanos = getCpuNanos(myThread);
+      myFileStartAllocatedBytes = getAllocatedBytes(myThread);
+    }
+
+    private void finishFile() {
+      if (myFile != null) {
+        myFileStats.computeIfAbsent(myFile, path -> new Stats(Collections.emptySet()))
+          .add(1, 0, System.nanoTime() - myFileStartWallNanos, getCpuNanos(myThread) - myFileStartCpuNanos,
+               getAllocatedBytes(myThread) - myFileStartAllocatedBytes);
+        myFile = null;
+      }
+    }
+
+    @Override
+    public void close() {
+      stopRun(this);
+      finishFile();
+      finish(System.nanoTime() - myStartWallNanos, getCpuNanos(myThread) - myStartCpuNanos,
+             getAllocatedBytes(myThread) - myStartAllocatedBytes);
+    }
+
+    /**
+     * Splits the cost of the run between the detectors, in proportion to their samples.
+     */
+    @VisibleForTesting
+    synchronized void finish(long wallNanos, long cpuNanos, long allocatedBytes) {
+      long totalSamples = mySamples.values().stream().mapToLong(Integer::longValue).sum();
+      Set<String> detectors = new HashSet<>(myDetectorIssues.keySet());
+      detectors.addAll(mySamples.keySet());
+      detectors.add(OTHER);
+      for (String detector : detectors) {
+        int samples = mySamples.getOrDefault(detector, 0);
+        // Runs too short to be sampled are attributed to lint itself.
+        double share = totalSamples == 0 ? (OTHER.equals(detector) ? 1 : 0) : (double)samples / totalSamples;
+        long detectorWallNanos = (long)(wallNanos * share);
+        myDetectorStats.computeIfAbsent(detector, name -> new Stats(myDetectorIssues.getOrDefault(name, Collections.emptySet())))
+          .add(samples, myEditor ? detectorWallNanos : -1, detectorWallNanos, (long)(cpuNanos * share), (long)(allocatedBytes * share));
+      }
+    }
+  }
+
+  /**
+   * The accumulated cost of a detector or of a file.
+   */
+  public static final class Stats {
+    @NotNull private final Set<String> myIssueIds;
+    private long myRuns;
+    private long mySamples;
+    private long myWallNanos;
+    private long myCpuNanos;
+    private long myAllocatedBytes;
+    private long myEditorRuns;
+    private long myEditorWallNanos;
+    private long myDeferredRuns;
+
+    private Stats(@NotNull Set<String> issueIds) {
+      myIssueIds = issueIds;
+    }
+
+    /**
+     * Adds the cost of one run. {@code editorWallNanos} is negative for runs outside of the editor.
+     */
+    private synchronized void add(long samples, long editorWallNanos, long wallNanos, long cpuNanos, long allocatedBytes) {
+      myRuns++;
+      mySamples += samples;
+      myWallNanos += wallNanos;
+      myCpuNanos += cpuNanos;
+      myAllocatedBytes += allocatedBytes;
+      if (editorWallNanos >= 0) {
+        myEditorRuns++;
+        myEditorWallNanos += editorWallNanos;
+      }
+    }
+
+    private synchronized boolean shouldRunInEditor(long budgetNanos) {
+      if (getAverageEditorWallNanos() <= budgetNanos) {
+        myDeferredRuns = 0;
+        return true;
+      }
+      if (myDeferredRuns == 0) {
+        LOG.info("Deferring lint issues " + myIssueIds + " in the editor, their average cost is " +
+                 TimeUnit.NANOSECONDS.toMillis(getAverageEditorWallNanos()) + " ms");
+      }
+      return ++myDeferredRuns % DEFERRED_RUN_INTERVAL == 0;
+    }
+
+    @NotNull
+    public Set<String> getIssueIds() {
+      return myIssueIds;
+    }
+
+    public synchronized long getRuns() {
+      return myRuns;
+    }
+
+    public synchronized long getSamples() {
+      return mySamples;
+    }
+
+    public synchronized long getWallNanos() {
+      return myWallNanos;
+    }
+
+    public synchronized long getCpuNanos() {
+      return myCpuNanos;
+    }
+
+    public synchronized long getAllocatedBytes() {
+      return myAllocatedBytes;
+    }
+
+    public synchronized long getEditorRuns() {
+      return myEditorRuns;
+    }
+
+    public synchronized long getAverageEditorWallNanos() {
+      return myEditorRuns == 0 ? 0 : myEditorWallNanos / myEditorRuns;
+    }
+  }
+}
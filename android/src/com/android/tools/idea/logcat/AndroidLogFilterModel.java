@@ -79,9 +79,17 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   }
 
   public final void updateLogcatFilter(@Nullable AndroidLogcatFilter filter) {
+    setLogcatFilter(filter);
+    fireTextFilterChange();
+  }
+
+  /**
+   * Like {@link #updateLogcatFilter(AndroidLogcatFilter)}, but without reprocessing the lines already in the console. The caller is
+   * responsible for replaying the messages, for example after filtering them in {@link AndroidLogcatService}.
+   */
+  final void setLogcatFilter(@Nullable AndroidLogcatFilter filter) {
     saveConfiguredFilterName(filter != null ? filter.getName() : "");
     myConfiguredFilter = filter;
-    fireTextFilterChange();
   }
 
   protected abstract void saveConfiguredFilterName(String filterName);
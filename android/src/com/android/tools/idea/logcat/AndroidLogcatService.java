@@ -25,7 +25,6 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.intellij.execution.impl.ConsoleBuffer;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
@@ -61,26 +60,6 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     return Logger.getInstance(AndroidLogcatService.class);
   }
 
-  private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
-
-    public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
-      if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
-      }
-    }
-
-    @NotNull
-    public List<LogCatMessage> getMessages() {
-      return myMessages;
-    }
-  }
-
   private static class ListenerConnector implements LogcatListener {
     @GuardedBy("myListenerLock")
     @Nullable private LogcatListener myListener; // Initially not null, set to null when disconnected.
@@ -366,9 +345,47 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
    */
   public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, boolean addOldLogs) {
     synchronized (myLock) {
-      List<LogCatMessage> oldMessages =
-          addOldLogs && myLogBuffers.containsKey(device) ? myLogBuffers.get(device).getMessages() : ImmutableList.of();
+      LogcatBuffer buffer = myLogBuffers.get(device);
+      addListener(device, listener, addOldLogs && buffer != null ? buffer.getMessages() : ImmutableList.of());
+    }
+  }
 
+  /**
+   * Returns a snapshot of the log messages received so far from the device, or null if it isn't being listened to. The snapshot can be
+   * filtered on any thread, without holding up the service.
+   */
+  @Nullable
+  LogcatBuffer.Snapshot getLogSnapshot(@NotNull IDevice device) {
+    synchronized (myLock) {
+      LogcatBuffer buffer = myLogBuffers.get(device);
+      return buffer != null ? buffer.snapshot() : null;
+    }
+  }
+
+  /**
+   * Add a listener like {@link #addListener(IDevice, LogcatListener, boolean)}, but only notify it of the old log messages accepted
+   * by {@code oldLogsFilter}. This is much faster than sending all the old messages to a listener that filters them itself.
+   * <p/>
+   * {@code filteredMessages} are the messages of {@code snapshot}, from {@link #getLogSnapshot(IDevice)}, accepted by the filter. Only
+   * the messages received since the snapshot was taken are filtered here.
+   */
+  void addListener(@NotNull IDevice device,
+                   @NotNull LogcatListener listener,
+                   @NotNull AndroidLogcatFilter oldLogsFilter,
+                   @Nullable LogcatBuffer.Snapshot snapshot,
+                   @NotNull List<LogCatMessage> filteredMessages) {
+    synchronized (myLock) {
+      LogcatBuffer buffer = myLogBuffers.get(device);
+      List<LogCatMessage> newMessages = buffer != null ? buffer.snapshotAfter(snapshot).getMessages(oldLogsFilter) : ImmutableList.of();
+      addListener(device, listener, newMessages.isEmpty() ? filteredMessages : ImmutableList.<LogCatMessage>builder()
+        .addAll(filteredMessages)
+        .addAll(newMessages)
+        .build());
+    }
+  }
+
+  private void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, @NotNull List<LogCatMessage> oldMessages) {
+    synchronized (myLock) {
       ListenerConnector listenerConnector = new ListenerConnector(listener, oldMessages);
       myDeviceToListenerMultimap.put(device, listenerConnector);
 
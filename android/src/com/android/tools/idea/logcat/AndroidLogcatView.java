@@ -5,7 +5,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.android.ddmlib.Client;
 import com.android.ddmlib.ClientData;
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.tools.idea.ddms.DeviceContext;
+import com.google.common.collect.ImmutableList;
 import com.intellij.execution.ui.ConsoleView;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.Disposable;
@@ -326,7 +328,30 @@ public class AndroidLogcatView {
       ProgressManager.getInstance().run(new Task.Backgroundable(myProject, "Applying Filter...") {
         @Override
         public void run(@NotNull ProgressIndicator indicator) {
-          myLogFilterModel.updateLogcatFilter((AndroidLogcatFilter)filter);
+          IDevice device = myDevice;
+          if (device == null) {
+            myLogFilterModel.updateLogcatFilter((AndroidLogcatFilter)filter);
+            return;
+          }
+
+          // Replaying the messages filtered by the logcat service is much faster than reprocessing all the lines of the console.
+          // The messages are filtered here, so that neither the UI thread nor the logcat receiver wait for it.
+          myLogFilterModel.setLogcatFilter((AndroidLogcatFilter)filter);
+          AndroidLogcatService androidLogcatService = AndroidLogcatService.getInstance();
+          LogcatBuffer.Snapshot snapshot = androidLogcatService.getLogSnapshot(device);
+          List<LogCatMessage> filteredMessages = snapshot != null ? snapshot.getMessages((AndroidLogcatFilter)filter) : ImmutableList.of();
+          UIUtil.invokeAndWaitIfNeeded((Runnable)() -> {
+            // The selected device may have changed in the meantime, in which case its messages are already replayed with the new filter.
+            if (myDevice != device) {
+              return;
+            }
+            androidLogcatService.removeListener(device, myLogcatReceiver);
+            if (myLogConsole.getConsole() != null) {
+              myLogConsole.clear();
+            }
+            myLogFilterModel.processingStarted();
+            androidLogcatService.addListener(device, myLogcatReceiver, (AndroidLogcatFilter)filter, snapshot, filteredMessages);
+          });
         }
       });
     }
@@ -0,0 +1,447 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.execution.impl.ConsoleBuffer;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TObjectIntHashMap;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The log messages received from a device, trimmed to the size of the console cycle buffer.
+ * <p/>
+ * Messages are stored column by column in fixed size chunks, with tags and package names interned, and each chunk keeps an index of
+ * the log levels, pids, tags and packages of its messages. {@link Snapshot#getMessages(AndroidLogcatFilter)} uses the indexes to skip the
+ * chunks that cannot match a {@link DefaultAndroidLogcatFilter} and matches the message pattern on all the other chunks in parallel.
+ * <p/>
+ * This class is not thread safe, but its {@link Snapshot}s can be read on any thread while messages keep being added, so that filtering
+ * doesn't need to hold the lock guarding the buffer.
+ */
+final class LogcatBuffer {
+  @VisibleForTesting
+  static final int CHUNK_SIZE = 4096;
+
+  private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+
+  @NotNull private final IntSupplier myMaxSize;
+  @NotNull private final ArrayDeque<Chunk> myChunks = new ArrayDeque<>();
+
+  /**
+   * The tags and package names of the messages, indexed by their ids.
+   */
+  @NotNull private final List<String> myStrings = new ArrayList<>();
+  @NotNull private final TObjectIntHashMap<String> myStringIds = new TObjectIntHashMap<>();
+
+  @Nullable private LogCatHeader myLastHeader;
+  private int myBufferSize;
+  private int myMessageCount;
+  /**
+   * Number of messages added since the buffer was created, including the trimmed ones.
+   */
+  private long myAddedCount;
+
+  LogcatBuffer() {
+    this(() -> ConsoleBuffer.useCycleBuffer() ? ConsoleBuffer.getCycleBufferSize() : Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param maxSize supplies the maximum number of characters of the messages kept in the buffer
+   */
+  @VisibleForTesting
+  LogcatBuffer(@NotNull IntSupplier maxSize) {
+    myMaxSize = maxSize;
+  }
+
+  public void addMessage(@NotNull LogCatMessage message) {
+    Chunk chunk = myChunks.peekLast();
+    if (chunk == null || chunk.myEnd == CHUNK_SIZE) {
+      chunk = new Chunk();
+      myChunks.addLast(chunk);
+    }
+
+    LogCatHeader header = message.getHeader();
+    // Lines of a multi-line message are received with the same header instance.
+    boolean continuation = header == myLastHeader;
+    myLastHeader = header;
+    chunk.add(header, message.getMessage(), continuation, getStringId(header.getTag()), getStringId(header.getAppName()));
+    myBufferSize += message.getMessage().length();
+    myMessageCount++;
+    myAddedCount++;
+
+    int maxSize = myMaxSize.getAsInt();
+    while (myBufferSize > maxSize && myMessageCount > 0) {
+      removeFirstMessage();
+    }
+  }
+
+  private void removeFirstMessage() {
+    Chunk chunk = myChunks.getFirst();
+    // The message itself is kept until the whole chunk is removed, since snapshots may still read it.
+    myBufferSize -= chunk.myMessages[chunk.myStart].length();
+    chunk.myStart++;
+    myMessageCount--;
+
+    if (chunk.myStart == chunk.myEnd) {
+      myChunks.removeFirst();
+    }
+  }
+
+  private int getStringId(@NotNull String string) {
+    int id = myStringIds.get(string);
+    if (id == 0 && !myStringIds.containsKey(string)) {
+      id = myStrings.size();
+      myStrings.add(string);
+      myStringIds.put(string, id);
+    }
+    return id;
+  }
+
+  int getMessageCount() {
+    return myMessageCount;
+  }
+
+  /**
+   * @return all the messages of the buffer. The lines of a multi-line message share the same header.
+   */
+  @NotNull
+  public List<LogCatMessage> getMessages() {
+    return snapshot().getMessages();
+  }
+
+  /**
+   * @see Snapshot#getMessages(AndroidLogcatFilter)
+   */
+  @NotNull
+  public List<LogCatMessage> getMessages(@NotNull AndroidLogcatFilter filter) {
+    return snapshot().getMessages(filter);
+  }
+
+  /**
+   * @return the messages currently in the buffer.
+   */
+  @NotNull
+  public Snapshot snapshot() {
+    return snapshotAfter(null);
+  }
+
+  /**
+   * @return the messages added to the buffer after {@code previous} was taken, or all the messages if {@code previous} is null or is a
+   * snapshot of another buffer.
+   */
+  @NotNull
+  public Snapshot snapshotAfter(@Nullable Snapshot previous) {
+    long firstSequence = myAddedCount - myMessageCount;
+    long skipped = previous != null && previous.myBuffer == this ? Math.max(0, previous.myEndSequence - firstSequence) : 0;
+
+    List<Chunk> chunks = new ArrayList<>(myChunks.size());
+    List<int[]> ranges = new ArrayList<>(myChunks.size());
+    for (Chunk chunk : myChunks) {
+      int start = chunk.myStart;
+      if (skipped > 0) {
+        int skippedInChunk = (int)Math.min(skipped, chunk.myEnd - start);
+        start += skippedInChunk;
+        skipped -= skippedInChunk;
+      }
+      if (start == chunk.myEnd) {
+        continue;
+      }
+      // Full chunks are not modified anymore, apart from trimming their start, so they can be shared. The last one is still growing.
+      chunks.add(chunk.myEnd == CHUNK_SIZE ? chunk : chunk.copy());
+      ranges.add(new int[]{start, chunk.myEnd});
+    }
+    return new Snapshot(this, chunks.toArray(new Chunk[0]), ranges.toArray(new int[0][]), myStrings.toArray(new String[0]), myAddedCount);
+  }
+
+  /**
+   * Immutable view of messages of a {@link LogcatBuffer}, which is safe to read on any thread.
+   */
+  static final class Snapshot {
+    @NotNull private final LogcatBuffer myBuffer;
+    @NotNull private final Chunk[] myChunks;
+    /**
+     * The start, inclusive, and end, exclusive, of the messages of each chunk that are part of the snapshot.
+     */
+    @NotNull private final int[][] myRanges;
+    @NotNull private final String[] myStrings;
+    private final long myEndSequence;
+
+    private Snapshot(@NotNull LogcatBuffer buffer,
+                     @NotNull Chunk[] chunks,
+                     @NotNull int[][] ranges,
+                     @NotNull String[] strings,
+                     long endSequence) {
+      myBuffer = buffer;
+      myChunks = chunks;
+      myRanges = ranges;
+      myStrings = strings;
+      myEndSequence = endSequence;
+    }
+
+    /**
+     * @return all the messages of the snapshot. The lines of a multi-line message share the same header.
+     */
+    @NotNull
+    public List<LogCatMessage> getMessages() {
+      List<LogCatMessage> messages = new ArrayList<>();
+      LogCatHeader header = null;
+      for (int i = 0; i < myChunks.length; i++) {
+        Chunk chunk = myChunks[i];
+        for (int j = myRanges[i][0]; j < myRanges[i][1]; j++) {
+          if (header == null || !chunk.myContinuations[j]) {
+            header = getHeader(chunk, j);
+          }
+          messages.add(new LogCatMessage(header, chunk.myMessages[j]));
+        }
+      }
+      return messages;
+    }
+
+    /**
+     * @return the messages accepted by the given filter. Like in {@link AndroidLogFilterModel}, all the lines of a multi-line message are
+     * returned if the filter accepts any one of them.
+     */
+    @NotNull
+    public List<LogCatMessage> getMessages(@NotNull AndroidLogcatFilter filter) {
+      Chunk[] chunks = myChunks;
+      boolean[][] matches = new boolean[chunks.length][];
+
+      if (filter instanceof DefaultAndroidLogcatFilter) {
+        Query query = new Query((DefaultAndroidLogcatFilter)filter);
+        IntStream.range(0, chunks.length).parallel().forEach(i -> matches[i] = query.match(chunks[i], myRanges[i][0], myRanges[i][1]));
+      }
+      else {
+        // Other filters may not be thread safe.
+        for (int i = 0; i < chunks.length; i++) {
+          matches[i] = match(filter, chunks[i], myRanges[i][0], myRanges[i][1]);
+        }
+      }
+
+      List<LogCatMessage> messages = new ArrayList<>();
+      int recordChunk = 0;
+      int recordStart = chunks.length > 0 ? myRanges[0][0] : 0;
+      boolean recordMatches = false;
+      for (int i = 0; i < chunks.length; i++) {
+        Chunk chunk = chunks[i];
+        for (int j = myRanges[i][0]; j < myRanges[i][1]; j++) {
+          if (!chunk.myContinuations[j] && (i != recordChunk || j != recordStart)) {
+            if (recordMatches) {
+              addRecord(recordChunk, recordStart, i, j, messages);
+            }
+            recordChunk = i;
+            recordStart = j;
+            recordMatches = false;
+          }
+          recordMatches |= matches[i] != null && matches[i][j];
+        }
+      }
+      if (recordMatches) {
+        addRecord(recordChunk, recordStart, chunks.length, 0, messages);
+      }
+      return messages;
+    }
+
+    /**
+     * Adds the messages from the given start position, inclusive, to the given end position, exclusive, with a single header.
+     */
+    private void addRecord(int startChunk, int startIndex, int endChunk, int endIndex, @NotNull List<LogCatMessage> messages) {
+      LogCatHeader header = getHeader(myChunks[startChunk], startIndex);
+      for (int i = startChunk; i <= endChunk && i < myChunks.length; i++) {
+        Chunk chunk = myChunks[i];
+        int start = i == startChunk ? startIndex : myRanges[i][0];
+        int end = i == endChunk ? endIndex : myRanges[i][1];
+        for (int j = start; j < end; j++) {
+          messages.add(new LogCatMessage(header, chunk.myMessages[j]));
+        }
+      }
+    }
+
+    @NotNull
+    private LogCatHeader getHeader(@NotNull Chunk chunk, int i) {
+      return new LogCatHeader(LOG_LEVELS[chunk.myLevels[i]], chunk.myPids[i], chunk.myTids[i], myStrings[chunk.myAppIds[i]],
+                              myStrings[chunk.myTagIds[i]], Instant.ofEpochSecond(chunk.myEpochSeconds[i], chunk.myNanos[i]));
+    }
+
+    @NotNull
+    private boolean[] match(@NotNull AndroidLogcatFilter filter, @NotNull Chunk chunk, int start, int end) {
+      boolean[] matches = new boolean[CHUNK_SIZE];
+      for (int i = start; i < end; i++) {
+        matches[i] = filter.isApplicable(chunk.myMessages[i], myStrings[chunk.myTagIds[i]], myStrings[chunk.myAppIds[i]],
+                                         chunk.myPids[i], LOG_LEVELS[chunk.myLevels[i]]);
+      }
+      return matches;
+    }
+
+    /**
+     * A {@link DefaultAndroidLogcatFilter} resolved against the interned strings of the snapshot.
+     */
+    private final class Query {
+      private final int myLevelMask;
+      @Nullable private final Integer myPid;
+      private final boolean myMatchesNoPid;
+      @Nullable private final boolean[] myTagMatches;
+      @Nullable private final boolean[] myAppMatches;
+      @Nullable private final Pattern myMessagePattern;
+
+      private Query(@NotNull DefaultAndroidLogcatFilter filter) {
+        LogLevel logLevel = filter.getLogLevel();
+        int levelMask = 0;
+        for (LogLevel level : LOG_LEVELS) {
+          if (logLevel == null || level.getPriority() >= logLevel.getPriority()) {
+            levelMask |= 1 << level.ordinal();
+          }
+        }
+        myLevelMask = levelMask;
+
+        // The filter compares the pid as a string, so only its canonical form can match.
+        String pid = filter.getPid();
+        Integer parsedPid = null;
+        if (pid != null && !pid.isEmpty()) {
+          try {
+            parsedPid = Integer.parseInt(pid);
+          }
+          catch (NumberFormatException ignored) {
+          }
+        }
+        myPid = parsedPid;
+        myMatchesNoPid = pid != null && !pid.isEmpty() && (parsedPid == null || !parsedPid.toString().equals(pid));
+
+        myTagMatches = matchStrings(filter.getTagPattern());
+        myAppMatches = matchStrings(filter.getPackagePattern());
+        myMessagePattern = filter.getMessagePattern();
+      }
+
+      @Nullable
+      private boolean[] matchStrings(@Nullable Pattern pattern) {
+        if (pattern == null) {
+          return null;
+        }
+        boolean[] matches = new boolean[myStrings.length];
+        for (int i = 0; i < matches.length; i++) {
+          matches[i] = pattern.matcher(myStrings[i]).find();
+        }
+        return matches;
+      }
+
+      /**
+       * @return which messages of the chunk are accepted, or null if none of them are
+       */
+      @Nullable
+      private boolean[] match(@NotNull Chunk chunk, int start, int end) {
+        if (myMatchesNoPid ||
+            (chunk.myLevelMask & myLevelMask) == 0 ||
+            (myPid != null && !chunk.myPidIndex.contains(myPid)) ||
+            !containsAny(chunk.myTagIndex, myTagMatches) ||
+            !containsAny(chunk.myAppIndex, myAppMatches)) {
+          return null;
+        }
+
+        boolean[] matches = new boolean[CHUNK_SIZE];
+        for (int i = start; i < end; i++) {
+          matches[i] = (myLevelMask & (1 << chunk.myLevels[i])) != 0 &&
+                       (myPid == null || chunk.myPids[i] == myPid) &&
+                       (myTagMatches == null || myTagMatches[chunk.myTagIds[i]]) &&
+                       (myAppMatches == null || myAppMatches[chunk.myAppIds[i]]) &&
+                       (myMessagePattern == null || myMessagePattern.matcher(chunk.myMessages[i]).find());
+        }
+        return matches;
+      }
+
+      private boolean containsAny(@NotNull TIntHashSet ids, @Nullable boolean[] matches) {
+        return matches == null || !ids.forEach(id -> !matches[id]);
+      }
+    }
+  }
+
+  private static final class Chunk {
+    private final byte[] myLevels = new byte[CHUNK_SIZE];
+    private final int[] myPids = new int[CHUNK_SIZE];
+    private final int[] myTids = new int[CHUNK_SIZE];
+    private final int[] myTagIds = new int[CHUNK_SIZE];
+    private final int[] myAppIds = new int[CHUNK_SIZE];
+    private final long[] myEpochSeconds = new long[CHUNK_SIZE];
+    private final int[] myNanos = new int[CHUNK_SIZE];
+    /**
+     * Whether a message is a line of the same multi-line message as the previous one.
+     */
+    private final boolean[] myContinuations = new boolean[CHUNK_SIZE];
+    private final String[] myMessages = new String[CHUNK_SIZE];
+
+    /**
+     * The indexes of the messages of the chunk. They also include the messages trimmed from the start of the chunk.
+     */
+    private int myLevelMask;
+    @NotNull private final TIntHashSet myPidIndex = new TIntHashSet();
+    @NotNull private final TIntHashSet myTagIndex = new TIntHashSet();
+    @NotNull private final TIntHashSet myAppIndex = new TIntHashSet();
+
+    private int myStart;
+    private int myEnd;
+
+    @NotNull
+    private Chunk copy() {
+      Chunk copy = new Chunk();
+      System.arraycopy(myLevels, 0, copy.myLevels, 0, myEnd);
+      System.arraycopy(myPids, 0, copy.myPids, 0, myEnd);
+      System.arraycopy(myTids, 0, copy.myTids, 0, myEnd);
+      System.arraycopy(myTagIds, 0, copy.myTagIds, 0, myEnd);
+      System.arraycopy(myAppIds, 0, copy.myAppIds, 0, myEnd);
+      System.arraycopy(myEpochSeconds, 0, copy.myEpochSeconds, 0, myEnd);
+      System.arraycopy(myNanos, 0, copy.myNanos, 0, myEnd);
+      System.arraycopy(myContinuations, 0, copy.myContinuations, 0, myEnd);
+      System.arraycopy(myMessages, 0, copy.myMessages, 0, myEnd);
+      copy.myLevelMask = myLevelMask;
+      copy.myPidIndex.addAll(myPidIndex.toArray());
+      copy.myTagIndex.addAll(myTagIndex.toArray());
+      copy.myAppIndex.addAll(myAppIndex.toArray());
+      copy.myStart = myStart;
+      copy.myEnd = myEnd;
+      return copy;
+    }
+
+    private void add(@NotNull LogCatHeader header, @NotNull String message, boolean continuation, int tagId, int appId) {
+      int i = myEnd++;
+      LogLevel level = header.getLogLevel();
+      Instant timestamp = header.getTimestamp();
+
+      myLevels[i] = (byte)level.ordinal();
+      myPids[i] = header.getPid();
+      myTids[i] = header.getTid();
+      myTagIds[i] = tagId;
+      myAppIds[i] = appId;
+      myEpochSeconds[i] = timestamp.getEpochSecond();
+      myNanos[i] = timestamp.getNano();
+      myContinuations[i] = continuation;
+      myMessages[i] = message;
+
+      myLevelMask |= 1 << level.ordinal();
+      myPidIndex.add(header.getPid());
+      myTagIndex.add(tagId);
+      myAppIndex.add(appId);
+    }
+  }
+}
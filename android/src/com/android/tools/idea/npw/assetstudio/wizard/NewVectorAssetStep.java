@@ -262,7 +262,8 @@ public final class NewVectorAssetStep extends ModelWizardStep<GenerateIconsModel
 
       VectorAsset activeAsset = myActiveAsset.get();
       OptionalValueProperty<File> fileProperty = activeAsset.path();
-      myActiveAssetBindings.bind(myOutputName, Expression.create(() -> {
+      // Cached per batch, since it hits the file system and only depends on the path.
+      myActiveAssetBindings.bind(myOutputName, Expression.createCached(() -> {
         File file = fileProperty.getValueOrNull();
         if (file == null || !file.exists() || file.isDirectory()) {
           return DEFAULT_OUTPUT_NAME;
@@ -49,6 +49,12 @@ import org.jetbrains.org.objectweb.asm.Type;
  * This way we avoid custom views breaking the rendering.
  */
 public class ClassConverter {
+  /**
+   * Version of the rewriting done by {@link #rewriteClass(byte[])}. It must be increased whenever the rewriting changes, so that classes
+   * rewritten by a previous version are not picked up from {@link RewrittenClassCache}.
+   */
+  public static final int REWRITE_VERSION = 1;
+
   private static final String ORIGINAL_SUFFIX = "_Original";
   private static final String ERROR_METHOD_DESCRIPTION;
 
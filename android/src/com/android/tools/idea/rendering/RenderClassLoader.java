@@ -44,6 +44,9 @@ public abstract class RenderClassLoader extends ClassLoader {
   // disk I/O is very slow. We could try these flags and see if it helps.
   private static boolean USE_PRELOAD = Boolean.getBoolean("render.class.loader.preload");
   private static boolean USE_CACHE = Boolean.getBoolean("render.class.loader.cache");
+  // Library classes rewritten by ClassConverter are cached on disk, so that new class loaders don't need to rewrite them again.
+  private static boolean USE_REWRITTEN_CLASS_CACHE =
+    Boolean.parseBoolean(System.getProperty("render.class.loader.rewritten.class.cache", "true"));
 
   protected UrlClassLoader myJarClassLoader;
   protected boolean myInsideJarClassLoader;
@@ -89,7 +92,7 @@ public abstract class RenderClassLoader extends ClassLoader {
           throw new ClassFormatError(name);
         }
 
-        byte[] rewritten = convertClass(data);
+        byte[] rewritten = convertLibraryClass(name, data);
         try {
           if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Defining class '%s' from .jar file", anonymizeClassName(name)));
@@ -184,6 +187,18 @@ public abstract class RenderClassLoader extends ClassLoader {
     return ClassConverter.rewriteClass(data);
   }
 
+  /**
+   * Same as {@link #convertClass(byte[])}, but the class is looked up in the {@link RewrittenClassCache} first. Only meant for library
+   * classes, which don't change between builds.
+   */
+  @NotNull
+  protected byte[] convertLibraryClass(@NotNull String name, @NotNull byte[] data) {
+    if (!USE_REWRITTEN_CLASS_CACHE) {
+      return convertClass(data);
+    }
+    return RewrittenClassCache.getInstance().getOrRewrite(name, data, this::convertClass);
+  }
+
   @NotNull
   protected Class<?> defineClassAndPackage(@NotNull String name, @NotNull byte[] b, int offset, int len) {
     int i = name.lastIndexOf('.');
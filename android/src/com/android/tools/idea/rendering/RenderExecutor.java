@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs layoutlib render actions on the render thread. Layoutlib is not thread safe and render sessions are bound to the thread that
+ * created them, so all the actions run on a single thread. Pending actions run by {@link Priority} and then in submission order, except
+ * that an action that has been waiting longer than the maximum wait time runs next regardless of its priority. That way, background
+ * renders still make progress while interactive renders keep arriving.
+ * <p/>
+ * The executor also keeps track of how long actions wait in the queue and how long they run.
+ */
+public class RenderExecutor {
+  /**
+   * Priority of a render action. Actions with a higher priority run before pending actions with a lower one.
+   */
+  public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+  }
+
+  private static final long DEFAULT_MAX_WAIT_MS = 1000;
+  private static final Priority[] PRIORITIES = Priority.values();
+
+  @NotNull private final AtomicReference<Thread> myThread = new AtomicReference<>();
+  /**
+   * Runs one {@link #runNextAction()} per submitted action, so each pending action is picked exactly once.
+   */
+  @NotNull private final ThreadPoolExecutor myExecutor;
+  /**
+   * Pending actions, one queue per {@link Priority} in submission order. Guarded by itself.
+   */
+  @NotNull private final ArrayDeque<RenderAction>[] myPendingActions;
+  private final long myStarvationThresholdNs;
+
+  private final AtomicLong myCompletedCount = new AtomicLong();
+  private final AtomicLong myTotalWaitNs = new AtomicLong();
+  private final AtomicLong myTotalRunNs = new AtomicLong();
+  private final AtomicLong myMaxWaitNs = new AtomicLong();
+
+  public RenderExecutor() {
+    this(DEFAULT_MAX_WAIT_MS);
+  }
+
+  /**
+   * @param maxWaitMs time after which a pending action runs before actions of a higher priority.
+   */
+  @SuppressWarnings("unchecked")
+  @VisibleForTesting
+  RenderExecutor(long maxWaitMs) {
+    myStarvationThresholdNs = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+    myPendingActions = new ArrayDeque[PRIORITIES.length];
+    for (int i = 0; i < PRIORITIES.length; i++) {
+      myPendingActions[i] = new ArrayDeque<>();
+    }
+    myExecutor = new ThreadPoolExecutor(1, 1,
+                                        0, TimeUnit.MILLISECONDS,
+                                        new LinkedBlockingQueue<>(),
+                                        (Runnable r) -> {
+                                          Thread renderingThread = new Thread(null, r, "Layoutlib Render Thread");
+                                          renderingThread.setDaemon(true);
+                                          myThread.set(renderingThread);
+
+                                          return renderingThread;
+                                        });
+  }
+
+  @NotNull
+  public <T> CompletableFuture<T> supplyAsync(@NotNull Priority priority, @NotNull Supplier<T> supplier) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    execute(priority, () -> {
+      try {
+        future.complete(supplier.get());
+      }
+      catch (Throwable t) {
+        future.completeExceptionally(t);
+      }
+    });
+    return future;
+  }
+
+  @NotNull
+  public <T> CompletableFuture<T> submit(@NotNull Priority priority, @NotNull Callable<T> callable) {
+    return supplyAsync(priority, () -> {
+      try {
+        return callable.call();
+      }
+      catch (Exception e) {
+        throw new CompletionException(e);
+      }
+    });
+  }
+
+  public void execute(@NotNull Priority priority, @NotNull Runnable runnable) {
+    RenderAction action = new RenderAction(runnable);
+    synchronized (myPendingActions) {
+      myPendingActions[priority.ordinal()].add(action);
+    }
+    try {
+      myExecutor.execute(this::runNextAction);
+    }
+    catch (RejectedExecutionException e) {
+      synchronized (myPendingActions) {
+        myPendingActions[priority.ordinal()].remove(action);
+      }
+      throw e;
+    }
+  }
+
+  private void runNextAction() {
+    RenderAction action = pollNextAction(System.nanoTime());
+    if (action != null) {
+      action.run();
+    }
+  }
+
+  /**
+   * @return the oldest pending action that has waited longer than the maximum wait time or, if there is none, the oldest pending action
+   * of the highest priority.
+   */
+  @Nullable
+  private RenderAction pollNextAction(long nowNs) {
+    synchronized (myPendingActions) {
+      ArrayDeque<RenderAction> next = null;
+      for (ArrayDeque<RenderAction> actions : myPendingActions) {
+        RenderAction head = actions.peek();
+        if (head == null) {
+          continue;
+        }
+        if (next == null) {
+          next = actions;
+        }
+        else if (nowNs - head.mySubmitTimeNs > myStarvationThresholdNs && head.mySubmitTimeNs < next.peek().mySubmitTimeNs) {
+          // The head of each queue is its oldest action, so only the heads need to be checked for starvation.
+          next = actions;
+        }
+      }
+      return next == null ? null : next.poll();
+    }
+  }
+
+  /**
+   * @return the render thread, or null if it has not been started.
+   */
+  @Nullable
+  public Thread getThread() {
+    return myThread.get();
+  }
+
+  /**
+   * @return the number of actions waiting to run.
+   */
+  public int getQueueSize() {
+    synchronized (myPendingActions) {
+      int size = 0;
+      for (ArrayDeque<RenderAction> actions : myPendingActions) {
+        size += actions.size();
+      }
+      return size;
+    }
+  }
+
+  public long getCompletedActionCount() {
+    return myCompletedCount.get();
+  }
+
+  /**
+   * @return the average time, in milliseconds, that completed actions waited before running.
+   */
+  public double getAverageWaitTimeMs() {
+    long count = myCompletedCount.get();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(myTotalWaitNs.get()) / 1000.0 / count;
+  }
+
+  public long getMaxWaitTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(myMaxWaitNs.get());
+  }
+
+  /**
+   * @return the average time, in milliseconds, that completed actions took to run.
+   */
+  public double getAverageRunTimeMs() {
+    long count = myCompletedCount.get();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(myTotalRunNs.get()) / 1000.0 / count;
+  }
+
+  public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+    return myExecutor.awaitTermination(timeout, unit);
+  }
+
+  /**
+   * Cancels the pending actions and interrupts the render thread.
+   */
+  public void shutdownNow() {
+    myExecutor.shutdownNow();
+    synchronized (myPendingActions) {
+      for (ArrayDeque<RenderAction> actions : myPendingActions) {
+        actions.clear();
+      }
+    }
+    Thread currentThread = myThread.getAndSet(null);
+    if (currentThread != null) {
+      currentThread.interrupt();
+    }
+  }
+
+  @VisibleForTesting
+  void recordCompletion(long waitNs, long runNs) {
+    myCompletedCount.incrementAndGet();
+    myTotalWaitNs.addAndGet(waitNs);
+    myTotalRunNs.addAndGet(runNs);
+    myMaxWaitNs.accumulateAndGet(waitNs, Math::max);
+  }
+
+  /**
+   * A pending render action and the time it was submitted at.
+   */
+  private final class RenderAction implements Runnable {
+    @NotNull private final Runnable myRunnable;
+    private final long mySubmitTimeNs = System.nanoTime();
+
+    private RenderAction(@NotNull Runnable runnable) {
+      myRunnable = runnable;
+    }
+
+    @Override
+    public void run() {
+      long startNs = System.nanoTime();
+      try {
+        myRunnable.run();
+      }
+      finally {
+        recordCompletion(startNs - mySubmitTimeNs, System.nanoTime() - startNs);
+      }
+    }
+  }
+}
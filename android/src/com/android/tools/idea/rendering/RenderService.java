@@ -55,14 +55,10 @@ import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import org.intellij.lang.annotations.MagicConstant;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -87,8 +83,7 @@ public class RenderService implements Disposable {
                                                                               : 6));
   @VisibleForTesting
   public static long ourRenderThreadTimeoutMs = DEFAULT_RENDER_THREAD_TIMEOUT_MS;
-  private static final AtomicReference<Thread> ourRenderingThread = new AtomicReference<>();
-  private static ExecutorService ourRenderingExecutor;
+  private static RenderExecutor ourRenderingExecutor;
   private static final AtomicInteger ourTimeoutExceptionCounter = new AtomicInteger(0);
 
   private static final Key<RenderService> KEY = Key.create(RenderService.class.getName());
@@ -103,16 +98,7 @@ public class RenderService implements Disposable {
   private final Project myProject;
 
   private static void innerInitializeRenderExecutor() {
-    ourRenderingExecutor = new ThreadPoolExecutor(1, 1,
-                             0, TimeUnit.MILLISECONDS,
-                             new LinkedBlockingQueue<>(),
-                             (Runnable r) -> {
-                               Thread renderingThread = new Thread(null, r, "Layoutlib Render Thread");
-                               renderingThread.setDaemon(true);
-                               ourRenderingThread.set(renderingThread);
-
-                               return renderingThread;
-                             });
+    ourRenderingExecutor = new RenderExecutor();
   }
 
   @TestOnly
@@ -124,10 +110,14 @@ public class RenderService implements Disposable {
 
   private static void shutdownRenderExecutor() {
     ourRenderingExecutor.shutdownNow();
-    Thread currentThread = ourRenderingThread.getAndSet(null);
-    if (currentThread != null) {
-      currentThread.interrupt();
-    }
+  }
+
+  /**
+   * Returns the executor running the layoutlib render actions, e.g. to read its queue and latency metrics.
+   */
+  @NotNull
+  public static RenderExecutor getRenderExecutor() {
+    return ourRenderingExecutor;
   }
 
   /**
@@ -287,11 +277,18 @@ public class RenderService implements Disposable {
    * method.
    */
   public static <T> T runRenderAction(@NotNull Callable<T> callable) throws Exception {
+    return runRenderAction(callable, RenderExecutor.Priority.NORMAL);
+  }
+
+  /**
+   * Runs a action that requires the rendering lock with the given priority over the other pending render actions.
+   */
+  static <T> T runRenderAction(@NotNull Callable<T> callable, @NotNull RenderExecutor.Priority priority) throws Exception {
     try {
       // If the number of timeouts exceeds a certain threshold, stop waiting so the caller doesn't block. We try to submit a task that
       // clean-up the timeout counter instead. If it goes through, it means the queue is free.
       if (ourTimeoutExceptionCounter.get() > 3) {
-        ourRenderingExecutor.submit(() -> ourTimeoutExceptionCounter.set(0)).get(50, TimeUnit.MILLISECONDS);
+        ourRenderingExecutor.submit(priority, () -> ourTimeoutExceptionCounter.getAndSet(0)).get(50, TimeUnit.MILLISECONDS);
       }
       long timeout = ourRenderThreadTimeoutMs;
       if (isFirstCall) {
@@ -300,7 +297,7 @@ public class RenderService implements Disposable {
         isFirstCall = false;
         timeout *= 2;
       }
-      T result = ourRenderingExecutor.submit(callable).get(timeout, TimeUnit.MILLISECONDS);
+      T result = ourRenderingExecutor.submit(priority, callable).get(timeout, TimeUnit.MILLISECONDS);
       // The executor seems to be taking tasks so reset the counter
       ourTimeoutExceptionCounter.set(0);
 
@@ -309,7 +306,7 @@ public class RenderService implements Disposable {
     catch (TimeoutException e) {
       ourTimeoutExceptionCounter.incrementAndGet();
 
-      Thread renderingThread = ourRenderingThread.get();
+      Thread renderingThread = ourRenderingExecutor.getThread();
       TimeoutException timeoutException = new TimeoutException("Preview timed out while rendering the layout.\n" +
                                                                "This typically happens when there is an infinite loop or unbounded recursion in one of the custom views.");
       if (renderingThread != null) {
@@ -328,7 +325,15 @@ public class RenderService implements Disposable {
    */
   @NotNull
   public static <T> CompletableFuture<T> runAsyncRenderAction(@NotNull Supplier<T> callable) {
-    return CompletableFuture.supplyAsync(callable, ourRenderingExecutor);
+    return runAsyncRenderAction(callable, RenderExecutor.Priority.NORMAL);
+  }
+
+  /**
+   * Runs an action that requires the rendering lock with the given priority over the other pending render actions.
+   */
+  @NotNull
+  static <T> CompletableFuture<T> runAsyncRenderAction(@NotNull Supplier<T> callable, @NotNull RenderExecutor.Priority priority) {
+    return ourRenderingExecutor.supplyAsync(priority, callable);
   }
 
   /**
@@ -338,7 +343,11 @@ public class RenderService implements Disposable {
    * This method will run the passed action asynchronously
    */
   public static void runAsyncRenderAction(@NotNull Runnable runnable) {
-    ourRenderingExecutor.submit(runnable);
+    runAsyncRenderAction(runnable, RenderExecutor.Priority.NORMAL);
+  }
+
+  static void runAsyncRenderAction(@NotNull Runnable runnable, @NotNull RenderExecutor.Priority priority) {
+    ourRenderingExecutor.submit(priority, Executors.callable(runnable));
   }
 
   /**
@@ -442,6 +451,7 @@ public class RenderService implements Disposable {
     private boolean useHighQualityShadows = StudioFlags.NELE_RENDER_HIGH_QUALITY_SHADOW.get();
     private SessionParams.RenderingMode myRenderingMode = null;
     private boolean useTransparentBackground = false;
+    @NotNull private RenderExecutor.Priority myPriority = RenderExecutor.Priority.NORMAL;
 
     private RenderTaskBuilder(@NotNull RenderService service,
                               @NotNull AndroidFacet facet,
@@ -558,6 +568,15 @@ public class RenderService implements Disposable {
       return this;
     }
 
+    /**
+     * @see RenderTask#setPriority(RenderExecutor.Priority)
+     */
+    @NotNull
+    public RenderTaskBuilder withPriority(@NotNull RenderExecutor.Priority priority) {
+      myPriority = priority;
+      return this;
+    }
+
     /**
      * Builds a new {@link RenderTask}. The returned future always completes successfully but the value might be null if the RenderTask
      * can not be created.
@@ -652,6 +671,8 @@ public class RenderService implements Disposable {
             task.setRenderingMode(myRenderingMode);
           }
 
+          task.setPriority(myPriority);
+
           return task;
         } catch (IllegalStateException | IncorrectOperationException | AssertionError e) {
           // Ignore the exception if it was generated when the facet is being disposed (project is being closed)
@@ -168,6 +168,7 @@ public class RenderTask {
   private final List<CompletableFuture<?>> myRunningFutures = new LinkedList<>();
   @NotNull private final AtomicBoolean isDisposed = new AtomicBoolean(false);
   @Nullable private XmlFile myXmlFile;
+  @NotNull private RenderExecutor.Priority myPriority = RenderExecutor.Priority.NORMAL;
 
   /**
    * Don't create this task directly; obtain via {@link RenderService}
@@ -303,7 +304,7 @@ public class RenderTask {
         catch (IllegalAccessException e) {
           LOG.debug(e);
         }
-      });
+      }, myPriority);
     } catch(Throwable t) {
       LOG.debug(t);
     }
@@ -336,7 +337,7 @@ public class RenderTask {
       myLayoutlibCallback.setLogger(IRenderLogger.NULL_LOGGER);
       if (myRenderSession != null) {
         try {
-          RenderService.runAsyncRenderAction(myRenderSession::dispose);
+          RenderService.runAsyncRenderAction(myRenderSession::dispose, myPriority);
           myRenderSession = null;
         }
         catch (Exception ignored) {
@@ -399,6 +400,17 @@ public class RenderTask {
     return this;
   }
 
+  /**
+   * Sets the priority of the render actions of this task over the ones of other tasks waiting for the render thread. Tasks rendering
+   * in the focused editor should use a higher priority than background previews.
+   */
+  @SuppressWarnings("UnusedReturnValue")
+  @NotNull
+  public RenderTask setPriority(@NotNull RenderExecutor.Priority priority) {
+    myPriority = priority;
+    return this;
+  }
+
   @SuppressWarnings("UnusedReturnValue")
   @NotNull
   public RenderTask setTimeout(long timeout) {
@@ -700,7 +712,7 @@ public class RenderTask {
     }
 
     synchronized (myRunningFutures) {
-      CompletableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable);
+      CompletableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable, myPriority);
       myRunningFutures.add(newFuture);
       newFuture
         .whenCompleteAsync((result, ex) -> {
@@ -830,7 +842,7 @@ public class RenderTask {
           clearGapWorkerCache();
           RenderService.runAsyncRenderAction(() -> {
             android.view.Choreographer.releaseInstance();
-          });
+          }, myPriority);
         });
       }
       catch (Exception e) {
@@ -976,7 +988,7 @@ public class RenderTask {
     }
 
     try {
-      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params));
+      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params), myPriority);
 
       if (result != null && result.isSuccess()) {
         Object data = result.getData();
@@ -1035,7 +1047,7 @@ public class RenderTask {
   public CompletableFuture<Map<XmlTag, ViewInfo>> measureChildren(@NotNull XmlTag parent, @Nullable AttributeFilter filter) {
     ILayoutPullParser modelParser = LayoutPsiPullParser.create(filter, parent, myLogger);
     Map<XmlTag, ViewInfo> map = new HashMap<>();
-    return RenderService.runAsyncRenderAction(() -> measure(modelParser))
+    return RenderService.runAsyncRenderAction(() -> measure(modelParser), myPriority)
         .thenComposeAsync(session -> {
           if (session != null) {
             try {
@@ -1056,7 +1068,7 @@ public class RenderTask {
               return CompletableFuture.completedFuture(map);
             }
             finally {
-              RenderService.runAsyncRenderAction(session::dispose);
+              RenderService.runAsyncRenderAction(session::dispose, myPriority);
             }
           }
 
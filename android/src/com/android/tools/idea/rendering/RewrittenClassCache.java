@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of the library classes rewritten by {@link ClassConverter}, so that they are not rewritten again every time a new
+ * {@link RenderClassLoader} is created, e.g. after each build. Project classes change with every build, so they are not cached.
+ * <p/>
+ * Rewritten classes are keyed by the class name and the CRC32 and length of their original bytecode, and stored on disk in a directory
+ * specific to the {@link ClassConverter#REWRITE_VERSION} and the class file version of the current JDK. The most recently used ones are
+ * also kept in memory. When the directory grows past its size limit, the least recently used classes are deleted.
+ */
+public class RewrittenClassCache {
+  private static final Logger LOG = Logger.getInstance(RewrittenClassCache.class);
+
+  private static final long MAX_MEMORY_BYTES = 32 * 1024 * 1024;
+  private static final long MAX_DISK_BYTES = 256 * 1024 * 1024;
+  private static final String CLASS_EXTENSION = ".class";
+
+  private static final RewrittenClassCache ourInstance =
+    new RewrittenClassCache(new File(PathManager.getSystemPath(), "layoutlib-classes"), MAX_MEMORY_BYTES, MAX_DISK_BYTES);
+
+  /**
+   * Root of the on-disk cache, or null if the cache only lives in memory.
+   */
+  @Nullable private final File myRoot;
+  @Nullable private final File myDirectory;
+  private final long myMaxMemoryBytes;
+  private final long myMaxDiskBytes;
+
+  // Access-ordered, so that iteration starts from the least recently used entry.
+  private final LinkedHashMap<String, byte[]> myMemoryCache = new LinkedHashMap<>(16, 0.75f, true);
+  private long myMemoryBytes;
+  private boolean myStaleDirectoriesDeleted;
+  /**
+   * Size of the classes in {@link #myDirectory}, or -1 until it has been computed.
+   */
+  private long myDiskBytes = -1;
+
+  @NotNull
+  public static RewrittenClassCache getInstance() {
+    return ourInstance;
+  }
+
+  @VisibleForTesting
+  RewrittenClassCache(@Nullable File root, long maxMemoryBytes, long maxDiskBytes) {
+    myRoot = root;
+    myDirectory = root != null ? new File(root, getVersionDirectoryName()) : null;
+    myMaxMemoryBytes = maxMemoryBytes;
+    myMaxDiskBytes = maxDiskBytes;
+  }
+
+  /**
+   * Returns the rewritten version of the class {@code name} with the bytecode {@code data}. If it is not in the cache yet, it is rewritten
+   * with {@code rewriter} and added to the cache. The rewriter must only depend on the given bytecode.
+   */
+  @NotNull
+  public byte[] getOrRewrite(@NotNull String name, @NotNull byte[] data, @NotNull Function<byte[], byte[]> rewriter) {
+    String key = getKey(name, data);
+    byte[] rewritten = getFromMemory(key);
+    if (rewritten != null) {
+      return rewritten;
+    }
+
+    rewritten = readFromDisk(key);
+    if (rewritten == null) {
+      rewritten = rewriter.apply(data);
+      writeToDisk(key, rewritten);
+    }
+    putInMemory(key, rewritten);
+    return rewritten;
+  }
+
+  @NotNull
+  private static String getVersionDirectoryName() {
+    return "v" + ClassConverter.REWRITE_VERSION + "-" + ClassConverter.getCurrentClassVersion();
+  }
+
+  @NotNull
+  private static String getKey(@NotNull String name, @NotNull byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    return name + '-' + Long.toHexString(crc.getValue()) + '-' + data.length;
+  }
+
+  @Nullable
+  private synchronized byte[] getFromMemory(@NotNull String key) {
+    return myMemoryCache.get(key);
+  }
+
+  private synchronized void putInMemory(@NotNull String key, @NotNull byte[] rewritten) {
+    if (rewritten.length > myMaxMemoryBytes) {
+      return;
+    }
+    byte[] previous = myMemoryCache.put(key, rewritten);
+    myMemoryBytes += rewritten.length - (previous != null ? previous.length : 0);
+
+    Iterator<byte[]> leastRecentlyUsed = myMemoryCache.values().iterator();
+    while (myMemoryBytes > myMaxMemoryBytes && leastRecentlyUsed.hasNext()) {
+      myMemoryBytes -= leastRecentlyUsed.next().length;
+      leastRecentlyUsed.remove();
+    }
+  }
+
+  @Nullable
+  private byte[] readFromDisk(@NotNull String key) {
+    if (myDirectory == null) {
+      return null;
+    }
+    File file = new File(myDirectory, key + CLASS_EXTENSION);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    try {
+      byte[] rewritten = Files.readAllBytes(file.toPath());
+      if (!ClassConverter.isValidClassFile(rewritten)) {
+        return null;
+      }
+      // The modification time orders the classes from the least recently used when the directory is pruned.
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+      return rewritten;
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+      return null;
+    }
+  }
+
+  private void writeToDisk(@NotNull String key, @NotNull byte[] rewritten) {
+    if (myDirectory == null) {
+      return;
+    }
+
+    File tempFile = null;
+    try {
+      deleteStaleDirectories();
+      FileUtil.createDirectory(myDirectory);
+      // Write to a temporary file first so concurrent readers, possibly in other IDE instances, never see a partial class.
+      tempFile = FileUtil.createTempFile(myDirectory, "class", ".tmp", true, false);
+      Files.write(tempFile.toPath(), rewritten);
+      Files.move(tempFile.toPath(), new File(myDirectory, key + CLASS_EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+      addDiskBytes(rewritten.length);
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+      if (tempFile != null) {
+        FileUtil.delete(tempFile);
+      }
+    }
+  }
+
+  /**
+   * Accounts for a class written to disk, and deletes the least recently used classes once the directory is over its size limit. Other
+   * IDE instances may share the directory, so its size is only computed once and then tracked approximately.
+   */
+  private synchronized void addDiskBytes(long bytes) {
+    assert myDirectory != null;
+    if (myDiskBytes < 0) {
+      myDiskBytes = Arrays.stream(listClassFiles(myDirectory)).mapToLong(File::length).sum();
+    }
+    else {
+      myDiskBytes += bytes;
+    }
+    if (myDiskBytes <= myMaxDiskBytes) {
+      return;
+    }
+
+    File[] files = listClassFiles(myDirectory);
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    myDiskBytes = Arrays.stream(files).mapToLong(File::length).sum();
+    // Prune down to 3/4 of the limit, so that the directory isn't listed again after every new class.
+    long targetBytes = myMaxDiskBytes / 4 * 3;
+    for (File file : files) {
+      if (myDiskBytes <= targetBytes) {
+        break;
+      }
+      long length = file.length();
+      if (FileUtil.delete(file)) {
+        myDiskBytes -= length;
+      }
+    }
+  }
+
+  @NotNull
+  private static File[] listClassFiles(@NotNull File directory) {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(CLASS_EXTENSION));
+    return files != null ? files : new File[0];
+  }
+
+  /**
+   * Deletes the classes rewritten by other converter or JDK versions.
+   */
+  private synchronized void deleteStaleDirectories() {
+    if (myStaleDirectoriesDeleted || myRoot == null) {
+      return;
+    }
+    myStaleDirectoriesDeleted = true;
+
+    File[] directories = myRoot.listFiles();
+    if (directories == null) {
+      return;
+    }
+    String currentName = getVersionDirectoryName();
+    for (File directory : directories) {
+      if (directory.isDirectory() && !directory.getName().equals(currentName)) {
+        FileUtil.delete(directory);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int getMemoryEntryCount() {
+    return myMemoryCache.size();
+  }
+
+  @VisibleForTesting
+  synchronized void clearMemory() {
+    myMemoryCache.clear();
+    myMemoryBytes = 0;
+  }
+}
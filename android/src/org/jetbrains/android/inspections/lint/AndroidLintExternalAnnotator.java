@@ -1,5 +1,6 @@
 package org.jetbrains.android.inspections.lint;
 
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.lint.*;
 import com.android.tools.idea.project.AndroidProjectInfo;
 import com.android.tools.idea.res.PsiProjectListener;
@@ -24,7 +25,9 @@ import com.intellij.codeInspection.ex.CustomEditInspectionToolsSettingsAction;
 import com.intellij.codeInspection.ex.DisableInspectionToolAction;
 import com.intellij.lang.annotation.*;
 import com.intellij.openapi.actionSystem.IdeActions;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.RangeMarker;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.FileTypes;
 import com.intellij.openapi.fileTypes.StdFileTypes;
@@ -37,10 +40,12 @@ import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Iconable;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.IncorrectOperationException;
@@ -68,6 +73,11 @@ import static com.android.tools.lint.detector.api.TextFormat.RAW;
  */
 public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State> {
   static final boolean INCLUDE_IDEA_SUPPRESS_ACTIONS = false;
+  /**
+   * The problems last found in a document by each issue, so that the problems of the issues deferred by
+   * {@link LintProfiler#getIssuesWithinBudget} stay highlighted until they run again.
+   */
+  private static final Key<Map<Issue, List<PreviousProblem>>> PREVIOUS_PROBLEMS = Key.create("AndroidLintPreviousProblems");
 
   @Nullable
   @Override
@@ -123,8 +133,15 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
       return null;
     }
 
-    final Set<Issue> issues = getIssuesFromInspections(file.getProject(), file);
-    return new State(module, vFile, file.getText(), issues);
+    Set<Issue> issues = getIssuesFromInspections(file.getProject(), file);
+    Set<Issue> deferredIssues = Collections.emptySet();
+    if (LintProfiler.isEnabled()) {
+      Set<Issue> issuesWithinBudget =
+        LintProfiler.getInstance().getIssuesWithinBudget(issues, StudioFlags.LINT_EDITOR_DETECTOR_BUDGET_MS.get());
+      deferredIssues = Sets.difference(issues, issuesWithinBudget).immutableCopy();
+      issues = issuesWithinBudget;
+    }
+    return new State(module, vFile, file.getText(), issues, deferredIssues);
   }
 
   @Override
@@ -174,7 +191,9 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
       request.setScope(scope);
 
       LintDriver lint = new LintDriver(new LintIdeIssueRegistry(), client, request);
-      lint.analyze();
+      try (LintProfiler.Run ignored = LintProfiler.getInstance().startRun(lint, state.getIssues(), true)) {
+        lint.analyze();
+      }
 
       lint.setAnalysisStartTime(startTime);
       LintIdeAnalytics analytics = new LintIdeAnalytics(project);
@@ -186,6 +205,70 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
     return state;
   }
 
+  /**
+   * Returns the problems found by the issues of {@code state}, followed by the problems previously found in {@code file}
+   * by its deferred issues, at their current position in the document. Remembers the problems of the issues which ran,
+   * for when they are deferred. Issues are only deferred by the profiler, so without it there is nothing to remember.
+   */
+  @NotNull
+  private static List<ProblemData> getProblemsWithDeferredIssues(@NotNull PsiFile file, @NotNull State state) {
+    if (!LintProfiler.isEnabled() && state.getDeferredIssues().isEmpty()) {
+      return state.getProblems();
+    }
+
+    Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+    if (document == null) {
+      return state.getProblems();
+    }
+
+    List<ProblemData> problems = new ArrayList<>(state.getProblems());
+    Map<Issue, List<PreviousProblem>> previousProblems = new HashMap<>();
+    for (ProblemData problem : state.getProblems()) {
+      TextRange range = problem.getTextRange();
+      if (range.getEndOffset() <= document.getTextLength()) {
+        previousProblems.computeIfAbsent(problem.getIssue(), issue -> new ArrayList<>())
+          .add(new PreviousProblem(problem, document.createRangeMarker(range)));
+      }
+    }
+
+    Map<Issue, List<PreviousProblem>> oldPreviousProblems = document.getUserData(PREVIOUS_PROBLEMS);
+    if (oldPreviousProblems != null) {
+      for (Map.Entry<Issue, List<PreviousProblem>> entry : oldPreviousProblems.entrySet()) {
+        boolean deferred = state.getDeferredIssues().contains(entry.getKey());
+        for (PreviousProblem previousProblem : entry.getValue()) {
+          if (deferred && previousProblem.myRangeMarker.isValid()) {
+            problems.add(previousProblem.getProblem());
+            previousProblems.computeIfAbsent(entry.getKey(), issue -> new ArrayList<>()).add(previousProblem);
+          }
+          else {
+            previousProblem.myRangeMarker.dispose();
+          }
+        }
+      }
+    }
+    document.putUserData(PREVIOUS_PROBLEMS, previousProblems);
+    return problems;
+  }
+
+  /**
+   * A problem found by an earlier run, with its range kept up to date as the document is edited.
+   */
+  private static class PreviousProblem {
+    @NotNull private final ProblemData myProblem;
+    @NotNull private final RangeMarker myRangeMarker;
+
+    private PreviousProblem(@NotNull ProblemData problem, @NotNull RangeMarker rangeMarker) {
+      myProblem = problem;
+      myRangeMarker = rangeMarker;
+    }
+
+    @NotNull
+    private ProblemData getProblem() {
+      return new ProblemData(myProblem.getIssue(), myProblem.getMessage(), TextRange.create(myRangeMarker),
+                             myProblem.getConfiguredSeverity(), myProblem.getQuickfixData());
+    }
+  }
+
   @NotNull
   static Set<Issue> getIssuesFromInspections(@NotNull Project project, @Nullable PsiElement context) {
     final IssueRegistry fullRegistry = new LintIdeIssueRegistry();
@@ -228,7 +311,7 @@ public class AndroidLintExternalAnnotator extends ExternalAnnotator<State, State
     if (DumbService.isDumb(project)) return;
     AndroidLintQuickFixProvider[] fixProviders = AndroidLintQuickFixProvider.EP_NAME.getExtensions();
 
-    for (ProblemData problemData : state.getProblems()) {
+    for (ProblemData problemData : getProblemsWithDeferredIssues(file, state)) {
       final Issue issue = problemData.getIssue();
       final String message = problemData.getMessage();
       final TextRange range = problemData.getTextRange();
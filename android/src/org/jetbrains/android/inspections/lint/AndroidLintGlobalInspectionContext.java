@@ -12,6 +12,7 @@ import com.android.tools.idea.lint.LintIdeAnalytics;
 import com.android.tools.idea.lint.LintIdeClient;
 import com.android.tools.idea.lint.LintIdeIssueRegistry;
 import com.android.tools.idea.lint.LintIdeProject;
+import com.android.tools.idea.lint.LintProfiler;
 import com.android.tools.idea.lint.LintIdeRequest;
 import com.android.tools.lint.client.api.LintBaseline;
 import com.android.tools.lint.client.api.LintDriver;
@@ -120,8 +121,6 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    final LintIdeClient client = LintIdeClient.forBatch(project, problemMap, scope, issues);
-
     final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
     if (indicator != null) {
       ProgressWrapper.unwrap(indicator).setText("Running Android Lint");
@@ -249,13 +248,10 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    LintRequest request = new LintIdeRequest(client, project, files, modules, false);
-    request.setScope(lintScope);
-    final LintDriver lint = new LintDriver(new LintIdeIssueRegistry(), client, request);
-
     // Baseline analysis?
     myBaseline = null;
     Module severityModule = null;
+    File baselineFile = null;
     for (Module module : modules) {
       AndroidModuleModel model = AndroidModuleModel.get(module);
       if (model != null) {
@@ -267,7 +263,7 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
               severityModule = module;
             }
 
-            File baselineFile = options.getBaselineFile();
+            baselineFile = options.getBaselineFile();
             if (baselineFile != null && !AndroidLintLintBaselineInspection.ourSkipBaselineNextRun) {
               if (!baselineFile.isAbsolute()) {
                 String path = module.getProject().getBasePath();
@@ -275,15 +271,8 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
                   baselineFile = new File(FileUtil.toSystemDependentName(path), baselineFile.getPath());
                 }
               }
-              myBaseline = new LintBaseline(client, baselineFile);
-              lint.setBaseline(myBaseline);
-              if (!baselineFile.isFile()) {
-                myBaseline.setWriteOnClose(true);
-              } else if (AndroidLintLintBaselineInspection.ourUpdateBaselineNextRun) {
-                myBaseline.setRemoveFixed(true);
-                myBaseline.setWriteOnClose(true);
-              }
-
+            } else {
+              baselineFile = null;
             }
           } catch (Throwable unsupported) {
             // During 2.3 development some builds may have this method, others may not
@@ -293,7 +282,35 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    lint.analyze();
+    LintDriver lint;
+    if (files == null && baselineFile == null && modules.size() > 1) {
+      // Independent modules are analyzed concurrently, and unchanged ones are not analyzed again. A baseline is shared
+      // by all the modules, so runs with a baseline use a single driver below.
+      LintBatchRunner runner = new LintBatchRunner(project, scope, issues, lintScope, startTime);
+      problemMap.putAll(runner.analyze(modules));
+      lint = runner.getMainDriver();
+    } else {
+      LintIdeClient client = LintIdeClient.forBatch(project, problemMap, scope, issues);
+      LintRequest request = new LintIdeRequest(client, project, files, modules, false);
+      request.setScope(lintScope);
+      lint = new LintDriver(new LintIdeIssueRegistry(), client, request);
+
+      if (baselineFile != null) {
+        myBaseline = new LintBaseline(client, baselineFile);
+        lint.setBaseline(myBaseline);
+        if (!baselineFile.isFile()) {
+          myBaseline.setWriteOnClose(true);
+        } else if (AndroidLintLintBaselineInspection.ourUpdateBaselineNextRun) {
+          myBaseline.setRemoveFixed(true);
+          myBaseline.setWriteOnClose(true);
+        }
+      }
+
+      try (LintProfiler.Run ignored = LintProfiler.getInstance().startRun(lint, issues, false)) {
+        lint.analyze();
+      }
+      lint.setAnalysisStartTime(startTime);
+    }
 
     // Running all detectors? Then add dynamically registered detectors too.
     if (!runningSingleInspection) {
@@ -319,7 +336,7 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
 
     AndroidLintLintBaselineInspection.clearNextRunState();
 
-    lint.setAnalysisStartTime(startTime);
+    // The driver is null when all the results were reused; the session is still logged, without performance data.
     LintIdeAnalytics analytics = new LintIdeAnalytics(project);
     analytics.logSession(AnalysisType.IDE_BATCH, lint, severityModule, null, problemMap);
 
@@ -577,7 +577,7 @@ public abstract class AndroidLintInspectionBase extends GlobalInspectionTool {
   }
 
   /** Returns true if the given analysis scope is adequate for single-file analysis */
-  private static boolean isSingleFileScope(EnumSet<Scope> scopes) {
+  static boolean isSingleFileScope(EnumSet<Scope> scopes) {
     if (scopes.size() != 1) {
       return false;
     }
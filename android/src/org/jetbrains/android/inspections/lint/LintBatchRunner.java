@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.idea.lint.LintIdeClient;
+import com.android.tools.idea.lint.LintIdeIssueRegistry;
+import com.android.tools.idea.lint.LintIdeRequest;
+import com.android.tools.idea.lint.LintProfiler;
+import com.android.tools.lint.client.api.LintDriver;
+import com.android.tools.lint.client.api.LintRequest;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.Scope;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs batch lint over a set of modules.
+ * <p>
+ * Modules that depend on each other, directly or through other modules, are analyzed by the same lint driver, so that
+ * checks looking across modules (such as unused resources) still see all of them. Independent groups of modules are
+ * analyzed concurrently, each by its own client and driver. The results of each group are kept in {@link LintResultCache}:
+ * a group whose files, classpath and lint configuration have not changed since the previous run is not analyzed again,
+ * and when only some of its files changed, single-file issues are only checked again on those files.
+ */
+class LintBatchRunner {
+  private static final Logger LOG = Logger.getInstance(LintBatchRunner.class);
+
+  @NotNull private final Project myProject;
+  @NotNull private final AnalysisScope myScope;
+  @NotNull private final Set<Issue> myIssues;
+  @Nullable private final EnumSet<Scope> myLintScope;
+  private final long myStartTime;
+
+  /**
+   * The time spent analyzing each group of modules, in milliseconds, by group key.
+   */
+  private final Map<String, Long> myAnalysisTimes = new ConcurrentHashMap<>();
+  /**
+   * The driver which analyzed the largest group of modules, reported to analytics as the driver of the session.
+   */
+  @Nullable private LintDriver myMainDriver;
+  private int myMainDriverModuleCount;
+
+  LintBatchRunner(@NotNull Project project,
+                  @NotNull AnalysisScope scope,
+                  @NotNull Set<Issue> issues,
+                  @Nullable EnumSet<Scope> lintScope,
+                  long startTime) {
+    myProject = project;
+    myScope = scope;
+    myIssues = issues;
+    myLintScope = lintScope;
+    myStartTime = startTime;
+  }
+
+  /**
+   * Analyzes {@code modules} and returns the problems found, by issue and by file.
+   */
+  @NotNull
+  Map<Issue, Map<File, List<ProblemData>>> analyze(@NotNull List<Module> modules) {
+    List<List<Module>> groups = ReadAction.compute(() -> groupModules(modules, LintBatchRunner::getModuleDependencies));
+    LintResultCache cache = isCacheable() ? LintResultCache.getInstance(myProject) : null;
+
+    Map<List<Module>, Map<Issue, Map<File, List<ProblemData>>>> groupResults = new ConcurrentHashMap<>();
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(groups, indicator, group -> {
+      groupResults.put(group, cache != null ? analyzeGroup(cache, group) : runLint(group, null, myIssues));
+      return true;
+    });
+    if (!completed) {
+      throw new ProcessCanceledException();
+    }
+
+    Map<Issue, Map<File, List<ProblemData>>> results = new HashMap<>();
+    for (List<Module> group : groups) {
+      LintResultCache.mergeResults(groupResults.get(group), results);
+    }
+    logAnalysisTimes();
+    return results;
+  }
+
+  /**
+   * Analyzes {@code group}, reusing the cached results of its unchanged files, and caches the new results.
+   */
+  @NotNull
+  private Map<Issue, Map<File, List<ProblemData>>> analyzeGroup(@NotNull LintResultCache cache, @NotNull List<Module> group) {
+    String groupKey = getGroupKey(group);
+    String configurationKey = getConfigurationKey() + ";" + computeEnvironmentStamp(group);
+    Map<String, HashCode> fileStamps = computeFileStamps(group);
+
+    Map<Issue, Map<File, List<ProblemData>>> cachedResults = cache.getResults(groupKey, configurationKey, fileStamps);
+    if (cachedResults != null) {
+      LOG.info("Reusing lint results of unchanged modules " + groupKey);
+      return cachedResults;
+    }
+
+    Set<Issue> singleFileIssues = myIssues.stream().filter(LintBatchRunner::isSingleFileIssue).collect(Collectors.toSet());
+    Map<Issue, Map<File, List<ProblemData>>> unchangedFileResults =
+      singleFileIssues.isEmpty() ? null : cache.getUnchangedFileResults(groupKey, configurationKey, fileStamps, singleFileIssues);
+    Map<Issue, Map<File, List<ProblemData>>> results;
+    if (unchangedFileResults == null) {
+      results = runLint(group, null, myIssues);
+    }
+    else {
+      // Issues looking across files still need the whole group; single-file issues only need the files that changed.
+      results = new HashMap<>();
+      Set<Issue> projectIssues = Sets.difference(myIssues, singleFileIssues);
+      if (!projectIssues.isEmpty()) {
+        LintResultCache.mergeResults(runLint(group, null, projectIssues), results);
+      }
+      Set<String> changedPaths = cache.getChangedFiles(groupKey, fileStamps);
+      List<VirtualFile> changedFiles = ReadAction.compute(
+        () -> changedPaths.stream().map(path -> LocalFileSystem.getInstance().findFileByPath(path)).filter(Objects::nonNull)
+          .collect(Collectors.toList()));
+      if (!changedFiles.isEmpty()) {
+        LintResultCache.mergeResults(runLint(group, changedFiles, singleFileIssues), results);
+      }
+      LintResultCache.mergeResults(unchangedFileResults, results);
+      LOG.info(String.format("Reusing lint results of %1$d unchanged files of modules %2$s", fileStamps.size() - changedPaths.size(),
+                             groupKey));
+    }
+    cache.putResults(groupKey, configurationKey, fileStamps, results);
+    return results;
+  }
+
+  /**
+   * Runs a lint driver of its own over {@code group}, or only over {@code files} of the group if not null.
+   */
+  @NotNull
+  private Map<Issue, Map<File, List<ProblemData>>> runLint(@NotNull List<Module> group,
+                                                          @Nullable List<VirtualFile> files,
+                                                          @NotNull Set<Issue> issues) {
+    Map<Issue, Map<File, List<ProblemData>>> problemMap = new HashMap<>();
+    LintIdeClient client = LintIdeClient.forBatch(myProject, problemMap, myScope, issues);
+    LintRequest request = new LintIdeRequest(client, myProject, files, group, false);
+    request.setScope(myLintScope);
+    LintDriver lint = new LintDriver(new LintIdeIssueRegistry(), client, request);
+
+    long start = System.currentTimeMillis();
+    try (LintProfiler.Run ignored = LintProfiler.getInstance().startRun(lint, issues, false)) {
+      lint.analyze();
+    }
+    myAnalysisTimes.merge(getGroupKey(group), System.currentTimeMillis() - start, Long::sum);
+    lint.setAnalysisStartTime(myStartTime);
+
+    synchronized (this) {
+      if (files == null && (myMainDriver == null || group.size() > myMainDriverModuleCount)) {
+        myMainDriver = lint;
+        myMainDriverModuleCount = group.size();
+      }
+    }
+    return problemMap;
+  }
+
+  /**
+   * Returns the driver to report to analytics, or null if no group of modules was fully analyzed.
+   */
+  @Nullable
+  synchronized LintDriver getMainDriver() {
+    return myMainDriver;
+  }
+
+  private void logAnalysisTimes() {
+    myAnalysisTimes.entrySet().stream()
+      .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+      .forEach(entry -> LOG.info(String.format("Lint analyzed modules %1$s in %2$d ms", entry.getKey(), entry.getValue())));
+  }
+
+  /**
+   * Results can only be reused if they do not depend on the individual files or directories in the scope.
+   */
+  private boolean isCacheable() {
+    int scopeType = myScope.getScopeType();
+    return scopeType == AnalysisScope.PROJECT || scopeType == AnalysisScope.MODULE || scopeType == AnalysisScope.MODULES;
+  }
+
+  /**
+   * Returns whether the problems of {@code issue} in a file only depend on that file, so that they can be reused while the
+   * file does not change.
+   */
+  private static boolean isSingleFileIssue(@NotNull Issue issue) {
+    return AndroidLintInspectionBase.isSingleFileScope(issue.getImplementation().getScope());
+  }
+
+  @NotNull
+  private String getConfigurationKey() {
+    Set<String> issueIds = myIssues.stream().map(Issue::getId).collect(Collectors.toCollection(TreeSet::new));
+    return myScope.getScopeType() + ";" + myLintScope + ";" + String.join(",", issueIds);
+  }
+
+  @NotNull
+  private static String getGroupKey(@NotNull List<Module> group) {
+    return group.stream().map(Module::getName).sorted().collect(Collectors.joining(","));
+  }
+
+  /**
+   * Returns a stamp of what the modules of {@code group} and their dependencies are analyzed against: the lint.xml files
+   * of the directories containing the modules, and the libraries and SDK the modules are compiled against. Results computed
+   * against a different one are not reused at all. Changes to the build model are handled by clearing the cache on sync.
+   */
+  @NotNull
+  private static HashCode computeEnvironmentStamp(@NotNull List<Module> group) {
+    return ReadAction.compute(() -> {
+      Map<String, HashCode> stamps = new TreeMap<>();
+      for (Module module : getModulesWithDependencies(group, LintBatchRunner::getModuleDependencies)) {
+        ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
+        for (VirtualFile contentRoot : rootManager.getContentRoots()) {
+          for (VirtualFile dir = contentRoot.getParent(); dir != null; dir = dir.getParent()) {
+            VirtualFile lintXml = dir.findChild("lint.xml");
+            if (lintXml != null && !lintXml.isDirectory()) {
+              stamps.put(lintXml.getPath(), LintResultCache.getFileStamp(lintXml));
+            }
+          }
+        }
+
+        for (VirtualFile root : OrderEnumerator.orderEntries(module).withoutModuleSourceEntries().classes().getRoots()) {
+          VirtualFile jar = VfsUtilCore.getVirtualFileForJar(root);
+          stamps.put(root.getUrl(), LintResultCache.getFileStamp(jar != null ? jar : root));
+        }
+      }
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      stamps.forEach((path, stamp) -> hasher.putString(path, StandardCharsets.UTF_8).putBytes(stamp.asBytes()));
+      return hasher.hash();
+    });
+  }
+
+  /**
+   * Returns the stamps of the files of the modules of {@code group} and of their dependencies, by path. Only VFS time stamps
+   * and lengths are used, so no file is read, and each module is visited in a read action of its own so that write actions
+   * are not held back for the whole project.
+   */
+  @NotNull
+  private static Map<String, HashCode> computeFileStamps(@NotNull List<Module> group) {
+    Map<String, HashCode> stamps = new HashMap<>();
+    for (Module module : ReadAction.compute(() -> getModulesWithDependencies(group, LintBatchRunner::getModuleDependencies))) {
+      ProgressManager.checkCanceled();
+      ReadAction.run(() -> {
+        if (module.isDisposed()) {
+          return;
+        }
+        ModuleRootManager.getInstance(module).getFileIndex().iterateContent(file -> {
+          ProgressManager.checkCanceled();
+          if (!file.isDirectory()) {
+            stamps.put(file.getPath(), LintResultCache.getFileStamp(file));
+          }
+          return true;
+        });
+      });
+    }
+    return stamps;
+  }
+
+  /**
+   * Returns the modules {@code module} directly depends on. Must be called from a read action.
+   */
+  @NotNull
+  private static Collection<Module> getModuleDependencies(@NotNull Module module) {
+    return Arrays.asList(ModuleRootManager.getInstance(module).getDependencies());
+  }
+
+  /**
+   * Splits {@code modules} into groups such that modules depending on each other, directly or through any other module,
+   * are in the same group. Groups, and the modules of each group, are in the order of {@code modules}.
+   */
+  @VisibleForTesting
+  @NotNull
+  static <T> List<List<T>> groupModules(@NotNull List<T> modules, @NotNull Function<T, Collection<T>> getDependencies) {
+    Map<T, T> parents = new HashMap<>();
+    for (T module : modules) {
+      parents.put(module, module);
+    }
+    for (T module : modules) {
+      for (T dependency : getModulesWithDependencies(Collections.singletonList(module), getDependencies)) {
+        if (parents.containsKey(dependency)) {
+          parents.put(findRoot(parents, dependency), findRoot(parents, module));
+        }
+      }
+    }
+
+    Map<T, List<T>> groups = new LinkedHashMap<>();
+    for (T module : modules) {
+      groups.computeIfAbsent(findRoot(parents, module), root -> new ArrayList<>()).add(module);
+    }
+    return new ArrayList<>(groups.values());
+  }
+
+  @NotNull
+  private static <T> T findRoot(@NotNull Map<T, T> parents, @NotNull T module) {
+    T root = module;
+    while (!parents.get(root).equals(root)) {
+      root = parents.get(root);
+    }
+    // Point the visited modules directly at the root, to keep the following lookups short.
+    while (!module.equals(root)) {
+      T parent = parents.get(module);
+      parents.put(module, root);
+      module = parent;
+    }
+    return root;
+  }
+
+  /**
+   * Returns {@code modules} and their transitive dependencies.
+   */
+  @NotNull
+  private static <T> Set<T> getModulesWithDependencies(@NotNull Collection<T> modules, @NotNull Function<T, Collection<T>> getDependencies) {
+    Set<T> result = new LinkedHashSet<>();
+    Deque<T> queue = new ArrayDeque<>(modules);
+    while (!queue.isEmpty()) {
+      T module = queue.remove();
+      if (result.add(module)) {
+        queue.addAll(getDependencies.apply(module));
+      }
+    }
+    return result;
+  }
+}
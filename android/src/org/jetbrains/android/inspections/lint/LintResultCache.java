@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.idea.gradle.project.sync.GradleSyncListener;
+import com.android.tools.idea.gradle.project.sync.GradleSyncState;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Results of previous batch lint runs, per file and per issue, for each group of modules analyzed by one lint driver.
+ * <p>
+ * Files are identified by a stamp of their VFS time stamp and length, or of their document if it has unsaved changes. The results
+ * of a group are reused as a whole when the lint configuration and the stamps of all the files of the group are the same as when
+ * the results were computed. Otherwise, the results of single-file issues on the files that did not change are still reused, so
+ * that only the changed files need to be analyzed for them. All the results are discarded when the project is synced, since lint
+ * also depends on the build model.
+ */
+class LintResultCache {
+  private static final Key<LintResultCache> KEY = Key.create(LintResultCache.class.getName());
+
+  /**
+   * The cached results, by group key. There is one entry per group of modules of the project, replaced on every run.
+   */
+  private final Map<String, Entry> myEntries = new HashMap<>();
+
+  @NotNull
+  static LintResultCache getInstance(@NotNull Project project) {
+    synchronized (KEY) {
+      LintResultCache cache = project.getUserData(KEY);
+      if (cache == null) {
+        LintResultCache newCache = new LintResultCache();
+        GradleSyncState.subscribe(project, new GradleSyncListener() {
+          @Override
+          public void syncSucceeded(@NotNull Project project) {
+            newCache.clear();
+          }
+
+          @Override
+          public void syncFailed(@NotNull Project project, @NotNull String errorMessage) {
+            newCache.clear();
+          }
+        });
+        project.putUserData(KEY, newCache);
+        cache = newCache;
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Returns the cached results of the group of modules identified by {@code groupKey}, or null if there are none,
+   * or if they were computed with a different configuration or from different files.
+   */
+  @Nullable
+  synchronized Map<Issue, Map<File, List<ProblemData>>> getResults(@NotNull String groupKey,
+                                                                  @NotNull String configurationKey,
+                                                                  @NotNull Map<String, HashCode> fileStamps) {
+    Entry entry = myEntries.get(groupKey);
+    if (entry == null || !entry.myConfigurationKey.equals(configurationKey) || !entry.myFileStamps.equals(fileStamps)) {
+      return null;
+    }
+    return entry.myResults;
+  }
+
+  /**
+   * Returns the cached results of {@code issues} on the files of the group whose stamp has not changed, or null if the group
+   * has no results computed with the same configuration.
+   *
+   * @param issues issues whose problems in a file only depend on that file.
+   */
+  @Nullable
+  synchronized Map<Issue, Map<File, List<ProblemData>>> getUnchangedFileResults(@NotNull String groupKey,
+                                                                               @NotNull String configurationKey,
+                                                                               @NotNull Map<String, HashCode> fileStamps,
+                                                                               @NotNull Set<Issue> issues) {
+    Entry entry = myEntries.get(groupKey);
+    if (entry == null || !entry.myConfigurationKey.equals(configurationKey)) {
+      return null;
+    }
+    Map<Issue, Map<File, List<ProblemData>>> results = new HashMap<>();
+    for (Issue issue : issues) {
+      Map<File, List<ProblemData>> issueResults = entry.myResults.get(issue);
+      if (issueResults == null) {
+        continue;
+      }
+      for (Map.Entry<File, List<ProblemData>> fileResults : issueResults.entrySet()) {
+        String path = FileUtil.toSystemIndependentName(fileResults.getKey().getPath());
+        HashCode stamp = fileStamps.get(path);
+        if (stamp != null && stamp.equals(entry.myFileStamps.get(path))) {
+          results.computeIfAbsent(issue, key -> new HashMap<>()).put(fileResults.getKey(), fileResults.getValue());
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns the paths of the files of {@code fileStamps} that are new or changed since the results of the group were cached,
+   * or all of them if there are no such results.
+   */
+  @NotNull
+  synchronized Set<String> getChangedFiles(@NotNull String groupKey, @NotNull Map<String, HashCode> fileStamps) {
+    Entry entry = myEntries.get(groupKey);
+    if (entry == null) {
+      return fileStamps.keySet();
+    }
+    return fileStamps.entrySet().stream()
+      .filter(fileStamp -> !fileStamp.getValue().equals(entry.myFileStamps.get(fileStamp.getKey())))
+      .map(Map.Entry::getKey)
+      .collect(Collectors.toSet());
+  }
+
+  /**
+   * Discards all the cached results.
+   */
+  synchronized void clear() {
+    myEntries.clear();
+  }
+
+  synchronized void putResults(@NotNull String groupKey,
+                               @NotNull String configurationKey,
+                               @NotNull Map<String, HashCode> fileStamps,
+                               @NotNull Map<Issue, Map<File, List<ProblemData>>> results) {
+    myEntries.put(groupKey, new Entry(configurationKey, fileStamps, results));
+  }
+
+  /**
+   * Returns the stamp of {@code file}. It changes when the file is modified on disk or has unsaved changes, since lint analyzes the
+   * documents being edited. The contents of the file are not read. Must be called from a read action.
+   */
+  @NotNull
+  static HashCode getFileStamp(@NotNull VirtualFile file) {
+    Hasher hasher = Hashing.murmur3_128().newHasher()
+      .putLong(file.getTimeStamp())
+      .putLong(file.getLength());
+    FileDocumentManager documentManager = FileDocumentManager.getInstance();
+    Document document = documentManager.getCachedDocument(file);
+    if (document != null && documentManager.isDocumentUnsaved(document)) {
+      hasher.putLong(document.getModificationStamp());
+    }
+    return hasher.hash();
+  }
+
+  /**
+   * Adds the results of {@code source} to {@code target}.
+   */
+  @VisibleForTesting
+  static void mergeResults(@NotNull Map<Issue, Map<File, List<ProblemData>>> source,
+                           @NotNull Map<Issue, Map<File, List<ProblemData>>> target) {
+    for (Map.Entry<Issue, Map<File, List<ProblemData>>> issueResults : source.entrySet()) {
+      Map<File, List<ProblemData>> targetIssueResults = target.computeIfAbsent(issueResults.getKey(), issue -> new HashMap<>());
+      for (Map.Entry<File, List<ProblemData>> fileResults : issueResults.getValue().entrySet()) {
+        targetIssueResults.computeIfAbsent(fileResults.getKey(), file -> new ArrayList<>()).addAll(fileResults.getValue());
+      }
+    }
+  }
+
+  private static class Entry {
+    @NotNull private final String myConfigurationKey;
+    @NotNull private final Map<String, HashCode> myFileStamps;
+    @NotNull private final Map<Issue, Map<File, List<ProblemData>>> myResults;
+
+    private Entry(@NotNull String configurationKey,
+                  @NotNull Map<String, HashCode> fileStamps,
+                  @NotNull Map<Issue, Map<File, List<ProblemData>>> results) {
+      myConfigurationKey = configurationKey;
+      myFileStamps = fileStamps;
+      myResults = results;
+    }
+  }
+}
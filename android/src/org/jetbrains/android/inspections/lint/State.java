@@ -6,6 +6,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -19,6 +20,7 @@ public class State {
   private final String myMainFileContent;
   private final List<ProblemData> myProblems = new ArrayList<ProblemData>();
   private final Set<Issue> myIssues;
+  private final Set<Issue> myDeferredIssues;
 
   private volatile boolean myDirty;
 
@@ -26,10 +28,22 @@ public class State {
         @NotNull VirtualFile mainFile,
         @NotNull String mainFileContent,
         @NotNull Set<Issue> issues) {
+    this(module, mainFile, mainFileContent, issues, Collections.emptySet());
+  }
+
+  /**
+   * @param deferredIssues enabled issues which are not run this time, and whose previous problems are still shown
+   */
+  State(@NotNull Module module,
+        @NotNull VirtualFile mainFile,
+        @NotNull String mainFileContent,
+        @NotNull Set<Issue> issues,
+        @NotNull Set<Issue> deferredIssues) {
     myModule = module;
     myMainFile = mainFile;
     myMainFileContent = mainFileContent;
     myIssues = issues;
+    myDeferredIssues = deferredIssues;
   }
 
   @NotNull
@@ -64,4 +78,9 @@ public class State {
   public Set<Issue> getIssues() {
     return myIssues;
   }
+
+  @NotNull
+  public Set<Issue> getDeferredIssues() {
+    return myDeferredIssues;
+  }
 }
@@ -115,7 +115,7 @@ public final class ModuleClassLoader extends RenderClassLoader {
               ResourceRepositoryManager repositoryManager = ResourceRepositoryManager.getInstance(facet);
               byte[] data = ResourceClassRegistry.get(module.getProject()).findClassDefinition(name, repositoryManager);
               if (data != null) {
-                data = convertClass(data);
+                data = convertLibraryClass(name, data);
                 if (LOG.isDebugEnabled()) {
                   LOG.debug("  Defining class from AAR registry");
                 }
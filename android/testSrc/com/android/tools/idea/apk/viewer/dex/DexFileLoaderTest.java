@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.apk.analyzer.dex.DexFiles;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DexFileLoaderTest {
+  private static final int DEX_FILE_COUNT = 64;
+
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private final ListeningExecutorService myExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void dexFilesAreLoadedInOrder() throws Exception {
+    try (FileSystem apk = createSyntheticApk()) {
+      Path[] dexFiles = getDexFiles(apk);
+      Map<Path, DexBackedDexFile> loaded = DexFileLoader.load(dexFiles, myExecutor).get(1, TimeUnit.MINUTES);
+
+      assertThat(loaded.keySet()).containsExactly((Object[])dexFiles).inOrder();
+      int classCount = DexFiles.getDexFile(dexFiles[0]).getClasses().size();
+      assertThat(classCount).isGreaterThan(0);
+      for (DexBackedDexFile dexFile : loaded.values()) {
+        assertThat(dexFile.getClasses()).hasSize(classCount);
+      }
+    }
+  }
+
+  @Test
+  public void loadingFailsIfAnyDexFileIsInvalid() throws Exception {
+    Path invalid = myTemporaryFolder.newFile("classes2.dex").toPath();
+    Files.write(invalid, new byte[]{1, 2, 3});
+    Path[] dexFiles = {GenerateProguardKeepRuleActionTest.getDexPath("Test.dex"), invalid};
+
+    try {
+      DexFileLoader.load(dexFiles, myExecutor).get(1, TimeUnit.MINUTES);
+      throw new AssertionError("Loading an invalid dex file should fail");
+    }
+    catch (ExecutionException expected) {
+    }
+  }
+
+  /**
+   * Compares loading the dex files of a large synthetic multi-dex APK one at a time, which is what the
+   * viewer used to do, with {@link DexFileLoader}. The timings depend on the machine, so this only logs
+   * them and is meant to be run manually.
+   */
+  @Ignore("Benchmark, run manually")
+  @Test
+  public void benchmarkLargeMultiDexApk() throws Exception {
+    try (FileSystem apk = createSyntheticApk()) {
+      Path[] dexFiles = getDexFiles(apk);
+      // Warm up.
+      DexFileLoader.load(dexFiles, myExecutor).get(1, TimeUnit.MINUTES);
+
+      long start = System.nanoTime();
+      for (Path dexFile : dexFiles) {
+        DexFiles.getDexFile(dexFile);
+      }
+      long sequentialNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      DexFileLoader.load(dexFiles, myExecutor).get(1, TimeUnit.MINUTES);
+      long parallelNanos = System.nanoTime() - start;
+
+      System.out.println(String.format("Loaded %d dex files: sequentially in %d ms, concurrently in %d ms", dexFiles.length,
+                                       TimeUnit.NANOSECONDS.toMillis(sequentialNanos), TimeUnit.NANOSECONDS.toMillis(parallelNanos)));
+    }
+  }
+
+  /**
+   * Creates an APK made of {@link #DEX_FILE_COUNT} copies of the test dex file, and opens it as a zip file system,
+   * like the APK Analyzer does.
+   */
+  @NotNull
+  private FileSystem createSyntheticApk() throws Exception {
+    byte[] dex = Files.readAllBytes(GenerateProguardKeepRuleActionTest.getDexPath("Test.dex"));
+    Path apk = myTemporaryFolder.newFile("synthetic.apk").toPath();
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(apk))) {
+      for (int i = 0; i < DEX_FILE_COUNT; i++) {
+        zip.putNextEntry(new ZipEntry(i == 0 ? "classes.dex" : "classes" + (i + 1) + ".dex"));
+        zip.write(dex);
+        zip.closeEntry();
+      }
+    }
+    return FileSystems.newFileSystem(URI.create("jar:" + apk.toUri()), Collections.emptyMap());
+  }
+
+  @NotNull
+  private static Path[] getDexFiles(@NotNull FileSystem apk) {
+    List<Path> dexFiles = new ArrayList<>();
+    for (int i = 0; i < DEX_FILE_COUNT; i++) {
+      dexFiles.add(apk.getPath(i == 0 ? "/classes.dex" : "/classes" + (i + 1) + ".dex"));
+    }
+    return dexFiles.toArray(new Path[0]);
+  }
+}
@@ -27,10 +27,12 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static com.android.tools.idea.explorer.adbimpl.TestDevices.COMMAND_ERROR_CHECK_SUFFIX;
@@ -176,6 +178,125 @@ public class AdbFileListingTest {
     assertDirectoryLink(fileListing, rootEntries, "vendor", true);
   }
 
+  @Test
+  public void test_Nexus7Api23_IsDirectoryLinkResolvesAllLinksAtOnce() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addNexus7Api23Commands(commands);
+    for (String name : new String[]{"charger", "d", "etc", "sdcard", "tombstones", "vendor"}) {
+      commands.addError("ls -l -d /" + name + "/", new ShellCommandUnresponsiveException());
+    }
+    IDevice device = commands.createMockDevice();
+    Executor taskExecutor = PooledThreadExecutor.INSTANCE;
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), taskExecutor);
+
+    // Act
+    AdbFileListingEntry root = waitForFuture(fileListing.getRoot());
+    List<AdbFileListingEntry> rootEntries = waitForFuture(fileListing.getChildren(root));
+
+    // Assert
+    assertDirectoryLink(fileListing, rootEntries, "charger", false);
+    assertDirectoryLink(fileListing, rootEntries, "d", true);
+    assertDirectoryLink(fileListing, rootEntries, "tombstones", false);
+    assertDirectoryLink(fileListing, rootEntries, "vendor", true);
+  }
+
+  @Test
+  public void test_Nexus7Api23_IsDirectoryLinkFallsBackToSingleLinks() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addNexus7Api23Commands(commands);
+    commands.addError("ls -l -d /charger/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /d/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /etc/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /sdcard/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /tombstones/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /vendor/; echo END-OF-LS-OUTPUT",
+                      new ShellCommandUnresponsiveException());
+    IDevice device = commands.createMockDevice();
+    Executor taskExecutor = PooledThreadExecutor.INSTANCE;
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), taskExecutor);
+
+    // Act
+    AdbFileListingEntry root = waitForFuture(fileListing.getRoot());
+    List<AdbFileListingEntry> rootEntries = waitForFuture(fileListing.getChildren(root));
+
+    // Assert
+    assertDirectoryLink(fileListing, rootEntries, "charger", false);
+    assertDirectoryLink(fileListing, rootEntries, "etc", true);
+  }
+
+  @Test
+  public void test_Nexus7Api23_GetChildrenIsCachedUntilTimeout() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addNexus7Api23Commands(commands);
+    IDevice device = commands.createMockDevice();
+    Executor taskExecutor = PooledThreadExecutor.INSTANCE;
+    AtomicLong clock = new AtomicLong();
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), taskExecutor, clock::get);
+    AdbFileListingEntry root = waitForFuture(fileListing.getRoot());
+    List<AdbFileListingEntry> rootEntries = waitForFuture(fileListing.getChildren(root));
+
+    // Act
+    commands.addError("ls -l /" + COMMAND_ERROR_CHECK_SUFFIX, new ShellCommandUnresponsiveException());
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(AdbFileListing.CACHE_TIMEOUT_MILLIS));
+
+    // Assert
+    assertThat(waitForFuture(fileListing.getChildren(root))).isEqualTo(rootEntries);
+
+    clock.addAndGet(1);
+    thrown.expect(ExecutionException.class);
+    thrown.expectCause(IsInstanceOf.instanceOf(ShellCommandUnresponsiveException.class));
+    waitForFuture(fileListing.getChildren(root));
+  }
+
+  @Test
+  public void test_Nexus7Api23_InvalidateCache() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addNexus7Api23Commands(commands);
+    IDevice device = commands.createMockDevice();
+    Executor taskExecutor = PooledThreadExecutor.INSTANCE;
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), taskExecutor, () -> 0);
+    AdbFileListingEntry root = waitForFuture(fileListing.getRoot());
+    assertThat(waitForFuture(fileListing.getChildren(root)).size()).isGreaterThan(1);
+
+    // Act
+    commands.add("ls -l /" + COMMAND_ERROR_CHECK_SUFFIX, "drwxr-xr-x root     root              2016-11-21 12:09 acct\r\n");
+    fileListing.invalidateCache("/");
+
+    // Assert
+    List<AdbFileListingEntry> rootEntries = waitForFuture(fileListing.getChildren(root));
+    assertThat(rootEntries).hasSize(1);
+    assertThat(rootEntries.get(0).getName()).isEqualTo("acct");
+  }
+
+  @Test
+  public void test_Nexus7Api23_InvalidateCacheWhileListing() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addNexus7Api23Commands(commands);
+    IDevice device = commands.createMockDevice();
+    List<Runnable> tasks = new ArrayList<>();
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), tasks::add, () -> 0);
+    AdbFileListingEntry root = waitForFuture(fileListing.getRoot());
+    ListenableFuture<List<AdbFileListingEntry>> futureEntries = fileListing.getChildren(root);
+
+    // Act
+    fileListing.invalidateCache("/");
+    runTasks(tasks);
+    commands.add("ls -l /" + COMMAND_ERROR_CHECK_SUFFIX, "drwxr-xr-x root     root              2016-11-21 12:09 acct\r\n");
+
+    // Assert
+    assertThat(waitForFuture(futureEntries).size()).isGreaterThan(1);
+    ListenableFuture<List<AdbFileListingEntry>> futureNewEntries = fileListing.getChildren(root);
+    runTasks(tasks);
+    List<AdbFileListingEntry> rootEntries = waitForFuture(futureNewEntries);
+    assertThat(rootEntries).hasSize(1);
+    assertThat(rootEntries.get(0).getName()).isEqualTo("acct");
+  }
+
   @Test
   public void test_EmulatorApi25_GetRoot() throws Exception {
     // Prepare
@@ -371,6 +492,12 @@ public class AdbFileListingTest {
     consumer.accept(entry);
   }
 
+  private static void runTasks(@NotNull List<Runnable> tasks) {
+    List<Runnable> pendingTasks = new ArrayList<>(tasks);
+    tasks.clear();
+    pendingTasks.forEach(Runnable::run);
+  }
+
   private static <V> V waitForFuture(@NotNull ListenableFuture<V> future) throws Exception {
     assert !EventQueue.isDispatchThread();
     return future.get(TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.android.ddmlib.IDevice;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class AdbFileTransferTest {
+  @Test
+  public void syncSessionsAreLimited() {
+    AdbFileTransfer fileTransfer = createFileTransfer();
+    List<ListenableFuture<Void>> sessions = acquireMaxSyncSessions(fileTransfer);
+
+    ListenableFuture<Void> pendingSession = fileTransfer.acquireSyncSession();
+    assertThat(pendingSession.isDone()).isFalse();
+
+    fileTransfer.releaseSyncSession(sessions.get(0));
+    assertThat(pendingSession.isDone()).isTrue();
+
+    ListenableFuture<Void> nextPendingSession = fileTransfer.acquireSyncSession();
+    assertThat(nextPendingSession.isDone()).isFalse();
+  }
+
+  @Test
+  public void releasedSyncSessionIsAvailableWhenNoneIsPending() {
+    AdbFileTransfer fileTransfer = createFileTransfer();
+    List<ListenableFuture<Void>> sessions = acquireMaxSyncSessions(fileTransfer);
+
+    fileTransfer.releaseSyncSession(sessions.get(0));
+    assertThat(fileTransfer.acquireSyncSession().isDone()).isTrue();
+    assertThat(fileTransfer.acquireSyncSession().isDone()).isFalse();
+  }
+
+  @Test
+  public void cancelledPendingSyncSessionIsSkipped() {
+    AdbFileTransfer fileTransfer = createFileTransfer();
+    List<ListenableFuture<Void>> sessions = acquireMaxSyncSessions(fileTransfer);
+    ListenableFuture<Void> cancelledSession = fileTransfer.acquireSyncSession();
+    ListenableFuture<Void> pendingSession = fileTransfer.acquireSyncSession();
+
+    cancelledSession.cancel(false);
+    fileTransfer.releaseSyncSession(sessions.get(0));
+    assertThat(pendingSession.isDone()).isTrue();
+    assertThat(pendingSession.isCancelled()).isFalse();
+
+    // Releasing the cancelled session must not make another session available
+    fileTransfer.releaseSyncSession(cancelledSession);
+    assertThat(fileTransfer.acquireSyncSession().isDone()).isFalse();
+  }
+
+  @Test
+  public void pendingSyncSessionReleasedBeforeStartingDoesNotReleaseActiveSession() {
+    AdbFileTransfer fileTransfer = createFileTransfer();
+    List<ListenableFuture<Void>> sessions = acquireMaxSyncSessions(fileTransfer);
+    ListenableFuture<Void> abandonedSession = fileTransfer.acquireSyncSession();
+    ListenableFuture<Void> pendingSession = fileTransfer.acquireSyncSession();
+
+    fileTransfer.releaseSyncSession(abandonedSession);
+    assertThat(pendingSession.isDone()).isFalse();
+
+    fileTransfer.releaseSyncSession(sessions.get(0));
+    assertThat(pendingSession.isDone()).isTrue();
+    assertThat(abandonedSession.isCancelled()).isTrue();
+  }
+
+  @Test
+  public void pendingSyncSessionReleasedWhileBeingHandedOverIsReleased() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // The race is narrow, so it is attempted many times.
+      for (int i = 0; i < 10000; i++) {
+        AdbFileTransfer fileTransfer = createFileTransfer();
+        List<ListenableFuture<Void>> sessions = acquireMaxSyncSessions(fileTransfer);
+        ListenableFuture<Void> pendingSession = fileTransfer.acquireSyncSession();
+
+        // The pending transfer ends while a finishing transfer hands its session over to it.
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Future<?> handOver = executor.submit(() -> {
+          barrier.await();
+          fileTransfer.releaseSyncSession(sessions.get(0));
+          return null;
+        });
+        Future<?> release = executor.submit(() -> {
+          barrier.await();
+          fileTransfer.releaseSyncSession(pendingSession);
+          return null;
+        });
+        handOver.get(5, TimeUnit.SECONDS);
+        release.get(5, TimeUnit.SECONDS);
+
+        // Either way, one session is free again.
+        assertThat(fileTransfer.acquireSyncSession().isDone()).isTrue();
+        assertThat(fileTransfer.acquireSyncSession().isDone()).isFalse();
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @NotNull
+  private static AdbFileTransfer createFileTransfer() {
+    return new AdbFileTransfer(mock(IDevice.class), mock(AdbFileOperations.class), MoreExecutors.directExecutor(),
+                               MoreExecutors.directExecutor());
+  }
+
+  @NotNull
+  private static List<ListenableFuture<Void>> acquireMaxSyncSessions(@NotNull AdbFileTransfer fileTransfer) {
+    List<ListenableFuture<Void>> sessions = new ArrayList<>();
+    for (int i = 0; i < AdbFileTransfer.MAX_CONCURRENT_SYNC_SESSIONS; i++) {
+      ListenableFuture<Void> session = fileTransfer.acquireSyncSession();
+      assertThat(session.isDone()).isTrue();
+      sessions.add(session);
+    }
+    return sessions;
+  }
+}
@@ -242,6 +242,24 @@ public class TestDevices {
     commands.add("ls -l -d /sdcard/", "drwxrwx--x root     sdcard_rw          2014-02-10 17:16\r\n");
     commands.add("ls -l -d /tombstones/", "/tombstones/: Permission denied\r\n");
     commands.add("ls -l -d /vendor/", "drwxr-xr-x root     shell             2013-06-15 12:54\r\n");
+    commands.add("ls -l -d /charger/; echo END-OF-LS-OUTPUT; " +
+                 "ls -l -d /d/; echo END-OF-LS-OUTPUT; " +
+                 "ls -l -d /etc/; echo END-OF-LS-OUTPUT; " +
+                 "ls -l -d /sdcard/; echo END-OF-LS-OUTPUT; " +
+                 "ls -l -d /tombstones/; echo END-OF-LS-OUTPUT; " +
+                 "ls -l -d /vendor/; echo END-OF-LS-OUTPUT",
+                 "/charger/: Permission denied\r\n" +
+                 "END-OF-LS-OUTPUT\r\n" +
+                 "drwxr-xr-x root     root              1969-12-31 16:00\r\n" +
+                 "END-OF-LS-OUTPUT\r\n" +
+                 "drwxr-xr-x root     root              2016-08-26 12:00\r\n" +
+                 "END-OF-LS-OUTPUT\r\n" +
+                 "drwxrwx--x root     sdcard_rw          2014-02-10 17:16\r\n" +
+                 "END-OF-LS-OUTPUT\r\n" +
+                 "/tombstones/: Permission denied\r\n" +
+                 "END-OF-LS-OUTPUT\r\n" +
+                 "drwxr-xr-x root     shell             2013-06-15 12:54\r\n" +
+                 "END-OF-LS-OUTPUT\r\n");
 
     addCommand(commands, "ls -l /system/", "drwxr-xr-x root     root              2016-05-17 12:04 app\n\n" +
                                            "drwxr-xr-x root     shell             2016-08-26 12:00 bin\n\n" +
@@ -598,6 +616,21 @@ public class TestDevices {
     shellCommands.add("su 0 sh -c 'ls -l -d /tombstones/'", "ls: /tombstones/: No such file or directory\n");
     shellCommands.add("su 0 sh -c 'ls -l -d /system/'", "drwxr-xr-x 16 root root 4096 1969-12-31 16:00 /system/\n");
     shellCommands.add("su 0 sh -c 'ls -l -d /vendor/'", "drwxr-xr-x 3 root shell 4096 2016-11-14 14:01 /vendor/\n");
+    shellCommands.add("su 0 sh -c 'ls -l -d /charger/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /d/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /etc/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /sdcard/; echo END-OF-LS-OUTPUT; " +
+                      "ls -l -d /vendor/; echo END-OF-LS-OUTPUT'",
+                      "ls: /charger/: Not a directory\n" +
+                      "END-OF-LS-OUTPUT\n" +
+                      "drwx------ 14 root root 0 2017-03-06 21:15 /d/\n" +
+                      "END-OF-LS-OUTPUT\n" +
+                      "drwxr-xr-x 7 root root 4096 2016-11-14 14:08 /etc/\n" +
+                      "END-OF-LS-OUTPUT\n" +
+                      "drwxrwx--x 13 root sdcard_rw 4096 2017-03-06 23:30 /sdcard/\n" +
+                      "END-OF-LS-OUTPUT\n" +
+                      "drwxr-xr-x 3 root shell 4096 2016-11-14 14:01 /vendor/\n" +
+                      "END-OF-LS-OUTPUT\n");
     addCommand(shellCommands, "touch /data/local/tmp/device-explorer/.__temp_touch_test_file__.tmp", "");
     addCommand(shellCommands, "rm /data/local/tmp/device-explorer/.__temp_touch_test_file__.tmp", "");
     addFailedCommand(shellCommands, "touch /system/build.prop", "touch: '/system/build.prop': Read-only file system\n");
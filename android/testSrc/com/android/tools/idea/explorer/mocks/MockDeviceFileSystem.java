@@ -91,6 +91,10 @@ public class MockDeviceFileSystem implements DeviceFileSystem {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void invalidateCache() {
+  }
+
   @NotNull
   public ListenableFuture<Void> downloadFile(@NotNull DeviceFileEntry entry,
                                              @NotNull Path localPath,
@@ -36,6 +36,7 @@ import com.android.tools.idea.gradle.dsl.TestFileName.PROJECT_BUILD_MODEL_RESOLV
 import com.android.tools.idea.gradle.dsl.TestFileName.PROJECT_BUILD_MODEL_SETTINGS_FILE_UPDATES_CORRECTLY
 import com.android.tools.idea.gradle.dsl.TestFileName.PROJECT_BUILD_MODEL_SETTINGS_FILE_UPDATES_CORRECTLY_OTHER_SUB
 import com.android.tools.idea.gradle.dsl.TestFileName.PROJECT_BUILD_MODEL_SETTINGS_FILE_UPDATES_CORRECTLY_SUB
+import com.android.tools.idea.gradle.dsl.api.GradleBuildModel
 import com.android.tools.idea.gradle.dsl.api.ProjectBuildModel
 import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.BOOLEAN_TYPE
 import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.INTEGER_TYPE
@@ -45,11 +46,14 @@ import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.I
 import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.STRING
 import com.android.tools.idea.gradle.dsl.api.ext.PropertyType.REGULAR
 import com.android.tools.idea.gradle.dsl.model.GradleFileModelTestCase.runWriteAction
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.vfs.VfsUtil
 import org.gradle.internal.impldep.org.hamcrest.CoreMatchers.hasItems
 import org.gradle.internal.impldep.org.hamcrest.MatcherAssert.assertThat
 import org.junit.Test
 import java.io.File
 import java.io.IOException
+import java.util.concurrent.Callable
 
 class ProjectBuildModelTest : GradleFileModelTestCase() {
   @Test
@@ -294,4 +298,38 @@ class ProjectBuildModelTest : GradleFileModelTestCase() {
     assertEquals(subPsiFile.virtualFile, subBuildModel.virtualFile)
     assertEquals(settingFile.virtualFile, settingModel.virtualFile)
   }
+
+  @Test
+  fun testParseGeneratedProjectWithManyModules() {
+    val moduleCount = 200
+    val settingsText = StringBuilder()
+    runWriteAction<Unit, IOException> {
+      for (i in 0 until moduleCount) {
+        val moduleDir = myProjectBasePath.createChildDirectory(this, "module$i")
+        VfsUtil.saveText(moduleDir.createChildData(this, buildFileName), "android {\n  compileSdkVersion(28)\n}\n")
+        settingsText.append(if (isGroovy) "include ':module$i'\n" else "include(\":module$i\")\n")
+      }
+    }
+    writeToSettingsFile(settingsText.toString())
+
+    // Parse off the UI thread, like the Project Structure dialog does, so that module build files are parsed concurrently.
+    fun parseAllModels(): List<GradleBuildModel> = ApplicationManager.getApplication().executeOnPooledThread(Callable {
+      ProjectBuildModel.get(myProject).allIncludedBuildModels
+    }).get()
+
+    val firstModels = parseAllModels()
+    assertSize(moduleCount + 1, firstModels)
+    for (model in firstModels.drop(1)) {
+      verifyPropertyModel(model.android().compileSdkVersion(), INTEGER_TYPE, 28, INTEGER, REGULAR, 0)
+    }
+
+    // A new model must see the changes made to the build files since the previous one was parsed.
+    runWriteAction<Unit, IOException> {
+      VfsUtil.saveText(firstModels.last().virtualFile, "android {\n  compileSdkVersion(29)\n}\n")
+    }
+    val secondModels = parseAllModels()
+    assertSize(moduleCount + 1, secondModels)
+    verifyPropertyModel(secondModels.last().android().compileSdkVersion(), INTEGER_TYPE, 29, INTEGER, REGULAR, 0)
+    verifyPropertyModel(secondModels[1].android().compileSdkVersion(), INTEGER_TYPE, 28, INTEGER, REGULAR, 0)
+  }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.idea.data;
+
+import com.android.builder.model.level2.Library;
+import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
+import com.android.tools.idea.testing.AndroidGradleTestCase;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+public class AndroidModelStoreTest extends AndroidGradleTestCase {
+  public void testLibrariesAreSharedAcrossModules() throws Exception {
+    loadSimpleApplication();
+    AndroidModuleModel model = AndroidModuleModel.get(getModule("app"));
+    assertNotNull(model);
+    // An equal model that shares no objects with the original one, like the model of another module with the same dependencies.
+    AndroidModuleModel copy = read(write(1L, ImmutableMap.of("app", model)), 1L).get("app");
+    assertNotSame(model, copy);
+
+    Map<String, AndroidModuleModel> models = read(write(1L, ImmutableMap.of("app", model, "copy", copy)), 1L);
+    assertEquals(model.getAndroidProject(), models.get("app").getAndroidProject());
+    assertEquals(model.getSelectedVariant().getName(), models.get("app").getSelectedVariant().getName());
+
+    Library library = Iterables.getFirst(models.get("app").getSelectedMainCompileLevel2Dependencies().getAndroidLibraries(), null);
+    Library copyLibrary = Iterables.getFirst(models.get("copy").getSelectedMainCompileLevel2Dependencies().getAndroidLibraries(), null);
+    assertNotNull(library);
+    assertSame(library, copyLibrary);
+  }
+
+  public void testStoreOfOtherSyncIsIgnored() throws Exception {
+    loadSimpleApplication();
+    AndroidModuleModel model = AndroidModuleModel.get(getModule("app"));
+    assertNotNull(model);
+
+    assertNull(AndroidModelStore.read(new ByteArrayInputStream(write(1L, ImmutableMap.of("app", model))), 2L));
+  }
+
+  @NotNull
+  private static byte[] write(long syncTimestamp, @NotNull Map<String, AndroidModuleModel> models) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AndroidModelStore.write(out, syncTimestamp, models);
+    return out.toByteArray();
+  }
+
+  @NotNull
+  private static Map<String, AndroidModuleModel> read(@NotNull byte[] bytes, long syncTimestamp) throws Exception {
+    Map<String, AndroidModuleModel> models = AndroidModelStore.read(new ByteArrayInputStream(bytes), syncTimestamp);
+    assertNotNull(models);
+    return models;
+  }
+}
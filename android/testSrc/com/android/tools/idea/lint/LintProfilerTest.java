@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint;
+
+import com.android.tools.lint.checks.ApiDetector;
+import com.android.tools.lint.checks.HardcodedValuesDetector;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class LintProfilerTest extends TestCase {
+  private static final Issue API_ISSUE = ApiDetector.UNSUPPORTED;
+  private static final Issue HARDCODED_ISSUE = HardcodedValuesDetector.ISSUE;
+  private static final String API_DETECTOR = ApiDetector.class.getName();
+  private static final String HARDCODED_DETECTOR = HardcodedValuesDetector.class.getName();
+
+  public void testCostIsSplitByDetectorSamples() {
+    LintProfiler profiler = new LintProfiler();
+    LintProfiler.Run run = profiler.new Run(Thread.currentThread(), ImmutableSet.of(API_ISSUE, HARDCODED_ISSUE), false);
+    run.addSample(API_DETECTOR);
+    run.addSample(API_DETECTOR);
+    run.addSample(API_DETECTOR);
+    run.addSample(LintProfiler.OTHER);
+    run.finish(TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.MILLISECONDS.toNanos(80), 4000);
+
+    LintProfiler.Stats api = profiler.getDetectorStats().get(API_DETECTOR);
+    assertEquals(3, api.getSamples());
+    assertEquals(75, TimeUnit.NANOSECONDS.toMillis(api.getWallNanos()));
+    assertEquals(60, TimeUnit.NANOSECONDS.toMillis(api.getCpuNanos()));
+    assertEquals(3000, api.getAllocatedBytes());
+    assertEquals(ImmutableSet.of(API_ISSUE.getId()), api.getIssueIds());
+    assertEquals(0, api.getEditorRuns());
+
+    LintProfiler.Stats hardcoded = profiler.getDetectorStats().get(HARDCODED_DETECTOR);
+    assertEquals(1, hardcoded.getRuns());
+    assertEquals(0, hardcoded.getWallNanos());
+
+    assertEquals(25, TimeUnit.NANOSECONDS.toMillis(profiler.getDetectorStats().get(LintProfiler.OTHER).getWallNanos()));
+  }
+
+  public void testUnsampledRunIsAttributedToLint() {
+    LintProfiler profiler = new LintProfiler();
+    LintProfiler.Run run = profiler.new Run(Thread.currentThread(), ImmutableSet.of(API_ISSUE), true);
+    run.finish(TimeUnit.MILLISECONDS.toNanos(2), 0, 0);
+
+    assertEquals(2, TimeUnit.NANOSECONDS.toMillis(profiler.getDetectorStats().get(LintProfiler.OTHER).getWallNanos()));
+    assertEquals(0, profiler.getDetectorStats().get(API_DETECTOR).getWallNanos());
+    assertEquals(1, profiler.getDetectorStats().get(API_DETECTOR).getEditorRuns());
+  }
+
+  public void testDetectorsOverBudgetAreDeferred() {
+    LintProfiler profiler = new LintProfiler();
+    LintProfiler.Run run = profiler.new Run(Thread.currentThread(), ImmutableSet.of(API_ISSUE, HARDCODED_ISSUE), true);
+    run.addSample(API_DETECTOR);
+    run.finish(TimeUnit.MILLISECONDS.toNanos(500), 0, 0);
+
+    Set<Issue> issues = ImmutableSet.of(API_ISSUE, HARDCODED_ISSUE);
+    assertSame(issues, profiler.getIssuesWithinBudget(issues, 0));
+
+    int apiRuns = 0;
+    for (int i = 0; i < LintProfiler.DEFERRED_RUN_INTERVAL; i++) {
+      Set<Issue> withinBudget = profiler.getIssuesWithinBudget(issues, 100);
+      assertTrue(withinBudget.contains(HARDCODED_ISSUE));
+      if (withinBudget.contains(API_ISSUE)) {
+        apiRuns++;
+      }
+    }
+    assertEquals(1, apiRuns);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class LogcatBufferTest {
+  private final LogcatBuffer myBuffer = new LogcatBuffer(() -> Integer.MAX_VALUE);
+
+  @Test
+  public void messagesAreReturnedInOrder() {
+    LogCatHeader first = newHeader(LogLevel.INFO, 1, "Tag1");
+    LogCatHeader second = newHeader(LogLevel.WARN, 2, "Tag2");
+    myBuffer.addMessage(new LogCatMessage(first, "First Line1"));
+    myBuffer.addMessage(new LogCatMessage(first, "First Line2"));
+    myBuffer.addMessage(new LogCatMessage(second, "Second Line1"));
+
+    List<LogCatMessage> messages = myBuffer.getMessages();
+    assertEquals(Arrays.asList("First Line1", "First Line2", "Second Line1"),
+                 messages.stream().map(LogCatMessage::getMessage).collect(Collectors.toList()));
+    assertEquals(first.toString(), messages.get(0).getHeader().toString());
+    assertEquals(second.toString(), messages.get(2).getHeader().toString());
+    // The lines of a multi-line message share a header.
+    assertSame(messages.get(0).getHeader(), messages.get(1).getHeader());
+    assertNotSame(messages.get(1).getHeader(), messages.get(2).getHeader());
+  }
+
+  @Test
+  public void oldMessagesAreTrimmed() {
+    LogcatBuffer buffer = new LogcatBuffer(() -> 10 * LogcatBuffer.CHUNK_SIZE);
+    LogCatHeader header = newHeader(LogLevel.INFO, 1, "Tag");
+    for (int i = 0; i < 3 * LogcatBuffer.CHUNK_SIZE; i++) {
+      buffer.addMessage(new LogCatMessage(header, String.format("%09d", i)));
+    }
+
+    int count = 10 * LogcatBuffer.CHUNK_SIZE / 9;
+    assertEquals(count, buffer.getMessageCount());
+    List<LogCatMessage> messages = buffer.getMessages();
+    assertEquals(count, messages.size());
+    assertEquals(String.format("%09d", 3 * LogcatBuffer.CHUNK_SIZE - count), messages.get(0).getMessage());
+    assertEquals(String.format("%09d", 3 * LogcatBuffer.CHUNK_SIZE - 1), messages.get(count - 1).getMessage());
+  }
+
+  @Test
+  public void filterMatchesTheIndexedFields() {
+    for (int i = 0; i < 3 * LogcatBuffer.CHUNK_SIZE; i++) {
+      LogLevel level = i % 2 == 0 ? LogLevel.DEBUG : LogLevel.ERROR;
+      myBuffer.addMessage(new LogCatMessage(newHeader(level, i % 7, "Tag" + i % 5), "Message " + i));
+    }
+
+    DefaultAndroidLogcatFilter filter = new DefaultAndroidLogcatFilter.Builder("filter")
+      .setLogLevel(LogLevel.WARN)
+      .setPid(3)
+      .setTagPattern(Pattern.compile("Tag[12]"))
+      .setMessagePattern(Pattern.compile("1$"))
+      .build();
+    assertEquals(toStrings(filterOneByOne(filter)), toStrings(myBuffer.getMessages(filter)));
+    assertEquals(0, myBuffer.getMessages(new DefaultAndroidLogcatFilter.Builder("filter").setPid("03").build()).size());
+  }
+
+  @Test
+  public void filterReturnsAllTheLinesOfAMatchingMessage() {
+    LogCatHeader first = newHeader(LogLevel.INFO, 1, "Tag");
+    LogCatHeader second = newHeader(LogLevel.INFO, 1, "Tag");
+    myBuffer.addMessage(new LogCatMessage(first, "java.lang.IllegalStateException"));
+    myBuffer.addMessage(new LogCatMessage(first, "  at Foo.bar(Foo.java:10)"));
+    myBuffer.addMessage(new LogCatMessage(second, "Unrelated"));
+
+    DefaultAndroidLogcatFilter filter = new DefaultAndroidLogcatFilter.Builder("filter").setMessagePattern(Pattern.compile("Foo")).build();
+    List<LogCatMessage> messages = myBuffer.getMessages(filter);
+    assertEquals(Arrays.asList("java.lang.IllegalStateException", "  at Foo.bar(Foo.java:10)"),
+                 messages.stream().map(LogCatMessage::getMessage).collect(Collectors.toList()));
+    assertSame(messages.get(0).getHeader(), messages.get(1).getHeader());
+
+    assertEquals(3, myBuffer.getMessages(new MatchAllFilter("all")).size());
+  }
+
+  @Test
+  public void snapshotsAreNotAffectedByNewMessages() {
+    LogcatBuffer buffer = new LogcatBuffer(() -> LogcatBuffer.CHUNK_SIZE + 50);
+    LogCatHeader header = newHeader(LogLevel.INFO, 1, "Tag");
+    for (int i = 0; i < LogcatBuffer.CHUNK_SIZE + 10; i++) {
+      buffer.addMessage(new LogCatMessage(header, String.valueOf(i % 10)));
+    }
+    LogcatBuffer.Snapshot snapshot = buffer.snapshot();
+    List<String> expected = toStrings(snapshot.getMessages());
+
+    // Trim the first messages of the snapshot from the buffer, and add to the chunk that was partial when the snapshot was taken.
+    for (int i = 0; i < 100; i++) {
+      buffer.addMessage(new LogCatMessage(header, "New" + i));
+    }
+    assertEquals(expected, toStrings(snapshot.getMessages()));
+
+    List<LogCatMessage> newMessages = buffer.snapshotAfter(snapshot).getMessages(new MatchAllFilter("all"));
+    assertEquals(100, newMessages.size());
+    assertEquals("New0", newMessages.get(0).getMessage());
+    assertEquals(buffer.getMessageCount(), buffer.snapshotAfter(null).getMessages().size());
+  }
+
+  @NotNull
+  private List<LogCatMessage> filterOneByOne(@NotNull AndroidLogcatFilter filter) {
+    return myBuffer.getMessages().stream()
+                   .filter(message -> {
+                     LogCatHeader header = message.getHeader();
+                     return filter.isApplicable(message.getMessage(), header.getTag(), header.getAppName(), header.getPid(),
+                                                header.getLogLevel());
+                   })
+                   .collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static List<String> toStrings(@NotNull List<LogCatMessage> messages) {
+    return messages.stream().map(LogCatMessage::toString).collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static LogCatHeader newHeader(@NotNull LogLevel level, int pid, @NotNull String tag) {
+    return new LogCatHeader(level, pid, 1, "com.example", tag, Instant.ofEpochMilli(1_517_955_388_555L));
+  }
+}
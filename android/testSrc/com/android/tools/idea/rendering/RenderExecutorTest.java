@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import junit.framework.TestCase;
+
+public class RenderExecutorTest extends TestCase {
+  private RenderExecutor myExecutor;
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      if (myExecutor != null) {
+        myExecutor.shutdownNow();
+      }
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testActionsRunOnTheRenderThread() throws Exception {
+    myExecutor = new RenderExecutor();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      threads.add(myExecutor.supplyAsync(RenderExecutor.Priority.NORMAL, Thread::currentThread).get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, threads.stream().distinct().count());
+    assertSame(threads.get(0), myExecutor.getThread());
+    assertNotSame(Thread.currentThread(), myExecutor.getThread());
+  }
+
+  public void testPendingActionsRunByPriority() throws Exception {
+    myExecutor = new RenderExecutor();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(1);
+    // Block the render thread so the following actions are queued.
+    myExecutor.execute(RenderExecutor.Priority.NORMAL, () -> {
+      started.countDown();
+      try {
+        blocked.await();
+      }
+      catch (InterruptedException ignored) {
+      }
+    });
+
+    started.await(5, TimeUnit.SECONDS);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    myExecutor.execute(RenderExecutor.Priority.LOW, () -> order.add("low"));
+    myExecutor.execute(RenderExecutor.Priority.NORMAL, () -> order.add("normal1"));
+    myExecutor.execute(RenderExecutor.Priority.HIGH, () -> order.add("high"));
+    CompletableFuture<Boolean> last = myExecutor.supplyAsync(RenderExecutor.Priority.NORMAL, () -> order.add("normal2"));
+    assertEquals(4, myExecutor.getQueueSize());
+
+    blocked.countDown();
+    last.get(5, TimeUnit.SECONDS);
+    myExecutor.supplyAsync(RenderExecutor.Priority.LOW, () -> null).get(5, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList("high", "normal1", "normal2", "low"), order);
+    assertEquals(0, myExecutor.getQueueSize());
+    // The last action may still be recording its timings.
+    assertTrue(myExecutor.getCompletedActionCount() >= 5);
+    assertTrue(myExecutor.getMaxWaitTimeMs() >= 0);
+  }
+
+  public void testLowPriorityActionsRunWhileHighPriorityActionsKeepArriving() throws Exception {
+    myExecutor = new RenderExecutor(50);
+    AtomicBoolean stop = new AtomicBoolean();
+    // Keep the queue full of high priority actions, each taking a few milliseconds like a render would.
+    Thread producer = new Thread(() -> {
+      while (!stop.get()) {
+        if (myExecutor.getQueueSize() < 10) {
+          myExecutor.execute(RenderExecutor.Priority.HIGH, () -> {
+            try {
+              Thread.sleep(5);
+            }
+            catch (InterruptedException ignored) {
+            }
+          });
+        }
+        Thread.yield();
+      }
+    });
+    producer.start();
+    try {
+      // Let the high priority actions pile up first.
+      while (myExecutor.getQueueSize() < 10) {
+        Thread.sleep(1);
+      }
+      CompletableFuture<String> low = myExecutor.supplyAsync(RenderExecutor.Priority.LOW, () -> "low");
+      assertEquals("low", low.get(5, TimeUnit.SECONDS));
+      // High priority actions were still arriving when the low priority one ran.
+      assertTrue(producer.isAlive());
+    }
+    finally {
+      stop.set(true);
+      producer.join();
+    }
+  }
+
+  public void testFailuresArePropagated() throws Exception {
+    myExecutor = new RenderExecutor();
+    try {
+      myExecutor.submit(RenderExecutor.Priority.NORMAL, () -> {
+        throw new IllegalStateException("failed");
+      }).get(5, TimeUnit.SECONDS);
+      fail("The exception should have been propagated");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    // The render thread keeps running actions after a failure.
+    assertEquals("ok", myExecutor.supplyAsync(RenderExecutor.Priority.NORMAL, () -> "ok").get(5, TimeUnit.SECONDS));
+  }
+}
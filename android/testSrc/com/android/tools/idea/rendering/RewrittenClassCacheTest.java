@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RewrittenClassCacheTest {
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private final AtomicInteger myRewriteCount = new AtomicInteger();
+  private final Function<byte[], byte[]> myRewriter = data -> {
+    myRewriteCount.incrementAndGet();
+    byte[] rewritten = Arrays.copyOf(data, data.length + 1);
+    rewritten[data.length] = 42;
+    return rewritten;
+  };
+
+  @Test
+  public void classesAreOnlyRewrittenOnce() throws Exception {
+    RewrittenClassCache cache = new RewrittenClassCache(myTemporaryFolder.newFolder(), 1024, 1024);
+    byte[] data = createClass(1);
+
+    byte[] rewritten = cache.getOrRewrite("com.example.A", data, myRewriter);
+    assertArrayEquals(myRewriter.apply(data), rewritten);
+    myRewriteCount.set(0);
+
+    assertArrayEquals(rewritten, cache.getOrRewrite("com.example.A", data, myRewriter));
+    assertEquals(0, myRewriteCount.get());
+
+    // A different bytecode for the same class is rewritten again.
+    cache.getOrRewrite("com.example.A", createClass(2), myRewriter);
+    assertEquals(1, myRewriteCount.get());
+  }
+
+  @Test
+  public void rewrittenClassesAreReadFromDisk() throws Exception {
+    File root = myTemporaryFolder.newFolder();
+    byte[] data = createClass(1);
+    byte[] rewritten = new RewrittenClassCache(root, 1024, 1024).getOrRewrite("com.example.A", data, myRewriter);
+    assertEquals(1, myRewriteCount.get());
+
+    // A new cache, e.g. after restarting the IDE, finds the class on disk.
+    RewrittenClassCache cache = new RewrittenClassCache(root, 1024, 1024);
+    assertArrayEquals(rewritten, cache.getOrRewrite("com.example.A", data, myRewriter));
+    assertEquals(1, myRewriteCount.get());
+  }
+
+  @Test
+  public void staleVersionsAreDeleted() throws Exception {
+    File root = myTemporaryFolder.newFolder();
+    File staleDirectory = new File(root, "v0-0");
+    assertTrue(staleDirectory.mkdirs());
+
+    new RewrittenClassCache(root, 1024, 1024).getOrRewrite("com.example.A", createClass(1), myRewriter);
+    assertFalse(staleDirectory.exists());
+  }
+
+  @Test
+  public void leastRecentlyUsedClassesAreEvictedFromMemory() {
+    RewrittenClassCache cache = new RewrittenClassCache(null, 300, 0);
+    byte[] a = createClass(1);
+    byte[] b = createClass(2);
+    byte[] c = createClass(3);
+    cache.getOrRewrite("A", a, myRewriter);
+    cache.getOrRewrite("B", b, myRewriter);
+    // Using A makes B the least recently used class.
+    cache.getOrRewrite("A", a, myRewriter);
+    cache.getOrRewrite("C", c, myRewriter);
+    assertEquals(2, cache.getMemoryEntryCount());
+    assertEquals(3, myRewriteCount.get());
+
+    cache.getOrRewrite("A", a, myRewriter);
+    assertEquals(3, myRewriteCount.get());
+    cache.getOrRewrite("B", b, myRewriter);
+    assertEquals(4, myRewriteCount.get());
+  }
+
+  @Test
+  public void leastRecentlyUsedClassesAreDeletedFromDisk() throws Exception {
+    File root = myTemporaryFolder.newFolder();
+    // Room for three rewritten classes of 101 bytes.
+    RewrittenClassCache cache = new RewrittenClassCache(root, 0, 320);
+    byte[] a = createClass(1);
+    byte[] b = createClass(2);
+    cache.getOrRewrite("A", a, myRewriter);
+    cache.getOrRewrite("B", b, myRewriter);
+    cache.getOrRewrite("C", createClass(3), myRewriter);
+    File directory = root.listFiles()[0];
+    // Make A the least recently used class on disk, then use B.
+    for (File file : directory.listFiles()) {
+      assertTrue(file.setLastModified(file.getName().startsWith("A-") ? 1000 : 2000));
+    }
+    cache.getOrRewrite("B", b, myRewriter);
+    assertEquals(3, myRewriteCount.get());
+
+    // Writing a fourth class goes over the limit, which deletes A.
+    cache.getOrRewrite("D", createClass(4), myRewriter);
+    assertEquals(4, myRewriteCount.get());
+    cache.getOrRewrite("B", b, myRewriter);
+    assertEquals(4, myRewriteCount.get());
+    cache.getOrRewrite("A", a, myRewriter);
+    assertEquals(5, myRewriteCount.get());
+  }
+
+  @NotNull
+  private static byte[] createClass(int seed) {
+    byte[] data = new byte[100];
+    Arrays.fill(data, (byte)seed);
+    // Magic number of class files.
+    data[0] = (byte)0xCA;
+    data[1] = (byte)0xFE;
+    data[2] = (byte)0xBA;
+    data[3] = (byte)0xBE;
+    return data;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class LintBatchRunnerTest extends TestCase {
+  public void testIndependentModulesAreInSeparateGroups() {
+    Map<String, List<String>> dependencies = ImmutableMap.of("app", ImmutableList.of("lib"),
+                                                             "lib", ImmutableList.of(),
+                                                             "other", ImmutableList.of());
+
+    List<List<String>> groups = LintBatchRunner.groupModules(ImmutableList.of("app", "lib", "other"), dependencies::get);
+
+    assertEquals(ImmutableList.of(ImmutableList.of("app", "lib"), ImmutableList.of("other")), groups);
+  }
+
+  public void testModulesDependingOnTheSameModuleAreInTheSameGroup() {
+    Map<String, List<String>> dependencies = ImmutableMap.of("app", ImmutableList.of("lib"),
+                                                             "wear", ImmutableList.of("lib"),
+                                                             "lib", ImmutableList.of());
+
+    List<List<String>> groups = LintBatchRunner.groupModules(ImmutableList.of("app", "wear", "lib"), dependencies::get);
+
+    assertEquals(ImmutableList.of(ImmutableList.of("app", "wear", "lib")), groups);
+  }
+
+  public void testModulesDependingOnEachOtherThroughAnUnanalyzedModuleAreInTheSameGroup() {
+    Map<String, List<String>> dependencies = ImmutableMap.of("app", ImmutableList.of("base"),
+                                                             "base", ImmutableList.of("lib"),
+                                                             "lib", ImmutableList.of(),
+                                                             "other", ImmutableList.of());
+
+    List<List<String>> groups = LintBatchRunner.groupModules(ImmutableList.of("app", "other", "lib"), dependencies::get);
+
+    assertEquals(ImmutableList.of(ImmutableList.of("app", "lib"), ImmutableList.of("other")), groups);
+  }
+
+  public void testDependencyCyclesDoNotPreventGrouping() {
+    Map<String, List<String>> dependencies = ImmutableMap.of("a", ImmutableList.of("b"),
+                                                             "b", ImmutableList.of("a"),
+                                                             "c", ImmutableList.of());
+
+    List<List<String>> groups = LintBatchRunner.groupModules(ImmutableList.of("c", "a", "b"), dependencies::get);
+
+    assertEquals(ImmutableList.of(ImmutableList.of("c"), ImmutableList.of("a", "b")), groups);
+  }
+
+  public void testNoModules() {
+    List<List<String>> groups = LintBatchRunner.groupModules(Collections.<String>emptyList(), module -> Collections.<String>emptyList());
+
+    assertTrue(groups.isEmpty());
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.lint.checks.ApiDetector;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.intellij.openapi.util.TextRange;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class LintResultCacheTest extends TestCase {
+  private static final Issue ISSUE = ApiDetector.UNSUPPORTED;
+  private static final File FILE = new File("/project/app/src/main/java/Foo.java");
+  private static final File OTHER_FILE = new File("/project/app/src/main/java/Bar.java");
+
+  public void testResultsAreReusedForSameConfigurationAndFiles() {
+    LintResultCache cache = new LintResultCache();
+    Map<String, HashCode> stamps = ImmutableMap.of(FILE.getPath(), HashCode.fromInt(1));
+    Map<Issue, Map<File, List<ProblemData>>> results = createResults("Call requires API level 21");
+    cache.putResults("app,lib", "config", stamps, results);
+
+    assertSame(results, cache.getResults("app,lib", "config", ImmutableMap.of(FILE.getPath(), HashCode.fromInt(1))));
+  }
+
+  public void testResultsAreNotReusedWhenFilesOrConfigurationChange() {
+    LintResultCache cache = new LintResultCache();
+    Map<String, HashCode> stamps = ImmutableMap.of(FILE.getPath(), HashCode.fromInt(1));
+    cache.putResults("app,lib", "config", stamps, createResults("Call requires API level 21"));
+
+    assertNull(cache.getResults("app,lib", "config", ImmutableMap.of(FILE.getPath(), HashCode.fromInt(2))));
+    assertNull(cache.getResults("app,lib", "config", Collections.emptyMap()));
+    assertNull(cache.getResults("app,lib", "other config", stamps));
+    assertNull(cache.getResults("app", "config", stamps));
+  }
+
+  public void testUnchangedFileResultsAreReusedWhenOtherFilesChange() {
+    LintResultCache cache = new LintResultCache();
+    Map<String, HashCode> stamps = ImmutableMap.of(FILE.getPath(), HashCode.fromInt(1), OTHER_FILE.getPath(), HashCode.fromInt(1));
+    Map<Issue, Map<File, List<ProblemData>>> results = createResults("Call requires API level 21");
+    results.get(ISSUE).put(OTHER_FILE, createResults("Call requires API level 23").get(ISSUE).get(FILE));
+    cache.putResults("app,lib", "config", stamps, results);
+
+    Map<String, HashCode> newStamps = ImmutableMap.of(FILE.getPath(), HashCode.fromInt(1), OTHER_FILE.getPath(), HashCode.fromInt(2));
+    Map<Issue, Map<File, List<ProblemData>>> unchanged =
+      cache.getUnchangedFileResults("app,lib", "config", newStamps, ImmutableSet.of(ISSUE));
+
+    assertNotNull(unchanged);
+    assertEquals(ImmutableSet.of(FILE), unchanged.get(ISSUE).keySet());
+    assertSame(results.get(ISSUE).get(FILE), unchanged.get(ISSUE).get(FILE));
+    assertEquals(ImmutableSet.of(OTHER_FILE.getPath()), cache.getChangedFiles("app,lib", newStamps));
+  }
+
+  public void testUnchangedFileResultsAreNotReusedWhenConfigurationChanges() {
+    LintResultCache cache = new LintResultCache();
+    Map<String, HashCode> stamps = ImmutableMap.of(FILE.getPath(), HashCode.fromInt(1));
+    cache.putResults("app,lib", "config", stamps, createResults("Call requires API level 21"));
+
+    assertNull(cache.getUnchangedFileResults("app,lib", "other config", stamps, ImmutableSet.of(ISSUE)));
+    assertNull(cache.getUnchangedFileResults("app", "config", stamps, ImmutableSet.of(ISSUE)));
+    assertEquals(stamps.keySet(), cache.getChangedFiles("app", stamps));
+  }
+
+  public void testClearDiscardsResults() {
+    LintResultCache cache = new LintResultCache();
+    Map<String, HashCode> stamps = ImmutableMap.of(FILE.getPath(), HashCode.fromInt(1));
+    cache.putResults("app,lib", "config", stamps, createResults("Call requires API level 21"));
+
+    cache.clear();
+
+    assertNull(cache.getResults("app,lib", "config", stamps));
+    assertNull(cache.getUnchangedFileResults("app,lib", "config", stamps, ImmutableSet.of(ISSUE)));
+  }
+
+  public void testMergeResultsDoesNotModifySource() {
+    Map<Issue, Map<File, List<ProblemData>>> first = createResults("first");
+    Map<Issue, Map<File, List<ProblemData>>> second = createResults("second");
+    Map<Issue, Map<File, List<ProblemData>>> merged = new HashMap<>();
+
+    LintResultCache.mergeResults(first, merged);
+    LintResultCache.mergeResults(second, merged);
+
+    assertEquals(2, merged.get(ISSUE).get(FILE).size());
+    assertEquals(1, first.get(ISSUE).get(FILE).size());
+    assertEquals(1, second.get(ISSUE).get(FILE).size());
+  }
+
+  private static Map<Issue, Map<File, List<ProblemData>>> createResults(String message) {
+    List<ProblemData> problems = new ArrayList<>();
+    problems.add(new ProblemData(ISSUE, message, new TextRange(0, 10), null, null));
+    Map<File, List<ProblemData>> fileProblems = new HashMap<>();
+    fileProblems.put(FILE, problems);
+    Map<Issue, Map<File, List<ProblemData>>> results = new HashMap<>();
+    results.put(ISSUE, fileProblems);
+    return results;
+  }
+}
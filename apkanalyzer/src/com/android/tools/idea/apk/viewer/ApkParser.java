@@ -34,7 +34,6 @@ import org.jetbrains.ide.PooledThreadExecutor;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -47,6 +46,7 @@ public class ApkParser {
   private final ApkSizeCalculator myApkSizeCalculator;
 
   @Nullable private ListenableFuture<ArchiveNode> myTreeStructure;
+  @Nullable private ListenableFuture<ArchiveNode> myTreeStructureWithRawSizes;
   @Nullable private ListenableFuture<ArchiveNode> myTreeStructureWithDownloadSizes;
   @Nullable private ListenableFuture<Long> myRawFullApkSize;
   @Nullable private ListenableFuture<Long> myCompressedFullApkSize;
@@ -64,6 +64,7 @@ public class ApkParser {
   public synchronized void cancelAll(){
     ListenableFuture[] futures = {
       myTreeStructureWithDownloadSizes,
+      myTreeStructureWithRawSizes,
       myTreeStructure,
       myRawFullApkSize,
       myCompressedFullApkSize
@@ -75,19 +76,35 @@ public class ApkParser {
     }
   }
 
+  /**
+   * Returns the tree of the archive entries, without their sizes, so that it can be displayed as soon
+   * as the archive directory has been read. See {@link #updateTreeWithRawSizes()} and
+   * {@link #updateTreeWithDownloadSizes()}.
+   */
   @NotNull
   public synchronized ListenableFuture<ArchiveNode> constructTreeStructure() {
     if (myTreeStructure == null) {
-      myTreeStructure = ourExecutorService.submit(this::createTreeNode);
+      myTreeStructure = ourExecutorService.submit(() -> ArchiveTreeStructure.create(myArchiveContext));
     }
 
     return myTreeStructure;
   }
 
+  @NotNull
+  public synchronized ListenableFuture<ArchiveNode> updateTreeWithRawSizes() {
+    if (myTreeStructureWithRawSizes == null) {
+      myTreeStructureWithRawSizes = Futures.transform(constructTreeStructure(), input -> {
+        ArchiveTreeStructure.updateRawFileSizes(input, myApkSizeCalculator);
+        return input;
+      }, PooledThreadExecutor.INSTANCE);
+    }
+    return myTreeStructureWithRawSizes;
+  }
+
   @NotNull
   public synchronized ListenableFuture<ArchiveNode> updateTreeWithDownloadSizes() {
     if (myTreeStructureWithDownloadSizes == null) {
-      myTreeStructureWithDownloadSizes = Futures.transform(constructTreeStructure(), input -> {
+      myTreeStructureWithDownloadSizes = Futures.transform(updateTreeWithRawSizes(), input -> {
         ArchiveTreeStructure.updateDownloadFileSizes(input, myApkSizeCalculator);
         return input;
       }, PooledThreadExecutor.INSTANCE);
@@ -117,13 +134,6 @@ public class ApkParser {
     return myCompressedFullApkSize;
   }
 
-  @NotNull
-  private ArchiveNode createTreeNode() throws IOException {
-    ArchiveNode node = ArchiveTreeStructure.create(myArchiveContext);
-    ArchiveTreeStructure.updateRawFileSizes(node, myApkSizeCalculator);
-    return node;
-  }
-
   @NotNull
   public static AndroidApplicationInfo getAppInfo(@NonNull Path pathToAapt, @Nullable Archive archive) {
     if (archive == null){
@@ -100,7 +100,7 @@ public class ApkViewPanel implements TreeSelectionListener {
   public ApkViewPanel(@NotNull Project project, @NotNull ApkParser apkParser) {
     myApkParser = apkParser;
     myProject = project;
-    // construct the main tree along with the uncompressed sizes
+    // construct the main tree, and show it before computing the sizes of its entries
     Futures.addCallback(apkParser.constructTreeStructure(), new FutureCallBackAdapter<ArchiveNode>() {
       @Override
       public void onSuccess(ArchiveNode result) {
@@ -111,6 +111,17 @@ public class ApkViewPanel implements TreeSelectionListener {
       }
     } , EdtExecutorService.getInstance());
 
+    // repaint the tree once the uncompressed sizes are available
+    Futures.addCallback(apkParser.updateTreeWithRawSizes(), new FutureCallBackAdapter<ArchiveNode>() {
+      @Override
+      public void onSuccess(ArchiveNode result) {
+        if (myArchiveDisposed){
+          return;
+        }
+        myTree.repaint();
+      }
+    }, EdtExecutorService.getInstance());
+
     // kick off computation of the compressed archive, and once its available, refresh the tree
     Futures.addCallback(apkParser.updateTreeWithDownloadSizes(), new FutureCallBackAdapter<ArchiveNode>() {
       @Override
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import com.android.tools.apk.analyzer.dex.DexFiles;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+
+/**
+ * Loads the dex files of an APK concurrently, one task per dex file, so that a multi-dex APK
+ * loads in about the time it takes to read and parse its largest dex file.
+ */
+public final class DexFileLoader {
+  private DexFileLoader() {
+  }
+
+  /**
+   * Returns a future of the parsed dex files, in the order of {@code dexFiles}. The future fails
+   * if any of the files cannot be parsed.
+   */
+  @NotNull
+  public static ListenableFuture<Map<Path, DexBackedDexFile>> load(@NotNull Path[] dexFiles, @NotNull ListeningExecutorService executor) {
+    List<ListenableFuture<DexBackedDexFile>> futures = new ArrayList<>(dexFiles.length);
+    for (Path dexFile : dexFiles) {
+      futures.add(executor.submit(() -> DexFiles.getDexFile(dexFile)));
+    }
+
+    return Futures.transform(Futures.allAsList(futures), parsedFiles -> {
+      assert parsedFiles != null;
+      Map<Path, DexBackedDexFile> result = new LinkedHashMap<>();
+      for (int i = 0; i < dexFiles.length; i++) {
+        result.put(dexFiles[i], parsedFiles.get(i));
+      }
+      return result;
+    }, MoreExecutors.directExecutor());
+  }
+}
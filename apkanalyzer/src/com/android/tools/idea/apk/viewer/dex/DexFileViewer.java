@@ -28,7 +28,6 @@ import com.android.tools.proguard.ProguardSeedsMap;
 import com.android.tools.proguard.ProguardUsagesMap;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
-import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.*;
 import com.intellij.icons.AllIcons;
 import com.intellij.notification.NotificationGroup;
@@ -83,6 +82,9 @@ public class DexFileViewer implements ApkFileEditorComponent {
   @Nullable private ProguardMappings myProguardMappings;
   private boolean myDeobfuscateNames;
   private ListenableFuture<DexReferences> myDexReferences;
+  // Dex files are parsed once, then shared by the tree, the stats and the references. They are released once the tree and
+  // the stats are built, and parsed again if the tree is rebuilt with new ProGuard mappings.
+  @Nullable private ListenableFuture<Map<Path, DexBackedDexFile>> myParsedDexFiles;
 
   @NotNull public static final NotificationGroup LOGGING_NOTIFICATION = NotificationGroup.logOnlyGroup("APK Analyzer (Info)");
   @NotNull public static final NotificationGroup BALLOON_NOTIFICATION = NotificationGroup.balloonGroup("APK Analyzer (Important)");
@@ -281,15 +283,18 @@ public class DexFileViewer implements ApkFileEditorComponent {
     }
   }
 
+  @NotNull
+  private ListenableFuture<Map<Path, DexBackedDexFile>> getParsedDexFiles() {
+    if (myParsedDexFiles == null) {
+      ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
+      myParsedDexFiles = DexFileLoader.load(myDexFiles, pooledThreadExecutor);
+    }
+    return myParsedDexFiles;
+  }
+
   public void initDex() {
     ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = pooledThreadExecutor.submit(() -> {
-      Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
-      for (int i = 0; i < myDexFiles.length; i++) {
-        dexFiles.put(myDexFiles[i], DexFiles.getDexFile(myDexFiles[i]));
-      }
-      return dexFiles;
-    });
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = getParsedDexFiles();
 
     ListenableFuture<DexPackageNode> treeNodeFuture =
       Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexPackageNode>() {
@@ -376,6 +381,13 @@ public class DexFileViewer implements ApkFileEditorComponent {
         }
       }, EdtExecutorService.getInstance());
     }
+
+    // The parsed dex files take a lot of memory, and the tree and the stats do not reference them.
+    Futures.successfulAsList(treeNodeFuture, dexStatsFuture).addListener(() -> {
+      if (myParsedDexFiles == dexFileFuture) {
+        myParsedDexFiles = null;
+      }
+    }, EdtExecutorService.getInstance());
   }
 
   @NotNull
@@ -402,18 +414,11 @@ public class DexFileViewer implements ApkFileEditorComponent {
   ListenableFuture<DexReferences> getDexReferences() {
     if (myDexReferences == null) {
       ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-      ListenableFuture<DexBackedDexFile[]> dexFileFuture = pooledThreadExecutor.submit(() -> {
-        DexBackedDexFile[] files = new DexBackedDexFile[myDexFiles.length];
-        for (int i = 0; i < files.length; i++) {
-          files[i] = DexFiles.getDexFile(myDexFiles[i]);
-        }
-        return files;
-      });
-      myDexReferences = Futures.transform(dexFileFuture, new Function<DexBackedDexFile[], DexReferences>() {
+      myDexReferences = Futures.transform(getParsedDexFiles(), new Function<Map<Path, DexBackedDexFile>, DexReferences>() {
         @Override
-        public DexReferences apply(@Nullable DexBackedDexFile[] inputs) {
-          assert inputs != null;
-          return new DexReferences(inputs);
+        public DexReferences apply(@Nullable Map<Path, DexBackedDexFile> input) {
+          assert input != null;
+          return new DexReferences(input.values().toArray(new DexBackedDexFile[0]));
         }
       }, pooledThreadExecutor);
     }
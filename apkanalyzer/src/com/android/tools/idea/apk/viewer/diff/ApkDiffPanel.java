@@ -19,26 +19,33 @@ import com.android.annotations.NonNull;
 import com.android.tools.adtui.common.ColumnTreeBuilder;
 import com.android.tools.apk.analyzer.ArchiveContext;
 import com.android.tools.apk.analyzer.Archives;
+import com.android.tools.apk.analyzer.dex.DexFiles;
 import com.android.tools.apk.analyzer.internal.ApkDiffEntry;
 import com.android.tools.apk.analyzer.internal.ApkDiffParser;
 import com.android.tools.apk.analyzer.internal.ApkEntry;
 import com.android.tools.apk.analyzer.internal.ApkFileByFileDiffParser;
 import com.android.tools.idea.apk.viewer.ApkViewPanel.FutureCallBackAdapter;
+import com.android.tools.idea.apk.viewer.diff.ApkEntryDiff.Change;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.ColoredTreeCellRenderer;
 import com.intellij.ui.LoadingNode;
+import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.TreeSpeedSearch;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.util.Function;
 import com.intellij.util.concurrency.EdtExecutorService;
 import com.intellij.util.containers.Convertor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
 
 import javax.swing.*;
 import javax.swing.tree.DefaultMutableTreeNode;
@@ -46,13 +53,35 @@ import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static com.android.tools.idea.apk.viewer.ApkViewPanel.getHumanizedSize;
 
 public class ApkDiffPanel {
 
+  private static final Logger LOG = Logger.getInstance(ApkDiffPanel.class);
   private static final ListeningExecutorService ourExecutorService = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
+  /**
+   * Dex files are diffed on the common fork-join pool, so that the classes of each dex file are compared in parallel.
+   */
+  private static final ListeningExecutorService ourDexDiffExecutorService = MoreExecutors.listeningDecorator(ForkJoinPool.commonPool());
+  private static final Pattern DEX_ENTRY_NAME = Pattern.compile("classes\\d*\\.dex");
+
+  private ListenableFuture<DefaultMutableTreeNode> myTreeStructureFuture;
   private ListenableFuture<DefaultMutableTreeNode> myFbfTreeStructureFuture;
+  private ListenableFuture<ApkEntryDiff> myEntryDiffFuture;
+  /**
+   * The entry level diff of the two archives, or null until it has been computed.
+   */
+  @Nullable private ApkEntryDiff myEntryDiff;
 
   private JPanel myContainer;
   private JComponent myColumnTreePane;
@@ -106,20 +135,132 @@ public class ApkDiffPanel {
 
   private void constructDiffTree(){
     // construct the main tree
-    ListenableFuture<DefaultMutableTreeNode> treeStructureFuture = ourExecutorService.submit(() -> {
-      try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-           ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
-        return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
-      }
-    });
+    if (myTreeStructureFuture == null) {
+      myTreeStructureFuture = ourExecutorService.submit(() -> {
+        try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
+             ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
+          return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
+        }
+      });
+    }
     FutureCallBackAdapter<DefaultMutableTreeNode> setRootNode = new FutureCallBackAdapter<DefaultMutableTreeNode>() {
       @Override
       public void onSuccess(DefaultMutableTreeNode result) {
         setRootNode(result);
         myCalculateFileByFileCheckBox.setEnabled(true);
+        constructEntryDiff(result);
       }
     };
-    Futures.addCallback(treeStructureFuture, setRootNode, EdtExecutorService.getInstance());
+    Futures.addCallback(myTreeStructureFuture, setRootNode, EdtExecutorService.getInstance());
+  }
+
+  /**
+   * Compares the entries of both archives from their central directories, so that unchanged entries can be grayed out,
+   * then diffs the classes of the modified dex files and adds the results under their nodes as each dex file is done.
+   */
+  private void constructEntryDiff(@NotNull DefaultMutableTreeNode root) {
+    if (myEntryDiffFuture != null) {
+      return;
+    }
+
+    File oldApk = VfsUtilCore.virtualToIoFile(myOldApk);
+    File newApk = VfsUtilCore.virtualToIoFile(myNewApk);
+    myEntryDiffFuture = ourExecutorService.submit(() -> ApkEntryDiff.compare(oldApk, newApk));
+    Futures.addCallback(myEntryDiffFuture, new FutureCallBackAdapter<ApkEntryDiff>() {
+      @Override
+      public void onSuccess(ApkEntryDiff result) {
+        myEntryDiff = result;
+        myTree.repaint();
+
+        for (Map.Entry<String, Change> change : result.getChanges().entrySet()) {
+          if (change.getValue() == Change.MODIFIED && DEX_ENTRY_NAME.matcher(change.getKey()).matches()) {
+            constructDexDiff(root, oldApk, newApk, change.getKey());
+          }
+        }
+      }
+
+      @Override
+      public void onFailure(@NotNull Throwable t) {
+        LOG.warn("Unable to compare the entries of " + oldApk + " and " + newApk, t);
+      }
+    }, EdtExecutorService.getInstance());
+  }
+
+  private void constructDexDiff(@NotNull DefaultMutableTreeNode root, @NotNull File oldApk, @NotNull File newApk, @NotNull String dexName) {
+    ListenableFuture<List<DexClassDiff>> dexDiffFuture =
+      ourDexDiffExecutorService.submit(() -> DexClassDiff.compare(readDexFile(oldApk, dexName), readDexFile(newApk, dexName)));
+    Futures.addCallback(dexDiffFuture, new FutureCallBackAdapter<List<DexClassDiff>>() {
+      @Override
+      public void onSuccess(List<DexClassDiff> result) {
+        DefaultMutableTreeNode dexNode = findChild(root, dexName);
+        if (dexNode == null) {
+          return;
+        }
+        for (DexClassDiff classDiff : result) {
+          DefaultMutableTreeNode classNode = new DefaultMutableTreeNode(classDiff);
+          addMethodNodes(classNode, "+ ", classDiff.getAddedMethods());
+          addMethodNodes(classNode, "- ", classDiff.getRemovedMethods());
+          addMethodNodes(classNode, "~ ", classDiff.getModifiedMethods());
+          if (myTreeModel.getRoot() == root) {
+            myTreeModel.insertNodeInto(classNode, dexNode, dexNode.getChildCount());
+          }
+          else {
+            dexNode.add(classNode);
+          }
+        }
+      }
+
+      @Override
+      public void onFailure(@NotNull Throwable t) {
+        LOG.warn("Unable to compare the classes of " + dexName, t);
+      }
+    }, EdtExecutorService.getInstance());
+  }
+
+  @NotNull
+  private static DexBackedDexFile readDexFile(@NotNull File apk, @NotNull String dexName) throws IOException {
+    try (ZipFile zip = new ZipFile(apk)) {
+      ZipEntry entry = zip.getEntry(dexName);
+      if (entry == null) {
+        throw new IOException(dexName + " not found in " + apk);
+      }
+      try (InputStream stream = zip.getInputStream(entry)) {
+        return DexFiles.getDexFile(ByteStreams.toByteArray(stream));
+      }
+    }
+  }
+
+  @Nullable
+  private static DefaultMutableTreeNode findChild(@NotNull DefaultMutableTreeNode parent, @NotNull String name) {
+    for (int i = 0; i < parent.getChildCount(); i++) {
+      DefaultMutableTreeNode child = (DefaultMutableTreeNode)parent.getChildAt(i);
+      ApkEntry entry = ApkEntry.fromNode(child);
+      if (entry != null && name.equals(entry.getName())) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  private static void addMethodNodes(@NotNull DefaultMutableTreeNode classNode, @NotNull String prefix, @NotNull List<String> methods) {
+    for (String method : methods) {
+      classNode.add(new DefaultMutableTreeNode(prefix + method));
+    }
+  }
+
+  /**
+   * Returns the name of {@code entry} in the archive, as used by {@link ApkEntryDiff}.
+   */
+  @NotNull
+  private static String getEntryName(@NotNull ApkEntry entry) {
+    String name = entry.getPath().toString();
+    if (name.startsWith("/")) {
+      name = name.substring(1);
+    }
+    if (name.endsWith("/")) {
+      name = name.substring(0, name.length() - 1);
+    }
+    return name;
   }
 
   private void createUIComponents() {
@@ -217,7 +358,7 @@ public class ApkDiffPanel {
     }
   }
 
-  static class NameRenderer extends ColoredTreeCellRenderer {
+  class NameRenderer extends ColoredTreeCellRenderer {
 
     NameRenderer() {}
 
@@ -229,6 +370,16 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      Object userObject = value instanceof DefaultMutableTreeNode ? ((DefaultMutableTreeNode)value).getUserObject() : null;
+      if (userObject instanceof DexClassDiff) {
+        appendClassDiff((DexClassDiff)userObject);
+        return;
+      }
+      if (userObject instanceof String) {
+        append((String)userObject);
+        return;
+      }
+
       ApkEntry entry = ApkEntry.fromNode(value);
       ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
 
@@ -236,7 +387,28 @@ public class ApkDiffPanel {
         return;
       }
 
-      append(entry.getName());
+      boolean unchanged = myEntryDiff != null && myEntryDiff.isUnchanged(getEntryName(entry));
+      append(entry.getName(), unchanged ? SimpleTextAttributes.GRAYED_ATTRIBUTES : SimpleTextAttributes.REGULAR_ATTRIBUTES);
+    }
+
+    private void appendClassDiff(@NotNull DexClassDiff classDiff) {
+      switch (classDiff.getChange()) {
+        case ADDED:
+          append("+ " + classDiff.getClassName());
+          break;
+        case REMOVED:
+          append("- " + classDiff.getClassName());
+          break;
+        case MODIFIED:
+          append("~ " + classDiff.getClassName());
+          append(String.format(" (%1$s%2$d methods added, %3$d removed, %4$d changed)",
+                               classDiff.isDeclarationModified() ? "declaration changed, " : "",
+                               classDiff.getAddedMethods().size(),
+                               classDiff.getRemovedMethods().size(),
+                               classDiff.getModifiedMethods().size()),
+                 SimpleTextAttributes.GRAYED_ATTRIBUTES);
+          break;
+      }
     }
   }
 }
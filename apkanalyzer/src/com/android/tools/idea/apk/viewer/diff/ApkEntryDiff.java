@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Entry level comparison of two archives. Entries are compared by the CRC and size recorded in the zip central
+ * directory, so identical entries, and directories that only contain identical entries, are detected without
+ * reading their contents.
+ */
+public final class ApkEntryDiff {
+  public enum Change {
+    ADDED,
+    REMOVED,
+    MODIFIED
+  }
+
+  /**
+   * The changed entries by name, in name order.
+   */
+  @NotNull private final Map<String, Change> myChanges;
+  /**
+   * The unchanged entries, and the directories that only contain unchanged entries, without a trailing separator.
+   */
+  @NotNull private final Set<String> myUnchangedNames;
+
+  private ApkEntryDiff(@NotNull Map<String, Change> changes, @NotNull Set<String> unchangedEntries) {
+    myChanges = Collections.unmodifiableMap(changes);
+    Set<String> changedDirectories = new HashSet<>();
+    for (String name : changes.keySet()) {
+      addDirectories(name, changedDirectories);
+    }
+    myUnchangedNames = new HashSet<>(unchangedEntries);
+    for (String name : unchangedEntries) {
+      addDirectories(name, myUnchangedNames);
+    }
+    myUnchangedNames.removeAll(changedDirectories);
+  }
+
+  private static void addDirectories(@NotNull String name, @NotNull Set<String> directories) {
+    for (int index = name.lastIndexOf('/'); index > 0; index = name.lastIndexOf('/', index - 1)) {
+      if (!directories.add(name.substring(0, index))) {
+        break;
+      }
+    }
+  }
+
+  @NotNull
+  public static ApkEntryDiff compare(@NotNull File oldArchive, @NotNull File newArchive) throws IOException {
+    try (ZipFile oldZip = new ZipFile(oldArchive);
+         ZipFile newZip = new ZipFile(newArchive)) {
+      return compare(readDigests(oldZip), readDigests(newZip));
+    }
+  }
+
+  @VisibleForTesting
+  @NotNull
+  static ApkEntryDiff compare(@NotNull Map<String, EntryDigest> oldEntries, @NotNull Map<String, EntryDigest> newEntries) {
+    Map<String, Change> changes = new TreeMap<>();
+    Set<String> unchangedEntries = new HashSet<>();
+    for (Map.Entry<String, EntryDigest> oldEntry : oldEntries.entrySet()) {
+      EntryDigest newDigest = newEntries.get(oldEntry.getKey());
+      if (newDigest == null) {
+        changes.put(oldEntry.getKey(), Change.REMOVED);
+      }
+      else if (newDigest.equals(oldEntry.getValue())) {
+        unchangedEntries.add(oldEntry.getKey());
+      }
+      else {
+        changes.put(oldEntry.getKey(), Change.MODIFIED);
+      }
+    }
+    for (String name : newEntries.keySet()) {
+      if (!oldEntries.containsKey(name)) {
+        changes.put(name, Change.ADDED);
+      }
+    }
+    return new ApkEntryDiff(changes, unchangedEntries);
+  }
+
+  /**
+   * Returns the digests of the entries of {@code zip}, as recorded in its central directory.
+   */
+  @NotNull
+  private static Map<String, EntryDigest> readDigests(@NotNull ZipFile zip) {
+    Map<String, EntryDigest> digests = new HashMap<>();
+    for (ZipEntry entry : Collections.list(zip.entries())) {
+      if (!entry.isDirectory()) {
+        digests.put(entry.getName(), new EntryDigest(entry.getCrc(), entry.getSize()));
+      }
+    }
+    return digests;
+  }
+
+  @NotNull
+  public Map<String, Change> getChanges() {
+    return myChanges;
+  }
+
+  @Nullable
+  public Change getChange(@NotNull String name) {
+    return myChanges.get(name);
+  }
+
+  /**
+   * Returns true if {@code name} is an entry, or a directory, whose contents are identical in both archives.
+   * Returns false for changed entries and for names unknown to both archives.
+   */
+  public boolean isUnchanged(@NotNull String name) {
+    return myUnchangedNames.contains(name);
+  }
+
+  @VisibleForTesting
+  static final class EntryDigest {
+    private final long myCrc;
+    private final long mySize;
+
+    EntryDigest(long crc, long size) {
+      myCrc = crc;
+      mySize = size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof EntryDigest)) {
+        return false;
+      }
+      EntryDigest digest = (EntryDigest)o;
+      return myCrc == digest.myCrc && mySize == digest.mySize;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(myCrc) * 31 + Long.hashCode(mySize);
+    }
+  }
+}
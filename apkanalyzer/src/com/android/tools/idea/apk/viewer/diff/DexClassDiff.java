@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.android.tools.idea.apk.viewer.diff.ApkEntryDiff.Change;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.iface.Annotation;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.iface.ExceptionHandler;
+import org.jf.dexlib2.iface.Field;
+import org.jf.dexlib2.iface.Method;
+import org.jf.dexlib2.iface.MethodImplementation;
+import org.jf.dexlib2.iface.TryBlock;
+import org.jf.dexlib2.iface.instruction.Instruction;
+import org.jf.dexlib2.iface.instruction.OffsetInstruction;
+import org.jf.dexlib2.iface.instruction.ReferenceInstruction;
+import org.jf.dexlib2.iface.instruction.SwitchElement;
+import org.jf.dexlib2.iface.instruction.SwitchPayload;
+import org.jf.dexlib2.iface.instruction.WideLiteralInstruction;
+import org.jf.dexlib2.iface.instruction.formats.ArrayPayload;
+import org.jf.dexlib2.util.ReferenceUtil;
+
+/**
+ * Class and method level differences between the classes of two dex files.
+ * <p/>
+ * Methods are identified by their signature, and are considered modified when their access flags, annotations,
+ * instructions, branch offsets, switch and array payloads, try/catch blocks, the constants they use, or the members
+ * they reference differ. Register allocation is ignored. The declaration of a class, i.e. its access flags, superclass,
+ * interfaces, annotations and fields, is compared separately from its methods.
+ */
+public final class DexClassDiff {
+  @NotNull private final String myClassName;
+  @NotNull private final Change myChange;
+  private final boolean myDeclarationModified;
+  @NotNull private final List<String> myAddedMethods;
+  @NotNull private final List<String> myRemovedMethods;
+  @NotNull private final List<String> myModifiedMethods;
+
+  private DexClassDiff(@NotNull String className,
+                       @NotNull Change change,
+                       boolean declarationModified,
+                       @NotNull List<String> addedMethods,
+                       @NotNull List<String> removedMethods,
+                       @NotNull List<String> modifiedMethods) {
+    myClassName = className;
+    myChange = change;
+    myDeclarationModified = declarationModified;
+    myAddedMethods = addedMethods;
+    myRemovedMethods = removedMethods;
+    myModifiedMethods = modifiedMethods;
+  }
+
+  /**
+   * Returns the differences between the classes of two dex files, ordered by class name. Classes are compared
+   * with a parallel stream, so calling this from a fork-join pool task compares them on that pool.
+   */
+  @NotNull
+  public static List<DexClassDiff> compare(@NotNull DexBackedDexFile oldDex, @NotNull DexBackedDexFile newDex) {
+    Map<String, ClassDef> oldClasses = getClassesByType(oldDex);
+    Map<String, ClassDef> newClasses = getClassesByType(newDex);
+    TreeSet<String> types = new TreeSet<>(oldClasses.keySet());
+    types.addAll(newClasses.keySet());
+
+    return types.parallelStream()
+      .map(type -> compare(type, oldClasses.get(type), newClasses.get(type)))
+      .filter(Objects::nonNull)
+      .sorted(Comparator.comparing(DexClassDiff::getClassName))
+      .collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static Map<String, ClassDef> getClassesByType(@NotNull DexBackedDexFile dex) {
+    Map<String, ClassDef> classes = new HashMap<>();
+    for (ClassDef classDef : dex.getClasses()) {
+      classes.put(classDef.getType(), classDef);
+    }
+    return classes;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static DexClassDiff compare(@NotNull String type, @Nullable ClassDef oldClass, @Nullable ClassDef newClass) {
+    String className = getClassName(type);
+    if (oldClass == null) {
+      return new DexClassDiff(className, Change.ADDED, false, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+    if (newClass == null) {
+      return new DexClassDiff(className, Change.REMOVED, false, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    boolean declarationModified = getDeclarationDigest(oldClass) != getDeclarationDigest(newClass);
+    Map<String, Long> oldMethods = getMethodDigests(oldClass);
+    Map<String, Long> newMethods = getMethodDigests(newClass);
+    if (!declarationModified && oldMethods.equals(newMethods)) {
+      return null;
+    }
+
+    List<String> addedMethods = new ArrayList<>();
+    List<String> removedMethods = new ArrayList<>();
+    List<String> modifiedMethods = new ArrayList<>();
+    for (Map.Entry<String, Long> oldMethod : oldMethods.entrySet()) {
+      Long newDigest = newMethods.get(oldMethod.getKey());
+      if (newDigest == null) {
+        removedMethods.add(oldMethod.getKey());
+      }
+      else if (!newDigest.equals(oldMethod.getValue())) {
+        modifiedMethods.add(oldMethod.getKey());
+      }
+    }
+    for (String signature : newMethods.keySet()) {
+      if (!oldMethods.containsKey(signature)) {
+        addedMethods.add(signature);
+      }
+    }
+    return new DexClassDiff(className, Change.MODIFIED, declarationModified, addedMethods, removedMethods, modifiedMethods);
+  }
+
+  /**
+   * Returns a digest of the access flags, superclass, interfaces, annotations and fields of {@code classDef}.
+   */
+  private static long getDeclarationDigest(@NotNull ClassDef classDef) {
+    long digest = classDef.getAccessFlags();
+    digest = digest * 31 + Objects.hashCode(classDef.getSuperclass());
+    digest = digest * 31 + classDef.getInterfaces().hashCode();
+    digest = digest * 31 + getDigest(classDef.getAnnotations());
+
+    // Fields are ordered by name, so that their order in the dex file does not matter
+    Map<String, Long> fields = new TreeMap<>();
+    for (Field field : classDef.getFields()) {
+      long fieldDigest = field.getAccessFlags();
+      fieldDigest = fieldDigest * 31 + field.getType().hashCode();
+      fieldDigest = fieldDigest * 31 + Objects.hashCode(field.getInitialValue());
+      fieldDigest = fieldDigest * 31 + getDigest(field.getAnnotations());
+      fields.put(field.getName(), fieldDigest);
+    }
+    for (Map.Entry<String, Long> field : fields.entrySet()) {
+      digest = digest * 31 + field.getKey().hashCode();
+      digest = digest * 31 + field.getValue();
+    }
+    return digest;
+  }
+
+  /**
+   * Returns a digest of a set of annotations that does not depend on their order.
+   */
+  private static long getDigest(@NotNull Iterable<? extends Annotation> annotations) {
+    long digest = 0;
+    for (Annotation annotation : annotations) {
+      digest += annotation.hashCode();
+    }
+    return digest;
+  }
+
+  /**
+   * Returns a digest of the implementation of each method of {@code classDef}, by method signature.
+   */
+  @NotNull
+  private static Map<String, Long> getMethodDigests(@NotNull ClassDef classDef) {
+    Map<String, Long> digests = new TreeMap<>();
+    for (Method method : classDef.getMethods()) {
+      long digest = method.getAccessFlags();
+      digest = digest * 31 + getDigest(method.getAnnotations());
+      digest = digest * 31 + getDigest(method.getImplementation());
+      digests.put(getSignature(method), digest);
+    }
+    return digests;
+  }
+
+  @NotNull
+  private static String getSignature(@NotNull Method method) {
+    StringBuilder signature = new StringBuilder(method.getName()).append('(');
+    for (CharSequence parameterType : method.getParameterTypes()) {
+      signature.append(parameterType);
+    }
+    return signature.append(')').append(method.getReturnType()).toString();
+  }
+
+  private static long getDigest(@Nullable MethodImplementation implementation) {
+    if (implementation == null) {
+      return 0;
+    }
+    long digest = 1;
+    for (Instruction instruction : implementation.getInstructions()) {
+      digest = digest * 31 + instruction.getOpcode().ordinal();
+      if (instruction instanceof WideLiteralInstruction) {
+        digest = digest * 31 + ((WideLiteralInstruction)instruction).getWideLiteral();
+      }
+      if (instruction instanceof ReferenceInstruction) {
+        digest = digest * 31 + ReferenceUtil.getReferenceString(((ReferenceInstruction)instruction).getReference()).hashCode();
+      }
+      if (instruction instanceof OffsetInstruction) {
+        digest = digest * 31 + ((OffsetInstruction)instruction).getCodeOffset();
+      }
+      if (instruction instanceof SwitchPayload) {
+        for (SwitchElement element : ((SwitchPayload)instruction).getSwitchElements()) {
+          digest = digest * 31 + element.getKey();
+          digest = digest * 31 + element.getOffset();
+        }
+      }
+      if (instruction instanceof ArrayPayload) {
+        ArrayPayload payload = (ArrayPayload)instruction;
+        digest = digest * 31 + payload.getElementWidth();
+        for (Number element : payload.getArrayElements()) {
+          digest = digest * 31 + element.longValue();
+        }
+      }
+    }
+    for (TryBlock<? extends ExceptionHandler> tryBlock : implementation.getTryBlocks()) {
+      digest = digest * 31 + tryBlock.getStartCodeAddress();
+      digest = digest * 31 + tryBlock.getCodeUnitCount();
+      for (ExceptionHandler handler : tryBlock.getExceptionHandlers()) {
+        digest = digest * 31 + Objects.hashCode(handler.getExceptionType());
+        digest = digest * 31 + handler.getHandlerCodeAddress();
+      }
+    }
+    return digest;
+  }
+
+  /**
+   * Converts a type descriptor such as {@code Lcom/example/Foo;} to a class name such as {@code com.example.Foo}.
+   */
+  @NotNull
+  private static String getClassName(@NotNull String type) {
+    if (type.startsWith("L") && type.endsWith(";")) {
+      type = type.substring(1, type.length() - 1);
+    }
+    return type.replace('/', '.');
+  }
+
+  @NotNull
+  public String getClassName() {
+    return myClassName;
+  }
+
+  @NotNull
+  public Change getChange() {
+    return myChange;
+  }
+
+  /**
+   * Returns whether the access flags, superclass, interfaces, annotations or fields of a {@link Change#MODIFIED} class differ.
+   */
+  public boolean isDeclarationModified() {
+    return myDeclarationModified;
+  }
+
+  @NotNull
+  public List<String> getAddedMethods() {
+    return myAddedMethods;
+  }
+
+  @NotNull
+  public List<String> getRemovedMethods() {
+    return myRemovedMethods;
+  }
+
+  @NotNull
+  public List<String> getModifiedMethods() {
+    return myModifiedMethods;
+  }
+}
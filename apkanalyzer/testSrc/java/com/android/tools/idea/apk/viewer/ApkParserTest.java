@@ -64,6 +64,9 @@ public class ApkParserTest {
       ArchiveNode tree = futureTree.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
       assertNotNull(tree);
 
+      ListenableFuture<ArchiveNode> futureTreeWithRawSizes = parser.updateTreeWithRawSizes();
+      assertTrue(futureTreeWithRawSizes.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getData().getRawFileSize() > 0);
+
       ListenableFuture<Long> futureSize = parser.getCompressedFullApkSize();
       Long size = futureSize.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
       assertNotNull(size);
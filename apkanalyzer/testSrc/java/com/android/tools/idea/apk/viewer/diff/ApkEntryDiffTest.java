@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.android.tools.idea.apk.viewer.diff.ApkEntryDiff.Change;
+import com.android.tools.idea.apk.viewer.diff.ApkEntryDiff.EntryDigest;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ApkEntryDiffTest {
+
+  @Test
+  public void changedEntriesAreReported() {
+    Map<String, EntryDigest> oldEntries = ImmutableMap.of("classes.dex", new EntryDigest(1, 100),
+                                                          "res/layout/main.xml", new EntryDigest(2, 200),
+                                                          "res/raw/removed.txt", new EntryDigest(3, 300));
+    Map<String, EntryDigest> newEntries = ImmutableMap.of("classes.dex", new EntryDigest(4, 100),
+                                                          "res/layout/main.xml", new EntryDigest(2, 200),
+                                                          "res/raw/added.txt", new EntryDigest(5, 500));
+
+    ApkEntryDiff diff = ApkEntryDiff.compare(oldEntries, newEntries);
+
+    assertEquals(ImmutableMap.of("classes.dex", Change.MODIFIED,
+                                 "res/raw/added.txt", Change.ADDED,
+                                 "res/raw/removed.txt", Change.REMOVED),
+                 diff.getChanges());
+    assertNull(diff.getChange("res/layout/main.xml"));
+  }
+
+  @Test
+  public void directoriesWithOnlyUnchangedEntriesAreUnchanged() {
+    Map<String, EntryDigest> oldEntries = ImmutableMap.of("res/layout/main.xml", new EntryDigest(1, 100),
+                                                          "res/raw/data.bin", new EntryDigest(2, 200),
+                                                          "lib/x86/libfoo.so", new EntryDigest(3, 300));
+    Map<String, EntryDigest> newEntries = ImmutableMap.of("res/layout/main.xml", new EntryDigest(1, 100),
+                                                          "res/raw/data.bin", new EntryDigest(2, 201),
+                                                          "lib/x86/libfoo.so", new EntryDigest(3, 300));
+
+    ApkEntryDiff diff = ApkEntryDiff.compare(oldEntries, newEntries);
+
+    assertTrue(diff.isUnchanged("res/layout/main.xml"));
+    assertTrue(diff.isUnchanged("res/layout"));
+    assertTrue(diff.isUnchanged("lib"));
+    assertTrue(diff.isUnchanged("lib/x86"));
+    assertFalse(diff.isUnchanged("res"));
+    assertFalse(diff.isUnchanged("res/raw"));
+    assertFalse(diff.isUnchanged("res/raw/data.bin"));
+    assertFalse(diff.isUnchanged("unknown"));
+  }
+
+  @Test
+  public void archivesAreComparedFromTheirCentralDirectories() throws Exception {
+    File oldApk = createArchive(ImmutableMap.of("classes.dex", "old", "res/raw/data.bin", "data"));
+    File newApk = createArchive(ImmutableMap.of("classes.dex", "new", "res/raw/data.bin", "data"));
+
+    ApkEntryDiff diff = ApkEntryDiff.compare(oldApk, newApk);
+
+    assertEquals(ImmutableMap.of("classes.dex", Change.MODIFIED), diff.getChanges());
+    assertTrue(diff.isUnchanged("res"));
+  }
+
+  private static File createArchive(Map<String, String> entries) throws Exception {
+    File archive = Files.createTempFile("apkEntryDiff", ".apk").toFile();
+    archive.deleteOnExit();
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        zip.write(entry.getValue().getBytes("UTF-8"));
+        zip.closeEntry();
+      }
+    }
+    return archive;
+  }
+}
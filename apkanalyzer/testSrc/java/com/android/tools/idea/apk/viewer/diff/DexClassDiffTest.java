@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.android.tools.idea.apk.viewer.diff.ApkEntryDiff.Change;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jf.dexlib2.AccessFlags;
+import org.jf.dexlib2.Opcode;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.iface.Field;
+import org.jf.dexlib2.iface.Method;
+import org.jf.dexlib2.iface.TryBlock;
+import org.jf.dexlib2.iface.instruction.Instruction;
+import org.jf.dexlib2.immutable.ImmutableClassDef;
+import org.jf.dexlib2.immutable.ImmutableExceptionHandler;
+import org.jf.dexlib2.immutable.ImmutableField;
+import org.jf.dexlib2.immutable.ImmutableMethod;
+import org.jf.dexlib2.immutable.ImmutableMethodImplementation;
+import org.jf.dexlib2.immutable.ImmutableTryBlock;
+import org.jf.dexlib2.immutable.instruction.ImmutableArrayPayload;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction10t;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction10x;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction31t;
+import org.jf.dexlib2.immutable.instruction.ImmutablePackedSwitchPayload;
+import org.jf.dexlib2.immutable.instruction.ImmutableSwitchElement;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DexClassDiffTest {
+  private static final String TYPE = "Lcom/example/Foo;";
+
+  @Test
+  public void identicalClassesAreUnchanged() {
+    assertNull(DexClassDiff.compare(TYPE, createClass(createMethod("run", branch(1))), createClass(createMethod("run", branch(1)))));
+  }
+
+  @Test
+  public void addedAndRemovedClassesAreReported() {
+    ClassDef classDef = createClass(createMethod("run", branch(1)));
+
+    assertEquals(Change.ADDED, compare(null, classDef).getChange());
+    assertEquals(Change.REMOVED, compare(classDef, null).getChange());
+    assertEquals("com.example.Foo", compare(null, classDef).getClassName());
+  }
+
+  @Test
+  public void addedAndRemovedMethodsAreReported() {
+    DexClassDiff diff = compare(createClass(createMethod("run", branch(1))), createClass(createMethod("start", branch(1))));
+
+    assertEquals(Change.MODIFIED, diff.getChange());
+    assertEquals(ImmutableList.of("start()V"), diff.getAddedMethods());
+    assertEquals(ImmutableList.of("run()V"), diff.getRemovedMethods());
+    assertTrue(diff.getModifiedMethods().isEmpty());
+    assertFalse(diff.isDeclarationModified());
+  }
+
+  @Test
+  public void branchOffsetsAreCompared() {
+    assertMethodModified(createMethod("run", branch(1)), createMethod("run", branch(2)));
+  }
+
+  @Test
+  public void switchPayloadsAreCompared() {
+    assertMethodModified(createMethod("run", packedSwitch(1)), createMethod("run", packedSwitch(2)));
+  }
+
+  @Test
+  public void arrayPayloadsAreCompared() {
+    assertMethodModified(createMethod("run", arrayData(1)), createMethod("run", arrayData(2)));
+  }
+
+  @Test
+  public void tryBlocksAreCompared() {
+    assertMethodModified(createMethod("run", "Ljava/io/IOException;", AccessFlags.PUBLIC.getValue()),
+                         createMethod("run", "Ljava/lang/Exception;", AccessFlags.PUBLIC.getValue()));
+  }
+
+  @Test
+  public void methodAccessFlagsAreCompared() {
+    assertMethodModified(createMethod("run", null, AccessFlags.PUBLIC.getValue()),
+                         createMethod("run", null, AccessFlags.PRIVATE.getValue()));
+  }
+
+  @Test
+  public void superclassesAreCompared() {
+    Method method = createMethod("run", branch(1));
+
+    assertDeclarationModified(createClass(AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", Collections.emptyList(), method),
+                              createClass(AccessFlags.PUBLIC.getValue(), "Lcom/example/Base;", Collections.emptyList(), method));
+  }
+
+  @Test
+  public void classAccessFlagsAreCompared() {
+    Method method = createMethod("run", branch(1));
+
+    assertDeclarationModified(createClass(AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", Collections.emptyList(), method),
+                              createClass(AccessFlags.FINAL.getValue(), "Ljava/lang/Object;", Collections.emptyList(), method));
+  }
+
+  @Test
+  public void fieldsAreCompared() {
+    Method method = createMethod("run", branch(1));
+    Field intField = new ImmutableField(TYPE, "myValue", "I", AccessFlags.PRIVATE.getValue(), null, null);
+    Field longField = new ImmutableField(TYPE, "myValue", "J", AccessFlags.PRIVATE.getValue(), null, null);
+
+    assertDeclarationModified(createClass(AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", ImmutableList.of(intField), method),
+                              createClass(AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", ImmutableList.of(longField), method));
+    assertNull(DexClassDiff.compare(TYPE,
+                                    createClass(AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", ImmutableList.of(intField), method),
+                                    createClass(AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", ImmutableList.of(intField), method)));
+  }
+
+  private static void assertMethodModified(@NotNull Method oldMethod, @NotNull Method newMethod) {
+    DexClassDiff diff = compare(createClass(oldMethod), createClass(newMethod));
+
+    assertEquals(Change.MODIFIED, diff.getChange());
+    assertEquals(ImmutableList.of("run()V"), diff.getModifiedMethods());
+    assertTrue(diff.getAddedMethods().isEmpty());
+    assertTrue(diff.getRemovedMethods().isEmpty());
+    assertFalse(diff.isDeclarationModified());
+  }
+
+  private static void assertDeclarationModified(@NotNull ClassDef oldClass, @NotNull ClassDef newClass) {
+    DexClassDiff diff = compare(oldClass, newClass);
+
+    assertEquals(Change.MODIFIED, diff.getChange());
+    assertTrue(diff.isDeclarationModified());
+    assertTrue(diff.getModifiedMethods().isEmpty());
+  }
+
+  @NotNull
+  private static DexClassDiff compare(@Nullable ClassDef oldClass, @Nullable ClassDef newClass) {
+    DexClassDiff diff = DexClassDiff.compare(TYPE, oldClass, newClass);
+    assertNotNull(diff);
+    return diff;
+  }
+
+  @NotNull
+  private static ClassDef createClass(@NotNull Method method) {
+    return createClass(AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", Collections.emptyList(), method);
+  }
+
+  @NotNull
+  private static ClassDef createClass(int accessFlags, @NotNull String superclass, @NotNull List<Field> fields, @NotNull Method method) {
+    return new ImmutableClassDef(TYPE, accessFlags, superclass, null, null, null, fields, ImmutableList.of(method));
+  }
+
+  @NotNull
+  private static Method createMethod(@NotNull String name, @NotNull List<Instruction> instructions) {
+    return createMethod(name, instructions, Collections.emptyList(), AccessFlags.PUBLIC.getValue());
+  }
+
+  /**
+   * Creates a method that catches {@code exceptionType}, or nothing if it is null.
+   */
+  @NotNull
+  private static Method createMethod(@NotNull String name, @Nullable String exceptionType, int accessFlags) {
+    List<TryBlock<ImmutableExceptionHandler>> tryBlocks = exceptionType == null
+                                                          ? Collections.emptyList()
+                                                          : ImmutableList.of(new ImmutableTryBlock(0, 1, ImmutableList.of(
+                                                            new ImmutableExceptionHandler(exceptionType, 1))));
+    return createMethod(name, ImmutableList.of(new ImmutableInstruction10x(Opcode.NOP), new ImmutableInstruction10x(Opcode.RETURN_VOID)),
+                        tryBlocks, accessFlags);
+  }
+
+  @NotNull
+  private static Method createMethod(@NotNull String name,
+                                     @NotNull List<Instruction> instructions,
+                                     @NotNull List<TryBlock<ImmutableExceptionHandler>> tryBlocks,
+                                     int accessFlags) {
+    return new ImmutableMethod(TYPE, name, null, "V", accessFlags, ImmutableSet.of(),
+                               new ImmutableMethodImplementation(1, instructions, tryBlocks, null));
+  }
+
+  @NotNull
+  private static List<Instruction> branch(int offset) {
+    return ImmutableList.of(new ImmutableInstruction10t(Opcode.GOTO, offset), new ImmutableInstruction10x(Opcode.RETURN_VOID));
+  }
+
+  @NotNull
+  private static List<Instruction> packedSwitch(int firstKey) {
+    return ImmutableList.of(new ImmutableInstruction31t(Opcode.PACKED_SWITCH, 0, 4),
+                            new ImmutableInstruction10x(Opcode.RETURN_VOID),
+                            new ImmutableInstruction10x(Opcode.NOP),
+                            new ImmutablePackedSwitchPayload(ImmutableList.of(new ImmutableSwitchElement(firstKey, 3))));
+  }
+
+  @NotNull
+  private static List<Instruction> arrayData(int firstElement) {
+    return ImmutableList.of(new ImmutableInstruction31t(Opcode.FILL_ARRAY_DATA, 0, 4),
+                            new ImmutableInstruction10x(Opcode.RETURN_VOID),
+                            new ImmutableInstruction10x(Opcode.NOP),
+                            new ImmutableArrayPayload(4, ImmutableList.of(firstElement, 0)));
+  }
+}
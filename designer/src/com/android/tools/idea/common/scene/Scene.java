@@ -62,6 +62,7 @@ import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.event.InputEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -104,6 +105,7 @@ public class Scene implements SelectionListener, Disposable {
   public static final int IMMEDIATE_LAYOUT = 1;
   public static final int ANIMATED_LAYOUT = 2;
   private long myDisplayListVersion = 1;
+  private long myHitRegionsVersion = 1;
   private Target myOverTarget;
   private Target mySnapTarget;
   private SceneComponent myCurrentComponent;
@@ -501,8 +503,9 @@ public class Scene implements SelectionListener, Disposable {
       needsRebuildList();
     }
     if (myRoot != null) {
-      myHoverListener.find(transform, myRoot, x, y);
-      mySnapListener.find(transform, myRoot, x, y);
+      Object pickerKey = getHoverPickerKey(transform);
+      myHoverListener.find(transform, myRoot, x, y, pickerKey);
+      mySnapListener.find(transform, myRoot, x, y, pickerKey);
     }
     repaint();
     Target closestTarget = myHoverListener.getClosestTarget(modifiersEx);
@@ -1061,6 +1064,24 @@ public class Scene implements SelectionListener, Disposable {
     myDisplayListVersion++;
   }
 
+  /**
+   * Notifies the {@link Scene} that the hit regions of a component changed without the display list having to be rebuilt, for
+   * instance because its targets or selection changed.
+   */
+  public void needsRebuildHitRegions() {
+    myHitRegionsVersion++;
+  }
+
+  /**
+   * Returns the state the hit regions of the components depend on, so that hovering keeps searching the same hit regions until the
+   * components change.
+   */
+  @NotNull
+  private Object getHoverPickerKey(@NotNull SceneContext transform) {
+    return Arrays.asList(myRoot, myDisplayListVersion, myHitRegionsVersion, myFilterType, myHitTarget, transform,
+                         transform.getSwingXDip(0), transform.getSwingYDip(0), transform.getSwingDimensionDip(1000));
+  }
+
   //endregion
   /////////////////////////////////////////////////////////////////////////////
 
@@ -299,6 +299,7 @@ public class SceneComponent {
 
   public void setShowBaseline(boolean value) {
     myShowBaseline = value;
+    myScene.needsRebuildHitRegions();
   }
 
   /**
@@ -501,6 +502,7 @@ public class SceneComponent {
 
   public void setToolLocked(boolean locked) {
     myIsToolLocked = locked;
+    myScene.needsRebuildHitRegions();
   }
 
   public boolean isToolLocked() {
@@ -528,6 +530,7 @@ public class SceneComponent {
       myShowBaseline = false;
     }
     myIsSelected = selected;
+    myScene.needsRebuildHitRegions();
     if (myIsSelected) {
       setDrawState(DrawState.SELECTED);
     }
@@ -660,6 +663,7 @@ public class SceneComponent {
       myCachedTargetList = null;
       myTargets.add(target);
     }
+    myScene.needsRebuildHitRegions();
   }
 
   public void addChild(@NotNull SceneComponent child) {
@@ -839,6 +843,7 @@ public class SceneComponent {
       myCachedTargetList = null;
       myTargets.clear();
     }
+    myScene.needsRebuildHitRegions();
 
     // update the Targets created by parent's TargetProvider
     SceneComponent parent = myParent;
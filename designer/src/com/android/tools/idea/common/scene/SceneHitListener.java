@@ -35,6 +35,8 @@ import java.util.List;
 class SceneHitListener {
   @NotNull private SelectionModel mySelectionModel;
   private ScenePicker myPicker = new ScenePicker();
+  // The state the shapes registered with myPicker were added from, if they may be searched again.
+  @Nullable private Object myPickerKey;
   double myClosestComponentDistance = Double.MAX_VALUE;
   double myClosestTargetDistance = Double.MAX_VALUE;
   ArrayList<SceneComponent> myHitComponents = new ArrayList<>();
@@ -54,12 +56,28 @@ class SceneHitListener {
                    @NotNull SceneComponent root,
                    @AndroidDpCoordinate int x,
                    @AndroidDpCoordinate int y) {
+    find(transform, root, x, y, null);
+  }
+
+  /**
+   * Same as {@link #find(SceneContext, SceneComponent, int, int)}, but the shapes added by the previous call are searched again if it
+   * was given an equal {@code pickerKey}, instead of being added again by the components. The key must capture all the state the
+   * shapes depend on.
+   */
+  public void find(@NotNull SceneContext transform,
+                   @NotNull SceneComponent root,
+                   @AndroidDpCoordinate int x,
+                   @AndroidDpCoordinate int y,
+                   @Nullable Object pickerKey) {
     myHitComponents.clear();
     myHitTargets.clear();
     myClosestComponentDistance = Double.MAX_VALUE;
     myClosestTargetDistance = Double.MAX_VALUE;
-    myPicker.reset();
-    root.addHit(transform, myPicker);
+    if (pickerKey == null || !pickerKey.equals(myPickerKey)) {
+      myPicker.reset();
+      root.addHit(transform, myPicker);
+      myPickerKey = pickerKey;
+    }
     myPicker.find(transform.getSwingXDip(x), transform.getSwingYDip(y));
   }
 
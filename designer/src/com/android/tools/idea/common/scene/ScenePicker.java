@@ -20,6 +20,10 @@ import java.util.function.Consumer;
 
 /**
  * This class provides efficient detection of many objects
+ * <p>
+ * Once enough objects are added, the bounds of the objects are indexed in a uniform grid the first time {@link #find(int, int)} is
+ * called, so that finding the objects at a location only tests the objects in its cell. The index is kept until objects are added or
+ * the picker is reset, so callers that search the same objects repeatedly should keep them registered between searches.
  */
 public class ScenePicker {
   private final static int MAX_DATA_SIZE = 10;
@@ -33,6 +37,24 @@ public class ScenePicker {
   private Object[] mObjects = new Object[INITAL_OBJECT_STORE];
   HitElementListener mHitElementListener;
 
+  // Below this number of objects testing all of them is cheaper than building the index.
+  private final static int MIN_INDEXED_OBJECTS = 64;
+  private final static int MIN_CELL_SIZE = 32;
+  private final static int MAX_GRID_COLUMNS = 128;
+  // Objects covering more cells than this, like the root component, are tested for every location instead.
+  private final static int MAX_CELLS_PER_OBJECT = 16;
+  private boolean mIndexValid = false;
+  private int mGridX;
+  private int mGridY;
+  private int mGridColumns;
+  private int mGridRows;
+  private int mCellSize;
+  // The objects of cell c are mCellObjects[mCellStart[c]] to mCellObjects[mCellStart[c + 1] - 1], in increasing order.
+  private int[] mCellStart = new int[0];
+  private int[] mCellObjects = new int[0];
+  private int[] mLargeObjects = new int[0];
+  private int mLargeObjectCount = 0;
+
   private int mObjectCount = 0;
   private final static int OBJECT_LINE = 0;
   private final static int OBJECT_POINT = 1;
@@ -70,21 +92,155 @@ public class ScenePicker {
    * @param y location y
    */
   public void find(int x, int y) {
+    if (mObjectCount < MIN_INDEXED_OBJECTS) {
+      for (int i = 0; i < mObjectCount; i++) {
+        test(i, x, y);
+      }
+      return;
+    }
+    if (!mIndexValid) {
+      buildIndex();
+    }
+    if (mGridColumns == 0 || x < mGridX || y < mGridY) {
+      return;
+    }
+    int column = (x - mGridX) / mCellSize;
+    int row = (y - mGridY) / mCellSize;
+    if (column >= mGridColumns || row >= mGridRows) {
+      return;
+    }
+
+    // Visit the candidates in the order they were added, as the listener would see them without the index.
+    int cell = row * mGridColumns + column;
+    int i = mCellStart[cell];
+    int end = mCellStart[cell + 1];
+    int j = 0;
+    while (i < end || j < mLargeObjectCount) {
+      if (j == mLargeObjectCount || (i < end && mCellObjects[i] < mLargeObjects[j])) {
+        test(mCellObjects[i++], x, y);
+      }
+      else {
+        test(mLargeObjects[j++], x, y);
+      }
+    }
+  }
+
+  private void test(int i, int x, int y) {
+    int p = i * 4;
+    int x1 = mRect[p++];
+    int y1 = mRect[p++];
+    int x2 = mRect[p++];
+    int y2 = mRect[p];
+    if (inRect(x, y, x1, y1, x2, y2)) {
+      SelectionEngine selector = myEngines[mTypes[i]];
+      if (selector.inRange(i, x, y)) {
+        mHitElementListener.over(mObjects[i], selector.distance());
+      }
+    }
+  }
+
+  /**
+   * Builds the grid over the bounds of all the objects. Cells are at least {@link #MIN_CELL_SIZE} wide, and larger if needed to keep
+   * the grid within {@link #MAX_GRID_COLUMNS} columns and rows.
+   */
+  private void buildIndex() {
+    mIndexValid = true;
+    mGridColumns = 0;
+    mGridRows = 0;
+    mLargeObjectCount = 0;
+
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
     for (int i = 0; i < mObjectCount; i++) {
       int p = i * 4;
-      int x1 = mRect[p++];
-      int y1 = mRect[p++];
-      int x2 = mRect[p++];
-      int y2 = mRect[p];
-      if (inRect(x, y, x1, y1, x2, y2)) {
-        SelectionEngine selector = myEngines[mTypes[i]];
-        if (selector.inRange(i, x, y)) {
-          mHitElementListener.over(mObjects[i], selector.distance());
+      if (isEmptyRect(p)) {
+        continue;
+      }
+      minX = Math.min(minX, mRect[p]);
+      minY = Math.min(minY, mRect[p + 1]);
+      maxX = Math.max(maxX, mRect[p + 2]);
+      maxY = Math.max(maxY, mRect[p + 3]);
+    }
+    if (minX > maxX) {
+      return; // Nothing can be hit
+    }
+
+    long extent = Math.max((long)maxX - minX, (long)maxY - minY) + 1;
+    mCellSize = (int)Math.max(MIN_CELL_SIZE, (extent + MAX_GRID_COLUMNS - 1) / MAX_GRID_COLUMNS);
+    mGridX = minX;
+    mGridY = minY;
+    mGridColumns = (int)(((long)maxX - minX) / mCellSize) + 1;
+    mGridRows = (int)(((long)maxY - minY) / mCellSize) + 1;
+
+    // Count the objects of each cell, turn the counts into start offsets, then fill the cells in object order.
+    int cellCount = mGridColumns * mGridRows;
+    if (mCellStart.length < cellCount + 1) {
+      mCellStart = new int[cellCount + 1];
+    }
+    else {
+      Arrays.fill(mCellStart, 0, cellCount + 1, 0);
+    }
+    if (mLargeObjects.length < mObjectCount) {
+      mLargeObjects = new int[mTypes.length];
+    }
+    int entries = 0;
+    for (int i = 0; i < mObjectCount; i++) {
+      int p = i * 4;
+      if (isEmptyRect(p)) {
+        continue;
+      }
+      int column1 = (mRect[p] - mGridX) / mCellSize;
+      int row1 = (mRect[p + 1] - mGridY) / mCellSize;
+      int column2 = (mRect[p + 2] - mGridX) / mCellSize;
+      int row2 = (mRect[p + 3] - mGridY) / mCellSize;
+      if ((column2 - column1 + 1) * (row2 - row1 + 1) > MAX_CELLS_PER_OBJECT) {
+        mLargeObjects[mLargeObjectCount++] = i;
+        continue;
+      }
+      for (int row = row1; row <= row2; row++) {
+        for (int column = column1; column <= column2; column++) {
+          mCellStart[row * mGridColumns + column + 1]++;
+          entries++;
+        }
+      }
+    }
+    for (int cell = 0; cell < cellCount; cell++) {
+      mCellStart[cell + 1] += mCellStart[cell];
+    }
+    if (mCellObjects.length < entries) {
+      mCellObjects = new int[entries];
+    }
+    int[] next = Arrays.copyOf(mCellStart, cellCount);
+    for (int i = 0, large = 0; i < mObjectCount; i++) {
+      if (large < mLargeObjectCount && mLargeObjects[large] == i) {
+        large++;
+        continue;
+      }
+      int p = i * 4;
+      if (isEmptyRect(p)) {
+        continue;
+      }
+      int column1 = (mRect[p] - mGridX) / mCellSize;
+      int row1 = (mRect[p + 1] - mGridY) / mCellSize;
+      int column2 = (mRect[p + 2] - mGridX) / mCellSize;
+      int row2 = (mRect[p + 3] - mGridY) / mCellSize;
+      for (int row = row1; row <= row2; row++) {
+        for (int column = column1; column <= column2; column++) {
+          mCellObjects[next[row * mGridColumns + column]++] = i;
         }
       }
     }
   }
 
+  /**
+   * Returns true if the bounds at offset p of {@link #mRect} contain no location, so that the object can never be found.
+   */
+  private boolean isEmptyRect(int p) {
+    return mRect[p] > mRect[p + 2] || mRect[p + 1] > mRect[p + 3];
+  }
+
   /**
    * set the listener to be notified of the objects in range
    *
@@ -124,6 +280,7 @@ public class ScenePicker {
   public void reset() {
     mObjectCount = 0;
     mObjectDataUsed = 0;
+    mIndexValid = false;
     Arrays.fill(mObjects, null);// delete references
   }
 
@@ -229,6 +386,7 @@ public class ScenePicker {
     protected int mDataOffset;
 
     protected void addRect(int x1, int y1, int x2, int y2) {
+      mIndexValid = false;
       int off = mObjectCount * 4;
       mRect[off++] = x1;
       mRect[off++] = y1;
@@ -46,6 +46,7 @@ import com.android.tools.idea.common.type.DesignerEditorFileType;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
 import com.android.tools.idea.rendering.Locale;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderResult;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderSettings;
@@ -884,6 +885,8 @@ public class LayoutlibSceneManager extends SceneManager {
   @VisibleForTesting
   @NotNull
   protected RenderService.RenderTaskBuilder setupRenderTaskBuilder(@NotNull RenderService.RenderTaskBuilder taskBuilder) {
+    // The editor is interactive, so its renders run before pending background renders such as palette previews and thumbnails.
+    taskBuilder.withPriority(RenderExecutor.Priority.HIGH);
     RenderSettings settings = myRenderSettingsProvider.get();
     if (!settings.getUseLiveRendering()) {
       // When we are not using live rendering, we do not need the pool
@@ -64,6 +64,7 @@ class DiagnosticsLayer(val surface: DesignSurface) : Layer() {
     val freeMemPct = runtime.freeMemory().toDouble() / runtime.totalMemory() * 100
     val lastRenderMs = diagnostics.lastRenders().takeLast(1).firstOrNull() ?: -1
     val poolStats = RenderService.getInstance(surface.project).sharedImagePool.stats
+    val renderExecutor = RenderService.getRenderExecutor()
 
     return """
       |General
@@ -75,6 +76,11 @@ class DiagnosticsLayer(val surface: DesignSurface) : Layer() {
       | Allocated     ${(poolStats?.totalBytesAllocated() ?: -1) / MB}MB
       | In use        ${(poolStats?.totalBytesInUse() ?: -1)  / MB}MB
       | Free          ${((poolStats?.totalBytesAllocated() ?: -1) - (poolStats?.totalBytesInUse() ?: 0)) / MB}MB
+      |
+      |Render thread
+      | Queued        ${renderExecutor.queueSize}
+      | Avg wait      ${PCT_FORMAT.format(renderExecutor.averageWaitTimeMs)}ms (max ${renderExecutor.maxWaitTimeMs}ms)
+      | Avg run       ${PCT_FORMAT.format(renderExecutor.averageRunTimeMs)}ms
     """.trimMargin()
   }
 
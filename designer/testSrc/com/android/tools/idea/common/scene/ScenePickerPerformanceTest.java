@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.scene;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Measures the time it takes {@link ScenePicker} to find the shapes under a point among 10k shapes. Correctness is checked by
+ * {@link ScenePickerTest#testFindManyShapes()}.
+ */
+public class ScenePickerPerformanceTest extends TestCase {
+  private static final int SHAPE_COUNT = 10000;
+  private static final int FIND_COUNT = 100000;
+
+  public void testFindAmongManyShapes() {
+    Random random = new Random(42);
+    ScenePicker scenePicker = new ScenePicker();
+    scenePicker.reset();
+    scenePicker.addRect(0, 0, 0, 0, 4000, 4000);
+    for (int i = 1; i <= SHAPE_COUNT; i++) {
+      int x = random.nextInt(4000);
+      int y = random.nextInt(4000);
+      int size = 1 + random.nextInt(60);
+      switch (i % 4) {
+        case 0:
+          scenePicker.addRect(i, 2, x, y, x + size, y + size);
+          break;
+        case 1:
+          scenePicker.addPoint(i, 5, x, y);
+          break;
+        case 2:
+          scenePicker.addCircle(i, 2, x, y, size);
+          break;
+        default:
+          scenePicker.addLine(i, 3, x, y, x + size, y + size / 2, 1);
+          break;
+      }
+    }
+
+    int[] found = new int[1];
+    scenePicker.setSelectListener((obj, dist) -> found[0]++);
+    long start = System.nanoTime();
+    for (int i = 0; i < FIND_COUNT; i++) {
+      scenePicker.find(random.nextInt(4000), random.nextInt(4000));
+    }
+    long elapsed = System.nanoTime() - start;
+    // Every point is at least in the background rectangle
+    assertTrue(found[0] >= FIND_COUNT);
+    System.out.println("ScenePicker: " + (elapsed / FIND_COUNT) + " ns per find among " + (SHAPE_COUNT + 1) + " shapes");
+  }
+}
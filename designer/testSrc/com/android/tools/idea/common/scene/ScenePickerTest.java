@@ -19,6 +19,9 @@ import junit.framework.TestCase;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Test ScenePicker
@@ -378,4 +381,58 @@ public class ScenePickerTest extends TestCase {
       scenePicker.find((int)x, (int)y);
     }
   }
+
+  public void testFindManyShapes() {
+    Random random = new Random(42);
+    ScenePicker scenePicker = new ScenePicker();
+    scenePicker.reset();
+    // Every shape on its own, to check the picker against
+    ScenePicker[] shapes = new ScenePicker[10001];
+    for (int i = 0; i < shapes.length; i++) {
+      shapes[i] = new ScenePicker();
+    }
+    shapes[0].addRect(0, 0, 0, 0, 4000, 4000);
+    scenePicker.addRect(0, 0, 0, 0, 4000, 4000);
+    for (int i = 1; i < shapes.length; i++) {
+      int x = random.nextInt(4000);
+      int y = random.nextInt(4000);
+      int size = 1 + random.nextInt(60);
+      switch (i % 4) {
+        case 0:
+          shapes[i].addRect(i, 2, x, y, x + size, y + size);
+          scenePicker.addRect(i, 2, x, y, x + size, y + size);
+          break;
+        case 1:
+          shapes[i].addPoint(i, 5, x, y);
+          scenePicker.addPoint(i, 5, x, y);
+          break;
+        case 2:
+          shapes[i].addCircle(i, 2, x, y, size);
+          scenePicker.addCircle(i, 2, x, y, size);
+          break;
+        default:
+          shapes[i].addLine(i, 3, x, y, x + size, y + size / 2, 1);
+          scenePicker.addLine(i, 3, x, y, x + size, y + size / 2, 1);
+          break;
+      }
+    }
+
+    List<Object> found = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> found.add(obj));
+    List<Object> expected = new ArrayList<>();
+    for (ScenePicker shape : shapes) {
+      shape.setSelectListener((obj, dist) -> expected.add(obj));
+    }
+    for (int i = 0; i < 200; i++) {
+      int x = random.nextInt(4200) - 100;
+      int y = random.nextInt(4200) - 100;
+      found.clear();
+      expected.clear();
+      scenePicker.find(x, y);
+      for (ScenePicker shape : shapes) {
+        shape.find(x, y);
+      }
+      assertEquals(expected, found);
+    }
+  }
 }
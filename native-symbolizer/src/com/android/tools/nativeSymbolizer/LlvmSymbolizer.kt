@@ -15,9 +15,14 @@
  */
 package com.android.tools.nativeSymbolizer
 
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.intellij.openapi.Disposable
+import com.intellij.openapi.util.SystemInfo
 import java.io.*
 import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Implementation of NativeSymbolizer that uses llvm-symbolizer.
@@ -34,103 +39,140 @@ import java.util.concurrent.*
  * /usr/local/google/home/ezemtsov/projects/android-apps/sum/app/src/main/cpp/native-lib.cpp:36:7
  *
  * More info about llvm-symbolizer: https://llvm.org/docs/CommandGuide/llvm-symbolizer.html
+ *
+ * Requests are symbolized in batches: duplicates are resolved once, the remaining offsets are split between a small pool of
+ * llvm-symbolizer processes, and each process gets several requests at a time rather than one per round trip. Resolved offsets are
+ * cached in memory by symbol file, so they are not sent to llvm-symbolizer again as long as the symbol file doesn't change.
  */
 class LlvmSymbolizer(private val symbolizerExe: String,
                      private val symLocator: SymbolFilesLocator,
-                     private val timeoutMsc: Long = 5000) : NativeSymbolizer {
+                     private val timeoutMsc: Long = 5000,
+                     private val poolSize: Int = DEFAULT_POOL_SIZE) : NativeSymbolizer {
 
-  private var procHolder : ProcessHolder? = null
-  private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+  private val procHolders = arrayOfNulls<ProcessHolder>(poolSize)
+  // Created on demand, and shut down by stop() along with the processes.
+  private var executor : ExecutorService? = null
+  private val symbolCache : Cache<SymbolKey, SymbolInfo> = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SYMBOLS).build()
 
   override fun symbolize(abiArch: String, module: String, offset: Long): Symbol? {
-    val symFiles = symLocator.findSymbolFiles(abiArch, module)
+    return symbolize(abiArch, listOf(SymbolRequest(module, offset)))[0]
+  }
 
-    for (symFile in symFiles) {
-      val request = formatRequest(symFile, offset)
+  @Synchronized
+  override fun symbolize(abiArch: String, requests: List<SymbolRequest>): List<Symbol?> {
+    val result = arrayOfNulls<Symbol>(requests.size)
+    // Indices in result of each distinct request that is not symbolized yet.
+    val pending = LinkedHashMap<SymbolRequest, MutableList<Int>>()
+    requests.forEachIndexed { i, request -> pending.getOrPut(request) { mutableListOf() }.add(i) }
 
-      val holder = getProcHolder()
-      val future = executor.submit( Callable<List<String>> {
-        holder.stdin.write(request)
-        holder.stdin.flush()
+    // Like for a single request, the symbol files of a module are tried in order until one of them has a symbol for the offset.
+    val moduleSymFiles = HashMap<String, List<SymbolFile>>()
+    var symFileIndex = 0
+    while (pending.isNotEmpty()) {
+      val keys = HashMap<SymbolRequest, SymbolKey>()
+      for (request in pending.keys) {
+        val symFiles = moduleSymFiles.getOrPut(request.module) {
+          symLocator.findSymbolFiles(abiArch, request.module).map { SymbolFile(it, it.lastModified(), it.length()) }
+        }
+        if (symFileIndex < symFiles.size) {
+          keys[request] = SymbolKey(symFiles[symFileIndex], request.offset)
+        }
+      }
+      if (keys.isEmpty()) {
+        break
+      }
 
-        val response: MutableList<String> = mutableListOf()
-        var responseLine: String?
-        while (true) {
-          responseLine = holder.stdout.readLine()
-          if (responseLine == null || responseLine.isEmpty()) {
-            break
-          }
-          response.add(responseLine)
+      val symbols = HashMap<SymbolKey, SymbolInfo>()
+      for (key in keys.values) {
+        val symbol = symbolCache.getIfPresent(key)
+        if (symbol != null) {
+          symbols[key] = symbol
         }
-        response
-      })
-      val response : List<String>
-      try {
-        response = future.get(timeoutMsc, TimeUnit.MILLISECONDS)
-      } catch (e: TimeoutException) {
-        getLogger().warn("llvm-symbolizer timed out", e)
-        stop()
-        continue
-      } catch (e: ExecutionException) {
-        getLogger().warn("llvm-symbolizer communication failed", e)
-        stop()
-        continue
       }
+      val resolved = runQueries(keys.values.filter { !symbols.containsKey(it) }.distinct())
+      symbolCache.putAll(resolved)
+      symbols.putAll(resolved)
 
-      val result = parseResponse(response, module)
-      if (result != null)
-        return result
+      for ((request, key) in keys) {
+        val symbol = symbols[key]
+        if (symbol != null && symbol != NO_SYMBOL) {
+          val moduleSymbol = Symbol(symbol.name, request.module, symbol.sourceFile, symbol.lineNumber)
+          pending.remove(request)!!.forEach { result[it] = moduleSymbol }
+        }
+      }
+      symFileIndex++
     }
-
-    return null
+    return result.asList()
   }
 
-  private fun getProcHolder() : ProcessHolder {
-    var holder = procHolder
-    if (holder == null || !holder.process.isAlive) {
-      start()
-      holder = procHolder!! // procHolder must't be null after start()
+  /**
+   * Sends the given requests to llvm-symbolizer, split between up to [poolSize] processes, and returns the symbols of the requests that
+   * got a response. Requests that are not in the result failed, and are not cached so that they are tried again later.
+   */
+  private fun runQueries(keys: List<SymbolKey>): Map<SymbolKey, SymbolInfo> {
+    if (keys.isEmpty()) {
+      return emptyMap()
     }
-    return holder
-  }
+    // Sorted so that each process has to load as few symbol files as possible.
+    val sortedKeys = keys.sortedWith(compareBy<SymbolKey>({ it.symFile.file.path }, { it.offset }))
+    val processCount = minOf(poolSize, (sortedKeys.size + MIN_BATCH_SIZE - 1) / MIN_BATCH_SIZE)
+    val batchSize = (sortedKeys.size + processCount - 1) / processCount
+    val batches = sortedKeys.chunked(batchSize).mapIndexed { i, batchKeys -> Batch(getProcHolder(i), batchKeys) }
+    val pool = executor ?: Executors.newFixedThreadPool(poolSize, THREAD_FACTORY).also { executor = it }
+    val futures = batches.map { batch -> pool.submit(Callable<Unit> { batch.run() }) }
 
-  private fun formatRequest(symFile: File, offset: Long): String {
-    val escapedPath = symFile.path.replace("\\", "\\\\").replace("\"", "\\\"")
-    return java.lang.String.format("\"%s\" 0x%x\n", escapedPath, offset)
+    val result = HashMap<SymbolKey, SymbolInfo>()
+    for ((i, batch) in batches.withIndex()) {
+      if (!await(futures[i], batch)) {
+        stop(i)
+      }
+      // Keeps the responses received before a failure.
+      val responseCount = batch.responseCount.get()
+      for (j in 0 until responseCount) {
+        result[batch.keys[j]] = batch.responses[j]!!
+      }
+    }
+    return result
   }
 
-  private fun parseResponse(response: List<String>, module: String): Symbol? {
-    if (response.isEmpty())
-      return null
-
-    val name = response.first().trim()
-    if (name.isEmpty() || name == "??") {
-      return null
+  /**
+   * Waits for the batch to complete, as long as llvm-symbolizer responds to a request at least every [timeoutMsc].
+   * @return whether the batch completed
+   */
+  private fun await(future: Future<Unit>, batch: Batch): Boolean {
+    var responseCount = 0
+    while (true) {
+      try {
+        future.get(timeoutMsc, TimeUnit.MILLISECONDS)
+        return true
+      } catch (e: TimeoutException) {
+        val newResponseCount = batch.responseCount.get()
+        if (newResponseCount == responseCount) {
+          getLogger().warn("llvm-symbolizer timed out", e)
+          return false
+        }
+        responseCount = newResponseCount
+      } catch (e: ExecutionException) {
+        getLogger().warn("llvm-symbolizer communication failed", e)
+        return false
+      }
     }
-    if (response.size < 2)
-      return Symbol(name, module)
-
-    // Location line looks like this: <path to source file>:<line number>:<column number>
-    val locationLine = response[1].trim()
-    val indexBeforeColumn = locationLine.lastIndexOf(':')
-    if (indexBeforeColumn < 2)
-      return Symbol(name, module)
-
-    val indexBeforeLine = locationLine.lastIndexOf(':', indexBeforeColumn - 1)
-    if (indexBeforeColumn < 1)
-      return Symbol(name, module)
-
-    val sourceFile = locationLine.substring(0, indexBeforeLine)
-    val lineNumber = locationLine.substring(indexBeforeLine + 1, indexBeforeColumn).toIntOrNull() ?: 0
-
-    return Symbol(name, module, sourceFile, lineNumber)
   }
 
-  private fun start() {
-    if (procHolder != null)
-      stop()
+  private fun getProcHolder(index: Int) : ProcessHolder {
+    var holder = procHolders[index]
+    if (holder == null || !holder.process.isAlive) {
+      holder?.dispose()
+      holder = start()
+      procHolders[index] = holder
+    }
+    return holder
+  }
 
+  private fun start(): ProcessHolder {
+    // Nothing reads llvm-symbolizer's warnings, so they must not fill up a pipe and block it.
     val builder = ProcessBuilder(symbolizerExe)
+      .redirectError(ProcessBuilder.Redirect.to(File(if (SystemInfo.isWindows) "NUL" else "/dev/null")))
     val process = builder.start()
     if (!process.isAlive) {
       throw IOException("Symbolizer process is not alive. Executable: $symbolizerExe")
@@ -138,12 +180,53 @@ class LlvmSymbolizer(private val symbolizerExe: String,
 
     val stdin = OutputStreamWriter(process.outputStream, Charsets.UTF_8)
     val stdout = BufferedReader(InputStreamReader(process.inputStream, Charsets.UTF_8))
-    procHolder = ProcessHolder(process, stdout, stdin)
+    return ProcessHolder(process, stdout, stdin)
   }
 
+  private fun stop(index: Int) {
+    procHolders[index]?.dispose()
+    procHolders[index] = null
+  }
+
+  @Synchronized
   override fun stop() {
-    procHolder?.dispose()
-    procHolder = null
+    for (i in procHolders.indices) {
+      stop(i)
+    }
+    executor?.shutdownNow()
+    executor = null
+  }
+
+  /**
+   * Requests sent to one llvm-symbolizer process. [run] writes requests ahead of the responses it reads, and [responses] up to
+   * [responseCount] can be read while it runs.
+   */
+  private class Batch(private val holder: ProcessHolder, val keys: List<SymbolKey>) {
+    val responses = arrayOfNulls<SymbolInfo>(keys.size)
+    val responseCount = AtomicInteger()
+
+    fun run() {
+      var sent = 0
+      for (i in keys.indices) {
+        // At most PIPELINE_DEPTH requests are in flight, so that neither pipe fills up while the other end waits for it.
+        while (sent < keys.size && sent - i < PIPELINE_DEPTH) {
+          holder.stdin.write(formatRequest(keys[sent]))
+          sent++
+        }
+        holder.stdin.flush()
+
+        val response: MutableList<String> = mutableListOf()
+        while (true) {
+          val responseLine = holder.stdout.readLine() ?: throw IOException("llvm-symbolizer exited")
+          if (responseLine.isEmpty()) {
+            break
+          }
+          response.add(responseLine)
+        }
+        responses[i] = parseResponse(response) ?: NO_SYMBOL
+        responseCount.incrementAndGet()
+      }
+    }
   }
 
   private class ProcessHolder(val process: Process,
@@ -153,4 +236,59 @@ class LlvmSymbolizer(private val symbolizerExe: String,
       process.destroy()
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Identifies the content of a symbol file, so that cached symbols are dropped when the file is rebuilt.
+   */
+  private data class SymbolFile(val file: File, val lastModified: Long, val length: Long)
+
+  private data class SymbolKey(val symFile: SymbolFile, val offset: Long)
+
+  /**
+   * A symbol without the device module it was requested for.
+   */
+  private data class SymbolInfo(val name: String, val sourceFile: String = "", val lineNumber: Int = 0)
+
+  private companion object {
+    val DEFAULT_POOL_SIZE = minOf(4, Runtime.getRuntime().availableProcessors())
+    val THREAD_FACTORY: ThreadFactory = ThreadFactoryBuilder().setNameFormat("llvm-symbolizer-%d").setDaemon(true).build()
+    // Requests are split between more processes only if each one gets at least this many.
+    const val MIN_BATCH_SIZE = 64
+    const val PIPELINE_DEPTH = 32
+    const val MAX_CACHED_SYMBOLS = 200_000L
+    // Cached for offsets that a symbol file has no symbol for.
+    val NO_SYMBOL = SymbolInfo("")
+
+    fun formatRequest(key: SymbolKey): String {
+      val escapedPath = key.symFile.file.path.replace("\\", "\\\\").replace("\"", "\\\"")
+      return java.lang.String.format("\"%s\" 0x%x\n", escapedPath, key.offset)
+    }
+
+    fun parseResponse(response: List<String>): SymbolInfo? {
+      if (response.isEmpty())
+        return null
+
+      val name = response.first().trim()
+      if (name.isEmpty() || name == "??") {
+        return null
+      }
+      if (response.size < 2)
+        return SymbolInfo(name)
+
+      // Location line looks like this: <path to source file>:<line number>:<column number>
+      val locationLine = response[1].trim()
+      val indexBeforeColumn = locationLine.lastIndexOf(':')
+      if (indexBeforeColumn < 2)
+        return SymbolInfo(name)
+
+      val indexBeforeLine = locationLine.lastIndexOf(':', indexBeforeColumn - 1)
+      if (indexBeforeColumn < 1)
+        return SymbolInfo(name)
+
+      val sourceFile = locationLine.substring(0, indexBeforeLine)
+      val lineNumber = locationLine.substring(indexBeforeLine + 1, indexBeforeColumn).toIntOrNull() ?: 0
+
+      return SymbolInfo(name, sourceFile, lineNumber)
+    }
+  }
+}
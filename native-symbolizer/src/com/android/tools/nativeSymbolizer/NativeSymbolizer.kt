@@ -25,6 +25,11 @@ import java.nio.file.Paths
 
 data class Symbol(val name: String, val module: String, val sourceFile: String = "", val lineNumber: Int = 0)
 
+/**
+ * An offset in a native module to symbolize, see [NativeSymbolizer.symbolize].
+ */
+data class SymbolRequest(val module: String, val offset: Long)
+
 /**
  * Components that can fetch information about native symbols by a module and an offset.
  */
@@ -39,6 +44,17 @@ interface NativeSymbolizer {
    */
   @Throws(IOException::class)
   fun symbolize(abiArch: String, module: String, offset: Long): Symbol?
+
+  /**
+   * Obtains information about many functions of modules of the same CPU architecture at once, which is much faster than symbolizing
+   * them one by one.
+   * @param abiArch - CPU architecture of the given modules (e.g x86, arm, arm64 and so on)
+   * @param requests - modules and offsets that need to be symbolized, possibly with duplicates
+   * @return symbol info for each request, in the order of [requests], or null where it cannot be found
+   */
+  @Throws(IOException::class)
+  fun symbolize(abiArch: String, requests: List<SymbolRequest>): List<Symbol?>
+
   fun stop()
 }
 
@@ -27,30 +27,49 @@ import com.intellij.openapi.module.ModuleManager
 import com.intellij.openapi.project.Project
 import java.io.File
 import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Given a map of possible symbols locations finds symbol files
  * for a (device module + CPU arch) pairs.
+ *
+ * The names of the symbol files in each directory are cached, and listed again only when
+ * the modification time of the directory changes, i.e. when a file was added or removed.
  */
 class SymbolFilesLocator(private val cpuToSymbolDirs: Map<String, Set<File>>) {
+  private val dirListings = ConcurrentHashMap<File, DirListing>()
 
   fun findSymbolFiles(cpuArch: String, module: String): List<File> {
-    // TODO (ezemetsov): Add a cache
     // Just look in all dirs from the map and find files with the same
     // basename as a given device module.
-    val symDirs = cpuToSymbolDirs.getOrDefault(cpuArch, setOf<File>()).toList()
+    val symDirs = cpuToSymbolDirs.getOrDefault(cpuArch, setOf<File>())
     val baseModuleName = File(File(module).name).nameWithoutExtension
     val symNameCandidates = arrayListOf(baseModuleName + ".so", baseModuleName + ".dwo")
     val result = mutableListOf<File>()
     for (dir in symDirs) {
-      val files = dir.listFiles({ _, name -> symNameCandidates.contains(name) })
-      // If dir for some reason doesn't exist any more files will be null
-      if (files != null) {
-        result.addAll(files)
+      val names = listFileNames(dir)
+      for (name in symNameCandidates) {
+        if (names.contains(name)) {
+          result.add(File(dir, name))
+        }
       }
     }
     return result
   }
+
+  private fun listFileNames(dir: File): Set<String> {
+    val lastModified = dir.lastModified()
+    val listing = dirListings[dir]
+    if (listing != null && listing.lastModified == lastModified) {
+      return listing.names
+    }
+    // If dir for some reason doesn't exist any more the list will be null
+    val names = dir.list()?.toHashSet() ?: emptySet<String>()
+    dirListings[dir] = DirListing(lastModified, names)
+    return names
+  }
+
+  private class DirListing(val lastModified: Long, val names: Set<String>)
 }
 
 /**
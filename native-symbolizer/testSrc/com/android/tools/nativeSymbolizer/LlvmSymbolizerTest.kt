@@ -63,6 +63,26 @@ class LlvmSymbolizerTest {
     }
   }
 
+  @Test
+  fun testSymbolizeBatch() {
+    val symbolizer = createSymbolizer()
+    for (arch in architectures) {
+      val expectedSymbolsFile = Paths.get(testDataDir, arch, EXPECTED_SYMBOLS_FILE_NAME).toFile()
+      val module = "/data/app/com.someapp.name-abcd09876abds==/lib/arm64/" + LIB_FILE_NAME
+      // Each offset twice, and offsets that don't resolve, to check that the result matches the requests.
+      val requests = expectedSymbolsFile.readLines().map { SymbolRequest(module, it.split('|')[0].toLong(16) + 1) }
+      val allRequests = requests + SymbolRequest("/p/libnotexists.so", 12345) + requests + SymbolRequest(module, 0xffffffffff)
+
+      val symbols = symbolizer.symbolize(arch, allRequests)
+      Assert.assertEquals(allRequests.size, symbols.size)
+      for ((i, request) in allRequests.withIndex()) {
+        Assert.assertEquals(symbolizer.symbolize(arch, request.module, request.offset), symbols[i])
+      }
+      Assert.assertNull(symbols[requests.size])
+      Assert.assertNotNull(symbols[0])
+    }
+  }
+
   @Test
   fun testSymbolizeBinariesBuiltOnWindows() {
     val arch = "arm64"
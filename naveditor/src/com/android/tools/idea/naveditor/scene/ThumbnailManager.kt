@@ -19,6 +19,7 @@ import com.google.common.annotations.VisibleForTesting
 import com.android.annotations.concurrency.GuardedBy
 import com.android.tools.adtui.ImageUtils
 import com.android.tools.idea.configurations.Configuration
+import com.android.tools.idea.rendering.RenderExecutor
 import com.android.tools.idea.rendering.RenderResult
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
@@ -248,6 +249,7 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
                                 renderService: RenderService): RenderTask? {
     val task = renderService.taskBuilder(facet, configuration)
       .withPsiFile(file)
+      .withPriority(RenderExecutor.Priority.LOW)
       .buildSynchronously()
     task?.setDecorations(false)
     return task
@@ -15,41 +15,92 @@
  */
 package com.android.tools.idea.observable;
 
-import com.google.common.collect.ImmutableList;
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Arrays;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Implementation for {@link ObservableValue}, providing the logic for adding/removing listeners.
+ * <p/>
+ * Listeners are kept in copy-on-write arrays, so they can be added and removed from any thread, and notifying them doesn't
+ * allocate. Invalidations are propagated to dependent values (such as {@link com.android.tools.idea.observable.expressions.Expression}s)
+ * in topological order, so each listener is notified once per change even if it depends on the changed value through several
+ * paths.
  */
 public abstract class AbstractObservableValue<T> implements ObservableValue<T> {
-  private final List<InvalidationListener> myListeners = new ArrayList<>(0);
-  private final List<WeakReference<InvalidationListener>> myWeakListeners = new ArrayList<>(0);
+  private static final InvalidationListener[] NO_LISTENERS = new InvalidationListener[0];
+  @SuppressWarnings("unchecked")
+  private static final WeakReference<InvalidationListener>[] NO_WEAK_LISTENERS = new WeakReference[0];
+
+  private volatile InvalidationListener[] myListeners = NO_LISTENERS;
+  private volatile WeakReference<InvalidationListener>[] myWeakListeners = NO_WEAK_LISTENERS;
   private boolean myNotificationsEnabled = true;
+  /**
+   * The id of the last propagation that visited this value, see {@link Propagation}.
+   */
+  private long myVisitedBy;
 
   @Override
   public final void addListener(@NotNull InvalidationListener listener) {
-    myListeners.add(listener);
+    synchronized (this) {
+      InvalidationListener[] listeners = Arrays.copyOf(myListeners, myListeners.length + 1);
+      listeners[listeners.length - 1] = listener;
+      myListeners = listeners;
+    }
   }
 
   @Override
   public final void removeListener(@NotNull InvalidationListener listener) {
-    myListeners.remove(listener);
-    Iterator<WeakReference<InvalidationListener>> it = myWeakListeners.iterator();
-    while (it.hasNext()) {
-      InvalidationListener l = it.next().get();
-      if (l == null || l == listener) {
-        it.remove();
+    synchronized (this) {
+      InvalidationListener[] listeners = myListeners;
+      for (int i = 0; i < listeners.length; i++) {
+        if (listeners[i] == listener) {
+          InvalidationListener[] remaining = new InvalidationListener[listeners.length - 1];
+          System.arraycopy(listeners, 0, remaining, 0, i);
+          System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+          myListeners = remaining;
+          break;
+        }
       }
+      removeWeakListeners(listener);
     }
   }
 
   @Override
   public final void addWeakListener(@NotNull InvalidationListener listener) {
-    myWeakListeners.add(new WeakReference<>(listener));
+    synchronized (this) {
+      WeakReference<InvalidationListener>[] weakListeners = Arrays.copyOf(myWeakListeners, myWeakListeners.length + 1);
+      weakListeners[weakListeners.length - 1] = new WeakReference<>(listener);
+      myWeakListeners = weakListeners;
+    }
+  }
+
+  /**
+   * Removes the weak listeners that are {@code listener} or that were garbage collected.
+   */
+  private void removeWeakListeners(@Nullable InvalidationListener listener) {
+    WeakReference<InvalidationListener>[] weakListeners = myWeakListeners;
+    int count = 0;
+    for (WeakReference<InvalidationListener> reference : weakListeners) {
+      InvalidationListener l = reference.get();
+      if (l != null && l != listener) {
+        count++;
+      }
+    }
+    if (count == weakListeners.length) {
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    WeakReference<InvalidationListener>[] remaining = count == 0 ? NO_WEAK_LISTENERS : new WeakReference[count];
+    int i = 0;
+    for (WeakReference<InvalidationListener> reference : weakListeners) {
+      InvalidationListener l = reference.get();
+      if (l != null && l != listener) {
+        remaining[i++] = reference;
+      }
+    }
+    myWeakListeners = remaining;
   }
 
   /**
@@ -61,34 +112,108 @@ public abstract class AbstractObservableValue<T> implements ObservableValue<T> {
       return;
     }
 
-    ImmutableList<InvalidationListener> listenersSnapshot = ImmutableList.copyOf(myListeners);
-    ImmutableList<WeakReference<InvalidationListener>> weakListenersSnapshot = ImmutableList.copyOf(myWeakListeners);
+    Propagation.get().propagate(this);
+  }
+
+  /**
+   * Call to enable / disable the firing of listeners. Child classes may use this (with caution!)
+   * to prevent multiple listeners being fired for the same invalidation event.
+   */
+  protected final void setNotificationsEnabled(boolean enabled) {
+    myNotificationsEnabled = enabled;
+  }
 
-    for (InvalidationListener listener : listenersSnapshot) {
-      listener.onInvalidated();
+  /**
+   * Called when a value this one depends on, through a {@link Dependency}, is invalidated, before any listener is notified.
+   * Child classes that cache their value should drop it here.
+   */
+  protected void onDependencyInvalidated() {
+  }
+
+  /**
+   * Returns the id of the batch of updates in progress on this thread, or 0 if there is none. A batch is in progress while
+   * listeners are notified of an invalidation, and while a {@link BatchInvoker} runs its updates; values derived from other
+   * values may cache what they computed until the end of the batch, or until {@link #onDependencyInvalidated()} is called.
+   */
+  protected static long getCurrentBatch() {
+    return Propagation.get().getBatch();
+  }
+
+  /**
+   * Invalidates the dependents of this value that were not yet visited by the given propagation, depth first, and adds this
+   * value to the propagation after its dependents, so that the reverse order of the propagation is a topological order.
+   */
+  final void visit(@NotNull Propagation propagation, long propagationId) {
+    myVisitedBy = propagationId;
+    for (InvalidationListener listener : myListeners) {
+      visitDependent(listener, propagation, propagationId);
+    }
+    for (WeakReference<InvalidationListener> reference : myWeakListeners) {
+      visitDependent(reference.get(), propagation, propagationId);
+    }
+    propagation.addVisited(this);
+  }
+
+  private static void visitDependent(@Nullable InvalidationListener listener, @NotNull Propagation propagation, long propagationId) {
+    if (listener instanceof Dependency) {
+      AbstractObservableValue<?> dependent = ((Dependency)listener).myDependent;
+      if (dependent.myVisitedBy != propagationId) {
+        dependent.onDependencyInvalidated();
+        if (dependent.myNotificationsEnabled) {
+          dependent.visit(propagation, propagationId);
+        }
+      }
     }
+  }
 
-    for (WeakReference<InvalidationListener> reference : weakListenersSnapshot) {
-      InvalidationListener listener = reference.get();
-      if (listener != null) {
+  /**
+   * Notifies the listeners of this value, other than its dependents, which are notified by the propagation itself.
+   */
+  final void fireListeners() {
+    for (InvalidationListener listener : myListeners) {
+      if (!(listener instanceof Dependency)) {
         listener.onInvalidated();
       }
     }
 
-    Iterator<WeakReference<InvalidationListener>> it = myWeakListeners.iterator();
-    while (it.hasNext()) {
-      InvalidationListener listener = it.next().get();
+    boolean collected = false;
+    for (WeakReference<InvalidationListener> reference : myWeakListeners) {
+      InvalidationListener listener = reference.get();
       if (listener == null) {
-        it.remove();
+        collected = true;
+      }
+      else if (!(listener instanceof Dependency)) {
+        listener.onInvalidated();
+      }
+    }
+
+    if (collected) {
+      synchronized (this) {
+        removeWeakListeners(null);
       }
     }
   }
 
   /**
-   * Call to enable / disable the firing of listeners. Child classes may use this (with caution!)
-   * to prevent multiple listeners being fired for the same invalidation event.
+   * A listener which makes a value depend on the values it is added to: it is invalidated, and its listeners are notified, when any
+   * of them is. Child classes derived from other values should add one to each of them, usually as a weak listener, keeping a strong
+   * reference to it themselves.
    */
-  protected final void setNotificationsEnabled(boolean enabled) {
-    myNotificationsEnabled = enabled;
+  protected static final class Dependency implements InvalidationListener {
+    @NotNull private final AbstractObservableValue<?> myDependent;
+
+    public Dependency(@NotNull AbstractObservableValue<?> dependent) {
+      myDependent = dependent;
+    }
+
+    /**
+     * Only called by values which don't extend {@link AbstractObservableValue}; others invalidate their dependents through the
+     * propagation.
+     */
+    @Override
+    public void onInvalidated() {
+      myDependent.onDependencyInvalidated();
+      myDependent.notifyInvalidated();
+    }
   }
 }
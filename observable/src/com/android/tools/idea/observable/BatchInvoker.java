@@ -71,12 +71,27 @@ public final class BatchInvoker {
 
   private boolean myUpdateInProgress;
 
+  /**
+   * Lock guarding the queues in thread-safe mode, or null if runnables are only ever enqueued on the
+   * dispatch thread.
+   */
+  @Nullable private final Object myLock;
+
   public BatchInvoker() {
     this(ourOverrideStrategy != null ? ourOverrideStrategy : SWING_INVOKE_LATER_STRATEGY);
   }
 
   public BatchInvoker(@NotNull Strategy strategy) {
+    this(strategy, false);
+  }
+
+  /**
+   * @param threadSafe whether runnables may be enqueued from any thread. They are still only run
+   *                   by {@code strategy}, typically on the dispatch thread, one batch at a time.
+   */
+  public BatchInvoker(@NotNull Strategy strategy, boolean threadSafe) {
     myStrategy = strategy;
+    myLock = threadSafe ? new Object() : null;
   }
 
   /**
@@ -85,6 +100,17 @@ public final class BatchInvoker {
    * this system to collapse redundant runnables.
    */
   public void enqueue(@NotNull Runnable runnable) {
+    if (myLock != null) {
+      synchronized (myLock) {
+        doEnqueue(runnable);
+      }
+    }
+    else {
+      doEnqueue(runnable);
+    }
+  }
+
+  private void doEnqueue(@NotNull Runnable runnable) {
     if (myUpdateInProgress) {
       if (!myDeferredRunnables.contains(runnable)) {
         myDeferredRunnables.add(runnable);
@@ -108,34 +134,35 @@ public final class BatchInvoker {
     myStrategy.invoke(() -> {
       int cycleCount = 0;
       RuntimeException runnableExceptionChain = null;
-      while (true) {
-        myUpdateInProgress = true;
-        for (Runnable runnable : myRunnables) {
-          try {
-            runnable.run();
-          }
-          catch (RuntimeException ex) {
-            runnableExceptionChain = addExceptionCause(ex, runnableExceptionChain);
+      Propagation propagation = Propagation.get();
+      propagation.beginBatch();
+      try {
+        while (true) {
+          Runnable[] runnables = startUpdate();
+          for (Runnable runnable : runnables) {
+            try {
+              runnable.run();
+            }
+            catch (RuntimeException ex) {
+              runnableExceptionChain = addExceptionCause(ex, runnableExceptionChain);
+            }
           }
-        }
-        myRunnables.clear();
-
-        myUpdateInProgress = false;
 
-        if (!myDeferredRunnables.isEmpty()) {
-          cycleCount++;
-          if (cycleCount > MAX_CYCLE_COUNT) {
-            myDeferredRunnables.clear();
-            throw new InfiniteCycleException(runnableExceptionChain);
+          if (finishUpdate()) {
+            cycleCount++;
+            if (cycleCount > MAX_CYCLE_COUNT) {
+              clearRunnables();
+              throw new InfiniteCycleException(runnableExceptionChain);
+            }
+          }
+          else {
+            break;
           }
-
-          myRunnables.addAll(myDeferredRunnables);
-          myDeferredRunnables.clear();
-        }
-        else {
-          break;
         }
       }
+      finally {
+        propagation.endBatch();
+      }
 
       if (runnableExceptionChain != null) {
         throw runnableExceptionChain;
@@ -143,6 +170,58 @@ public final class BatchInvoker {
     });
   }
 
+  /**
+   * Marks the current batch as running and returns its runnables. Runnables enqueued from now on
+   * are deferred to the next batch.
+   */
+  @NotNull
+  private Runnable[] startUpdate() {
+    if (myLock != null) {
+      synchronized (myLock) {
+        myUpdateInProgress = true;
+        return myRunnables.toArray(new Runnable[0]);
+      }
+    }
+    myUpdateInProgress = true;
+    return myRunnables.toArray(new Runnable[0]);
+  }
+
+  /**
+   * Ends the current batch and, if runnables were deferred while it ran, makes them the next batch.
+   *
+   * @return whether there is a next batch to run
+   */
+  private boolean finishUpdate() {
+    if (myLock != null) {
+      synchronized (myLock) {
+        return doFinishUpdate();
+      }
+    }
+    return doFinishUpdate();
+  }
+
+  private boolean doFinishUpdate() {
+    myRunnables.clear();
+    myUpdateInProgress = false;
+    if (myDeferredRunnables.isEmpty()) {
+      return false;
+    }
+    myRunnables.addAll(myDeferredRunnables);
+    myDeferredRunnables.clear();
+    return true;
+  }
+
+  private void clearRunnables() {
+    if (myLock != null) {
+      synchronized (myLock) {
+        myRunnables.clear();
+      }
+    }
+    else {
+      myRunnables.clear();
+    }
+  }
+
   /**
    * A strategy on how to handle invoking a batch of runnables.
    *
@@ -31,7 +31,9 @@ import org.jetbrains.annotations.NotNull;
  * {@link #bindTwoWay(SettableValue, SettableValue)}.
  * <p/>
  * Note: This class is currently not thread-safe. You are expected to read, write, and bind
- * values on the dispatch thread to avoid undefined behavior.
+ * values on the dispatch thread to avoid undefined behavior, unless it is created with
+ * {@link #BindingsManager(BatchInvoker.Strategy, boolean)}, in which case source values may also
+ * be written from other threads; the destination values are still updated by the strategy.
  */
 public final class BindingsManager {
 
@@ -48,6 +50,13 @@ public final class BindingsManager {
     myInvoker = new BatchInvoker(invokeStrategy);
   }
 
+  /**
+   * @param threadSafe whether source values may be written from any thread, see {@link BatchInvoker#BatchInvoker(BatchInvoker.Strategy, boolean)}
+   */
+  public BindingsManager(@NotNull BatchInvoker.Strategy invokeStrategy, boolean threadSafe) {
+    myInvoker = new BatchInvoker(invokeStrategy, threadSafe);
+  }
+
   /**
    * Binds one value to another. Whenever the source value changes, the destination value will
    * be updated to reflect it.
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.observable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Per-thread state of the propagation of invalidations through a graph of observable values.
+ * <p/>
+ * When a value is invalidated, all values that depend on it (see {@link AbstractObservableValue.Dependency}) are first marked
+ * invalid, visiting each of them once, and only then are the listeners of the source and of its dependents notified, in
+ * topological order. This way a value that depends on the source through several paths is notified once, and no listener ever
+ * sees a dependent value that hasn't been invalidated yet.
+ * <p/>
+ * A propagation, as well as a batch of updates run by a {@link BatchInvoker}, runs within a batch. Derived values may cache
+ * what they computed for the rest of the batch, see {@link AbstractObservableValue#getCurrentBatch()}.
+ */
+final class Propagation {
+  private static final AtomicLong ourNextId = new AtomicLong(1);
+  private static final ThreadLocal<Propagation> ourPropagations = ThreadLocal.withInitial(Propagation::new);
+
+  private long myBatch;
+  private int myBatchDepth;
+
+  /**
+   * The values visited by the propagations in progress on this thread, in post order. Propagations started by a listener are
+   * nested in the one that notified the listener, so they use the end of the array, and restore its size when they are done.
+   */
+  @NotNull private AbstractObservableValue<?>[] myVisited = new AbstractObservableValue<?>[16];
+  private int myVisitedCount;
+
+  private Propagation() {
+  }
+
+  @NotNull
+  static Propagation get() {
+    return ourPropagations.get();
+  }
+
+  /**
+   * Returns a new id, distinct from all batch and propagation ids of all threads.
+   */
+  static long nextId() {
+    return ourNextId.getAndIncrement();
+  }
+
+  /**
+   * Returns the id of the batch in progress on this thread, or 0 if there is none.
+   */
+  long getBatch() {
+    return myBatch;
+  }
+
+  void beginBatch() {
+    if (myBatchDepth++ == 0) {
+      myBatch = nextId();
+    }
+  }
+
+  void endBatch() {
+    if (--myBatchDepth == 0) {
+      myBatch = 0;
+    }
+  }
+
+  /**
+   * Invalidates the dependents of {@code source}, then notifies the listeners of {@code source} and of its dependents.
+   */
+  void propagate(@NotNull AbstractObservableValue<?> source) {
+    beginBatch();
+    int start = myVisitedCount;
+    try {
+      source.visit(this, nextId());
+      int end = myVisitedCount;
+      for (int i = end - 1; i >= start; i--) {
+        myVisited[i].fireListeners();
+      }
+    }
+    finally {
+      Arrays.fill(myVisited, start, myVisitedCount, null);
+      myVisitedCount = start;
+      endBatch();
+    }
+  }
+
+  void addVisited(@NotNull AbstractObservableValue<?> value) {
+    if (myVisitedCount == myVisited.length) {
+      myVisited = Arrays.copyOf(myVisited, myVisitedCount * 2);
+    }
+    myVisited[myVisitedCount++] = value;
+  }
+}
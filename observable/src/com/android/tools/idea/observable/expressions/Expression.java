@@ -16,10 +16,10 @@
 package com.android.tools.idea.observable.expressions;
 
 import com.android.tools.idea.observable.AbstractObservableValue;
-import com.android.tools.idea.observable.InvalidationListener;
 import com.android.tools.idea.observable.ObservableValue;
 import java.util.function.Supplier;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * An expression is an observable value that wraps another observable value, modifying the result
@@ -27,10 +27,17 @@ import org.jetbrains.annotations.NotNull;
  * <p/>
  * Child class constructors should make sure they call {@code super} with all target observables,
  * as this will ensure invalidation notifications propagate correctly.
+ * <p/>
+ * Expressions which are expensive to compute, or which many other values depend on, can opt in to
+ * being computed once per batch of updates rather than once per read, by implementing {@link #get()}
+ * with {@link #getOncePerBatch(Supplier)} or by being created with
+ * {@link #createCached(Supplier, ObservableValue[])}.
  */
 public abstract class Expression<T> extends AbstractObservableValue<T> implements ObservableValue<T> {
   @SuppressWarnings("FieldCanBeLocal") // must be local to avoid weak garbage collection
-  private final InvalidationListener myListener = () -> notifyInvalidated();
+  private final Dependency myDependency = new Dependency(this);
+
+  @Nullable private volatile BatchValue<T> myBatchValue;
 
   protected Expression(@NotNull ObservableValue<?>... values) {
     if (values.length == 0) {
@@ -38,7 +45,7 @@ public abstract class Expression<T> extends AbstractObservableValue<T> implement
     }
 
     for (ObservableValue value : values) {
-      value.addWeakListener(myListener);
+      value.addWeakListener(myDependency);
     }
   }
 
@@ -52,4 +59,57 @@ public abstract class Expression<T> extends AbstractObservableValue<T> implement
       }
     };
   }
+
+  /**
+   * Like {@link #create(Supplier, ObservableValue[])}, but the value is computed by
+   * {@code valueSupplier} at most once per batch of updates, see {@link #getOncePerBatch(Supplier)}.
+   * Only use it if {@code valueSupplier} reads nothing but {@code values}, or state which doesn't
+   * change while bindings update, as it would otherwise return a stale value.
+   */
+  @NotNull
+  public static <T> Expression<T> createCached(@NotNull Supplier<? extends T> valueSupplier, @NotNull ObservableValue<?>... values) {
+    return new Expression<T>(values) {
+      @Override
+      @NotNull
+      public T get() {
+        return getOncePerBatch(valueSupplier);
+      }
+    };
+  }
+
+  @Override
+  protected final void onDependencyInvalidated() {
+    myBatchValue = null;
+  }
+
+  /**
+   * Returns the value computed by {@code computation}, reusing it while the current batch of
+   * updates is in progress and none of the target observables changes. Outside of a batch, the
+   * value is computed on every call, so the computation may also read state which is not
+   * observable, as long as that state doesn't change during a batch.
+   */
+  protected final T getOncePerBatch(@NotNull Supplier<? extends T> computation) {
+    long batch = getCurrentBatch();
+    if (batch == 0) {
+      return computation.get();
+    }
+
+    BatchValue<T> batchValue = myBatchValue;
+    if (batchValue != null && batchValue.myBatch == batch) {
+      return batchValue.myValue;
+    }
+    T value = computation.get();
+    myBatchValue = new BatchValue<>(batch, value);
+    return value;
+  }
+
+  private static final class BatchValue<T> {
+    private final long myBatch;
+    private final T myValue;
+
+    private BatchValue(long batch, T value) {
+      myBatch = batch;
+      myValue = value;
+    }
+  }
 }
@@ -143,6 +143,30 @@ public final class BatchInvokerTest {
     assertThat(invokeResult.get()).isFalse();
   }
 
+  @Test
+  public void threadSafeInvokingAcceptsRunnablesFromAnyThread() throws Exception {
+    TestInvokeStrategy testStrategy = new TestInvokeStrategy();
+    BatchInvoker invoker = new BatchInvoker(testStrategy, true);
+    IntWrapper intWrapper = new IntWrapper();
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      int thread = i;
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          invoker.enqueue(new AddToValue(thread * 1000 + j, intWrapper, 1));
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    testStrategy.updateAllSteps();
+    assertThat(intWrapper.value).isEqualTo(8000);
+  }
+
   private static final class IntWrapper {
     int value;
   }
@@ -15,13 +15,21 @@
  */
 package com.android.tools.idea.observable.expressions;
 
+import com.android.tools.idea.observable.BatchInvoker;
+import com.android.tools.idea.observable.BindingsManager;
+import com.android.tools.idea.observable.CountListener;
+import com.android.tools.idea.observable.ObservableValue;
 import com.android.tools.idea.observable.core.IntProperty;
 import com.android.tools.idea.observable.core.IntValueProperty;
 import com.android.tools.idea.observable.core.StringProperty;
 import com.android.tools.idea.observable.core.StringValueProperty;
 import com.android.tools.idea.observable.expressions.string.StringExpression;
 import com.google.common.truth.Truth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jetbrains.annotations.NotNull;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public final class ExpressionTest {
@@ -53,4 +61,171 @@ public final class ExpressionTest {
     intValue.set(-13);
     Truth.assertThat(intToString.get()).isEqualTo("-13");
   }
+
+  @Test
+  public void dependentOfSeveralPathsIsNotifiedOnce() throws Exception {
+    IntProperty value = new IntValueProperty(1);
+    Expression<Integer> plusOne = Expression.create(() -> value.get() + 1, value);
+    Expression<Integer> timesTwo = Expression.create(() -> value.get() * 2, value);
+    Expression<Integer> sum = Expression.create(() -> plusOne.get() + timesTwo.get(), plusOne, timesTwo);
+    CountListener listener = new CountListener();
+    sum.addListener(listener);
+
+    value.set(5);
+    Truth.assertThat(listener.getCount()).isEqualTo(1);
+    Truth.assertThat(sum.get()).isEqualTo(16);
+  }
+
+  @Test
+  public void listenersSeeInvalidatedDependents() throws Exception {
+    IntProperty value = new IntValueProperty(1);
+    Expression<Integer> plusOne = Expression.create(() -> value.get() + 1, value);
+    Expression<Integer> timesTwo = Expression.create(() -> value.get() * 2, value);
+    Expression<Integer> sum = Expression.createCached(() -> plusOne.get() + timesTwo.get(), plusOne, timesTwo);
+    List<Integer> sums = new ArrayList<>();
+    // Each listener reads the sum while the change propagates, so that it is cached for the rest of the batch.
+    value.addListener(() -> sums.add(sum.get()));
+    plusOne.addListener(() -> sums.add(sum.get()));
+    timesTwo.addListener(() -> sums.add(sum.get()));
+    sum.addListener(() -> sums.add(sum.get()));
+
+    value.set(5);
+    Truth.assertThat(sums).containsExactly(16, 16, 16, 16);
+  }
+
+  @Test
+  public void expressionIsEvaluatedOncePerBatch() throws Exception {
+    IntProperty value = new IntValueProperty(1);
+    AtomicInteger evaluations = new AtomicInteger();
+    Expression<Integer> shared = Expression.createCached(() -> {
+      evaluations.incrementAndGet();
+      return value.get() * 2;
+    }, value);
+    BindingsManager bindings = new BindingsManager(BatchInvoker.INVOKE_IMMEDIATELY_STRATEGY);
+    List<IntProperty> results = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      int offset = i;
+      IntProperty result = new IntValueProperty();
+      bindings.bind(result, Expression.create(() -> shared.get() + offset, shared));
+      results.add(result);
+    }
+
+    evaluations.set(0);
+    value.set(5);
+    Truth.assertThat(evaluations.get()).isEqualTo(1);
+    Truth.assertThat(results.get(9).get()).isEqualTo(19);
+
+    // Outside of a batch, the expression is evaluated on every read.
+    shared.get();
+    shared.get();
+    Truth.assertThat(evaluations.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void diamondIsEvaluatedOncePerBatch() throws Exception {
+    IntProperty value = new IntValueProperty(1);
+    AtomicInteger leftEvaluations = new AtomicInteger();
+    AtomicInteger rightEvaluations = new AtomicInteger();
+    AtomicInteger bottomEvaluations = new AtomicInteger();
+    Expression<Integer> left = Expression.createCached(() -> {
+      leftEvaluations.incrementAndGet();
+      return value.get() + 1;
+    }, value);
+    Expression<Integer> right = Expression.createCached(() -> {
+      rightEvaluations.incrementAndGet();
+      return value.get() * 2;
+    }, value);
+    Expression<Integer> bottom = Expression.createCached(() -> {
+      bottomEvaluations.incrementAndGet();
+      return left.get() + right.get();
+    }, left, right);
+    BindingsManager bindings = new BindingsManager(BatchInvoker.INVOKE_IMMEDIATELY_STRATEGY);
+    IntProperty leftResult = new IntValueProperty();
+    IntProperty rightResult = new IntValueProperty();
+    IntProperty bottomResult = new IntValueProperty();
+    bindings.bind(leftResult, left);
+    bindings.bind(rightResult, right);
+    bindings.bind(bottomResult, bottom);
+
+    leftEvaluations.set(0);
+    rightEvaluations.set(0);
+    bottomEvaluations.set(0);
+    value.set(5);
+    Truth.assertThat(leftEvaluations.get()).isEqualTo(1);
+    Truth.assertThat(rightEvaluations.get()).isEqualTo(1);
+    Truth.assertThat(bottomEvaluations.get()).isEqualTo(1);
+    Truth.assertThat(leftResult.get()).isEqualTo(6);
+    Truth.assertThat(rightResult.get()).isEqualTo(10);
+    Truth.assertThat(bottomResult.get()).isEqualTo(16);
+  }
+
+  @Test
+  public void uncachedExpressionIsEvaluatedOnEveryRead() throws Exception {
+    IntProperty value = new IntValueProperty(1);
+    AtomicInteger evaluations = new AtomicInteger();
+    Expression<Integer> shared = Expression.create(() -> {
+      evaluations.incrementAndGet();
+      return value.get() * 2;
+    }, value);
+    BindingsManager bindings = new BindingsManager(BatchInvoker.INVOKE_IMMEDIATELY_STRATEGY);
+    for (int i = 0; i < 10; i++) {
+      int offset = i;
+      bindings.bind(new IntValueProperty(), Expression.create(() -> shared.get() + offset, shared));
+    }
+
+    evaluations.set(0);
+    value.set(5);
+    Truth.assertThat(evaluations.get()).isEqualTo(10);
+  }
+
+  @Ignore("Benchmark, run manually")
+  @Test
+  public void deepExpressionGraphBenchmark() throws Exception {
+    int depth = 200;
+    int width = 8;
+    IntProperty value = new IntValueProperty(0);
+    AtomicInteger evaluations = new AtomicInteger();
+    // Each level of the graph depends on all the expressions of the previous level.
+    List<Expression<Integer>> level = new ArrayList<>();
+    for (int i = 0; i < width; i++) {
+      level.add(Expression.createCached(value::get, value));
+    }
+    for (int d = 1; d < depth; d++) {
+      List<Expression<Integer>> previous = level;
+      ObservableValue<?>[] dependencies = previous.toArray(new ObservableValue<?>[0]);
+      level = new ArrayList<>();
+      for (int i = 0; i < width; i++) {
+        level.add(Expression.createCached(() -> {
+          evaluations.incrementAndGet();
+          int max = Integer.MIN_VALUE;
+          for (Expression<Integer> expression : previous) {
+            max = Math.max(max, expression.get());
+          }
+          return max;
+        }, dependencies));
+      }
+    }
+    BindingsManager bindings = new BindingsManager(BatchInvoker.INVOKE_IMMEDIATELY_STRATEGY);
+    IntProperty result = new IntValueProperty();
+    bindings.bind(result, level.get(0));
+    CountListener listener = new CountListener();
+    level.get(0).addListener(listener);
+
+    // Warm up before timing the updates.
+    for (int i = 1; i <= 100; i++) {
+      value.set(i);
+    }
+    evaluations.set(0);
+    long start = System.nanoTime();
+    for (int i = 101; i <= 1100; i++) {
+      value.set(i);
+    }
+    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+    Truth.assertThat(result.get()).isEqualTo(1100);
+    Truth.assertThat(listener.getCount()).isEqualTo(1100);
+    // Each expression which is read, that is all but the unbound ones of the last level, is evaluated once per update.
+    Truth.assertThat(evaluations.get()).isEqualTo(1000 * ((depth - 2) * width + 1));
+    System.out.println(String.format("Propagated 1000 updates through %d expressions in %dms", depth * width, elapsedMs));
+  }
 }
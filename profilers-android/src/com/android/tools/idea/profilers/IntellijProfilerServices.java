@@ -305,6 +305,11 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
         return StudioFlags.PROFILER_SIMPLEPERF_HOST.get();
       }
 
+      @Override
+      public boolean isSimpleperfParallelImportEnabled() {
+        return StudioFlags.PROFILER_SIMPLEPERF_PARALLEL_IMPORT.get();
+      }
+
       @Override
       public boolean isFragmentsEnabled() {
         return StudioFlags.PROFILER_FRAGMENT_PROFILER_ENABLED.get();
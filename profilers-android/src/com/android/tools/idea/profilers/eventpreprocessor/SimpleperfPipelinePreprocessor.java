@@ -22,10 +22,13 @@ import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Cpu;
 import com.android.tools.profiler.proto.Transport;
 import com.android.tools.profilers.cpu.TracePreProcessor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -33,7 +36,8 @@ import org.jetbrains.annotations.NotNull;
  */
 public class SimpleperfPipelinePreprocessor implements TransportEventPreprocessor, TransportBytesPreprocessor {
 
-  private final Map<String, List<String>> myTraceIdsToSymbols = new HashMap<>();
+  // Concurrent, as events and bytes of different traces are preprocessed on different threads.
+  private final Map<String, List<String>> myTraceIdsToSymbols = new ConcurrentHashMap<>();
   private final TracePreProcessor myPreProcessor;
 
   public SimpleperfPipelinePreprocessor(@NotNull TracePreProcessor preProcessor) {
@@ -73,4 +77,16 @@ public class SimpleperfPipelinePreprocessor implements TransportEventPreprocesso
     assert myTraceIdsToSymbols.containsKey(id); // Was "preprocessEvent / shouldPreprocess" called before calling this?
     return myPreProcessor.preProcessTrace(data, myTraceIdsToSymbols.remove(id));
   }
+
+  @Override
+  public void preprocessBytes(@NotNull String id, @NotNull InputStream data, @NotNull OutputStream out) throws IOException {
+    assert myTraceIdsToSymbols.containsKey(id); // Was "preprocessEvent / shouldPreprocess" called before calling this?
+    myPreProcessor.preProcessTrace(data, out, myTraceIdsToSymbols.remove(id));
+  }
+
+  @Override
+  @NotNull
+  public ByteString getFailureBytes() {
+    return TracePreProcessor.FAILURE;
+  }
 }
@@ -17,11 +17,16 @@ package com.android.tools.idea.profilers.stacktrace;
 
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
+import com.android.tools.nativeSymbolizer.SymbolRequest;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
 import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Wrapper for {@link NativeSymbolizer} to return a NativeCallStack.NativeFrame instead of the Symbol class which profilers don't have a
@@ -52,7 +57,35 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     catch (IOException | RuntimeException e) {
       getLogger().warn(e);
     }
+    return toSymbolizedFrame(unsymbolizedFrame, instructionOffset, symbol);
+  }
+
+  @NotNull
+  @Override
+  public List<NativeCallStack.NativeFrame> symbolize(String abi, @NotNull List<NativeCallStack.NativeFrame> unsymbolizedFrames) {
+    List<SymbolRequest> requests = new ArrayList<>(unsymbolizedFrames.size());
+    for (NativeCallStack.NativeFrame frame : unsymbolizedFrames) {
+      requests.add(new SymbolRequest(frame.getModuleName(), getOffsetOfPreviousInstruction(frame.getModuleOffset())));
+    }
+    List<Symbol> symbols = Collections.nCopies(requests.size(), null);
+    try {
+      symbols = mySymbolizer.symbolize(abi, requests);
+    }
+    catch (IOException | RuntimeException e) {
+      getLogger().warn(e);
+    }
 
+    List<NativeCallStack.NativeFrame> frames = new ArrayList<>(unsymbolizedFrames.size());
+    for (int i = 0; i < unsymbolizedFrames.size(); i++) {
+      frames.add(toSymbolizedFrame(unsymbolizedFrames.get(i), requests.get(i).getOffset(), symbols.get(i)));
+    }
+    return frames;
+  }
+
+  @NotNull
+  private static NativeCallStack.NativeFrame toSymbolizedFrame(@NotNull NativeCallStack.NativeFrame unsymbolizedFrame,
+                                                               long instructionOffset,
+                                                               @Nullable Symbol symbol) {
     NativeCallStack.NativeFrame.Builder builder = unsymbolizedFrame.toBuilder();
     if (symbol == null) {
       String unfoundSymbolName = String.format("0x%x", instructionOffset);
@@ -20,7 +20,11 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
+import com.android.tools.nativeSymbolizer.SymbolRequest;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
@@ -58,6 +62,21 @@ public class IntelliJNativeFrameSymbolizerTest {
     assertThat(symbolizedFrame2).isEqualTo(expectedSymbolizedFrame2);
   }
 
+  @Test
+  public void testSymbolizeBatch() {
+    IntelliJNativeFrameSymbolizer frameSymbolizer = new IntelliJNativeFrameSymbolizer(new FakeNativeSymbolizer());
+    List<NativeCallStack.NativeFrame> unsymbolizedFrames = Arrays.asList(
+      NativeCallStack.NativeFrame.newBuilder().setModuleName("test").setModuleOffset(100).build(),
+      NativeCallStack.NativeFrame.newBuilder().setModuleName("test2").setModuleOffset(200).build(),
+      NativeCallStack.NativeFrame.newBuilder().setModuleName("test").setModuleOffset(100).build());
+
+    for (String abi : Arrays.asList("arm", "arm64")) {
+      List<NativeCallStack.NativeFrame> expectedFrames =
+        unsymbolizedFrames.stream().map(frame -> frameSymbolizer.symbolize(abi, frame)).collect(Collectors.toList());
+      assertThat(frameSymbolizer.symbolize(abi, unsymbolizedFrames)).containsExactlyElementsIn(expectedFrames).inOrder();
+    }
+  }
+
   private static class FakeNativeSymbolizer implements NativeSymbolizer {
     @Nullable
     @Override
@@ -71,6 +90,12 @@ public class IntelliJNativeFrameSymbolizerTest {
       }
     }
 
+    @NotNull
+    @Override
+    public List<Symbol> symbolize(@NotNull String abiArch, @NotNull List<SymbolRequest> requests) {
+      return requests.stream().map(request -> symbolize(abiArch, request.getModule(), request.getOffset())).collect(Collectors.toList());
+    }
+
     @Override
     public void stop() {
     }
@@ -39,6 +39,7 @@ public interface FeatureConfig {
   boolean isCustomEventVisualizationEnabled();
   boolean isSessionImportEnabled();
   boolean isSimpleperfHostEnabled();
+  boolean isSimpleperfParallelImportEnabled();
   boolean isStartupCpuProfilingEnabled();
   boolean isUnifiedPipelineEnabled();
   // Add new features alphabetically instead of at the end of the list
@@ -43,6 +43,7 @@ public class UnifiedEventDataSeries<T> implements DataSeries<T> {
   @NotNull private final Common.Event.Kind myKind;
   private final int myGroupId;
   @NotNull private final Function<List<Common.Event>, List<SeriesData<T>>> myDataExtractor;
+  private final boolean myAppendOnly;
 
   /**
    * @param client        the grpc client to request data from.
@@ -58,12 +59,29 @@ public class UnifiedEventDataSeries<T> implements DataSeries<T> {
                                 @NotNull Common.Event.Kind kind,
                                 int groupId,
                                 @NotNull Function<List<Common.Event>, List<SeriesData<T>>> dataExtractor) {
+    this(client, streamId, pid, kind, groupId, dataExtractor, false);
+  }
+
+  /**
+   * @param appendOnly whether {@code dataExtractor} maps each event to a data point at the event's timestamp, like the extractors created by
+   *                   {@link #fromFieldToDataExtractor(Function)}, so that data points never change and new ones only show up after the
+   *                   existing ones. See {@link DataSeries#isAppendOnly()}. Extractors that combine several events into a data point, e.g.
+   *                   to compute a rate between adjacent events, must not be append-only.
+   */
+  public UnifiedEventDataSeries(@NotNull TransportServiceGrpc.TransportServiceBlockingStub client,
+                                long streamId,
+                                int pid,
+                                @NotNull Common.Event.Kind kind,
+                                int groupId,
+                                @NotNull Function<List<Common.Event>, List<SeriesData<T>>> dataExtractor,
+                                boolean appendOnly) {
     myClient = client;
     myStreamId = streamId;
     myPid = pid;
     myKind = kind;
     myGroupId = groupId;
     myDataExtractor = dataExtractor;
+    myAppendOnly = appendOnly;
   }
 
   @Override
@@ -86,6 +104,11 @@ public class UnifiedEventDataSeries<T> implements DataSeries<T> {
     return myDataExtractor.apply(response.getGroups(0).getEventsList());
   }
 
+  @Override
+  public boolean isAppendOnly() {
+    return myAppendOnly;
+  }
+
   /**
    * Helper function that constructs list data extractor from a field extractor for the simple case of extracting one field out of every
    * {@link Common.Event}.
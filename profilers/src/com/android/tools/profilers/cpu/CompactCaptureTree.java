@@ -0,0 +1,458 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.filter.Filter;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A call tree stored as parallel primitive arrays instead of one {@link CaptureNode} object per call. A node is identified by its index;
+ * children are linked through first child/next sibling indices and the {@link CaptureNodeModel}s are interned, so each node only costs a
+ * few primitive slots. This makes it suitable for captures with millions of calls.
+ * <p>
+ * A node can only be added after its parent, so a parent index is always smaller than the indices of its descendants. Walkers such as
+ * {@link com.android.tools.profilers.cpu.capturedetails.TopDownNode} work on the indices directly; {@link #getNode(int)} returns a
+ * lightweight {@link HNode} view for the charts.
+ */
+public final class CompactCaptureTree {
+  public static final int NO_NODE = -1;
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final CaptureNode.FilterType[] FILTER_TYPES = CaptureNode.FilterType.values();
+
+  @NotNull private long[] myStartGlobal = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myEndGlobal = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myStartThread = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myEndThread = new long[INITIAL_CAPACITY];
+  @NotNull private int[] myParent = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myFirstChild = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myLastChild = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myNextSibling = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myDepth = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myModelId = new int[INITIAL_CAPACITY];
+  @NotNull private byte[] myFilterType = new byte[INITIAL_CAPACITY];
+  private int mySize;
+
+  /**
+   * Models are interned by identity, so parsers should reuse the same model instance for every call of the same method.
+   */
+  @NotNull private final List<CaptureNodeModel> myModels = new ArrayList<>();
+  @NotNull private final Map<CaptureNodeModel, Integer> myModelIds = new IdentityHashMap<>();
+
+  @NotNull private ClockType myClockType = ClockType.GLOBAL;
+
+  /**
+   * Converts a {@link CaptureNode} tree. Nodes are added in pre-order, so the given root is at index 0.
+   */
+  @NotNull
+  public static CompactCaptureTree fromCaptureNode(@NotNull CaptureNode root) {
+    CompactCaptureTree tree = new CompactCaptureTree();
+    List<CaptureNode> nodes = new ArrayList<>();
+    int[] parents = new int[INITIAL_CAPACITY];
+    nodes.add(root);
+    parents[0] = NO_NODE;
+    while (!nodes.isEmpty()) {
+      int last = nodes.size() - 1;
+      CaptureNode node = nodes.remove(last);
+      int index = tree.addNode(parents[last], node.getData(), node.getStartGlobal(), node.getStartThread());
+      tree.setEnd(index, node.getEndGlobal(), node.getEndThread());
+      tree.setFilterType(index, node.getFilterType());
+      // Adding in reverse order so that the first child is processed first.
+      for (int i = node.getChildCount() - 1; i >= 0; --i) {
+        if (nodes.size() == parents.length) {
+          parents = Arrays.copyOf(parents, parents.length * 2);
+        }
+        parents[nodes.size()] = index;
+        nodes.add(node.getChildAt(i));
+      }
+    }
+    tree.setClockType(root.getClockType());
+    return tree;
+  }
+
+  /**
+   * Adds a node as the last child of the given parent, or as a root if the parent is {@link #NO_NODE}. Its end times are set to its start
+   * times until {@link #setEnd(int, long, long)} is called.
+   *
+   * @return the index of the new node.
+   */
+  public int addNode(int parent, @NotNull CaptureNodeModel model, long startGlobal, long startThread) {
+    if (parent != NO_NODE) {
+      checkIndex(parent);
+    }
+    ensureCapacity(mySize + 1);
+    int index = mySize++;
+    myStartGlobal[index] = startGlobal;
+    myEndGlobal[index] = startGlobal;
+    myStartThread[index] = startThread;
+    myEndThread[index] = startThread;
+    myParent[index] = parent;
+    myFirstChild[index] = NO_NODE;
+    myLastChild[index] = NO_NODE;
+    myNextSibling[index] = NO_NODE;
+    myModelId[index] = internModel(model);
+    myFilterType[index] = (byte)CaptureNode.FilterType.MATCH.ordinal();
+    if (parent == NO_NODE) {
+      myDepth[index] = 0;
+    }
+    else {
+      myDepth[index] = myDepth[parent] + 1;
+      if (myLastChild[parent] == NO_NODE) {
+        myFirstChild[parent] = index;
+      }
+      else {
+        myNextSibling[myLastChild[parent]] = index;
+      }
+      myLastChild[parent] = index;
+    }
+    return index;
+  }
+
+  public void setEnd(int node, long endGlobal, long endThread) {
+    checkIndex(node);
+    myEndGlobal[node] = endGlobal;
+    myEndThread[node] = endThread;
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public long getStartGlobal(int node) {
+    return myStartGlobal[checkIndex(node)];
+  }
+
+  public long getEndGlobal(int node) {
+    return myEndGlobal[checkIndex(node)];
+  }
+
+  public long getStartThread(int node) {
+    return myStartThread[checkIndex(node)];
+  }
+
+  public long getEndThread(int node) {
+    return myEndThread[checkIndex(node)];
+  }
+
+  /**
+   * @return the start of the node with the current {@link ClockType}.
+   */
+  public long getStart(int node) {
+    return myClockType == ClockType.THREAD ? getStartThread(node) : getStartGlobal(node);
+  }
+
+  /**
+   * @return the end of the node with the current {@link ClockType}.
+   */
+  public long getEnd(int node) {
+    return myClockType == ClockType.THREAD ? getEndThread(node) : getEndGlobal(node);
+  }
+
+  public int getParent(int node) {
+    return myParent[checkIndex(node)];
+  }
+
+  public int getFirstChild(int node) {
+    return myFirstChild[checkIndex(node)];
+  }
+
+  public int getLastChild(int node) {
+    return myLastChild[checkIndex(node)];
+  }
+
+  public int getNextSibling(int node) {
+    return myNextSibling[checkIndex(node)];
+  }
+
+  public int getChildCount(int node) {
+    int count = 0;
+    for (int child = getFirstChild(node); child != NO_NODE; child = myNextSibling[child]) {
+      count++;
+    }
+    return count;
+  }
+
+  public int getDepth(int node) {
+    return myDepth[checkIndex(node)];
+  }
+
+  public int getModelId(int node) {
+    return myModelId[checkIndex(node)];
+  }
+
+  @NotNull
+  public CaptureNodeModel getModel(int node) {
+    return myModels.get(getModelId(node));
+  }
+
+  public int getModelCount() {
+    return myModels.size();
+  }
+
+  @NotNull
+  public CaptureNode.FilterType getFilterType(int node) {
+    return FILTER_TYPES[myFilterType[checkIndex(node)]];
+  }
+
+  public void setFilterType(int node, @NotNull CaptureNode.FilterType type) {
+    myFilterType[checkIndex(node)] = (byte)type.ordinal();
+  }
+
+  public boolean isUnmatched(int node) {
+    return getFilterType(node) == CaptureNode.FilterType.UNMATCH;
+  }
+
+  @NotNull
+  public ClockType getClockType() {
+    return myClockType;
+  }
+
+  public void setClockType(@NotNull ClockType clockType) {
+    myClockType = clockType;
+  }
+
+  /**
+   * Sets the {@link CaptureNode.FilterType} of every node, the same way {@link com.android.tools.profilers.cpu.capturedetails.CaptureModel}
+   * does for {@link CaptureNode} trees. Each interned model is matched against the filter only once.
+   *
+   * @return the number of nodes that match the filter exactly.
+   */
+  public int applyFilter(@NotNull Filter filter) {
+    byte[] modelMatches = new byte[myModels.size()];
+    // Bits used while filtering: the node matches exactly, the node or one of its ancestors matches, one of its children isn't unmatched.
+    final byte exactMatch = 1;
+    final byte ancestorMatch = 2;
+    final byte childMatch = 4;
+    byte[] state = new byte[mySize];
+    int exactMatchCount = 0;
+
+    // Parents always come before their children, so a forward pass propagates the matches down...
+    for (int node = 0; node < mySize; node++) {
+      int modelId = myModelId[node];
+      if (modelMatches[modelId] == 0) {
+        modelMatches[modelId] = filter.matches(myModels.get(modelId).getFullName()) ? (byte)1 : (byte)2;
+      }
+      if (modelMatches[modelId] == 1) {
+        state[node] |= exactMatch | ancestorMatch;
+        exactMatchCount++;
+      }
+      int parent = myParent[node];
+      if (parent != NO_NODE && (state[parent] & ancestorMatch) != 0) {
+        state[node] |= ancestorMatch;
+      }
+    }
+
+    // ...and a backward pass propagates them up.
+    for (int node = mySize - 1; node >= 0; node--) {
+      CaptureNode.FilterType type;
+      if ((state[node] & (ancestorMatch | childMatch)) == 0) {
+        type = CaptureNode.FilterType.UNMATCH;
+      }
+      else if ((state[node] & exactMatch) != 0 && !filter.isEmpty()) {
+        type = CaptureNode.FilterType.EXACT_MATCH;
+      }
+      else {
+        type = CaptureNode.FilterType.MATCH;
+      }
+      myFilterType[node] = (byte)type.ordinal();
+      int parent = myParent[node];
+      if (parent != NO_NODE && type != CaptureNode.FilterType.UNMATCH) {
+        state[parent] |= childMatch;
+      }
+    }
+    return exactMatchCount;
+  }
+
+  /**
+   * Releases the unused capacity of the arrays once the tree is complete.
+   */
+  public void trimToSize() {
+    resize(mySize);
+  }
+
+  /**
+   * @return a lightweight {@link HNode} view of the given node. Views are created on demand and hold no data of their own.
+   */
+  @NotNull
+  public Node getNode(int node) {
+    return new Node(this, checkIndex(node));
+  }
+
+  private int internModel(@NotNull CaptureNodeModel model) {
+    Integer id = myModelIds.get(model);
+    if (id == null) {
+      id = myModels.size();
+      myModels.add(model);
+      myModelIds.put(model, id);
+    }
+    return id;
+  }
+
+  private int checkIndex(int node) {
+    if (node < 0 || node >= mySize) {
+      throw new IndexOutOfBoundsException(String.format("%d out of [0, %d)", node, mySize));
+    }
+    return node;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > myParent.length) {
+      resize(Math.max(capacity, myParent.length * 2));
+    }
+  }
+
+  private void resize(int capacity) {
+    myStartGlobal = Arrays.copyOf(myStartGlobal, capacity);
+    myEndGlobal = Arrays.copyOf(myEndGlobal, capacity);
+    myStartThread = Arrays.copyOf(myStartThread, capacity);
+    myEndThread = Arrays.copyOf(myEndThread, capacity);
+    myParent = Arrays.copyOf(myParent, capacity);
+    myFirstChild = Arrays.copyOf(myFirstChild, capacity);
+    myLastChild = Arrays.copyOf(myLastChild, capacity);
+    myNextSibling = Arrays.copyOf(myNextSibling, capacity);
+    myDepth = Arrays.copyOf(myDepth, capacity);
+    myModelId = Arrays.copyOf(myModelId, capacity);
+    myFilterType = Arrays.copyOf(myFilterType, capacity);
+  }
+
+  /**
+   * An {@link HNode} view over a node of a {@link CompactCaptureTree}, so the tree can be rendered by the call and flame charts. Children
+   * are reached by following sibling links, and sequential {@link #getChildAt(int)} calls continue from the previously returned child, so
+   * iterating over the children of a view is linear.
+   */
+  public static final class Node implements HNode<Node> {
+    @NotNull private final CompactCaptureTree myTree;
+    private final int myIndex;
+    private int myChildCount = -1;
+    private int myCursorPosition = -1;
+    private int myCursorChild = NO_NODE;
+
+    private Node(@NotNull CompactCaptureTree tree, int index) {
+      myTree = tree;
+      myIndex = index;
+    }
+
+    @NotNull
+    public CompactCaptureTree getTree() {
+      return myTree;
+    }
+
+    public int getIndex() {
+      return myIndex;
+    }
+
+    @NotNull
+    public CaptureNodeModel getData() {
+      return myTree.getModel(myIndex);
+    }
+
+    @NotNull
+    public CaptureNode.FilterType getFilterType() {
+      return myTree.getFilterType(myIndex);
+    }
+
+    public boolean isUnmatched() {
+      return myTree.isUnmatched(myIndex);
+    }
+
+    @Override
+    public int getChildCount() {
+      if (myChildCount < 0) {
+        myChildCount = myTree.getChildCount(myIndex);
+      }
+      return myChildCount;
+    }
+
+    @NotNull
+    @Override
+    public Node getChildAt(int index) {
+      if (index < 0 || index >= getChildCount()) {
+        throw new IndexOutOfBoundsException(String.format("%d out of [0, %d)", index, getChildCount()));
+      }
+      if (index < myCursorPosition || myCursorPosition < 0) {
+        myCursorPosition = 0;
+        myCursorChild = myTree.getFirstChild(myIndex);
+      }
+      for (; myCursorPosition < index; myCursorPosition++) {
+        myCursorChild = myTree.getNextSibling(myCursorChild);
+      }
+      return new Node(myTree, myCursorChild);
+    }
+
+    @Nullable
+    @Override
+    public Node getFirstChild() {
+      int child = myTree.getFirstChild(myIndex);
+      return child == NO_NODE ? null : new Node(myTree, child);
+    }
+
+    @Nullable
+    @Override
+    public Node getLastChild() {
+      int child = myTree.getLastChild(myIndex);
+      return child == NO_NODE ? null : new Node(myTree, child);
+    }
+
+    @Nullable
+    @Override
+    public Node getParent() {
+      int parent = myTree.getParent(myIndex);
+      return parent == NO_NODE ? null : new Node(myTree, parent);
+    }
+
+    @Override
+    public long getStart() {
+      return myTree.getStart(myIndex);
+    }
+
+    @Override
+    public long getEnd() {
+      return myTree.getEnd(myIndex);
+    }
+
+    @Override
+    public int getDepth() {
+      return myTree.getDepth(myIndex);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Node)) {
+        return false;
+      }
+      Node other = (Node)o;
+      return myTree == other.myTree && myIndex == other.myIndex;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(myTree), myIndex);
+    }
+  }
+}
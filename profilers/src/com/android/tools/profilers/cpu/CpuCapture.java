@@ -33,7 +33,12 @@ public class CpuCapture implements ConfigurableDurationData {
   private ClockType myClockType;
 
   @NotNull
-  private final TraceParser myParser;
+  private final Range myRange;
+
+  @NotNull
+  private final Map<CpuThreadInfo, CaptureNode> myCaptureTrees;
+
+  private final boolean myIsDualClock;
 
   /**
    * ID of the trace used to generate the capture.
@@ -46,14 +51,26 @@ public class CpuCapture implements ConfigurableDurationData {
   private final Cpu.CpuTraceType myType;
 
   public CpuCapture(@NotNull TraceParser parser, long traceId, Cpu.CpuTraceType type) {
-    myParser = parser;
+    this(parser.getCaptureTrees(), parser.getRange(), parser.supportsDualClock(), traceId, type);
+  }
+
+  /**
+   * Creates a capture from trees that were already built, e.g. read back from a {@link CpuCaptureStore}, rather than by a parser.
+   */
+  CpuCapture(@NotNull Map<CpuThreadInfo, CaptureNode> captureTrees,
+             @NotNull Range range,
+             boolean isDualClock,
+             long traceId,
+             Cpu.CpuTraceType type) {
+    myCaptureTrees = captureTrees;
+    myRange = range;
+    myIsDualClock = isDualClock;
     myTraceId = traceId;
     myType = type;
 
     // Sometimes a capture may fail and return a file that is incomplete. This results in the parser not having any capture trees.
     // If this happens then we don't have any thread info to determine which is the main thread
     // so we throw an error and let the capture pipeline handle this and present a dialog to the user.
-    Map<CpuThreadInfo, CaptureNode> captureTrees = myParser.getCaptureTrees();
     if (captureTrees.isEmpty()) {
       throw new IllegalStateException("Trace file contained no CPU data.");
     }
@@ -85,12 +102,12 @@ public class CpuCapture implements ConfigurableDurationData {
 
   @NotNull
   public Range getRange() {
-    return myParser.getRange();
+    return myRange;
   }
 
   @Nullable
   public CaptureNode getCaptureNode(int threadId) {
-    for (Map.Entry<CpuThreadInfo, CaptureNode> entry : myParser.getCaptureTrees().entrySet()) {
+    for (Map.Entry<CpuThreadInfo, CaptureNode> entry : myCaptureTrees.entrySet()) {
       if (entry.getKey().getId() == threadId) {
         return entry.getValue();
       }
@@ -100,16 +117,16 @@ public class CpuCapture implements ConfigurableDurationData {
 
   @NotNull
   Set<CpuThreadInfo> getThreads() {
-    return myParser.getCaptureTrees().keySet();
+    return myCaptureTrees.keySet();
   }
 
   public boolean containsThread(int threadId) {
-    return myParser.getCaptureTrees().keySet().stream().anyMatch(info -> info.getId() == threadId);
+    return myCaptureTrees.keySet().stream().anyMatch(info -> info.getId() == threadId);
   }
 
   @Override
   public long getDurationUs() {
-    return (long)myParser.getRange().getLength();
+    return (long)myRange.getLength();
   }
 
   @Override
@@ -133,7 +150,7 @@ public class CpuCapture implements ConfigurableDurationData {
     }
     myClockType = clockType;
 
-    for (CaptureNode tree : myParser.getCaptureTrees().values()) {
+    for (CaptureNode tree : myCaptureTrees.values()) {
       updateClockType(tree, clockType);
     }
   }
@@ -149,7 +166,7 @@ public class CpuCapture implements ConfigurableDurationData {
   }
 
   public boolean isDualClock() {
-    return myParser.supportsDualClock();
+    return myIsDualClock;
   }
 
   public Cpu.CpuTraceType getType() {
@@ -29,6 +29,7 @@ import com.android.tools.profilers.cpu.atrace.PerfettoProducer;
 import com.android.tools.profilers.cpu.simpleperf.SimpleperfTraceParser;
 import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import java.io.File;
 import java.util.Arrays;
@@ -37,9 +38,14 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.BufferUnderflowException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -64,11 +70,38 @@ public class CpuCaptureParser {
    */
   static final long IMPORTED_TRACE_ID = 42L;
 
+  private static final int TRACE_HEADER_LENGTH = 10;
+  private static final String ART_TRACE_HEADER = "*version";
+  private static final String ART_STREAMING_TRACE_HEADER = "SLOW";
+  private static final String SIMPLEPERF_TRACE_HEADER = "SIMPLEPERF";
+
+  /**
+   * Budget of the parsed captures kept in {@link #myCaptures}, as the total size of their traces, which the memory used by a parsed
+   * capture is roughly proportional to.
+   */
+  @VisibleForTesting
+  static final long MAX_CACHED_TRACES_SIZE = 1024 * 1024 * 200; // 200MB
+
+  /**
+   * Maximum size of the parsed captures stored on disk.
+   */
+  private static final long MAX_STORED_CAPTURES_SIZE = 1024 * 1024 * 500; // 500MB
+
   /**
-   * Maps a trace id to a corresponding {@link CompletableFuture<CpuCapture>}.
+   * Maps a trace id to a corresponding {@link CompletableFuture<CpuCapture>}, in least recently used order. Parsed captures are evicted
+   * once the size of their traces goes over {@link #MAX_CACHED_TRACES_SIZE}, and parsed again, usually from {@link #myCaptureStore}, when
+   * they are requested again.
    */
   private final Map<Long, CompletableFuture<CpuCapture>> myCaptures;
 
+  /**
+   * Size of the trace of each capture in {@link #myCaptures}.
+   */
+  private final Map<Long, Long> myTraceSizes = new HashMap<>();
+
+  @NotNull
+  private final CpuCaptureStore myCaptureStore;
+
   /**
    * Services containing the {@link java.util.concurrent.Executor} responsible for parsing the capture.
    * This is also used for determining if large trace files should be parsed.
@@ -101,8 +134,14 @@ public class CpuCaptureParser {
   private Map<Long, CpuCaptureMetadata> myCaptureMetadataMap = new HashMap<>();
 
   public CpuCaptureParser(@NotNull IdeProfilerServices services) {
+    this(services, new CpuCaptureStore(new File(FileUtil.getTempDirectory(), "cpu_captures"), MAX_STORED_CAPTURES_SIZE));
+  }
+
+  @VisibleForTesting
+  CpuCaptureParser(@NotNull IdeProfilerServices services, @NotNull CpuCaptureStore captureStore) {
     myServices = services;
-    myCaptures = new HashMap<>();
+    myCaptureStore = captureStore;
+    myCaptures = new LinkedHashMap<>(16, 0.75f, true);
   }
 
   private static Logger getLogger() {
@@ -155,6 +194,26 @@ public class CpuCaptureParser {
     myProcessNameHint = processName;
   }
 
+  /**
+   * Adds the capture of a trace of the given size to {@link #myCaptures}, and evicts the least recently used parsed captures if the
+   * captures are over budget.
+   */
+  private void putCapture(long traceId, @Nullable CompletableFuture<CpuCapture> capture, long traceSize) {
+    myCaptures.put(traceId, capture);
+    myTraceSizes.put(traceId, traceSize);
+
+    long totalSize = myTraceSizes.values().stream().mapToLong(Long::longValue).sum();
+    Iterator<Map.Entry<Long, CompletableFuture<CpuCapture>>> iterator = myCaptures.entrySet().iterator();
+    while (totalSize > MAX_CACHED_TRACES_SIZE && iterator.hasNext()) {
+      Map.Entry<Long, CompletableFuture<CpuCapture>> entry = iterator.next();
+      // Captures still being parsed are not evicted, nor is the one just added.
+      if (entry.getKey() != traceId && entry.getValue() != null && entry.getValue().isDone()) {
+        totalSize -= myTraceSizes.remove(entry.getKey());
+        iterator.remove();
+      }
+    }
+  }
+
   /**
    * Updates {@link #myIsParsing} to false once the given {@link CompletableFuture<CpuCapture>} is done.
    */
@@ -204,13 +263,13 @@ public class CpuCaptureParser {
       Runnable yesCallback = () -> {
         getLogger().warn(String.format("Parsing long (%d bytes) trace file.", fileLength));
         // User decided to proceed. Try parsing the trace file.
-        myCaptures.put(IMPORTED_TRACE_ID, createCaptureFuture(traceFile));
+        putCapture(IMPORTED_TRACE_ID, createCaptureFuture(traceFile), fileLength);
       };
 
       Runnable noCallback = () -> {
         // User aborted the parsing before it starts. Return null and don't try to parse the file.
         getLogger().warn(String.format("Parsing of a long (%d bytes) trace file was aborted by the user.", fileLength));
-        myCaptures.put(IMPORTED_TRACE_ID, null);
+        putCapture(IMPORTED_TRACE_ID, null, 0);
       };
 
       // Open the dialog warning the user the file is too large and asking them if they want to proceed with parsing.
@@ -218,7 +277,7 @@ public class CpuCaptureParser {
     }
     else {
       // Trace file is not too big to be parsed. Parse it normally.
-      myCaptures.put(IMPORTED_TRACE_ID, createCaptureFuture(traceFile));
+      putCapture(IMPORTED_TRACE_ID, createCaptureFuture(traceFile), fileLength);
     }
 
     updateParsingStateWhenDone(myCaptures.get(IMPORTED_TRACE_ID));
@@ -226,37 +285,71 @@ public class CpuCaptureParser {
   }
 
   private CompletableFuture<CpuCapture> createCaptureFuture(@NotNull File traceFile) {
+    String storeKey = CpuCaptureStore.getKey(traceFile);
     CompletableFuture<CpuCapture> future =
-      CompletableFuture.supplyAsync(() -> tryParsingFileWithDifferentParsers(traceFile), myServices.getPoolExecutor());
+      CompletableFuture.supplyAsync(() -> tryParsingFileWithDifferentParsers(traceFile, storeKey), myServices.getPoolExecutor());
+    storeWhenParsed(future, storeKey);
     return future;
   }
 
   /**
-   * Try parsing a given {@link File} into a {@link CpuCapture} using {@link ArtTraceParser}, then {@link SimpleperfTraceParser}
-   * (if simpleperf flag is enabled), then {@link AtraceParser} (if atrace flag is enabled). Return null if the file can't be parsed by any
-   * of them.
+   * Writes the capture of the given future to {@link #myCaptureStore} in {@link IdeProfilerServices#getPoolExecutor()} once it is parsed,
+   * unless it can't be stored or it was read from the store.
    */
-  private CpuCapture tryParsingFileWithDifferentParsers(File traceFile) {
-    try {
-      // First try parsing the trace file as an ART trace.
-      ArtTraceParser artTraceParser = new ArtTraceParser();
-      return artTraceParser.parse(traceFile, IMPORTED_TRACE_ID);
+  private void storeWhenParsed(@NotNull CompletableFuture<CpuCapture> future, @Nullable String storeKey) {
+    if (storeKey == null) {
+      return;
     }
-    catch (Exception ignored) {
-      // We should go on and try parsing the file as a simpleperf or atrace trace.
+    future.thenAcceptAsync(capture -> {
+      if (capture != null && CpuCaptureStore.canStore(capture) && !myCaptureStore.contains(storeKey)) {
+        myCaptureStore.write(storeKey, capture);
+      }
+    }, myServices.getPoolExecutor());
+  }
+
+  /**
+   * Parses a given {@link File} into a {@link CpuCapture}, or loads it from {@link #myCaptureStore} if the same trace was parsed before.
+   * The parser is picked by the header of the file, see {@link #getTraceType(File)}; if the header is not recognized, tries
+   * {@link ArtTraceParser}, then {@link SimpleperfTraceParser}, then {@link AtraceParser} (if atrace flag is enabled). Return null if the
+   * file can't be parsed by any of them.
+   */
+  private CpuCapture tryParsingFileWithDifferentParsers(@NotNull File traceFile, @NotNull String storeKey) {
+    CpuTraceType traceType = getTraceType(traceFile);
+    // Atrace captures are not stored, so there is no need to look them up.
+    CpuCapture storedCapture = traceType == CpuTraceType.ATRACE ? null : myCaptureStore.read(storeKey, IMPORTED_TRACE_ID, null);
+    if (storedCapture != null) {
+      return storedCapture;
     }
+    return parseFileWithDifferentParsers(traceFile, traceType);
+  }
 
-    try {
-      // Then, try parsing the file as a simpleperf trace.
-      SimpleperfTraceParser simpleperfParser = new SimpleperfTraceParser();
-      return simpleperfParser.parse(traceFile, IMPORTED_TRACE_ID);
+  @Nullable
+  private CpuCapture parseFileWithDifferentParsers(@NotNull File traceFile, @NotNull CpuTraceType traceType) {
+    if (traceType == CpuTraceType.ART || traceType == CpuTraceType.UNSPECIFIED_TYPE) {
+      try {
+        // First try parsing the trace file as an ART trace.
+        ArtTraceParser artTraceParser = new ArtTraceParser();
+        return artTraceParser.parse(traceFile, IMPORTED_TRACE_ID);
+      }
+      catch (Exception ignored) {
+        // We should go on and try parsing the file as a simpleperf or atrace trace.
+      }
     }
-    catch (Exception ignored) {
-      // We should go on and try parsing the file as an atrace trace.
+
+    if (traceType == CpuTraceType.SIMPLEPERF || traceType == CpuTraceType.UNSPECIFIED_TYPE) {
+      try {
+        // Then, try parsing the file as a simpleperf trace.
+        SimpleperfTraceParser simpleperfParser =
+          new SimpleperfTraceParser(myServices.getFeatureConfig().isSimpleperfParallelImportEnabled());
+        return simpleperfParser.parse(traceFile, IMPORTED_TRACE_ID);
+      }
+      catch (Exception ignored) {
+        // We should go on and try parsing the file as an atrace trace.
+      }
     }
 
     // If atrace flag is enabled, check the file header to see if it's an atrace file.
-    if (myServices.getFeatureConfig().isAtraceEnabled()) {
+    if ((traceType == CpuTraceType.ATRACE || traceType == CpuTraceType.UNSPECIFIED_TYPE) && myServices.getFeatureConfig().isAtraceEnabled()) {
       try {
         if (AtraceProducer.verifyFileHasAtraceHeader(traceFile) ||
             (myServices.getFeatureConfig().isPerfettoEnabled() && PerfettoProducer.verifyFileHasPerfettoTraceHeader(traceFile))) {
@@ -298,6 +391,41 @@ public class CpuCaptureParser {
     return null;
   }
 
+  /**
+   * Returns the type of the given trace file according to its header, or {@link CpuTraceType#UNSPECIFIED_TYPE} if it is not recognized.
+   * ART traces start with "*version" (or "SLOW" in streaming mode), traces converted by simpleperf report-sample start with "SIMPLEPERF",
+   * and atrace and perfetto traces are recognized by {@link AtraceProducer} and {@link PerfettoProducer}.
+   */
+  @VisibleForTesting
+  @NotNull
+  CpuTraceType getTraceType(@NotNull File traceFile) {
+    byte[] header = new byte[TRACE_HEADER_LENGTH];
+    int headerLength = 0;
+    try (InputStream in = new FileInputStream(traceFile)) {
+      int read;
+      while (headerLength < header.length && (read = in.read(header, headerLength, header.length - headerLength)) > 0) {
+        headerLength += read;
+      }
+    }
+    catch (IOException e) {
+      return CpuTraceType.UNSPECIFIED_TYPE;
+    }
+
+    String headerString = new String(header, 0, headerLength, StandardCharsets.ISO_8859_1);
+    if (headerString.startsWith(ART_TRACE_HEADER) || headerString.startsWith(ART_STREAMING_TRACE_HEADER)) {
+      return CpuTraceType.ART;
+    }
+    if (headerString.startsWith(SIMPLEPERF_TRACE_HEADER)) {
+      return CpuTraceType.SIMPLEPERF;
+    }
+    if (myServices.getFeatureConfig().isAtraceEnabled() &&
+        (AtraceProducer.verifyFileHasAtraceHeader(traceFile) ||
+         (myServices.getFeatureConfig().isPerfettoEnabled() && PerfettoProducer.verifyFileHasPerfettoTraceHeader(traceFile)))) {
+      return CpuTraceType.ATRACE;
+    }
+    return CpuTraceType.UNSPECIFIED_TYPE;
+  }
+
   /**
    * Creates a {@link CompletableFuture<CpuCapture>} from given trace bytes and the profiler type used to obtain the trace.
    * Uses {@link IdeProfilerServices#getPoolExecutor()} to create the actual {@link CpuCapture} object. Adds it to the captures map using
@@ -316,20 +444,20 @@ public class CpuCaptureParser {
       // Trace is not being parsed nor is already parsed. We need to start parsing it.
       if (traceData.size() <= MAX_SUPPORTED_TRACE_SIZE) {
         // Trace size is supported. Start parsing normally and create the future object corresponding to the capture.
-        myCaptures.put(traceId, createCaptureFuture(session, traceId, traceData, profilerType));
+        putCapture(traceId, createCaptureFuture(session, traceId, traceData, profilerType), traceData.size());
       }
       else {
         Runnable yesCallback = () -> {
           getLogger().warn(String.format("Parsing long (%d bytes) trace file.", traceData.size()));
           // User decided to proceed with capture. Start parsing and create the future object corresponding to the capture.
-          myCaptures.put(traceId, createCaptureFuture(session, traceId, traceData, profilerType));
+          putCapture(traceId, createCaptureFuture(session, traceId, traceData, profilerType), traceData.size());
         };
 
         Runnable noCallback = () -> {
           // User aborted the parsing before it starts. Add an entry for the trace id to the map with a null value.
           // This way, next time our model requests this trace capture, we return early.
           getLogger().warn(String.format("Parsing of a long (%d bytes) trace file was aborted by the user.", traceData.size()));
-          myCaptures.put(traceId, null);
+          putCapture(traceId, null, 0);
         };
         // Open the dialog warning the user the trace is too large and asking them if they want to proceed with parsing.
         myServices.openParseLargeTracesDialog(yesCallback, noCallback);
@@ -402,6 +530,8 @@ public class CpuCaptureParser {
                                                             CpuTraceType profilerType) {
     CpuCaptureMetadata metadata = myCaptureMetadataMap.containsKey(traceId) ?
                                   myCaptureMetadataMap.get(traceId) : new CpuCaptureMetadata(new ProfilingConfiguration());
+    // Atrace captures are not stored.
+    String storeKey = profilerType == CpuTraceType.ATRACE ? null : CpuCaptureStore.getKey(session, traceId, traceBytes.size());
 
     CompletableFuture<CpuCapture> future =
       CompletableFuture.supplyAsync(() -> {
@@ -412,7 +542,7 @@ public class CpuCaptureParser {
           metadata.setStatus(CpuCaptureMetadata.CaptureStatus.PREPROCESS_FAILURE);
           return null;
         }
-        return traceBytesToCapture(session, traceId, processedBytes, profilerType);
+        return traceBytesToCapture(session, traceId, processedBytes, profilerType, storeKey);
       }, myServices.getPoolExecutor())
         .thenApplyAsync(capture -> {
           if (metadata.getStatus() == CpuCaptureMetadata.CaptureStatus.PREPROCESS_FAILURE) {
@@ -421,21 +551,27 @@ public class CpuCaptureParser {
           }
           return capture;
         }, myServices.getMainExecutor());
+    storeWhenParsed(future, storeKey);
 
     return future;
   }
 
   private CpuCapture traceBytesToCapture(@NotNull Common.Session session, long traceId, @NotNull ByteString traceData,
-                                         CpuTraceType profilerType) {
+                                         CpuTraceType profilerType, @Nullable String storeKey) {
     // TODO: Remove layers, analyze whether we can keep the whole file in memory.
     try {
+      CpuCapture storedCapture = storeKey == null ? null : myCaptureStore.read(storeKey, traceId, profilerType);
+      if (storedCapture != null) {
+        return storedCapture;
+      }
+
       File trace = CpuCaptureStage.saveCapture(traceId, traceData);
       TraceParser parser;
       if (profilerType == CpuTraceType.ART) {
         parser = new ArtTraceParser();
       }
       else if (profilerType == CpuTraceType.SIMPLEPERF) {
-        parser = new SimpleperfTraceParser();
+        parser = new SimpleperfTraceParser(myServices.getFeatureConfig().isSimpleperfParallelImportEnabled());
       }
       else if (profilerType == CpuTraceType.ATRACE) {
         parser = new AtraceParser(session.getPid());
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.Cpu;
+import com.android.tools.profilers.cpu.nodemodel.AtraceNodeModel;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel;
+import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
+import com.android.tools.profilers.cpu.nodemodel.NoSymbolModel;
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import com.android.tools.profilers.cpu.nodemodel.SyscallModel;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * On-disk store of parsed {@link CpuCapture}s, keyed by the identity of their trace, so that a trace that was already parsed, e.g. when
+ * a session is imported again, can be loaded without running its parser.
+ * <p>
+ * Each capture is written to a compressed file with its call trees in pre-order and each {@link CaptureNodeModel} written once. Only
+ * captures whose trees are all of their data (ART and simpleperf) are stored. The oldest files are deleted when the store exceeds its size
+ * limit.
+ */
+final class CpuCaptureStore {
+  // Increase the value when changing the layout of the stored captures.
+  private static final int FORMAT_VERSION = 1;
+  private static final String FILE_EXTENSION = ".capture";
+
+  private static final byte JAVA_METHOD_MODEL = 0;
+  private static final byte CPP_FUNCTION_MODEL = 1;
+  private static final byte NO_SYMBOL_MODEL = 2;
+  private static final byte SYSCALL_MODEL = 3;
+  private static final byte SINGLE_NAME_MODEL = 4;
+  private static final byte ATRACE_NODE_MODEL = 5;
+
+  private static final ClockType[] CLOCK_TYPES = ClockType.values();
+
+  @NotNull private final File myDirectory;
+  private final long myMaxSizeBytes;
+
+  CpuCaptureStore(@NotNull File directory, long maxSizeBytes) {
+    myDirectory = directory;
+    myMaxSizeBytes = maxSizeBytes;
+  }
+
+  private static Logger getLogger() {
+    return Logger.getInstance(CpuCaptureStore.class);
+  }
+
+  /**
+   * Returns the key under which the capture of the given imported trace file is stored, made of its path, size and modification time so
+   * that the file does not have to be read.
+   */
+  @NotNull
+  static String getKey(@NotNull File trace) {
+    return hash(String.format(Locale.US, "file:%s:%d:%d", trace.getAbsolutePath(), trace.length(), trace.lastModified()));
+  }
+
+  /**
+   * Returns the key under which the capture of the given trace of a session is stored.
+   */
+  @NotNull
+  static String getKey(@NotNull Common.Session session, long traceId, long traceSize) {
+    return hash(String.format(Locale.US, "trace:%d:%d:%d:%d", session.getStreamId(), session.getSessionId(), traceId, traceSize));
+  }
+
+  @NotNull
+  private static String hash(@NotNull String identity) {
+    return Hashing.sha256().hashString(identity, StandardCharsets.UTF_8).toString();
+  }
+
+  static boolean canStore(@NotNull CpuCapture capture) {
+    return capture.getClass() == CpuCapture.class &&
+           (capture.getType() == Cpu.CpuTraceType.ART || capture.getType() == Cpu.CpuTraceType.SIMPLEPERF);
+  }
+
+  /**
+   * Returns the capture stored under the given key, with the given trace id, or null if there is none, it is not of the expected type or
+   * it cannot be read.
+   * <p>
+   * The file is opened under the store lock, so that {@link #trimToSize()} cannot delete it between the lookup and the open. Once open,
+   * it is read without the lock, since deleting it does not affect the open stream.
+   *
+   * @param expectedType the type of capture expected, or null if any type is.
+   */
+  @Nullable
+  CpuCapture read(@NotNull String key, long traceId, @Nullable Cpu.CpuTraceType expectedType) {
+    File file = getFile(key);
+    FileInputStream fileIn;
+    synchronized (this) {
+      if (!file.isFile()) {
+        return null;
+      }
+      try {
+        fileIn = new FileInputStream(file);
+      }
+      catch (FileNotFoundException e) {
+        return null;
+      }
+      // Marks the file as recently used, so that it is deleted last.
+      file.setLastModified(System.currentTimeMillis());
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(fileIn)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      Cpu.CpuTraceType type = Cpu.CpuTraceType.forNumber(in.readInt());
+      if (expectedType != null && type != expectedType) {
+        return null;
+      }
+      boolean dualClock = in.readBoolean();
+      Range range = new Range(in.readDouble(), in.readDouble());
+
+      CaptureNodeModel[] models = new CaptureNodeModel[in.readInt()];
+      for (int i = 0; i < models.length; i++) {
+        models[i] = readModel(in);
+      }
+
+      int threadCount = in.readInt();
+      Map<CpuThreadInfo, CaptureNode> trees = new LinkedHashMap<>();
+      for (int i = 0; i < threadCount; i++) {
+        CpuThreadInfo thread = new CpuThreadInfo(in.readInt(), in.readUTF(), in.readBoolean());
+        trees.put(thread, readTree(in, models));
+      }
+      return new CpuCapture(trees, range, dualClock, traceId, type);
+    }
+    catch (IOException | RuntimeException e) {
+      getLogger().warn(String.format("Failed to read stored capture %s", key), e);
+      synchronized (this) {
+        FileUtil.delete(file);
+      }
+      return null;
+    }
+  }
+
+  boolean contains(@NotNull String key) {
+    return getFile(key).isFile();
+  }
+
+  /**
+   * Stores the given capture under the given key, replacing any capture stored under it.
+   */
+  synchronized void write(@NotNull String key, @NotNull CpuCapture capture) {
+    assert canStore(capture);
+    File file = getFile(key);
+    File tempFile = new File(myDirectory, key + ".tmp");
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      FileUtil.ensureExists(myDirectory);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(tempFile),
+                                                                                                         deflater)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(capture.getType().getNumber());
+        out.writeBoolean(capture.isDualClock());
+        out.writeDouble(capture.getRange().getMin());
+        out.writeDouble(capture.getRange().getMax());
+
+        List<CpuThreadInfo> threads = new ArrayList<>(capture.getThreads());
+        Map<CaptureNodeModel, Integer> modelIds = new IdentityHashMap<>();
+        List<CaptureNodeModel> models = new ArrayList<>();
+        for (CpuThreadInfo thread : threads) {
+          collectModels(capture.getCaptureNode(thread.getId()), modelIds, models);
+        }
+        out.writeInt(models.size());
+        for (CaptureNodeModel model : models) {
+          writeModel(out, model);
+        }
+
+        out.writeInt(threads.size());
+        for (CpuThreadInfo thread : threads) {
+          out.writeInt(thread.getId());
+          out.writeUTF(thread.getName());
+          out.writeBoolean(thread.isMainThread());
+          writeTree(out, capture.getCaptureNode(thread.getId()), modelIds);
+        }
+      }
+      FileUtil.rename(tempFile, file);
+      trimToSize();
+    }
+    catch (IOException | IllegalArgumentException e) {
+      getLogger().warn(String.format("Failed to store capture %s", key), e);
+      FileUtil.delete(tempFile);
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  @NotNull
+  private File getFile(@NotNull String key) {
+    return new File(myDirectory, key + FILE_EXTENSION);
+  }
+
+  /**
+   * Deletes the least recently used captures until the store fits in its size limit.
+   */
+  private void trimToSize() {
+    File[] files = myDirectory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+    if (files == null) {
+      return;
+    }
+    long size = Arrays.stream(files).mapToLong(File::length).sum();
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (int i = 0; i < files.length - 1 && size > myMaxSizeBytes; i++) {
+      size -= files[i].length();
+      FileUtil.delete(files[i]);
+    }
+  }
+
+  private static void collectModels(@Nullable CaptureNode root,
+                                    @NotNull Map<CaptureNodeModel, Integer> modelIds,
+                                    @NotNull List<CaptureNodeModel> models) {
+    Deque<CaptureNode> nodes = new ArrayDeque<>();
+    if (root != null) {
+      nodes.push(root);
+    }
+    while (!nodes.isEmpty()) {
+      CaptureNode node = nodes.pop();
+      if (!modelIds.containsKey(node.getData())) {
+        modelIds.put(node.getData(), models.size());
+        models.add(node.getData());
+      }
+      node.getChildren().forEach(nodes::push);
+    }
+  }
+
+  /**
+   * Writes the nodes of the tree in pre-order, each one with its number of children.
+   */
+  private static void writeTree(@NotNull DataOutputStream out, @NotNull CaptureNode root, @NotNull Map<CaptureNodeModel, Integer> modelIds)
+    throws IOException {
+    out.writeByte(root.getClockType().ordinal());
+    Deque<CaptureNode> nodes = new ArrayDeque<>();
+    nodes.push(root);
+    while (!nodes.isEmpty()) {
+      CaptureNode node = nodes.pop();
+      out.writeInt(modelIds.get(node.getData()));
+      out.writeInt(node.getDepth());
+      out.writeLong(node.getStartGlobal());
+      out.writeLong(node.getEndGlobal());
+      out.writeLong(node.getStartThread());
+      out.writeLong(node.getEndThread());
+      out.writeInt(node.getChildCount());
+      for (int i = node.getChildCount() - 1; i >= 0; i--) {
+        nodes.push(node.getChildAt(i));
+      }
+    }
+  }
+
+  @NotNull
+  private static CaptureNode readTree(@NotNull DataInputStream in, @NotNull CaptureNodeModel[] models) throws IOException {
+    ClockType clockType = CLOCK_TYPES[in.readByte()];
+    // Parents of the nodes to read, with the number of children each one is still missing.
+    Deque<CaptureNode> parents = new ArrayDeque<>();
+    Deque<Integer> missingChildren = new ArrayDeque<>();
+    CaptureNode root = null;
+    do {
+      CaptureNode node = new CaptureNode(models[in.readInt()]);
+      node.setDepth(in.readInt());
+      node.setStartGlobal(in.readLong());
+      node.setEndGlobal(in.readLong());
+      node.setStartThread(in.readLong());
+      node.setEndThread(in.readLong());
+      node.setClockType(clockType);
+      int childCount = in.readInt();
+
+      if (root == null) {
+        root = node;
+      }
+      else {
+        parents.peek().addChild(node);
+        missingChildren.push(missingChildren.pop() - 1);
+      }
+      if (childCount > 0) {
+        parents.push(node);
+        missingChildren.push(childCount);
+      }
+      while (!missingChildren.isEmpty() && missingChildren.peek() == 0) {
+        parents.pop();
+        missingChildren.pop();
+      }
+    }
+    while (!parents.isEmpty());
+    return root;
+  }
+
+  private static void writeModel(@NotNull DataOutputStream out, @NotNull CaptureNodeModel model) throws IOException {
+    if (model instanceof JavaMethodModel) {
+      JavaMethodModel javaModel = (JavaMethodModel)model;
+      out.writeByte(JAVA_METHOD_MODEL);
+      out.writeUTF(javaModel.getName());
+      out.writeUTF(javaModel.getClassName());
+      out.writeUTF(javaModel.getSignature());
+    }
+    else if (model instanceof CppFunctionModel) {
+      CppFunctionModel cppModel = (CppFunctionModel)model;
+      out.writeByte(CPP_FUNCTION_MODEL);
+      out.writeUTF(cppModel.getName());
+      out.writeUTF(cppModel.getClassOrNamespace());
+      out.writeUTF(String.join(", ", cppModel.getParameters()));
+      out.writeBoolean(cppModel.isUserCode());
+      out.writeBoolean(cppModel.getFileName() != null);
+      if (cppModel.getFileName() != null) {
+        out.writeUTF(cppModel.getFileName());
+      }
+      out.writeLong(cppModel.getVAddress());
+    }
+    else if (model instanceof NoSymbolModel) {
+      out.writeByte(NO_SYMBOL_MODEL);
+      out.writeUTF(model.getName());
+    }
+    else if (model instanceof SyscallModel) {
+      out.writeByte(SYSCALL_MODEL);
+      out.writeUTF(model.getName());
+    }
+    else if (model instanceof AtraceNodeModel) {
+      out.writeByte(ATRACE_NODE_MODEL);
+      out.writeUTF(model.getName());
+    }
+    else if (model.getClass() == SingleNameModel.class) {
+      out.writeByte(SINGLE_NAME_MODEL);
+      out.writeUTF(model.getName());
+    }
+    else {
+      throw new IllegalArgumentException("Unsupported node model " + model.getClass().getName());
+    }
+  }
+
+  @NotNull
+  private static CaptureNodeModel readModel(@NotNull DataInputStream in) throws IOException {
+    byte kind = in.readByte();
+    switch (kind) {
+      case JAVA_METHOD_MODEL:
+        return new JavaMethodModel(in.readUTF(), in.readUTF(), in.readUTF());
+      case CPP_FUNCTION_MODEL:
+        CppFunctionModel.Builder builder = new CppFunctionModel.Builder(in.readUTF())
+          .setClassOrNamespace(in.readUTF())
+          .setParameters(in.readUTF())
+          .setIsUserCode(in.readBoolean());
+        if (in.readBoolean()) {
+          builder.setFileName(in.readUTF());
+        }
+        return builder.setVAddress(in.readLong()).build();
+      case NO_SYMBOL_MODEL:
+        return new NoSymbolModel(in.readUTF());
+      case SYSCALL_MODEL:
+        return new SyscallModel(in.readUTF());
+      case SINGLE_NAME_MODEL:
+        return new SingleNameModel(in.readUTF());
+      case ATRACE_NODE_MODEL:
+        return new AtraceNodeModel(in.readUTF());
+      default:
+        throw new IOException("Unknown node model " + kind);
+    }
+  }
+}
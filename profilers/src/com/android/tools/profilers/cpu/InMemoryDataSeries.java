@@ -19,45 +19,52 @@ import com.android.tools.adtui.model.DataSeries;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.SeriesData;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.LongPredicate;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Implementers of this class should implement {@link #inMemoryDataList}, which should return all the {@link DataSeries} that would be
- * returned if {@link #getDataForRange(Range)} receives a range with maximum length.
+ * returned if {@link #getDataForRange(Range)} receives a range with maximum length, sorted by x.
  */
 abstract class InMemoryDataSeries<T> implements DataSeries<T> {
 
+  /**
+   * Returns the elements whose x is within [min, max), plus the element right before min if any. The data returned by
+   * {@link #inMemoryDataList()} is sorted by x, so both ends are located with a binary search and a view of the in-memory list is
+   * returned instead of a copy.
+   */
   @Override
   public List<SeriesData<T>> getDataForRange(Range range) {
     long min = (long)range.getMin();
     long max = (long)range.getMax();
-    List<SeriesData<T>> series = new ArrayList<>();
     List<SeriesData<T>> seriesDataList = inMemoryDataList();
     if (seriesDataList.isEmpty()) {
-      return series;
+      return Collections.emptyList();
     }
-    for (int i = 0; i < seriesDataList.size() - 1; i++) {
-      SeriesData<T> data = seriesDataList.get(i);
-      SeriesData<T> nextData = seriesDataList.get(i + 1);
-      // If our series overlaps with the start of the range upto excluding the end. We add the series.
-      if (data.x >= max) {
-        break;
+    // The last element before our range starts is the one right before the first element greater than min.
+    int fromIndex = Math.max(0, firstIndexMatching(seriesDataList, x -> x > min) - 1);
+    int toIndex = Math.max(fromIndex, firstIndexMatching(seriesDataList, x -> x >= max));
+    return Collections.unmodifiableList(seriesDataList.subList(fromIndex, toIndex));
+  }
+
+  /**
+   * @return the first index of the sorted list whose x matches the given monotonic predicate, or the list size if none does.
+   */
+  private static <T> int firstIndexMatching(@NotNull List<SeriesData<T>> sortedData, @NotNull LongPredicate predicate) {
+    int low = 0;
+    int high = sortedData.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (predicate.test(sortedData.get(mid).x)) {
+        high = mid;
       }
-      // If our next series is greater than our min then we add our current element to the return set. This works because
-      // we want to add the element just before our range starts so checking the next element gives us that.
-      // After that point all elements will be greater than our min until our current element is > than our max in which case
-      // we break out of the loop.
-      if (nextData.x > min) {
-        series.add(data);
+      else {
+        low = mid + 1;
       }
     }
-    SeriesData<T> lastElement = seriesDataList.get(seriesDataList.size() - 1);
-    // Always add the last element if it is less than the max.
-    if (lastElement.x < max) {
-      series.add(lastElement);
-    }
-    return series;
+    return low;
   }
 
   /**
@@ -16,6 +16,9 @@
 package com.android.tools.profilers.cpu;
 
 import com.android.tools.idea.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -30,4 +33,13 @@ public interface TracePreProcessor {
 
   @NotNull
   ByteString preProcessTrace(@NotNull ByteString trace, @NotNull List<String> symbolsDirs);
+
+  /**
+   * Streaming variant of {@link #preProcessTrace(ByteString, List)} for large traces, which reads the trace from {@code trace} and writes
+   * the resulting trace to {@code out}. The default implementation holds the whole trace in memory.
+   */
+  default void preProcessTrace(@NotNull InputStream trace, @NotNull OutputStream out, @NotNull List<String> symbolsDirs)
+    throws IOException {
+    preProcessTrace(ByteString.readFrom(trace), symbolsDirs).writeTo(out);
+  }
 }
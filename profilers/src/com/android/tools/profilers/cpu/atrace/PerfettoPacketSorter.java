@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.atrace;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sorts Atrace lines converted from Perfetto {@link perfetto.protos.PerfettoTrace.FtraceEventBundle}s by timestamp, as a drop-in
+ * replacement of the SQLite-backed sorter it replaced. Lines are added with {@link #addLine(long, String)} and, once {@link #resetForIterator()}
+ * is called, are returned in timestamp order (lines with the same timestamp keep the order they were added in).
+ * <p>
+ * Lines are buffered as UTF-8 bytes next to primitive arrays of timestamps and offsets. When the buffered data exceeds the memory budget,
+ * the run is sorted on a {@link ForkJoinPool} and spilled to a temporary file while new lines keep being buffered. Iteration does a k-way
+ * merge of the spilled runs, read sequentially through small buffers, and of the last in-memory run, so memory use is bounded by the budget
+ * rather than the trace size. Spilled runs are not memory-mapped, so {@link #close()} can delete them as soon as their streams are closed.
+ * The budget counts the capacity of the buffers, which never grow past it, so at most two runs (the one being spilled and the current
+ * one) are held at a time. If a run can't be spilled, {@link #addLine(long, String)} or {@link #resetForIterator()} throws, rather
+ * than silently dropping its lines.
+ */
+public class PerfettoPacketSorter implements Iterator<String> {
+  private static final long DEFAULT_MEMORY_BUDGET_BYTES = 16L * 1024 * 1024;
+  /**
+   * Maximum number of runs being sorted and spilled at the same time, each holding up to the memory budget.
+   */
+  private static final int MAX_PENDING_SPILLS = 1;
+  /**
+   * Below this number of elements, sorting is not split any further between fork-join tasks.
+   */
+  private static final int SEQUENTIAL_SORT_THRESHOLD = 1 << 13;
+  /**
+   * Number of lines written to a spilled run between checks of whether the sorter was closed.
+   */
+  private static final int SPILL_CANCEL_CHECK_INTERVAL = 1 << 12;
+  private static final int RUN_READ_BUFFER_BYTES = 1 << 16;
+
+  private final long myMemoryBudgetBytes;
+  @NotNull private final ForkJoinPool myPool;
+
+  @NotNull private LineBuffer myCurrentRun;
+  @NotNull private final ArrayDeque<Future<File>> myPendingSpills = new ArrayDeque<>();
+  @NotNull private final List<File> mySpilledRuns = new ArrayList<>();
+  /**
+   * Every temporary file created for a run and not deleted yet, including the ones still being written. Guards {@link #myClosed}.
+   */
+  @NotNull private final List<File> myTempFiles = new ArrayList<>();
+  private volatile boolean myClosed;
+  @Nullable private PriorityQueue<RunCursor> myMergeQueue;
+
+  public PerfettoPacketSorter() {
+    this(DEFAULT_MEMORY_BUDGET_BYTES, ForkJoinPool.commonPool());
+  }
+
+  @VisibleForTesting
+  public PerfettoPacketSorter(long memoryBudgetBytes, @NotNull ForkJoinPool pool) {
+    assert memoryBudgetBytes > 0 && memoryBudgetBytes < Integer.MAX_VALUE;
+    myMemoryBudgetBytes = memoryBudgetBytes;
+    myPool = pool;
+    myCurrentRun = new LineBuffer(memoryBudgetBytes);
+  }
+
+  /**
+   * Adds a line to be sorted. Must not be called after {@link #resetForIterator()}.
+   *
+   * @throws IOException if a previous run couldn't be spilled to disk.
+   */
+  public void addLine(long timestamp, @NotNull String line) throws IOException {
+    myCurrentRun.add(timestamp, line);
+    if (myCurrentRun.getMemoryUsage() >= myMemoryBudgetBytes) {
+      spillCurrentRun();
+    }
+  }
+
+  /**
+   * This function should be called when we want to finalize this class for writing and enable it for reading.
+   * The last in-memory run is sorted, pending spills are waited for, and the merge of all runs is set up.
+   *
+   * @throws IOException if a run couldn't be spilled to disk or mapped back.
+   */
+  public void resetForIterator() throws IOException {
+    PriorityQueue<RunCursor> queue = new PriorityQueue<>();
+    awaitPendingSpills(0);
+    try {
+      // Run indices are used to break timestamp ties, so lines with the same timestamp keep their insertion order across runs.
+      for (int i = 0; i < mySpilledRuns.size(); i++) {
+        addCursor(queue, new FileRunCursor(mySpilledRuns.get(i), i));
+      }
+    }
+    catch (IOException e) {
+      queue.forEach(RunCursor::close);
+      throw e;
+    }
+    LineBuffer lastRun = myCurrentRun;
+    myCurrentRun = new LineBuffer(myMemoryBudgetBytes);
+    addCursor(queue, new InMemoryRunCursor(lastRun, lastRun.sort(myPool), mySpilledRuns.size()));
+    myMergeQueue = queue;
+  }
+
+  /**
+   * Closes the spilled runs being read, deletes them and frees the buffered lines. Spills still being written stop and delete their files.
+   */
+  public void close() {
+    synchronized (myTempFiles) {
+      myClosed = true;
+    }
+    myPendingSpills.forEach(future -> future.cancel(false));
+    myPendingSpills.clear();
+    if (myMergeQueue != null) {
+      myMergeQueue.forEach(RunCursor::close);
+      myMergeQueue = null;
+    }
+    myCurrentRun = new LineBuffer(myMemoryBudgetBytes);
+    mySpilledRuns.clear();
+    synchronized (myTempFiles) {
+      // Files of spills still being written may not be deletable yet; those spills delete them when they see the sorter is closed.
+      myTempFiles.removeIf(FileUtil::delete);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return myMergeQueue != null && !myMergeQueue.isEmpty();
+  }
+
+  @Override
+  @NotNull
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    RunCursor cursor = myMergeQueue.poll();
+    String line = cursor.getLine();
+    addCursor(myMergeQueue, cursor);
+    return line;
+  }
+
+  private static void addCursor(@NotNull PriorityQueue<RunCursor> queue, @NotNull RunCursor cursor) {
+    boolean hasLine = false;
+    try {
+      hasLine = cursor.advance();
+    }
+    finally {
+      if (hasLine) {
+        queue.add(cursor);
+      }
+      else {
+        cursor.close();
+      }
+    }
+  }
+
+  private void spillCurrentRun() throws IOException {
+    // Bound the number of full runs held in memory while they are being sorted and written.
+    awaitPendingSpills(MAX_PENDING_SPILLS - 1);
+    LineBuffer run = myCurrentRun;
+    myCurrentRun = new LineBuffer(myMemoryBudgetBytes);
+    myPendingSpills.add(myPool.submit(() -> spill(run, run.sort(myPool))));
+  }
+
+  /**
+   * Waits for the oldest pending spills until at most {@code maxPending} are left.
+   */
+  private void awaitPendingSpills(int maxPending) throws IOException {
+    try {
+      while (myPendingSpills.size() > maxPending) {
+        mySpilledRuns.add(myPendingSpills.peek().get());
+        myPendingSpills.poll();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while spilling sorted lines");
+    }
+    catch (ExecutionException e) {
+      throw new IOException("Failed to spill sorted lines", e.getCause());
+    }
+  }
+
+  /**
+   * Writes the sorted run to a temporary file as a sequence of (timestamp, length, UTF-8 bytes) records. The file is deleted if the spill
+   * fails or the sorter is closed before the spill completes.
+   */
+  @NotNull
+  private File spill(@NotNull LineBuffer run, @NotNull int[] order) throws IOException {
+    File file = FileUtil.createTempFile("perfetto", ".run", true);
+    boolean completed = false;
+    try {
+      synchronized (myTempFiles) {
+        myTempFiles.add(file);
+      }
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+        for (int i = 0; i < order.length; i++) {
+          if (i % SPILL_CANCEL_CHECK_INTERVAL == 0 && myClosed) {
+            throw new InterruptedIOException("Sorter closed while spilling sorted lines");
+          }
+          int index = order[i];
+          output.writeLong(run.myTimestamps[index]);
+          int start = run.myOffsets[index];
+          int length = run.getLineEnd(index) - start;
+          output.writeInt(length);
+          output.write(run.myBytes, start, length);
+        }
+      }
+      synchronized (myTempFiles) {
+        // Checked after the file is closed: if close() already ran, it couldn't delete the file while it was open.
+        completed = !myClosed;
+      }
+      if (!completed) {
+        throw new InterruptedIOException("Sorter closed while spilling sorted lines");
+      }
+      return file;
+    }
+    finally {
+      if (!completed) {
+        synchronized (myTempFiles) {
+          myTempFiles.remove(file);
+        }
+        FileUtil.delete(file);
+      }
+    }
+  }
+
+  /**
+   * Lines and their timestamps, in insertion order. Line i is stored as UTF-8 in myBytes, from myOffsets[i] to myOffsets[i + 1].
+   */
+  private static final class LineBuffer {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INDEX_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final int myMaxLines;
+    private final int myMaxBytes;
+    @NotNull private long[] myTimestamps;
+    @NotNull private int[] myOffsets;
+    @NotNull private byte[] myBytes;
+    private int myCount;
+    private int myByteCount;
+
+    /**
+     * Capacities are capped so that the buffer never allocates more than the memory budget, instead of overshooting it by doubling.
+     */
+    LineBuffer(long memoryBudgetBytes) {
+      myMaxBytes = (int)memoryBudgetBytes;
+      myMaxLines = Math.max(1, (int)(memoryBudgetBytes / INDEX_BYTES));
+      int initialLines = Math.max(1, Math.min(INITIAL_CAPACITY, myMaxLines / 2));
+      myTimestamps = new long[initialLines];
+      myOffsets = new int[initialLines];
+      myBytes = new byte[Math.max(1, Math.min(INITIAL_CAPACITY * 64, myMaxBytes / 2))];
+    }
+
+    void add(long timestamp, @NotNull String line) {
+      byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+      if (myCount == myTimestamps.length) {
+        int capacity = grow(myCount, myCount + 1, myMaxLines);
+        myTimestamps = Arrays.copyOf(myTimestamps, capacity);
+        myOffsets = Arrays.copyOf(myOffsets, capacity);
+      }
+      if (myByteCount + bytes.length > myBytes.length) {
+        myBytes = Arrays.copyOf(myBytes, grow(myBytes.length, myByteCount + bytes.length, myMaxBytes));
+      }
+      myTimestamps[myCount] = timestamp;
+      myOffsets[myCount] = myByteCount;
+      System.arraycopy(bytes, 0, myBytes, myByteCount, bytes.length);
+      myByteCount += bytes.length;
+      myCount++;
+    }
+
+    private static int grow(int capacity, int needed, int maxCapacity) {
+      return Math.max(needed, (int)Math.min((long)capacity * 2, maxCapacity));
+    }
+
+    /**
+     * @return the allocated size of the buffers, which is what the run holds on the heap until it is spilled.
+     */
+    long getMemoryUsage() {
+      return myBytes.length + (long)myTimestamps.length * INDEX_BYTES;
+    }
+
+    int getLineEnd(int index) {
+      return index + 1 < myCount ? myOffsets[index + 1] : myByteCount;
+    }
+
+    @NotNull
+    String getLine(int index) {
+      int start = myOffsets[index];
+      return new String(myBytes, start, getLineEnd(index) - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the indices of the lines, stably sorted by timestamp.
+     */
+    @NotNull
+    int[] sort(@NotNull ForkJoinPool pool) {
+      int[] order = new int[myCount];
+      for (int i = 0; i < myCount; i++) {
+        order[i] = i;
+      }
+      pool.invoke(new SortTask(myTimestamps, order, new int[myCount], 0, myCount));
+      return order;
+    }
+  }
+
+  /**
+   * Stable merge sort of an index array by timestamp, splitting both halves between fork-join tasks.
+   */
+  private static final class SortTask extends RecursiveAction {
+    @NotNull private final long[] myTimestamps;
+    @NotNull private final int[] myOrder;
+    @NotNull private final int[] myScratch;
+    private final int myFrom;
+    private final int myTo;
+
+    SortTask(@NotNull long[] timestamps, @NotNull int[] order, @NotNull int[] scratch, int from, int to) {
+      myTimestamps = timestamps;
+      myOrder = order;
+      myScratch = scratch;
+      myFrom = from;
+      myTo = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom <= SEQUENTIAL_SORT_THRESHOLD) {
+        insertionSortOrMerge(myFrom, myTo);
+        return;
+      }
+      int middle = (myFrom + myTo) >>> 1;
+      invokeAll(new SortTask(myTimestamps, myOrder, myScratch, myFrom, middle),
+                new SortTask(myTimestamps, myOrder, myScratch, middle, myTo));
+      merge(myFrom, middle, myTo);
+    }
+
+    private void insertionSortOrMerge(int from, int to) {
+      if (to - from <= 32) {
+        for (int i = from + 1; i < to; i++) {
+          int index = myOrder[i];
+          long timestamp = myTimestamps[index];
+          int j = i - 1;
+          while (j >= from && myTimestamps[myOrder[j]] > timestamp) {
+            myOrder[j + 1] = myOrder[j];
+            j--;
+          }
+          myOrder[j + 1] = index;
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      insertionSortOrMerge(from, middle);
+      insertionSortOrMerge(middle, to);
+      merge(from, middle, to);
+    }
+
+    private void merge(int from, int middle, int to) {
+      if (myTimestamps[myOrder[middle - 1]] <= myTimestamps[myOrder[middle]]) {
+        // Already in order.
+        return;
+      }
+      System.arraycopy(myOrder, from, myScratch, from, to - from);
+      int left = from;
+      int right = middle;
+      for (int i = from; i < to; i++) {
+        if (right >= to || (left < middle && myTimestamps[myScratch[left]] <= myTimestamps[myScratch[right]])) {
+          myOrder[i] = myScratch[left++];
+        }
+        else {
+          myOrder[i] = myScratch[right++];
+        }
+      }
+    }
+  }
+
+  /**
+   * Position in a sorted run during the k-way merge. Cursors are ordered by their current timestamp, then by run index.
+   */
+  private static abstract class RunCursor implements Comparable<RunCursor> {
+    private final int myRunIndex;
+    protected long myTimestamp;
+
+    RunCursor(int runIndex) {
+      myRunIndex = runIndex;
+    }
+
+    /**
+     * Moves to the next line of the run.
+     *
+     * @return false if the run has no more lines.
+     */
+    abstract boolean advance();
+
+    @NotNull
+    abstract String getLine();
+
+    /**
+     * Releases the resources held by the run. Called once the run has no more lines, or when the sorter is closed.
+     */
+    void close() {
+    }
+
+    @Override
+    public int compareTo(@NotNull RunCursor other) {
+      int result = Long.compare(myTimestamp, other.myTimestamp);
+      return result != 0 ? result : Integer.compare(myRunIndex, other.myRunIndex);
+    }
+  }
+
+  private static final class InMemoryRunCursor extends RunCursor {
+    @NotNull private final LineBuffer myRun;
+    @NotNull private final int[] myOrder;
+    private int myPosition = -1;
+
+    InMemoryRunCursor(@NotNull LineBuffer run, @NotNull int[] order, int runIndex) {
+      super(runIndex);
+      myRun = run;
+      myOrder = order;
+    }
+
+    @Override
+    boolean advance() {
+      if (++myPosition >= myOrder.length) {
+        return false;
+      }
+      myTimestamp = myRun.myTimestamps[myOrder[myPosition]];
+      return true;
+    }
+
+    @NotNull
+    @Override
+    String getLine() {
+      return myRun.getLine(myOrder[myPosition]);
+    }
+  }
+
+  private static final class FileRunCursor extends RunCursor {
+    @NotNull private final DataInputStream myInput;
+    @NotNull private byte[] myLine = new byte[256];
+    private int myLineLength;
+
+    FileRunCursor(@NotNull File file, int runIndex) throws IOException {
+      super(runIndex);
+      myInput = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_READ_BUFFER_BYTES));
+    }
+
+    @Override
+    boolean advance() {
+      try {
+        try {
+          myTimestamp = myInput.readLong();
+        }
+        catch (EOFException e) {
+          return false;
+        }
+        myLineLength = myInput.readInt();
+        if (myLineLength > myLine.length) {
+          myLine = new byte[Math.max(myLineLength, myLine.length * 2)];
+        }
+        myInput.readFully(myLine, 0, myLineLength);
+        return true;
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException("Failed to read sorted lines", e);
+      }
+    }
+
+    @NotNull
+    @Override
+    String getLine() {
+      return new String(myLine, 0, myLineLength, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    void close() {
+      try {
+        myInput.close();
+      }
+      catch (IOException ignored) {
+      }
+    }
+  }
+}
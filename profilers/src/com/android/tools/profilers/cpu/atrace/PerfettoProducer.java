@@ -51,7 +51,7 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
 
   // Maps thread id to thread group id. A tgid is the thread id at the root of the tree. This is also known as the PID in user space.
   private final ArrayDeque<String> myGeneratedTrebuchetLines = new ArrayDeque<>();
-  private final PerfettoPacketDBSorter mySorter = new PerfettoPacketDBSorter();
+  private final PerfettoPacketSorter mySorter = new PerfettoPacketSorter();
 
   private static double nanosToSeconds(double nanos) {
     return nanos / TimeUnit.SECONDS.toNanos(1);
@@ -131,6 +131,8 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
     }
     catch (IOException ex) {
       getLogger().error(ex);
+      // Delete the runs spilled so far, the import is failed anyway.
+      mySorter.close();
       return false;
     }
   }
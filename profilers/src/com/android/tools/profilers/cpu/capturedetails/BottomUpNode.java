@@ -18,24 +18,91 @@ package com.android.tools.profilers.cpu.capturedetails;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CompactCaptureTree;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
 public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
   private final List<CaptureNode> myPathNodes = new ArrayList<>();
+  /**
+   * Same as {@link #myPathNodes}, for nodes built from a {@link CompactCaptureTree}.
+   */
+  @NotNull private int[] myCompactPathNodes = new int[0];
+  private int myCompactPathNodeCount;
   private final boolean myIsRoot;
   private boolean myChildrenBuilt;
 
   private BottomUpNode(String id) {
-    super(id);
+    this(id, null);
+  }
+
+  private BottomUpNode(String id, @Nullable CompactCaptureTree compactTree) {
+    super(id, compactTree);
     myIsRoot = false;
     myChildrenBuilt = false;
   }
 
+  /**
+   * Builds the bottom-up tree of the given node of a {@link CompactCaptureTree}, walking the tree by index.
+   */
+  public BottomUpNode(@NotNull CompactCaptureTree tree, int node) {
+    super("Root", tree);
+    myIsRoot = true;
+    myChildrenBuilt = true;
+
+    // Pre-order traversal with a stack of indices, which sorts nodes the same way as the CaptureNode traversal.
+    int[] stack = new int[16];
+    int stackSize = 0;
+    stack[stackSize++] = node;
+
+    // We use a separate map for unmatched children, because we can not merge unmatched with matched,
+    // i.e all merged children should have the same {@link CaptureNode.FilterType};
+    Map<String, BottomUpNode> children = new HashMap<>();
+    Map<String, BottomUpNode> unmatchedChildren = new HashMap<>();
+
+    while (stackSize > 0) {
+      int curNode = stack[--stackSize];
+      String curId = tree.getModel(curNode).getId();
+      boolean isUnmatched = tree.isUnmatched(curNode);
+
+      BottomUpNode child = isUnmatched ? unmatchedChildren.get(curId) : children.get(curId);
+      if (child == null) {
+        child = new BottomUpNode(curId, tree);
+        if (isUnmatched) {
+          unmatchedChildren.put(curId, child);
+        }
+        else {
+          children.put(curId, child);
+        }
+        addChild(child);
+      }
+      child.addCompactPathNode(curNode);
+      child.addCompactNode(curNode);
+
+      // Adding in reverse order so that the first child is processed first
+      int childCount = tree.getChildCount(curNode);
+      if (stackSize + childCount > stack.length) {
+        stack = Arrays.copyOf(stack, Math.max(stack.length * 2, stackSize + childCount));
+      }
+      int position = stackSize + childCount - 1;
+      for (int c = tree.getFirstChild(curNode); c != CompactCaptureTree.NO_NODE; c = tree.getNextSibling(c)) {
+        stack[position--] = c;
+      }
+      stackSize += childCount;
+    }
+
+    addCompactNode(node);
+
+    for (BottomUpNode child : getChildren()) {
+      child.buildChildren();
+    }
+  }
+
   public BottomUpNode(@NotNull CaptureNode node) {
     super("Root");
     myIsRoot = true;
@@ -90,10 +157,22 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     myPathNodes.add(node);
   }
 
+  private void addCompactPathNode(int node) {
+    if (myCompactPathNodeCount == myCompactPathNodes.length) {
+      myCompactPathNodes = Arrays.copyOf(myCompactPathNodes, Math.max(4, myCompactPathNodes.length * 2));
+    }
+    myCompactPathNodes[myCompactPathNodeCount++] = node;
+  }
+
   public boolean buildChildren() {
     if (myChildrenBuilt) {
       return false;
     }
+    if (myCompactTree != null) {
+      buildCompactChildren(myCompactTree);
+      myChildrenBuilt = true;
+      return true;
+    }
 
     // We use a separate map for unmatched children, because we can not merge unmatched with matched,
     // i.e all merged children should have the same {@link CaptureNode.FilterType};
@@ -127,8 +206,40 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     return true;
   }
 
+  private void buildCompactChildren(@NotNull CompactCaptureTree tree) {
+    Map<String, BottomUpNode> children = new HashMap<>();
+    Map<String, BottomUpNode> unmatchedChildren = new HashMap<>();
+
+    assert myCompactPathNodeCount == getCompactNodeCount();
+    for (int i = 0; i < myCompactPathNodeCount; ++i) {
+      int parent = tree.getParent(myCompactPathNodes[i]);
+      if (parent == CompactCaptureTree.NO_NODE) {
+        continue;
+      }
+      String parentId = tree.getModel(parent).getId();
+      boolean isUnmatched = tree.isUnmatched(parent);
+      BottomUpNode child = isUnmatched ? unmatchedChildren.get(parentId) : children.get(parentId);
+      if (child == null) {
+        child = new BottomUpNode(parentId, tree);
+        if (isUnmatched) {
+          unmatchedChildren.put(parentId, child);
+        }
+        else {
+          children.put(parentId, child);
+        }
+        addChild(child);
+      }
+      child.addCompactPathNode(parent);
+      child.addCompactNode(getCompactNode(i));
+    }
+  }
+
   @Override
   public void update(@NotNull Range range) {
+    if (myCompactTree != null) {
+      updateCompact(range, myCompactTree);
+      return;
+    }
     // how much time was spent in this call stack path, and in the functions it called
     myGlobalTotal = 0;
     // how much time was spent doing work directly in this call stack path
@@ -164,6 +275,35 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     myGlobalChildrenTotal = myGlobalTotal - self;
   }
 
+  /**
+   * Same as {@link #update(Range)}, for nodes built from a {@link CompactCaptureTree}.
+   */
+  private void updateCompact(@NotNull Range range, @NotNull CompactCaptureTree tree) {
+    myGlobalTotal = 0;
+    double self = 0;
+    int outerSoFar = CompactCaptureTree.NO_NODE;
+
+    for (int i = 0; i < getCompactNodeCount(); i++) {
+      int node = getCompactNode(i);
+      if (outerSoFar == CompactCaptureTree.NO_NODE || tree.getEnd(node) > tree.getEnd(outerSoFar)) {
+        if (outerSoFar != CompactCaptureTree.NO_NODE) {
+          myGlobalTotal += getGlobalIntersection(range, tree, outerSoFar);
+        }
+        outerSoFar = node;
+      }
+
+      self += getGlobalIntersection(range, tree, node);
+      for (int child = tree.getFirstChild(node); child != CompactCaptureTree.NO_NODE; child = tree.getNextSibling(child)) {
+        self -= getGlobalIntersection(range, tree, child);
+      }
+    }
+
+    if (outerSoFar != CompactCaptureTree.NO_NODE) {
+      myGlobalTotal += getGlobalIntersection(range, tree, outerSoFar);
+    }
+    myGlobalChildrenTotal = myGlobalTotal - self;
+  }
+
   @NotNull
   @Override
   public CaptureNodeModel getMethodModel() {
@@ -171,6 +311,9 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
       // Return a dummy entry for the root.
       return new SingleNameModel("");
     }
+    if (myCompactTree != null) {
+      return myCompactTree.getModel(myCompactPathNodes[0]);
+    }
     CaptureNodeModel model = myPathNodes.get(0).getData();
     assert model != null;
     return model;
@@ -181,6 +324,9 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     if (myIsRoot) {
       return CaptureNode.FilterType.MATCH;
     }
+    if (myCompactTree != null) {
+      return myCompactTree.getFilterType(myCompactPathNodes[0]);
+    }
     return myPathNodes.get(0).getFilterType();
   }
 }
@@ -159,7 +159,7 @@ public interface CaptureDetails {
       assert myTopDownNode != null;
       myTopDownNode.update(mySelectionRange);
       if (myTopDownNode.getGlobalTotal() > 0) {
-        double start = Math.max(myTopDownNode.getNodes().get(0).getStart(), mySelectionRange.getMin());
+        double start = Math.max(myTopDownNode.getFirstNodeStart(), mySelectionRange.getMin());
         myFlameNode = convertToFlameChart(myTopDownNode, start, 0);
       }
       else {
@@ -199,8 +199,8 @@ public interface CaptureDetails {
     private CaptureNode convertToFlameChart(@NotNull TopDownNode topDown, double start, int depth) {
       assert topDown.getGlobalTotal() > 0;
 
-      CaptureNode node = new CaptureNode(topDown.getNodes().get(0).getData());
-      node.setFilterType(topDown.getNodes().get(0).getFilterType());
+      CaptureNode node = new CaptureNode(topDown.getMethodModel());
+      node.setFilterType(topDown.getFilterType());
       node.setStartGlobal((long)start);
       node.setStartThread((long)start);
       node.setEndGlobal((long)(start + topDown.getGlobalTotal()));
@@ -18,10 +18,13 @@ package com.android.tools.profilers.cpu.capturedetails;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CompactCaptureTree;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class CpuTreeNode<T extends CpuTreeNode> {
@@ -30,6 +33,15 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
    * such as {@link #getGlobalTotal()}, {@link #getGlobalChildrenTotal()}, etc...
    */
   protected final List<CaptureNode> myNodes = new ArrayList<>();
+
+  /**
+   * When this node is built from a {@link CompactCaptureTree}, the indices of the tree nodes it represents are stored instead of
+   * {@link #myNodes}, so that no {@link CaptureNode} has to be created.
+   */
+  @Nullable protected final CompactCaptureTree myCompactTree;
+  @NotNull private int[] myCompactNodes = new int[0];
+  private int myCompactNodeCount;
+
   private final List<T> myChildren = new ArrayList<>();
 
   private final String myId;
@@ -39,7 +51,12 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   protected double myThreadChildrenTotal = 0;
 
   public CpuTreeNode(String id) {
+    this(id, null);
+  }
+
+  public CpuTreeNode(String id, @Nullable CompactCaptureTree compactTree) {
     myId = id;
+    myCompactTree = compactTree;
   }
 
   public String getId() {
@@ -59,6 +76,38 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
     return myNodes;
   }
 
+  protected void addCompactNode(int node) {
+    assert myCompactTree != null;
+    if (myCompactNodeCount == myCompactNodes.length) {
+      myCompactNodes = Arrays.copyOf(myCompactNodes, Math.max(4, myCompactNodes.length * 2));
+    }
+    myCompactNodes[myCompactNodeCount++] = node;
+  }
+
+  @Nullable
+  public CompactCaptureTree getCompactTree() {
+    return myCompactTree;
+  }
+
+  /**
+   * @return the number of {@link CompactCaptureTree} nodes represented by this node, if it was built from a {@link CompactCaptureTree}.
+   */
+  public int getCompactNodeCount() {
+    return myCompactNodeCount;
+  }
+
+  public int getCompactNode(int index) {
+    assert index < myCompactNodeCount;
+    return myCompactNodes[index];
+  }
+
+  /**
+   * @return the start of the first node represented by this node.
+   */
+  public long getFirstNodeStart() {
+    return myCompactTree != null ? myCompactTree.getStart(getCompactNode(0)) : myNodes.get(0).getStart();
+  }
+
   protected void addChild(@NotNull T child) {
     myChildren.add(child);
   }
@@ -89,6 +138,20 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
     myThreadTotal = 0.0;
     myThreadChildrenTotal = 0;
 
+    if (myCompactTree != null) {
+      for (int i = 0; i < myCompactNodeCount; i++) {
+        int node = myCompactNodes[i];
+        myGlobalTotal += getGlobalIntersection(range, myCompactTree, node);
+        myThreadTotal += getThreadIntersection(range, myCompactTree, node);
+        for (int child = myCompactTree.getFirstChild(node); child != CompactCaptureTree.NO_NODE;
+             child = myCompactTree.getNextSibling(child)) {
+          myGlobalChildrenTotal += getGlobalIntersection(range, myCompactTree, child);
+          myThreadChildrenTotal += getThreadIntersection(range, myCompactTree, child);
+        }
+      }
+      return;
+    }
+
     for (CaptureNode node : myNodes) {
       myGlobalTotal += getIntersection(range, node, ClockType.GLOBAL);
       myThreadTotal += getIntersection(range, node, ClockType.THREAD);
@@ -110,7 +173,34 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
     return intersection.isEmpty() ? 0.0 : intersection.getLength();
   }
 
+  protected static double getGlobalIntersection(@NotNull Range range, @NotNull CompactCaptureTree tree, int node) {
+    return getIntersection(range, tree.getStartGlobal(node), tree.getEndGlobal(node));
+  }
+
+  protected static double getThreadIntersection(@NotNull Range range, @NotNull CompactCaptureTree tree, int node) {
+    return getIntersection(range, tree.getStartThread(node), tree.getEndThread(node));
+  }
+
+  /**
+   * Same as {@link Range#getIntersection(Range)} followed by {@link Range#getLength()}, without allocating any {@link Range}.
+   */
+  private static double getIntersection(@NotNull Range range, double start, double end) {
+    if (range.isEmpty() || start > end || start > range.getMax() || end < range.getMin()) {
+      return 0.0;
+    }
+    return Math.min(range.getMax(), end) - Math.max(range.getMin(), start);
+  }
+
   public boolean inRange(Range range) {
+    if (myCompactTree != null) {
+      for (int i = 0; i < myCompactNodeCount; i++) {
+        int node = myCompactNodes[i];
+        if (myCompactTree.getStart(node) < range.getMax() && range.getMin() < myCompactTree.getEnd(node)) {
+          return true;
+        }
+      }
+      return false;
+    }
     return myNodes.stream().anyMatch(node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
   }
 
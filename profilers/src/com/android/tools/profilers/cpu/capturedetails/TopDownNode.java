@@ -16,6 +16,7 @@
 package com.android.tools.profilers.cpu.capturedetails;
 
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CompactCaptureTree;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import org.jetbrains.annotations.NotNull;
 
@@ -39,6 +40,40 @@ public class TopDownNode extends CpuTreeNode<TopDownNode> {
     addChildren(node, true);
   }
 
+  /**
+   * Builds the top-down tree of the given node of a {@link CompactCaptureTree}, walking the tree by index.
+   */
+  public TopDownNode(@NotNull CompactCaptureTree tree, int node) {
+    super(tree.getModel(node).getId(), tree);
+    addCompactNode(node);
+
+    addChildren(tree, node, false);
+    addChildren(tree, node, true);
+  }
+
+  /**
+   * Adds children of {@param node} whose filter type matches to the flag {@param unmatched}.
+   */
+  private void addChildren(@NotNull CompactCaptureTree tree, int node, boolean unmatched) {
+    Map<String, TopDownNode> children = new TreeMap<>();
+    for (int child = tree.getFirstChild(node); child != CompactCaptureTree.NO_NODE; child = tree.getNextSibling(child)) {
+      if (unmatched != tree.isUnmatched(child)) {
+        continue;
+      }
+
+      String childId = tree.getModel(child).getId();
+      TopDownNode prev = children.get(childId);
+      TopDownNode other = new TopDownNode(tree, child);
+      if (prev == null) {
+        children.put(childId, other);
+        addChild(other);
+      }
+      else {
+        prev.merge(other);
+      }
+    }
+  }
+
   /**
    * Adds children of {@param node} whose filter type matches to the flag {@param unmatched}.
    */
@@ -64,7 +99,14 @@ public class TopDownNode extends CpuTreeNode<TopDownNode> {
   }
 
   private void merge(TopDownNode other) {
-    addNodes(other.getNodes());
+    if (myCompactTree != null) {
+      for (int i = 0; i < other.getCompactNodeCount(); i++) {
+        addCompactNode(other.getCompactNode(i));
+      }
+    }
+    else {
+      addNodes(other.getNodes());
+    }
 
     // We use a separate map for unmatched children, because we can not merge unmatched with matched,
     // i.e all merged children should have the same {@link CaptureNode.FilterType};
@@ -99,6 +141,9 @@ public class TopDownNode extends CpuTreeNode<TopDownNode> {
   @NotNull
   @Override
   public CaptureNodeModel getMethodModel() {
+    if (myCompactTree != null) {
+      return myCompactTree.getModel(getCompactNode(0));
+    }
     CaptureNodeModel model = getNodes().get(0).getData();
     assert model != null;
     return model;
@@ -106,6 +151,9 @@ public class TopDownNode extends CpuTreeNode<TopDownNode> {
 
   @Override
   public CaptureNode.FilterType getFilterType() {
+    if (myCompactTree != null) {
+      return myCompactTree.getFilterType(getCompactNode(0));
+    }
     return getNodes().get(0).getFilterType();
   }
 }
@@ -64,19 +64,10 @@ public final class SimpleperfSampleReporter implements TracePreProcessor {
   @NotNull
   public ByteString preProcessTrace(@NotNull ByteString trace, @NotNull List<String> symbolDirs) {
     try {
-      File processedTraceFile = FileUtil.createTempFile(
-        String.format("%s%ctrace-%d", FileUtil.getTempDirectory(), File.separatorChar, System.currentTimeMillis()), ".trace", true);
-
-      Process reportSample = new ProcessBuilder(getReportSampleCommand(trace, processedTraceFile, symbolDirs)).start();
-      reportSample.waitFor();
-
-      boolean reportSampleSuccess = reportSample.exitValue() == 0;
-      if (!reportSampleSuccess) {
-        String error = new BufferedReader(new InputStreamReader(reportSample.getErrorStream())).readLine();
-        getLogger().warn("simpleperf report-sample exited unsuccessfully. " + error);
+      File processedTraceFile = createProcessedTraceFile();
+      if (!reportSample(getReportSampleCommand(trace, processedTraceFile, symbolDirs))) {
         return FAILURE;
       }
-
       ByteString processedTrace = ByteString.copyFrom(Files.readAllBytes(processedTraceFile.toPath()));
       processedTraceFile.delete();
       return processedTrace;
@@ -85,21 +76,73 @@ public final class SimpleperfSampleReporter implements TracePreProcessor {
       getLogger().warn(String.format("I/O error when trying to execute simpleperf report-sample:\n%s", e.getMessage()));
       return FAILURE;
     }
+  }
+
+  /**
+   * Same as {@link #preProcessTrace(ByteString, List)}, but copies the raw trace to the input file of `simpleperf report-sample` and its
+   * output file to {@code out} in chunks, so neither has to be held in memory.
+   */
+  @Override
+  public void preProcessTrace(@NotNull InputStream trace, @NotNull OutputStream out, @NotNull List<String> symbolDirs) throws IOException {
+    File traceFile = FileUtil.createTempFile(String.format("cpu_trace_%d", System.currentTimeMillis()), ".trace", true);
+    try {
+      try (OutputStream traceOut = new FileOutputStream(traceFile)) {
+        FileUtil.copy(trace, traceOut);
+      }
+      File processedTraceFile = createProcessedTraceFile();
+      if (!reportSample(getReportSampleCommand(traceFile, processedTraceFile, symbolDirs))) {
+        FAILURE.writeTo(out);
+        return;
+      }
+      Files.copy(processedTraceFile.toPath(), out);
+      processedTraceFile.delete();
+    }
+    finally {
+      traceFile.delete();
+    }
+  }
+
+  @NotNull
+  private static File createProcessedTraceFile() throws IOException {
+    return FileUtil.createTempFile(
+      String.format("%s%ctrace-%d", FileUtil.getTempDirectory(), File.separatorChar, System.currentTimeMillis()), ".trace", true);
+  }
+
+  /**
+   * Runs the given `simpleperf report-sample` command and returns whether it succeeded.
+   */
+  private static boolean reportSample(@NotNull List<String> command) throws IOException {
+    try {
+      Process reportSample = new ProcessBuilder(command).start();
+      reportSample.waitFor();
+
+      boolean reportSampleSuccess = reportSample.exitValue() == 0;
+      if (!reportSampleSuccess) {
+        String error = new BufferedReader(new InputStreamReader(reportSample.getErrorStream())).readLine();
+        getLogger().warn("simpleperf report-sample exited unsuccessfully. " + error);
+      }
+      return reportSampleSuccess;
+    }
     catch (InterruptedException e) {
       getLogger().warn(String.format("Failed to wait for simpleperf report-sample command to run:\n%s", e.getMessage()));
-      return FAILURE;
+      return false;
     }
   }
 
   @VisibleForTesting
   List<String> getReportSampleCommand(@NotNull ByteString trace, @NotNull File processedTrace, @NotNull List<String> symbolDirs) throws IOException {
+    return getReportSampleCommand(tempFileFromByteString(trace), processedTrace, symbolDirs);
+  }
+
+  @NotNull
+  private List<String> getReportSampleCommand(@NotNull File trace, @NotNull File processedTrace, @NotNull List<String> symbolDirs) {
     List<String> command = new ArrayList<>();
     command.add(getSimpleperfBinaryPath());
     command.add("report-sample");
     command.add("--protobuf");
     command.add("--show-callchain");
     command.add("-i");
-    command.add(tempFileFromByteString(trace).getAbsolutePath());
+    command.add(trace.getAbsolutePath());
     command.add("-o");
     command.add(processedTrace.getAbsolutePath());
     for (String path : symbolDirs) {
@@ -128,7 +171,7 @@ public final class SimpleperfSampleReporter implements TracePreProcessor {
   private static File tempFileFromByteString(@NotNull ByteString bytes) throws IOException {
     File file = FileUtil.createTempFile(String.format("cpu_trace_%d", System.currentTimeMillis()), ".trace", true);
     try (FileOutputStream out = new FileOutputStream(file)) {
-      out.write(bytes.toByteArray());
+      bytes.writeTo(out);
     }
     return file;
   }
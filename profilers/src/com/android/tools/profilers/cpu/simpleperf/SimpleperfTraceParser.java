@@ -31,20 +31,29 @@ import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Parses a trace file obtained using simpleperf to a map threadId -> {@link CaptureNode}.
+ * <p>
+ * In parallel mode, records are decoded and the per-thread call trees are built on a {@link ForkJoinPool}. Decoded records are still
+ * applied and trees are still inserted in the same order as the serial mode, so both modes produce the same capture.
  */
 public class SimpleperfTraceParser implements TraceParser {
 
@@ -65,6 +74,11 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private static final String DATA_APP_DIR = "/data/app";
 
+  /**
+   * Number of records decoded by a single task when parsing the trace file in parallel.
+   */
+  private static final int RECORDS_PER_DECODE_TASK = 4096;
+
   /**
    * Version of the trace file to be parsed. Should be obtained from the file itself.
    */
@@ -118,11 +132,26 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private String myAppDataFolderPrefix;
 
+  /**
+   * Pool used to decode records and build the call trees in parallel, or null if the trace should be parsed on the calling thread.
+   */
+  @Nullable private final ForkJoinPool myPool;
+
   public SimpleperfTraceParser() {
+    this(false);
+  }
+
+  public SimpleperfTraceParser(boolean parallel) {
+    this(parallel ? ForkJoinPool.commonPool() : null);
+  }
+
+  @VisibleForTesting
+  public SimpleperfTraceParser(@Nullable ForkJoinPool pool) {
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
     myCaptureTrees = new HashMap<>();
     myThreads = new HashMap<>();
+    myPool = pool;
   }
 
   /**
@@ -218,47 +247,23 @@ public class SimpleperfTraceParser implements TraceParser {
     verifyMagicNumber(buffer);
     parseVersionNumber(buffer);
 
-    // Read the first record size
-    int recordSize = buffer.getInt();
-
-    // 0 is used to indicate the end of the trace
-    while (recordSize != 0) {
-      // The next recordSize bytes should represent the record
-      byte[] recordBytes = new byte[recordSize];
-      buffer.get(recordBytes);
-      SimpleperfReport.Record record = SimpleperfReport.Record.parseFrom(recordBytes);
-
-      switch (record.getRecordDataCase()) {
-        case FILE:
-          SimpleperfReport.File file = record.getFile();
-          myFiles.put(file.getId(), file);
-          break;
-        case LOST:
-          // Only one occurrence of LOST type is expected.
-          SimpleperfReport.LostSituation situation = record.getLost();
-          mySampleCount = situation.getSampleCount();
-          myLostSampleCount = situation.getLostCount();
-          break;
-        case SAMPLE:
-          SimpleperfReport.Sample sample = record.getSample();
-          mySamples.add(sample);
-          break;
-        case THREAD:
-          SimpleperfReport.Thread thread = record.getThread();
-          myThreads.put(thread.getThreadId(), thread);
-          break;
-        case META_INFO:
-          SimpleperfReport.MetaInfo info = record.getMetaInfo();
-          myEventTypes = info.getEventTypeList();
-          myAppPackageName = info.getAppPackageName();
-          myAppDataFolderPrefix = String.format("%s/%s", DATA_APP_DIR, myAppPackageName);
-          break;
-        default:
-          getLog().warn("Unexpected record data type " + record.getRecordDataCase());
+    if (myPool != null) {
+      parseRecordsInParallel(buffer, myPool);
+    }
+    else {
+      // Read the first record size
+      int recordSize = buffer.getInt();
+
+      // 0 is used to indicate the end of the trace
+      while (recordSize != 0) {
+        // The next recordSize bytes should represent the record
+        byte[] recordBytes = new byte[recordSize];
+        buffer.get(recordBytes);
+        addRecord(SimpleperfReport.Record.parseFrom(recordBytes));
+
+        // read the next record size
+        recordSize = buffer.getInt();
       }
-
-      // read the next record size
-      recordSize = buffer.getInt();
     }
 
     if (mySamples.size() != mySampleCount) {
@@ -267,6 +272,72 @@ public class SimpleperfTraceParser implements TraceParser {
     }
   }
 
+  /**
+   * Finds the record boundaries on the calling thread, which only requires reading the record sizes, then decodes the records on the
+   * given pool. The decoded records are added in file order.
+   */
+  private void parseRecordsInParallel(@NotNull ByteBuffer buffer, @NotNull ForkJoinPool pool) throws IOException {
+    int[] offsets = new int[1024];
+    int recordCount = 0;
+    int recordSize = buffer.getInt();
+    while (recordSize != 0) {
+      if (recordSize < 0 || recordSize > buffer.remaining()) {
+        throw new BufferUnderflowException();
+      }
+      if (recordCount + 1 == offsets.length) {
+        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      offsets[recordCount++] = buffer.position();
+      buffer.position(buffer.position() + recordSize);
+      recordSize = buffer.getInt();
+    }
+    // Each record is followed by the size of the next one (or by the 0 marking the end of the trace), so record i ends 4 bytes before
+    // offsets[i + 1].
+    offsets[recordCount] = buffer.position();
+
+    SimpleperfReport.Record[] records = new SimpleperfReport.Record[recordCount];
+    try {
+      pool.invoke(new DecodeRecordsTask(buffer, offsets, records, 0, recordCount));
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    for (SimpleperfReport.Record record : records) {
+      addRecord(record);
+    }
+  }
+
+  private void addRecord(@NotNull SimpleperfReport.Record record) {
+    switch (record.getRecordDataCase()) {
+      case FILE:
+        SimpleperfReport.File file = record.getFile();
+        myFiles.put(file.getId(), file);
+        break;
+      case LOST:
+        // Only one occurrence of LOST type is expected.
+        SimpleperfReport.LostSituation situation = record.getLost();
+        mySampleCount = situation.getSampleCount();
+        myLostSampleCount = situation.getLostCount();
+        break;
+      case SAMPLE:
+        SimpleperfReport.Sample sample = record.getSample();
+        mySamples.add(sample);
+        break;
+      case THREAD:
+        SimpleperfReport.Thread thread = record.getThread();
+        myThreads.put(thread.getThreadId(), thread);
+        break;
+      case META_INFO:
+        SimpleperfReport.MetaInfo info = record.getMetaInfo();
+        myEventTypes = info.getEventTypeList();
+        myAppPackageName = info.getAppPackageName();
+        myAppDataFolderPrefix = String.format("%s/%s", DATA_APP_DIR, myAppPackageName);
+        break;
+      default:
+        getLog().warn("Unexpected record data type " + record.getRecordDataCase());
+    }
+  }
+
   /**
    * Parses the next 16-bit number of the given {@link ByteBuffer} as the trace version.
    */
@@ -301,9 +372,22 @@ public class SimpleperfTraceParser implements TraceParser {
     // Split the samples per thread.
     Map<Integer, List<SimpleperfReport.Sample>> threadSamples = splitSamplesPerThread();
 
-    // Process the samples for each thread
-    for (Map.Entry<Integer, List<SimpleperfReport.Sample>> threadSamplesEntry : threadSamples.entrySet()) {
-      parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue());
+    // Process the samples for each thread. In parallel mode, the trees are built concurrently but still added in the iteration order of
+    // the split, exactly like the serial mode does.
+    List<Map.Entry<Integer, List<SimpleperfReport.Sample>>> threadEntries = new ArrayList<>(threadSamples.entrySet());
+    ThreadTree[] trees = new ThreadTree[threadEntries.size()];
+    if (myPool != null) {
+      myPool.invoke(new BuildThreadTreesTask(threadEntries, trees, 0, trees.length));
+    }
+    else {
+      for (int i = 0; i < trees.length; i++) {
+        trees[i] = parseThreadSamples(threadEntries.get(i).getKey(), threadEntries.get(i).getValue());
+      }
+    }
+    for (ThreadTree tree : trees) {
+      if (tree != null) {
+        myCaptureTrees.put(tree.myThreadInfo, tree.myRoot);
+      }
     }
   }
 
@@ -335,12 +419,16 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   /**
-   * Parses the list of samples of a thread into a {@link CaptureNode} tree.
+   * Parses the list of samples of a thread into a {@link CaptureNode} tree. Only reads the parser state, so it can be called concurrently
+   * for different threads.
+   *
+   * @return the thread and the root of its tree, or null if the thread has no samples.
    */
-  private void parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
+  @Nullable
+  private ThreadTree parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
     if (threadSamples.isEmpty()) {
       getLog().warn(String.format("Warning: No samples read for thread %s (%d)", myThreads.get(threadId), threadId));
-      return;
+      return null;
     }
 
     if (!myThreads.containsKey(threadId)) {
@@ -352,7 +440,6 @@ public class SimpleperfTraceParser implements TraceParser {
     SimpleperfReport.Thread thread = myThreads.get(threadId);
     CaptureNode root = createCaptureNode(new SingleNameModel(thread.getThreadName()), firstTimestamp);
     root.setDepth(0);
-    myCaptureTrees.put(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), root);
 
     // Parse the first call chain so we have a value for lastCallchain
     List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = Lists.reverse(threadSamples.get(0).getCallchainList());
@@ -376,6 +463,7 @@ public class SimpleperfTraceParser implements TraceParser {
     updateAncestorsEndTime(lastTimestamp, lastVisitedNode);
     // update the root timestamp
     setNodeEndTime(root, lastTimestamp);
+    return new ThreadTree(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), root);
   }
 
   /**
@@ -474,4 +562,94 @@ public class SimpleperfTraceParser implements TraceParser {
     boolean isUserWritten = symbolFile.getPath().startsWith(myAppDataFolderPrefix);
     return NodeNameParser.parseNodeName(symbolFile.getSymbol(symbolId), isUserWritten, symbolFile.getPath(), parentVAddress);
   }
+
+  private static final class ThreadTree {
+    @NotNull private final CpuThreadInfo myThreadInfo;
+    @NotNull private final CaptureNode myRoot;
+
+    private ThreadTree(@NotNull CpuThreadInfo threadInfo, @NotNull CaptureNode root) {
+      myThreadInfo = threadInfo;
+      myRoot = root;
+    }
+  }
+
+  /**
+   * Decodes the records in [from, to) into the corresponding slots of the records array, splitting the range until it is small enough.
+   */
+  private static final class DecodeRecordsTask extends RecursiveAction {
+    @NotNull private final ByteBuffer myBuffer;
+    @NotNull private final int[] myOffsets;
+    @NotNull private final SimpleperfReport.Record[] myRecords;
+    private final int myFrom;
+    private final int myTo;
+
+    private DecodeRecordsTask(@NotNull ByteBuffer buffer,
+                              @NotNull int[] offsets,
+                              @NotNull SimpleperfReport.Record[] records,
+                              int from,
+                              int to) {
+      myBuffer = buffer;
+      myOffsets = offsets;
+      myRecords = records;
+      myFrom = from;
+      myTo = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom > RECORDS_PER_DECODE_TASK) {
+        int mid = (myFrom + myTo) >>> 1;
+        invokeAll(new DecodeRecordsTask(myBuffer, myOffsets, myRecords, myFrom, mid),
+                  new DecodeRecordsTask(myBuffer, myOffsets, myRecords, mid, myTo));
+        return;
+      }
+      // Each task reads through its own duplicate, so the tasks don't share a buffer position.
+      ByteBuffer buffer = myBuffer.duplicate();
+      try {
+        for (int i = myFrom; i < myTo; i++) {
+          byte[] recordBytes = new byte[myOffsets[i + 1] - Integer.BYTES - myOffsets[i]];
+          buffer.position(myOffsets[i]);
+          buffer.get(recordBytes);
+          myRecords[i] = SimpleperfReport.Record.parseFrom(recordBytes);
+        }
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Builds the call trees of the threads in [from, to), one thread per task.
+   */
+  private final class BuildThreadTreesTask extends RecursiveAction {
+    @NotNull private final List<Map.Entry<Integer, List<SimpleperfReport.Sample>>> myThreadEntries;
+    @NotNull private final ThreadTree[] myTrees;
+    private final int myFrom;
+    private final int myTo;
+
+    private BuildThreadTreesTask(@NotNull List<Map.Entry<Integer, List<SimpleperfReport.Sample>>> threadEntries,
+                                 @NotNull ThreadTree[] trees,
+                                 int from,
+                                 int to) {
+      myThreadEntries = threadEntries;
+      myTrees = trees;
+      myFrom = from;
+      myTo = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom > 1) {
+        int mid = (myFrom + myTo) >>> 1;
+        invokeAll(new BuildThreadTreesTask(myThreadEntries, myTrees, myFrom, mid),
+                  new BuildThreadTreesTask(myThreadEntries, myTrees, mid, myTo));
+        return;
+      }
+      if (myTo > myFrom) {
+        Map.Entry<Integer, List<SimpleperfReport.Sample>> entry = myThreadEntries.get(myFrom);
+        myTrees[myFrom] = parseThreadSamples(entry.getKey(), entry.getValue());
+      }
+    }
+  }
 }
@@ -37,7 +37,7 @@ public class EnergyUsage extends LineChartModel {
         profilers.getSession().getPid(),
         Common.Event.Kind.ENERGY_USAGE,
         UnifiedEventDataSeries.DEFAULT_GROUP_ID,
-        UnifiedEventDataSeries.fromFieldToDataExtractor(event -> (long)EnergyUsageDataSeries.getTotalUsage(event.getEnergyUsage()))
+        UnifiedEventDataSeries.fromFieldToDataExtractor(event -> (long)EnergyUsageDataSeries.getTotalUsage(event.getEnergyUsage())), true
       );
     }
     else {
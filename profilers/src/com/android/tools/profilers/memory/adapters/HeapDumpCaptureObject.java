@@ -29,7 +29,9 @@ import com.android.tools.perflib.heap.Heap;
 import com.android.tools.perflib.heap.Instance;
 import com.android.tools.perflib.heap.Snapshot;
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor;
+import com.android.tools.perflib.heap.io.HprofBuffer;
 import com.android.tools.perflib.heap.io.InMemoryBuffer;
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo;
 import com.android.tools.profiler.proto.Transport;
@@ -45,7 +47,12 @@ import com.android.tools.proguard.ProguardMap;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
 import gnu.trove.TLongObjectHashMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collection;
@@ -78,8 +85,14 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @NotNull
   private final Map<Integer, HeapSet> myHeapSets = new HashMap<>();
 
+  /**
+   * Class entries by class id. Instances of the same class share their entry, instead of each registering their own.
+   */
   @NotNull
-  private final TLongObjectHashMap<InstanceObject> myInstanceIndex = new TLongObjectHashMap<>();
+  private final TLongObjectHashMap<ClassDb.ClassEntry> myClassEntries = new TLongObjectHashMap<>();
+
+  @Nullable
+  private InstanceObject myJavaLangClassObject;
 
   @NotNull
   private final ClassDb myClassDb = new ClassDb();
@@ -93,6 +106,15 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Nullable
   private volatile Snapshot mySnapshot;
 
+  /**
+   * The file the heap dump is memory-mapped from, so that the HPROF data stays out of the Java heap while the capture is loaded.
+   */
+  @Nullable
+  private File myHprofFile;
+
+  @Nullable
+  private MemoryMappedFileBuffer myMappedBuffer;
+
   private volatile boolean myIsLoadingError = false;
 
   private boolean myHasNativeAllocations;
@@ -124,6 +146,10 @@ public class HeapDumpCaptureObject implements CaptureObject {
                                                  new ProjectClassesInstanceFilter(myStage.getStudioProfilers().getIdeServices()));
   }
 
+  private static Logger getLogger() {
+    return Logger.getInstance(HeapDumpCaptureObject.class);
+  }
+
   @NotNull
   @Override
   public String getName() {
@@ -199,17 +225,12 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   @Override
   public boolean load(@Nullable Range queryRange, @Nullable Executor queryJoiner) {
-    Transport.BytesResponse response = myClient.getTransportClient().getBytes(Transport.BytesRequest.newBuilder()
-                                                                                .setStreamId(mySession.getStreamId())
-                                                                                .setId(Long.toString(myHeapDumpInfo.getStartTime()))
-                                                                                .build());
-
-    if (response.getContents() == ByteString.EMPTY) {
+    HprofBuffer buffer = fetchHeapDump();
+    if (buffer == null) {
       myIsLoadingError = true;
       return false;
     }
 
-    InMemoryBuffer buffer = new InMemoryBuffer(response.getContents().asReadOnlyByteBuffer());
     Snapshot snapshot;
     NativeRegistryPostProcessor nativeRegistryPostProcessor = new NativeRegistryPostProcessor();
     if (myProguardMap != null) {
@@ -223,44 +244,35 @@ public class HeapDumpCaptureObject implements CaptureObject {
     mySnapshot = snapshot;
 
     Map<Heap, HeapSet> heapSets = new HashMap<>(snapshot.getHeaps().size());
-    InstanceObject javaLangClassObject = null;
     for (Heap heap : snapshot.getHeaps()) {
       HeapSet heapSet = new HeapSet(this, heap.getName(), heap.getId());
       heapSets.put(heap, heapSet);
-      if (javaLangClassObject == null) {
+      if (myJavaLangClassObject == null) {
         ClassObj javaLangClass =
           heap.getClasses().stream().filter(classObj -> JAVA_LANG_CLASS.equals(classObj.getClassName())).findFirst().orElse(null);
         if (javaLangClass != null) {
-          javaLangClassObject = createClassObjectInstance(null, javaLangClass);
+          myJavaLangClassObject = createClassObjectInstance(null, javaLangClass);
         }
       }
     }
 
-    InstanceObject finalJavaLangClassObject = javaLangClassObject;
     for (Heap heap : snapshot.getHeaps()) {
       HeapSet heapSet = heapSets.get(heap);
       heap.getClasses().forEach(classObj -> {
-        InstanceObject classObject = createClassObjectInstance(finalJavaLangClassObject, classObj);
-        assert !myInstanceIndex.containsKey(classObj.getId());
-        myInstanceIndex.put(classObj.getId(), classObject);
+        InstanceObject classObject = createClassObjectInstance(myJavaLangClassObject, classObj);
         heapSet.addDeltaInstanceObject(classObject);
       });
     }
 
+    // Instances are not indexed: findInstanceObject creates an equivalent InstanceObject on demand, so each instance is only wrapped once
+    // here for its heap's ClassifierSets. They are still wrapped eagerly, rather than when a class set is expanded, because ClassifierSet
+    // computes its counts and sizes from its InstanceObjects and the instance filters work on them too. The instances themselves come from
+    // the perflib Snapshot rather than a streamed offset index, since retained sizes need its dominator computation.
     for (Heap heap : snapshot.getHeaps()) {
       HeapSet heapSet = heapSets.get(heap);
       heap.forEachInstance(instance -> {
         assert !JAVA_LANG_CLASS.equals(instance.getClassObj().getClassName());
-
-        ClassObj classObj = instance.getClassObj();
-        ClassDb.ClassEntry classEntry =
-          classObj.getSuperClassObj() != null ?
-          myClassDb.registerClass(classObj.getId(), classObj.getSuperClassObj().getId(), classObj.getClassName()) :
-          myClassDb.registerClass(classObj.getId(), classObj.getClassName());
-        InstanceObject instanceObject = new HeapDumpInstanceObject(this, instance, classEntry, null);
-        assert !myInstanceIndex.containsKey(instance.getId());
-        myInstanceIndex.put(instance.getId(), instanceObject);
-        heapSet.addDeltaInstanceObject(instanceObject);
+        heapSet.addDeltaInstanceObject(new HeapDumpInstanceObject(this, instance, getClassEntry(instance.getClassObj()), null));
         return true;
       });
     }
@@ -293,6 +305,55 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Override
   public void unload() {
     myExecutorService.shutdownNow();
+    if (myMappedBuffer != null) {
+      myMappedBuffer.dispose();
+      myMappedBuffer = null;
+    }
+    if (myHprofFile != null) {
+      FileUtil.delete(myHprofFile);
+      myHprofFile = null;
+    }
+  }
+
+  /**
+   * Fetches the heap dump and writes it to a temporary file. The response is only referenced from this method, so it can be collected
+   * before the snapshot is parsed.
+   *
+   * @return the buffer to parse the heap dump from, or null if the heap dump couldn't be fetched.
+   */
+  @Nullable
+  private HprofBuffer fetchHeapDump() {
+    Transport.BytesRequest request = Transport.BytesRequest.newBuilder()
+      .setStreamId(mySession.getStreamId())
+      .setId(Long.toString(myHeapDumpInfo.getStartTime()))
+      .build();
+    Transport.BytesResponse response = myClient.getTransportClient().getBytes(request);
+    ByteString contents = response.getContents();
+    if (contents == ByteString.EMPTY) {
+      return null;
+    }
+    return createBuffer(contents);
+  }
+
+  /**
+   * Writes the heap dump to a temporary file and maps it, so the HPROF data is not kept in the Java heap alongside the parsed snapshot.
+   * Falls back to reading the heap dump from memory if the file cannot be written.
+   */
+  @NotNull
+  private HprofBuffer createBuffer(@NotNull ByteString contents) {
+    try {
+      File file = FileUtil.createTempFile(String.format("heapdump_%d", myHeapDumpInfo.getStartTime()), ".hprof", true);
+      try (FileOutputStream outputStream = new FileOutputStream(file)) {
+        contents.writeTo(outputStream);
+      }
+      myHprofFile = file;
+      myMappedBuffer = new MemoryMappedFileBuffer(file);
+      return myMappedBuffer;
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to map the heap dump, reading it from memory instead.", e);
+      return new InMemoryBuffer(contents.asReadOnlyByteBuffer());
+    }
   }
 
   @NotNull
@@ -313,13 +374,38 @@ public class HeapDumpCaptureObject implements CaptureObject {
              .asList(InstanceAttribute.LABEL, InstanceAttribute.DEPTH, InstanceAttribute.SHALLOW_SIZE, InstanceAttribute.RETAINED_SIZE);
   }
 
+  /**
+   * @return an {@link InstanceObject} for the given instance. It is created on demand, and is equal to the one held by the heap sets.
+   */
   @Nullable
   public InstanceObject findInstanceObject(@NotNull Instance instance) {
     if (mySnapshot == null) {
       return null;
     }
 
-    return myInstanceIndex.get(instance.getId());
+    return createInstanceObject(instance);
+  }
+
+  @NotNull
+  private InstanceObject createInstanceObject(@NotNull Instance instance) {
+    if (instance instanceof ClassObj) {
+      ClassDb.ClassEntry classEntry =
+        myJavaLangClassObject != null ? myJavaLangClassObject.getClassEntry() : getClassEntry((ClassObj)instance);
+      return new HeapDumpInstanceObject(this, instance, classEntry, ValueObject.ValueType.CLASS);
+    }
+    return new HeapDumpInstanceObject(this, instance, getClassEntry(instance.getClassObj()), null);
+  }
+
+  @NotNull
+  private synchronized ClassDb.ClassEntry getClassEntry(@NotNull ClassObj classObj) {
+    ClassDb.ClassEntry classEntry = myClassEntries.get(classObj.getId());
+    if (classEntry == null) {
+      classEntry = classObj.getSuperClassObj() != null ?
+                   myClassDb.registerClass(classObj.getId(), classObj.getSuperClassObj().getId(), classObj.getClassName()) :
+                   myClassDb.registerClass(classObj.getId(), classObj.getClassName());
+      myClassEntries.put(classObj.getId(), classEntry);
+    }
+    return classEntry;
   }
 
   @NotNull
@@ -328,6 +414,9 @@ public class HeapDumpCaptureObject implements CaptureObject {
     ClassDb.ClassEntry classEntry = classObj.getSuperClassObj() != null ?
                                     myClassDb.registerClass(classObj.getId(), classObj.getSuperClassObj().getId(), className) :
                                     myClassDb.registerClass(classObj.getId(), className);
+    synchronized (this) {
+      myClassEntries.put(classObj.getId(), classEntry);
+    }
     InstanceObject classObject;
     if (javaLangClass == null) {
       // Handle java.lang.Class which is a special case. All its instances are other classes, so wee need to create an InstanceObject for it
@@ -395,8 +484,17 @@ public class HeapDumpCaptureObject implements CaptureObject {
     myExecutorService.submit(() -> {
       // Run the remaining analyzers on the full instance set, since we don't know the the instances that have been removed from the
       // HeapSets using the filter that we are removing.
-      Set<InstanceObject> allInstances = new HashSet<>(myInstanceIndex.size());
-      myInstanceIndex.forEachValue(instance -> allInstances.add(instance));
+      Set<InstanceObject> allInstances = new HashSet<>();
+      Snapshot snapshot = mySnapshot;
+      if (snapshot != null) {
+        for (Heap heap : snapshot.getHeaps()) {
+          heap.getClasses().forEach(classObj -> allInstances.add(createInstanceObject(classObj)));
+          heap.forEachInstance(instance -> {
+            allInstances.add(createInstanceObject(instance));
+            return true;
+          });
+        }
+      }
       Set<InstanceObject> matchedInstances = allInstances;
       for (CaptureObjectInstanceFilter filter : myCurrentInstanceFilters) {
         matchedInstances = filter.filter(matchedInstances, myClassDb);
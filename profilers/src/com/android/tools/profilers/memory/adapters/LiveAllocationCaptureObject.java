@@ -51,6 +51,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.intellij.openapi.diagnostic.Logger;
 import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TLongHashSet;
 import gnu.trove.TLongObjectHashMap;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -86,6 +87,15 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   // In perfa, the batched samples are sent in 500ms but can take time to arrive. 5 seconds should be more than enough as a buffer.
   private static final long QUERY_BUFFER_NS = TimeUnit.SECONDS.toNanos(5);
 
+  // Interval between the checkpoints of live instances, which bounds the number of events replayed to compute a snapshot.
+  @VisibleForTesting static final long CHECKPOINT_INTERVAL_NS = TimeUnit.SECONDS.toNanos(10);
+
+  // Total number of live instances the checkpoints can hold, roughly 40 bytes each.
+  private static final long MAX_CHECKPOINT_INSTANCE_COUNT = 2_000_000;
+
+  // How long unload waits for a running query to be interrupted before releasing the checkpoints.
+  private static final long UNLOAD_TIMEOUT_SECONDS = 5;
+
   @VisibleForTesting static final String SAMPLING_INFO_MESSAGE = "Selected region does not have full tracking. Data may be inaccurate.";
 
   @Nullable private MemoryProfilerStage myStage;
@@ -99,6 +109,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   private final TLongObjectHashMap<AllocationStack.StackFrame> myMethodIdMap;
   private final TIntObjectHashMap<ThreadId> myThreadIdMap;
   private final TreeMap<Long, Memory.MemoryMap.MemoryRegion> myJniMemoryRegionMap;
+  @VisibleForTesting final LiveInstanceCheckpoints myCheckpoints;
 
   private final ProfilerClient myClient;
   private final Common.Session mySession;
@@ -137,6 +148,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     myMethodIdMap = new TLongObjectHashMap<>();
     myThreadIdMap = new TIntObjectHashMap<>();
     myJniMemoryRegionMap = new TreeMap<>();
+    myCheckpoints = new LiveInstanceCheckpoints(session.getStartTimestamp(), CHECKPOINT_INTERVAL_NS, MAX_CHECKPOINT_INSTANCE_COUNT);
 
     myClient = client;
     mySession = session;
@@ -282,6 +294,16 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   public void unload() {
     myQueryRange.removeDependencies(myAspectObserver);
     myExecutorService.shutdownNow();
+    // A query that is still running could add a checkpoint after they are cleared, so wait for it to stop first.
+    try {
+      if (!myExecutorService.awaitTermination(UNLOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        getLogger().warn("Timed out waiting for live allocation queries to stop");
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    myCheckpoints.clear();
   }
 
   // Update myContextEndTimeNs and Callstack information
@@ -354,8 +376,11 @@ public class LiveAllocationCaptureObject implements CaptureObject {
         List<InstanceObject> deltaFreeList = new ArrayList<>();
         List<InstanceObject> resetDeltaFreeList = new ArrayList<>();
 
-        // Clear and recreate the instance/heap sets if previous range does not intersect with the new one
-        boolean clear = myPreviousQueryEndTimeNs <= newStartTimeNs || newEndTimeNs <= myPreviousQueryStartTimeNs;
+        // Clear and recreate the instance/heap sets if previous range does not intersect with the new one, or if replaying the deltas
+        // would cover more time than rebuilding the selection from a checkpoint.
+        boolean clear = myPreviousQueryEndTimeNs <= newStartTimeNs || newEndTimeNs <= myPreviousQueryStartTimeNs ||
+                        Math.abs(newStartTimeNs - myPreviousQueryStartTimeNs) + Math.abs(newEndTimeNs - myPreviousQueryEndTimeNs) >
+                        newEndTimeNs - newStartTimeNs + CHECKPOINT_INTERVAL_NS;
         if (clear) {
           myInstanceMap.clear();
           // If we are resetting, then first establish the object snapshot at the query range's start point.
@@ -489,44 +514,71 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   }
 
   /**
-   * Populates the input list with all instance objects that are alive at |snapshotTimeNs|.
+   * Populates the input list with all instance objects that are alive at |snapshotTimeNs|. The live instances are restored from the
+   * closest checkpoint before |snapshotTimeNs|, and only the events after the checkpoint are replayed. New checkpoints are taken along
+   * the way.
    */
   private void queryJavaInstanceSnapshot(long snapshotTimeNs, @NotNull List<InstanceObject> snapshotList) {
-    // Retrieve all the event samples from the start of the session until the snapshot time.
-    long sessionStartNs = mySession.getStartTimestamp();
-    List<Memory.BatchAllocationEvents> eventsList = getAllocationEvents(sessionStartNs, snapshotTimeNs);
-    Map<Integer, LiveAllocationInstanceObject> liveInstanceMap = new LinkedHashMap<>();
-    for (Memory.BatchAllocationEvents events : eventsList) {
-      // Only consider events up to but excluding the snapshot time.
-      Iterator<AllocationEvent> itr = events.getEventsList().stream().filter(evt -> evt.getTimestamp() < snapshotTimeNs)
-        .sorted(Comparator.comparingLong(AllocationEvent::getTimestamp)).iterator();
-      while (itr.hasNext()) {
-        AllocationEvent event = itr.next();
-        LiveAllocationInstanceObject instance;
-        switch (event.getEventCase()) {
-          case ALLOC_DATA:
-            // Allocation - create an InstanceObject. This might be removed later if there is a corresponding FREE_DATA event.
-            AllocationEvent.Allocation allocation = event.getAllocData();
-            instance = getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(),
-                                                 allocation.getThreadId(), allocation.getSize(), allocation.getHeapId());
-            instance.setAllocationTime(event.getTimestamp());
-            liveInstanceMap.put(allocation.getTag(), instance);
-            break;
-          case FREE_DATA:
-            // Deallocation - there should be a matching InstanceObject.
-            AllocationEvent.Deallocation deallocation = event.getFreeData();
-            liveInstanceMap.remove(deallocation.getTag());
-            // Don't keep deallocated objects around in the cache to avoid bloating memory.
-            myInstanceMap.remove(deallocation.getTag());
-            break;
-          case CLASS_DATA:
-            // ignore CLASS_DATA as they are handled via context updates.
-            break;
+    Map.Entry<Long, LiveInstanceSet> checkpoint = myCheckpoints.floor(snapshotTimeNs);
+    long replayStartNs = checkpoint == null ? mySession.getStartTimestamp() : checkpoint.getKey();
+    LiveInstanceSet liveInstances = checkpoint == null ? new LiveInstanceSet() : checkpoint.getValue().copy();
+
+    // Only consider events from the checkpoint up to but excluding the snapshot time. Batches can overlap, so the events of all batches
+    // are sorted together to know which ones happened before each checkpoint time.
+    long minEventTimeNs = checkpoint == null ? Long.MIN_VALUE : replayStartNs;
+    List<AllocationEvent> events = new ArrayList<>();
+    for (Memory.BatchAllocationEvents batch : getAllocationEvents(replayStartNs, snapshotTimeNs)) {
+      for (AllocationEvent event : batch.getEventsList()) {
+        if (event.getTimestamp() >= minEventTimeNs && event.getTimestamp() < snapshotTimeNs) {
+          events.add(event);
         }
       }
     }
+    events.sort(Comparator.comparingLong(AllocationEvent::getTimestamp));
+
+    // Events within the query buffer of the latest sample may not have arrived yet, so no checkpoint is taken past that point.
+    long checkpointLimitNs = Math.min(snapshotTimeNs, myLastSeenTimestampNs - QUERY_BUFFER_NS);
+    long lastReplayedNs = replayStartNs;
+    for (AllocationEvent event : events) {
+      maybeAddCheckpoint(Math.min(event.getTimestamp(), checkpointLimitNs), lastReplayedNs, liveInstances);
+      lastReplayedNs = Math.max(lastReplayedNs, event.getTimestamp());
+      switch (event.getEventCase()) {
+        case ALLOC_DATA:
+          // Allocation - this might be removed later if there is a corresponding FREE_DATA event.
+          AllocationEvent.Allocation allocation = event.getAllocData();
+          liveInstances.add(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
+                            allocation.getSize(), allocation.getHeapId(), event.getTimestamp());
+          break;
+        case FREE_DATA:
+          AllocationEvent.Deallocation deallocation = event.getFreeData();
+          liveInstances.remove(deallocation.getTag());
+          // Don't keep deallocated objects around in the cache to avoid bloating memory.
+          myInstanceMap.remove(deallocation.getTag());
+          break;
+        case CLASS_DATA:
+          // ignore CLASS_DATA as they are handled via context updates.
+          break;
+      }
+    }
+    maybeAddCheckpoint(checkpointLimitNs, lastReplayedNs, liveInstances);
 
-    snapshotList.addAll(liveInstanceMap.values());
+    // Only the instances that are still alive need an InstanceObject.
+    liveInstances.forEach((tag, classTag, stackId, threadId, size, heapId, allocTimeNs) -> {
+      LiveAllocationInstanceObject instance = getOrCreateInstanceObject(tag, classTag, stackId, threadId, size, heapId);
+      instance.setAllocationTime(allocTimeNs);
+      snapshotList.add(instance);
+    });
+  }
+
+  /**
+   * Stores |liveInstances| as the checkpoint at the latest checkpoint time at or before |timeNs|. |liveInstances| holds the events up to
+   * |lastReplayedNs| and none at or after |timeNs|, so it is only the state at that checkpoint time if no event was replayed at or after it.
+   */
+  private void maybeAddCheckpoint(long timeNs, long lastReplayedNs, @NotNull LiveInstanceSet liveInstances) {
+    long checkpointTimeNs = myCheckpoints.getCheckpointTimeAtOrBefore(timeNs);
+    if (checkpointTimeNs > lastReplayedNs && !myCheckpoints.contains(checkpointTimeNs)) {
+      myCheckpoints.put(checkpointTimeNs, liveInstances);
+    }
   }
 
   private void queryJniReferencesSnapshot(long snapshotTimeNs, @NotNull List<InstanceObject> snapshotList) {
@@ -710,9 +762,11 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
 
 
-    NativeCallStack.Builder builder = NativeCallStack.newBuilder();
+    // Symbolizes the addresses that were not seen before in one batch.
+    List<NativeCallStack.NativeFrame> unsymbolizedFrames = new ArrayList<>();
+    TLongHashSet unsymbolizedAddresses = new TLongHashSet();
     for (long address : backtrace.getAddressesList()) {
-      if (!myNativeFrameMap.containsKey(address)) {
+      if (!myNativeFrameMap.containsKey(address) && unsymbolizedAddresses.add(address)) {
         String module = "";
         long offset = 0;
         Memory.MemoryMap.MemoryRegion region = getRegionByAddress(address);
@@ -722,13 +776,20 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           offset = region.getFileOffset() + (address - region.getStartAddress());
         }
 
-        NativeCallStack.NativeFrame unsymbolizedFrame = NativeCallStack.NativeFrame.newBuilder()
-          .setAddress(address).setModuleName(module).setModuleOffset(offset).build();
-        NativeCallStack.NativeFrame symbolizedFrame = myStage.getStudioProfilers().getIdeServices().getNativeFrameSymbolizer()
-          .symbolize(myStage.getStudioProfilers().getSessionsManager().getSelectedSessionMetaData().getProcessAbi(), unsymbolizedFrame);
-        myNativeFrameMap.put(address, symbolizedFrame);
+        unsymbolizedFrames.add(NativeCallStack.NativeFrame.newBuilder()
+                                 .setAddress(address).setModuleName(module).setModuleOffset(offset).build());
       }
+    }
+    if (!unsymbolizedFrames.isEmpty()) {
+      List<NativeCallStack.NativeFrame> symbolizedFrames = myStage.getStudioProfilers().getIdeServices().getNativeFrameSymbolizer()
+        .symbolize(myStage.getStudioProfilers().getSessionsManager().getSelectedSessionMetaData().getProcessAbi(), unsymbolizedFrames);
+      for (int i = 0; i < unsymbolizedFrames.size(); i++) {
+        myNativeFrameMap.put(unsymbolizedFrames.get(i).getAddress(), symbolizedFrames.get(i));
+      }
+    }
 
+    NativeCallStack.Builder builder = NativeCallStack.newBuilder();
+    for (long address : backtrace.getAddressesList()) {
       builder.addFrames(myNativeFrameMap.get(address));
     }
     return builder.build();
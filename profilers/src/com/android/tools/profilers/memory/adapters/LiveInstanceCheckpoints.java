@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A bounded cache of {@link LiveInstanceSet}s taken at regular intervals of a live allocation session, so that the instances alive at
+ * some time can be computed from the closest earlier checkpoint instead of from the start of the session. When the checkpoints hold more
+ * than a given number of instances in total, the least recently used ones are evicted.
+ */
+final class LiveInstanceCheckpoints {
+  private final long myOriginNs;
+  private final long myIntervalNs;
+  private final long myMaxInstanceCount;
+
+  @NotNull private final TreeMap<Long, LiveInstanceSet> myCheckpoints = new TreeMap<>();
+  /**
+   * Checkpoint times, from the least to the most recently used.
+   */
+  @NotNull private final LinkedHashSet<Long> myUsage = new LinkedHashSet<>();
+  private long myInstanceCount;
+
+  LiveInstanceCheckpoints(long originNs, long intervalNs, long maxInstanceCount) {
+    assert intervalNs > 0;
+    myOriginNs = originNs;
+    myIntervalNs = intervalNs;
+    myMaxInstanceCount = maxInstanceCount;
+  }
+
+  /**
+   * @return the latest checkpoint taken at or before the given time, or null if there is none.
+   */
+  @Nullable
+  Map.Entry<Long, LiveInstanceSet> floor(long timeNs) {
+    Map.Entry<Long, LiveInstanceSet> entry = myCheckpoints.floorEntry(timeNs);
+    if (entry != null) {
+      myUsage.remove(entry.getKey());
+      myUsage.add(entry.getKey());
+    }
+    return entry;
+  }
+
+  /**
+   * @return the latest checkpoint time at or before the given time. Checkpoints are aligned on the interval from the origin.
+   */
+  long getCheckpointTimeAtOrBefore(long timeNs) {
+    if (timeNs < myOriginNs) {
+      return Long.MIN_VALUE;
+    }
+    return myOriginNs + (timeNs - myOriginNs) / myIntervalNs * myIntervalNs;
+  }
+
+  boolean contains(long timeNs) {
+    return myCheckpoints.containsKey(timeNs);
+  }
+
+  /**
+   * Stores a copy of the given instances as the checkpoint at the given time.
+   */
+  void put(long timeNs, @NotNull LiveInstanceSet instances) {
+    if (instances.size() > myMaxInstanceCount || myCheckpoints.containsKey(timeNs)) {
+      return;
+    }
+    LiveInstanceSet checkpoint = instances.copy();
+    myCheckpoints.put(timeNs, checkpoint);
+    myUsage.add(timeNs);
+    myInstanceCount += checkpoint.size();
+
+    Iterator<Long> leastRecentlyUsed = myUsage.iterator();
+    while (myInstanceCount > myMaxInstanceCount && leastRecentlyUsed.hasNext()) {
+      long evictedTimeNs = leastRecentlyUsed.next();
+      leastRecentlyUsed.remove();
+      myInstanceCount -= myCheckpoints.remove(evictedTimeNs).size();
+    }
+  }
+
+  int getCheckpointCount() {
+    return myCheckpoints.size();
+  }
+
+  long getInstanceCount() {
+    return myInstanceCount;
+  }
+
+  void clear() {
+    myCheckpoints.clear();
+    myUsage.clear();
+    myInstanceCount = 0;
+  }
+}
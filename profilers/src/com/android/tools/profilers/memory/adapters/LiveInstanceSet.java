@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.google.common.annotations.VisibleForTesting;
+import gnu.trove.TIntIntHashMap;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The allocations that are alive at some point in time, keyed by object tag and stored in parallel primitive arrays. This lets
+ * {@link LiveAllocationCaptureObject} replay allocation events and keep snapshots of the live instances without creating an
+ * {@link InstanceObject} per allocation. Instances are kept in the order in which they were first added.
+ */
+final class LiveInstanceSet {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  @NotNull private int[] myTags;
+  @NotNull private int[] myClassTags;
+  @NotNull private int[] myStackIds;
+  @NotNull private int[] myThreadIds;
+  @NotNull private int[] myHeapIds;
+  @NotNull private long[] mySizes;
+  @NotNull private long[] myAllocTimesNs;
+  @NotNull private boolean[] myRemoved;
+  /**
+   * Number of used slots, including the ones of removed instances.
+   */
+  private int mySlotCount;
+  private int myLiveCount;
+
+  /**
+   * Maps a tag to its slot. Only built once the set is modified, so copies kept as checkpoints don't pay for it.
+   */
+  @Nullable private TIntIntHashMap myTagToSlot;
+
+  LiveInstanceSet() {
+    this(INITIAL_CAPACITY);
+  }
+
+  private LiveInstanceSet(int capacity) {
+    myTags = new int[capacity];
+    myClassTags = new int[capacity];
+    myStackIds = new int[capacity];
+    myThreadIds = new int[capacity];
+    myHeapIds = new int[capacity];
+    mySizes = new long[capacity];
+    myAllocTimesNs = new long[capacity];
+    myRemoved = new boolean[capacity];
+  }
+
+  /**
+   * Adds an allocation. If an instance with the same tag is already alive, it is updated in place.
+   */
+  void add(int tag, int classTag, int stackId, int threadId, long size, int heapId, long allocTimeNs) {
+    TIntIntHashMap tagToSlot = getTagToSlot();
+    int slot;
+    if (tagToSlot.containsKey(tag)) {
+      slot = tagToSlot.get(tag);
+    }
+    else {
+      ensureCapacity(mySlotCount + 1);
+      // Making room can compact the slots, which rebuilds the index.
+      tagToSlot = getTagToSlot();
+      slot = mySlotCount++;
+      myRemoved[slot] = false;
+      tagToSlot.put(tag, slot);
+      myLiveCount++;
+    }
+    myTags[slot] = tag;
+    myClassTags[slot] = classTag;
+    myStackIds[slot] = stackId;
+    myThreadIds[slot] = threadId;
+    myHeapIds[slot] = heapId;
+    mySizes[slot] = size;
+    myAllocTimesNs[slot] = allocTimeNs;
+  }
+
+  void remove(int tag) {
+    TIntIntHashMap tagToSlot = getTagToSlot();
+    if (tagToSlot.containsKey(tag)) {
+      myRemoved[tagToSlot.remove(tag)] = true;
+      myLiveCount--;
+    }
+  }
+
+  int size() {
+    return myLiveCount;
+  }
+
+  @VisibleForTesting
+  int getCapacity() {
+    return myTags.length;
+  }
+
+  /**
+   * @return a compacted copy of this set, without the slots of removed instances.
+   */
+  @NotNull
+  LiveInstanceSet copy() {
+    LiveInstanceSet copy = new LiveInstanceSet(Math.max(myLiveCount, 1));
+    for (int slot = 0; slot < mySlotCount; slot++) {
+      if (!myRemoved[slot]) {
+        int target = copy.mySlotCount++;
+        copy.myTags[target] = myTags[slot];
+        copy.myClassTags[target] = myClassTags[slot];
+        copy.myStackIds[target] = myStackIds[slot];
+        copy.myThreadIds[target] = myThreadIds[slot];
+        copy.myHeapIds[target] = myHeapIds[slot];
+        copy.mySizes[target] = mySizes[slot];
+        copy.myAllocTimesNs[target] = myAllocTimesNs[slot];
+      }
+    }
+    copy.myLiveCount = copy.mySlotCount;
+    return copy;
+  }
+
+  void forEach(@NotNull InstanceConsumer consumer) {
+    for (int slot = 0; slot < mySlotCount; slot++) {
+      if (!myRemoved[slot]) {
+        consumer.accept(myTags[slot], myClassTags[slot], myStackIds[slot], myThreadIds[slot], mySizes[slot], myHeapIds[slot],
+                        myAllocTimesNs[slot]);
+      }
+    }
+  }
+
+  @NotNull
+  private TIntIntHashMap getTagToSlot() {
+    if (myTagToSlot == null) {
+      myTagToSlot = new TIntIntHashMap(Math.max(mySlotCount, INITIAL_CAPACITY));
+      for (int slot = 0; slot < mySlotCount; slot++) {
+        if (!myRemoved[slot]) {
+          myTagToSlot.put(myTags[slot], slot);
+        }
+      }
+    }
+    return myTagToSlot;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= myTags.length) {
+      return;
+    }
+    if (myLiveCount < mySlotCount / 2) {
+      // Most slots belong to removed instances: reuse them instead of growing.
+      int extraSlots = capacity - mySlotCount;
+      compact();
+      capacity = mySlotCount + extraSlots;
+      if (capacity <= myTags.length) {
+        return;
+      }
+    }
+    int newCapacity = Math.max(capacity, myTags.length * 2);
+    myTags = Arrays.copyOf(myTags, newCapacity);
+    myClassTags = Arrays.copyOf(myClassTags, newCapacity);
+    myStackIds = Arrays.copyOf(myStackIds, newCapacity);
+    myThreadIds = Arrays.copyOf(myThreadIds, newCapacity);
+    myHeapIds = Arrays.copyOf(myHeapIds, newCapacity);
+    mySizes = Arrays.copyOf(mySizes, newCapacity);
+    myAllocTimesNs = Arrays.copyOf(myAllocTimesNs, newCapacity);
+    myRemoved = Arrays.copyOf(myRemoved, newCapacity);
+  }
+
+  private void compact() {
+    int target = 0;
+    for (int slot = 0; slot < mySlotCount; slot++) {
+      if (!myRemoved[slot]) {
+        myTags[target] = myTags[slot];
+        myClassTags[target] = myClassTags[slot];
+        myStackIds[target] = myStackIds[slot];
+        myThreadIds[target] = myThreadIds[slot];
+        myHeapIds[target] = myHeapIds[slot];
+        mySizes[target] = mySizes[slot];
+        myAllocTimesNs[target] = myAllocTimesNs[slot];
+        myRemoved[target] = false;
+        target++;
+      }
+    }
+    mySlotCount = target;
+    myTagToSlot = null;
+  }
+
+  interface InstanceConsumer {
+    void accept(int tag, int classTag, int stackId, int threadId, long size, int heapId, long allocTimeNs);
+  }
+}
@@ -64,7 +64,7 @@ public class NetworkUsage extends LineChartModel {
                                           ? Common.Event.EventGroupIds.NETWORK_TX_VALUE
                                           : Common.Event.EventGroupIds.NETWORK_RX_VALUE,
                                           UnifiedEventDataSeries
-                                            .fromFieldToDataExtractor(event -> event.getNetworkSpeed().getThroughput()));
+                                            .fromFieldToDataExtractor(event -> event.getNetworkSpeed().getThroughput()), true);
     }
     else {
       NetworkServiceGrpc.NetworkServiceBlockingStub client = profilers.getClient().getNetworkClient();
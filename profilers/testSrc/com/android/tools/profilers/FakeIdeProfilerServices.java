@@ -103,6 +103,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
    */
   private boolean mySimpleperfHostEnabled = false;
 
+  /**
+   * Can toggle for tests via {@link #enableSimpleperfParallelImport(boolean)}, but each test starts with this defaulted to false.
+   */
+  private boolean mySimpleperfParallelImportEnabled = false;
+
   /**
    * JNI references alloc/dealloc events are tracked and shown.
    */
@@ -355,6 +360,11 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
         return mySimpleperfHostEnabled;
       }
 
+      @Override
+      public boolean isSimpleperfParallelImportEnabled() {
+        return mySimpleperfParallelImportEnabled;
+      }
+
       @Override
       public boolean isStartupCpuProfilingEnabled() {
         return myStartupCpuProfilingEnabled;
@@ -499,6 +509,10 @@ public final class FakeIdeProfilerServices implements IdeProfilerServices {
     mySimpleperfHostEnabled = enabled;
   }
 
+  public void enableSimpleperfParallelImport(boolean enabled) {
+    mySimpleperfParallelImportEnabled = enabled;
+  }
+
   public void enableEventsPipeline(boolean enabled) {
     myEventsPipelineEnabled = enabled;
   }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.adtui.model.filter.Filter;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import org.junit.Test;
+
+public class CompactCaptureTreeTest {
+
+  @Test
+  public void nodesAreLinkedToTheirParentAndSiblings() {
+    CompactCaptureTree tree = new CompactCaptureTree();
+    int root = tree.addNode(CompactCaptureTree.NO_NODE, new SingleNameModel("main"), 0, 0);
+    int a = tree.addNode(root, new SingleNameModel("A"), 1, 1);
+    int b = tree.addNode(a, new SingleNameModel("B"), 2, 2);
+    int c = tree.addNode(root, new SingleNameModel("C"), 5, 4);
+    tree.setEnd(b, 3, 3);
+    tree.setEnd(a, 4, 3);
+    tree.setEnd(c, 9, 6);
+    tree.setEnd(root, 10, 8);
+
+    assertThat(tree.size()).isEqualTo(4);
+    assertThat(tree.getFirstChild(root)).isEqualTo(a);
+    assertThat(tree.getNextSibling(a)).isEqualTo(c);
+    assertThat(tree.getNextSibling(c)).isEqualTo(CompactCaptureTree.NO_NODE);
+    assertThat(tree.getLastChild(root)).isEqualTo(c);
+    assertThat(tree.getChildCount(root)).isEqualTo(2);
+    assertThat(tree.getParent(b)).isEqualTo(a);
+    assertThat(tree.getDepth(b)).isEqualTo(2);
+    assertThat(tree.getEndGlobal(c)).isEqualTo(9);
+    assertThat(tree.getEndThread(c)).isEqualTo(6);
+    assertThat(tree.getModel(b).getFullName()).isEqualTo("B");
+  }
+
+  @Test
+  public void modelsAreInterned() {
+    CaptureNodeModel model = new SingleNameModel("A");
+    CompactCaptureTree tree = new CompactCaptureTree();
+    int root = tree.addNode(CompactCaptureTree.NO_NODE, new SingleNameModel("main"), 0, 0);
+    int first = tree.addNode(root, model, 1, 1);
+    int second = tree.addNode(root, model, 2, 2);
+
+    assertThat(tree.getModelCount()).isEqualTo(2);
+    assertThat(tree.getModelId(first)).isEqualTo(tree.getModelId(second));
+    assertThat(tree.getModel(second)).isSameAs(model);
+  }
+
+  @Test
+  public void nodeViewsWalkTheTree() {
+    CaptureNode root = newNode("main", 0, 100);
+    for (int i = 0; i < 10; i++) {
+      CaptureNode child = newNode("child" + i, i * 10, i * 10 + 5);
+      child.addChild(newNode("grandChild" + i, i * 10, i * 10 + 1));
+      root.addChild(child);
+    }
+    CompactCaptureTree tree = CompactCaptureTree.fromCaptureNode(root);
+
+    CompactCaptureTree.Node rootView = tree.getNode(0);
+    assertThat(rootView.getChildCount()).isEqualTo(10);
+    for (int i = 0; i < 10; i++) {
+      CompactCaptureTree.Node child = rootView.getChildAt(i);
+      assertThat(child.getData().getFullName()).isEqualTo("child" + i);
+      assertThat(child.getStart()).isEqualTo(i * 10);
+      assertThat(child.getDepth()).isEqualTo(1);
+      assertThat(child.getParent()).isEqualTo(rootView);
+      assertThat(child.getFirstChild().getData().getFullName()).isEqualTo("grandChild" + i);
+    }
+    // Going backwards restarts from the first child.
+    assertThat(rootView.getChildAt(3).getData().getFullName()).isEqualTo("child3");
+    assertThat(rootView.getLastChild().getData().getFullName()).isEqualTo("child9");
+    assertThat(rootView.getParent()).isNull();
+  }
+
+  @Test
+  public void clockTypeSelectsTheTimestamps() {
+    CaptureNode root = newNode("main", 10, 20);
+    root.setStartThread(1);
+    root.setEndThread(5);
+    CompactCaptureTree tree = CompactCaptureTree.fromCaptureNode(root);
+
+    assertThat(tree.getNode(0).getDuration()).isEqualTo(10);
+    tree.setClockType(ClockType.THREAD);
+    assertThat(tree.getNode(0).getStart()).isEqualTo(1);
+    assertThat(tree.getNode(0).getEnd()).isEqualTo(5);
+  }
+
+  /**
+   * The tree used to test the filter:
+   * main
+   * -> A -> foo
+   * -> B -> C
+   * -> foo -> D
+   */
+  @Test
+  public void applyFilterSetsFilterTypes() {
+    CaptureNode root = newNode("main", 0, 30);
+    CaptureNode a = newNode("A", 0, 10);
+    a.addChild(newNode("foo", 0, 5));
+    CaptureNode b = newNode("B", 10, 20);
+    b.addChild(newNode("C", 10, 15));
+    CaptureNode foo = newNode("foo", 20, 30);
+    foo.addChild(newNode("D", 20, 25));
+    root.addChild(a);
+    root.addChild(b);
+    root.addChild(foo);
+    CompactCaptureTree tree = CompactCaptureTree.fromCaptureNode(root);
+
+    assertThat(tree.applyFilter(new Filter("foo"))).isEqualTo(2);
+    // Nodes are in pre-order: main, A, foo, B, C, foo, D.
+    assertThat(tree.getFilterType(0)).isEqualTo(CaptureNode.FilterType.MATCH);
+    assertThat(tree.getFilterType(1)).isEqualTo(CaptureNode.FilterType.MATCH);
+    assertThat(tree.getFilterType(2)).isEqualTo(CaptureNode.FilterType.EXACT_MATCH);
+    assertThat(tree.getFilterType(3)).isEqualTo(CaptureNode.FilterType.UNMATCH);
+    assertThat(tree.getFilterType(4)).isEqualTo(CaptureNode.FilterType.UNMATCH);
+    assertThat(tree.getFilterType(5)).isEqualTo(CaptureNode.FilterType.EXACT_MATCH);
+    assertThat(tree.getFilterType(6)).isEqualTo(CaptureNode.FilterType.MATCH);
+
+    tree.applyFilter(Filter.EMPTY_FILTER);
+    for (int i = 0; i < tree.size(); i++) {
+      assertThat(tree.getFilterType(i)).isEqualTo(CaptureNode.FilterType.MATCH);
+    }
+  }
+
+  private static CaptureNode newNode(String method, long start, long end) {
+    CaptureNode node = new CaptureNode(new SingleNameModel(method));
+    node.setStartGlobal(start);
+    node.setEndGlobal(end);
+    node.setStartThread(start);
+    node.setEndThread(end);
+    return node;
+  }
+}
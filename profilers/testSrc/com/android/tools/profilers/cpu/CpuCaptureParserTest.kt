@@ -328,6 +328,56 @@ class CpuCaptureParserTest {
     assertThat(parser.parse(someFile)).isNotNull()
   }
 
+  @Test
+  fun traceTypeIsDetectedFromFileHeader() {
+    val parser = CpuCaptureParser(FakeIdeProfilerServices())
+    assertThat(parser.getTraceType(CpuProfilerTestUtils.getTraceFile("valid_trace.trace"))).isEqualTo(Cpu.CpuTraceType.ART)
+    assertThat(parser.getTraceType(CpuProfilerTestUtils.getTraceFile("simpleperf.trace"))).isEqualTo(Cpu.CpuTraceType.SIMPLEPERF)
+
+    val unknownFile = File(TestUtils.createTempDirDeletedOnExit(), "any_trace")
+    unknownFile.writeBytes(ByteArray(100))
+    assertThat(parser.getTraceType(unknownFile)).isEqualTo(Cpu.CpuTraceType.UNSPECIFIED_TYPE)
+  }
+
+  @Test
+  fun storedCaptureIsReadBackByAnotherParser() {
+    val storeDir = TestUtils.createTempDirDeletedOnExit()
+    val traceFile = CpuProfilerTestUtils.getTraceFile("valid_trace.trace")
+    val parsed = CpuCaptureParser(FakeIdeProfilerServices(), CpuCaptureStore(storeDir, Long.MAX_VALUE)).parse(traceFile)!!.get()
+    assertThat(storeDir.listFiles()).hasLength(1)
+
+    val stored = CpuCaptureParser(FakeIdeProfilerServices(), CpuCaptureStore(storeDir, Long.MAX_VALUE)).parse(traceFile)!!.get()
+    assertThat(stored).isNotSameAs(parsed)
+    assertThat(stored.type).isEqualTo(parsed.type)
+    assertThat(stored.isDualClock).isEqualTo(parsed.isDualClock)
+    assertThat(stored.range.min).isEqualTo(parsed.range.min)
+    assertThat(stored.range.max).isEqualTo(parsed.range.max)
+    assertThat(stored.mainThreadId).isEqualTo(parsed.mainThreadId)
+    assertThat(stored.threads.map { it.id }).containsExactlyElementsIn(parsed.threads.map { it.id })
+    for (thread in parsed.threads) {
+      assertThat(describe(stored.getCaptureNode(thread.id)!!)).isEqualTo(describe(parsed.getCaptureNode(thread.id)!!))
+    }
+  }
+
+  @Test
+  fun storeKeyChangesWhenTraceFileIsModified() {
+    val traceFile = File(TestUtils.createTempDirDeletedOnExit(), "any_trace")
+    traceFile.writeBytes(ByteArray(100))
+    traceFile.setLastModified(1000)
+    val key = CpuCaptureStore.getKey(traceFile)
+    assertThat(CpuCaptureStore.getKey(traceFile)).isEqualTo(key)
+
+    traceFile.setLastModified(2000)
+    assertThat(CpuCaptureStore.getKey(traceFile)).isNotEqualTo(key)
+  }
+
+  private fun describe(node: CaptureNode): String {
+    val text = StringBuilder()
+    text.append("${node.data.fullName} ${node.startGlobal} ${node.endGlobal} ${node.startThread} ${node.endThread}\n")
+    node.children.forEach { text.append(describe(it)) }
+    return text.toString()
+  }
+
   /**
    * Check some fields of a [CpuCapture] to see if it was properly built.
    */
@@ -17,6 +17,7 @@ package com.android.tools.profilers.cpu.capturedetails;
 
 import com.android.tools.adtui.model.Range;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CompactCaptureTree;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
@@ -323,12 +324,17 @@ public class BottomUpNodeTest {
   }
 
   private static void traverseAndCheck(CaptureNode root, List<ExpectedNode> expectedNodes) {
+    Range viewRange = new Range(root.getStart(), root.getEnd());
     List<BottomUpNode> traverseOrder = new ArrayList<>();
     traverse(new BottomUpNode(root), traverseOrder);
-
-    Range viewRange = new Range(root.getStart(), root.getEnd());
     traverseOrder.forEach(node -> node.update(viewRange));
     checkTraverseOrder(expectedNodes, traverseOrder);
+
+    // The same tree stored in a CompactCaptureTree should produce the same bottom-up tree.
+    List<BottomUpNode> compactTraverseOrder = new ArrayList<>();
+    traverse(new BottomUpNode(CompactCaptureTree.fromCaptureNode(root), 0), compactTraverseOrder);
+    compactTraverseOrder.forEach(node -> node.update(viewRange));
+    checkTraverseOrder(expectedNodes, compactTraverseOrder);
   }
 
   private static void addChildren(CaptureNode node, CaptureNode... children) {
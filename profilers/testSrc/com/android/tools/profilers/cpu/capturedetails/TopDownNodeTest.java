@@ -17,6 +17,7 @@ package com.android.tools.profilers.cpu.capturedetails;
 
 import com.android.tools.adtui.model.Range;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CompactCaptureTree;
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
@@ -24,6 +25,7 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TopDownNodeTest {
@@ -142,6 +144,33 @@ public class TopDownNodeTest {
     assertEquals(0, topDown.getThreadTotal(), 0);
   }
 
+  @Test
+  public void testCompactTreeMatchesCaptureNodeTree() {
+    CaptureNode root = createTree();
+    root.getChildren().get(2).setFilterType(CaptureNode.FilterType.UNMATCH);
+    root.getChildren().get(2).getChildren().forEach(n -> n.setFilterType(CaptureNode.FilterType.UNMATCH));
+
+    TopDownNode topDown = new TopDownNode(root);
+    TopDownNode compactTopDown = new TopDownNode(CompactCaptureTree.fromCaptureNode(root), 0);
+    assertSameTopDown(topDown, compactTopDown, new Range(5, 27));
+  }
+
+  private static void assertSameTopDown(TopDownNode expected, TopDownNode actual, Range range) {
+    expected.update(range);
+    actual.update(range);
+    assertEquals(expected.getId(), actual.getId());
+    assertSame(expected.getMethodModel(), actual.getMethodModel());
+    assertEquals(expected.isUnmatched(), actual.isUnmatched());
+    assertEquals(expected.getGlobalTotal(), actual.getGlobalTotal(), 0);
+    assertEquals(expected.getGlobalChildrenTotal(), actual.getGlobalChildrenTotal(), 0);
+    assertEquals(expected.getThreadTotal(), actual.getThreadTotal(), 0);
+    assertEquals(expected.inRange(range), actual.inRange(range));
+    assertEquals(expected.getChildren().size(), actual.getChildren().size());
+    for (int i = 0; i < expected.getChildren().size(); i++) {
+      assertSameTopDown(expected.getChildren().get(i), actual.getChildren().get(i), range);
+    }
+  }
+
   /**
    * Creates a test to be used for testing. The shape of the tree is as follows:
    *              0123456789012345678901234567890
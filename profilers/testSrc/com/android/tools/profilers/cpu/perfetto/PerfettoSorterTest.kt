@@ -16,27 +16,31 @@
 package com.android.tools.profilers.cpu.perfetto
 
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils
-import com.android.tools.profilers.cpu.atrace.PerfettoPacketDBSorter
+import com.android.tools.profilers.cpu.atrace.PerfettoPacketSorter
 import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.util.io.FileUtil
 import org.junit.Test
 import perfetto.protos.PerfettoTrace
+import java.io.File
 import java.io.FileInputStream
+import java.util.concurrent.ForkJoinPool
 
 class PerfettoSorterTest {
 
   @Test
   fun formattedLinesAreReturnedOnNext() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
     assertThat(sorter.hasNext()).isTrue()
     assertThat(sorter.next()).isEqualTo("Some line")
+    sorter.close()
   }
 
   @Test
   fun hasNextCanBeCalledMultipleTimes() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some Line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -44,5 +48,47 @@ class PerfettoSorterTest {
     assertThat(sorter.hasNext()).isTrue()
     assertThat(sorter.hasNext()).isTrue()
     assertThat(sorter.next()).isEqualTo("Some Line")
+    sorter.close()
   }
+
+  @Test
+  fun packetSorterReturnsLinesInTimestampOrder() {
+    val sorter = PerfettoPacketSorter()
+    sorter.addLine(30, "Third")
+    sorter.addLine(10, "First")
+    sorter.addLine(20, "Second")
+    sorter.addLine(10, "First again")
+    assertThat(sorter.hasNext()).isFalse()
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactly("First", "First again", "Second", "Third").inOrder()
+    sorter.close()
+  }
+
+  @Test
+  fun packetSorterMergesSpilledRuns() {
+    // A small budget forces most of the lines to be spilled to disk.
+    val sorter = PerfettoPacketSorter(1024, ForkJoinPool(4))
+    val timestamps = (0 until 10000).map { (it * 7919L) % 10007 }
+    timestamps.forEach { sorter.addLine(it, "Line $it ✓") }
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactlyElementsIn(timestamps.sorted().map { "Line $it ✓" }).inOrder()
+    sorter.close()
+    assertThat(sorter.hasNext()).isFalse()
+  }
+
+  @Test
+  fun closeDeletesSpilledRunsWhileTheyAreBeingRead() {
+    val tempDir = File(FileUtil.getTempDirectory())
+    val runsBefore = spilledRuns(tempDir)
+    val sorter = PerfettoPacketSorter(1024, ForkJoinPool(4))
+    (0 until 1000L).forEach { sorter.addLine(1000 - it, "Line $it") }
+    sorter.resetForIterator()
+    assertThat(spilledRuns(tempDir) - runsBefore).isNotEmpty()
+    // Leave the runs open for reading.
+    sorter.next()
+    sorter.close()
+    assertThat(spilledRuns(tempDir) - runsBefore).isEmpty()
+  }
+
+  private fun spilledRuns(dir: File) = dir.listFiles { file -> file.name.startsWith("perfetto") && file.name.endsWith(".run") }!!.toSet()
 }
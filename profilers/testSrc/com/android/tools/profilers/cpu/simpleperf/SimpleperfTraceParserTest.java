@@ -25,6 +25,7 @@ import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.util.io.FileUtil;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
@@ -33,6 +34,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import static com.android.tools.profilers.cpu.CpuProfilerTestUtils.traceFileToByteString;
@@ -233,6 +235,40 @@ public class SimpleperfTraceParserTest {
     assertEquals(expected.getMax(), myParser.getRange().getMax(), 0);
   }
 
+  @Test
+  public void parallelParseShouldMatchSerialParse() throws IOException {
+    myParser.parse(myTraceFile, 0);
+    SimpleperfTraceParser parallelParser = new SimpleperfTraceParser(new ForkJoinPool(4));
+    parallelParser.parse(myTraceFile, 0);
+
+    assertEquals(myParser.getSampleCount(), parallelParser.getSampleCount());
+    assertEquals(myParser.getLostSampleCount(), parallelParser.getLostSampleCount());
+    assertEquals(myParser.getRange().getMin(), parallelParser.getRange().getMin(), 0);
+    assertEquals(myParser.getRange().getMax(), parallelParser.getRange().getMax(), 0);
+
+    Map<Integer, Map.Entry<CpuThreadInfo, CaptureNode>> parallelTrees = new HashMap<>();
+    parallelParser.getCaptureTrees().entrySet().forEach(entry -> parallelTrees.put(entry.getKey().getId(), entry));
+    assertEquals(myParser.getCaptureTrees().size(), parallelTrees.size());
+    for (Map.Entry<CpuThreadInfo, CaptureNode> serialEntry : myParser.getCaptureTrees().entrySet()) {
+      Map.Entry<CpuThreadInfo, CaptureNode> parallelEntry = parallelTrees.get(serialEntry.getKey().getId());
+      assertNotNull(parallelEntry);
+      assertEquals(serialEntry.getKey().getName(), parallelEntry.getKey().getName());
+      assertEquals(serialEntry.getKey().isMainThread(), parallelEntry.getKey().isMainThread());
+      assertSameTree(serialEntry.getValue(), parallelEntry.getValue());
+    }
+  }
+
+  private static void assertSameTree(CaptureNode expected, CaptureNode actual) {
+    assertEquals(expected.getData().getFullName(), actual.getData().getFullName());
+    assertEquals(expected.getStartGlobal(), actual.getStartGlobal());
+    assertEquals(expected.getEndGlobal(), actual.getEndGlobal());
+    assertEquals(expected.getDepth(), actual.getDepth());
+    assertEquals(expected.getChildCount(), actual.getChildCount());
+    for (int i = 0; i < expected.getChildCount(); i++) {
+      assertSameTree(expected.getChildAt(i), actual.getChildAt(i));
+    }
+  }
+
   /**
    * Checks that a {@link CaptureNode} tree starts with "__start_thread -> __pthread_start", then verifies the node just after then.
    */
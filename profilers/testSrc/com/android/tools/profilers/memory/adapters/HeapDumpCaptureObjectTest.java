@@ -43,10 +43,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -241,6 +244,29 @@ public class HeapDumpCaptureObjectTest {
     Truth.assertThat(capture.getInstances().count()).isEqualTo(allInstanceCount);
   }
 
+  @Test
+  public void testInstancesShareClassEntries() throws Exception {
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(0).setEndTime(1).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getName()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(), myStage);
+
+    File hprof = TestUtils.getWorkspaceFile("tools/adt/idea/profilers/testData/hprofs/displayingbitmaps_leakedActivity.hprof");
+    myTransportService.addFile(Long.toString(0), ByteString.copyFrom(Files.readAllBytes(hprof.toPath())));
+    capture.load(null, null);
+    assertTrue(capture.isDoneLoading());
+    assertFalse(capture.isError());
+
+    Map<String, ClassDb.ClassEntry> entriesByName = new HashMap<>();
+    capture.getInstances().forEach(instance -> {
+      ClassDb.ClassEntry entry = entriesByName.computeIfAbsent(instance.getClassEntry().getClassName(), name -> instance.getClassEntry());
+      Truth.assertThat(instance.getClassEntry()).isSameAs(entry);
+    });
+    Truth.assertThat(entriesByName.size()).isLessThan((int)capture.getInstances().count());
+
+    capture.unload();
+  }
+
   private static void verifyInstance(@NotNull InstanceObject instance,
                                      @NotNull String valueText,
                                      int depth,
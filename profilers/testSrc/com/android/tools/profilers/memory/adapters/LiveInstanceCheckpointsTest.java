@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class LiveInstanceCheckpointsTest {
+
+  @Test
+  public void checkpointsAreAlignedOnTheInterval() {
+    LiveInstanceCheckpoints checkpoints = new LiveInstanceCheckpoints(100, 10, 100);
+    assertThat(checkpoints.getCheckpointTimeAtOrBefore(99)).isEqualTo(Long.MIN_VALUE);
+    assertThat(checkpoints.getCheckpointTimeAtOrBefore(100)).isEqualTo(100);
+    assertThat(checkpoints.getCheckpointTimeAtOrBefore(129)).isEqualTo(120);
+    assertThat(checkpoints.getCheckpointTimeAtOrBefore(130)).isEqualTo(130);
+  }
+
+  @Test
+  public void checkpointsStoreCopies() {
+    LiveInstanceCheckpoints checkpoints = new LiveInstanceCheckpoints(0, 10, 100);
+    LiveInstanceSet set = new LiveInstanceSet();
+    set.add(1, 0, 0, 0, 1, 0, 1);
+    checkpoints.put(10, set);
+    set.add(2, 0, 0, 0, 1, 0, 12);
+
+    assertThat(checkpoints.floor(9)).isNull();
+    Map.Entry<Long, LiveInstanceSet> entry = checkpoints.floor(15);
+    assertThat(entry.getKey()).isEqualTo(10);
+    assertThat(getTags(entry.getValue())).containsExactly(1);
+  }
+
+  @Test
+  public void leastRecentlyUsedCheckpointsAreEvicted() {
+    LiveInstanceCheckpoints checkpoints = new LiveInstanceCheckpoints(0, 10, 5);
+    LiveInstanceSet set = new LiveInstanceSet();
+    set.add(1, 0, 0, 0, 1, 0, 1);
+    set.add(2, 0, 0, 0, 1, 0, 2);
+    checkpoints.put(10, set);
+    checkpoints.put(20, set);
+    assertThat(checkpoints.getInstanceCount()).isEqualTo(4);
+
+    // Using the checkpoint at 10 makes the one at 20 the least recently used.
+    checkpoints.floor(15);
+    checkpoints.put(30, set);
+    assertThat(checkpoints.getCheckpointCount()).isEqualTo(2);
+    assertThat(checkpoints.contains(10)).isTrue();
+    assertThat(checkpoints.contains(20)).isFalse();
+    assertThat(checkpoints.contains(30)).isTrue();
+    assertThat(checkpoints.getInstanceCount()).isEqualTo(4);
+
+    // Sets larger than the whole budget are never stored.
+    for (int i = 3; i < 10; i++) {
+      set.add(i, 0, 0, 0, 1, 0, i);
+    }
+    checkpoints.put(40, set);
+    assertThat(checkpoints.contains(40)).isFalse();
+
+    checkpoints.clear();
+    assertThat(checkpoints.getCheckpointCount()).isEqualTo(0);
+    assertThat(checkpoints.getInstanceCount()).isEqualTo(0);
+  }
+
+  private static List<Integer> getTags(LiveInstanceSet set) {
+    List<Integer> tags = new ArrayList<>();
+    set.forEach((tag, classTag, stackId, threadId, size, heapId, allocTimeNs) -> tags.add(tag));
+    return tags;
+  }
+}
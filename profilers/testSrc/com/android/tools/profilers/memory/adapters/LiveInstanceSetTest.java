@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class LiveInstanceSetTest {
+
+  @Test
+  public void instancesAreVisitedInInsertionOrder() {
+    LiveInstanceSet set = new LiveInstanceSet();
+    set.add(3, 30, 300, 3000, 33, 0, 1);
+    set.add(1, 10, 100, 1000, 11, 1, 2);
+    set.add(2, 20, 200, 2000, 22, 0, 3);
+    set.remove(1);
+    // Re-adding a live tag updates it in place.
+    set.add(3, 31, 301, 3001, 34, 1, 4);
+
+    assertThat(set.size()).isEqualTo(2);
+    List<String> visited = new ArrayList<>();
+    set.forEach((tag, classTag, stackId, threadId, size, heapId, allocTimeNs) -> visited
+      .add(tag + ":" + classTag + ":" + stackId + ":" + threadId + ":" + size + ":" + heapId + ":" + allocTimeNs));
+    assertThat(visited).containsExactly("3:31:301:3001:34:1:4", "2:20:200:2000:22:0:3").inOrder();
+  }
+
+  @Test
+  public void copyIsIndependent() {
+    LiveInstanceSet set = new LiveInstanceSet();
+    for (int i = 0; i < 10; i++) {
+      set.add(i, 0, 0, 0, 1, 0, i);
+    }
+    LiveInstanceSet copy = set.copy();
+    set.remove(5);
+    copy.remove(0);
+    copy.add(42, 0, 0, 0, 1, 0, 42);
+
+    assertThat(set.size()).isEqualTo(9);
+    assertThat(copy.size()).isEqualTo(10);
+    assertThat(getTags(set)).doesNotContain(5);
+    assertThat(getTags(copy)).contains(5);
+    assertThat(getTags(copy)).doesNotContain(0);
+    assertThat(getTags(copy).get(9)).isEqualTo(42);
+  }
+
+  @Test
+  public void removedSlotsAreReused() {
+    LiveInstanceSet set = new LiveInstanceSet();
+    // Churn through many more allocations than are ever alive at once.
+    for (int i = 0; i < 100_000; i++) {
+      set.add(i, 0, 0, 0, 1, 0, i);
+      if (i >= 10) {
+        set.remove(i - 10);
+      }
+    }
+    assertThat(set.size()).isEqualTo(10);
+    // Compacting made enough room, so the set never had to grow.
+    assertThat(set.getCapacity()).isEqualTo(1024);
+    List<Integer> tags = getTags(set);
+    assertThat(tags).hasSize(10);
+    for (int i = 0; i < 10; i++) {
+      assertThat(tags.get(i)).isEqualTo(99_990 + i);
+    }
+    // Removing an instance after compaction still finds its slot.
+    set.remove(99_995);
+    assertThat(getTags(set)).doesNotContain(99_995);
+  }
+
+  private static List<Integer> getTags(LiveInstanceSet set) {
+    List<Integer> tags = new ArrayList<>();
+    set.forEach((tag, classTag, stackId, threadId, size, heapId, allocTimeNs) -> tags.add(tag));
+    return tags;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.profilers.cpu.atrace.PerfettoPacketSorter
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the time it takes to sort a synthetic Perfetto trace with [PerfettoPacketSorter].
+ */
+class PerfettoSorterPerformanceTest {
+  companion object {
+    private const val EVENT_COUNT = 10_000_000
+    private const val CPU_COUNT = 8
+    private const val EVENTS_PER_BUNDLE = 500
+  }
+
+  private val benchmark = Benchmark.Builder("Perfetto Sorter Timings (Millis)").setProject("Android Studio Profilers").build()
+
+  @Test
+  fun sortSyntheticTraceWithPacketSorter() {
+    val sorter = PerfettoPacketSorter()
+    val elapsedMs = measureSort(sorter::addLine, sorter::resetForIterator, sorter)
+    sorter.close()
+    benchmark.log("PerfettoPacketSorter-10M-Events", elapsedMs)
+  }
+
+  /**
+   * Adds [EVENT_COUNT] lines the way [com.android.tools.profilers.cpu.atrace.PerfettoProducer] does: bundles of events per CPU, where the
+   * bundles of different CPUs overlap in time and events within a bundle are slightly out of order. Then reads all lines back.
+   */
+  private fun measureSort(addLine: (Long, String) -> Unit, resetForIterator: () -> Unit, lines: Iterator<String?>): Long {
+    val random = Random(0)
+    val startNs = System.nanoTime()
+    var added = 0
+    var bundleStart = 0L
+    while (added < EVENT_COUNT) {
+      for (cpu in 0 until CPU_COUNT) {
+        for (i in 0 until EVENTS_PER_BUNDLE) {
+          val timestamp = bundleStart + i * 1000L + random.nextInt(5000)
+          addLine(timestamp, "<...>-${1000 + random.nextInt(200)} (-----) [00$cpu] d..3 $timestamp: sched_switch: " +
+                             "prev_comm=RenderThread prev_pid=1234 prev_prio=120 prev_state=S ==> next_comm=swapper next_pid=0 next_prio=120")
+        }
+        added += EVENTS_PER_BUNDLE
+      }
+      bundleStart += EVENTS_PER_BUNDLE * 1000L
+    }
+    resetForIterator()
+    var count = 0
+    while (lines.hasNext()) {
+      lines.next()
+      count++
+    }
+    assertThat(count).isEqualTo(added)
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs)
+  }
+}
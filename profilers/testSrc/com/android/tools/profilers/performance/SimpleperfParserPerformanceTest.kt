@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.profiler.proto.SimpleperfReport
+import com.android.tools.profilers.cpu.capturedetails.TopDownNode
+import com.android.tools.profilers.cpu.simpleperf.SimpleperfTraceParser
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.AfterClass
+import org.junit.BeforeClass
+import org.junit.Test
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the time to first flame chart, i.e. the time it takes to parse a synthetic simpleperf trace and build the top down tree of its
+ * main thread, with the serial and the parallel modes of [SimpleperfTraceParser].
+ */
+class SimpleperfParserPerformanceTest {
+  companion object {
+    private const val SAMPLE_COUNT = 2_000_000
+    private const val THREAD_COUNT = 32
+    private const val SYMBOL_COUNT = 2000
+    private const val MAX_CALLCHAIN_DEPTH = 40
+    private const val PID = 1000
+    private const val APP_PACKAGE_NAME = "com.example.perf"
+
+    private lateinit var traceFile: File
+
+    @BeforeClass
+    @JvmStatic
+    fun generateTrace() {
+      traceFile = FileUtil.createTempFile("simpleperf", ".trace")
+      DataOutputStream(BufferedOutputStream(FileOutputStream(traceFile))).use { out ->
+        out.write("SIMPLEPERF".toByteArray())
+        out.write(ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN).putShort(1).array())
+        val writeRecord = { record: SimpleperfReport.Record ->
+          val bytes = record.toByteArray()
+          out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(bytes.size).array())
+          out.write(bytes)
+        }
+
+        writeRecord(SimpleperfReport.Record.newBuilder().setMetaInfo(
+          SimpleperfReport.MetaInfo.newBuilder().addEventType("cpu-cycles").setAppPackageName(APP_PACKAGE_NAME)).build())
+        val file = SimpleperfReport.File.newBuilder().setId(0).setPath("/data/app/$APP_PACKAGE_NAME-1/oat/arm64/base.odex")
+        for (i in 0 until SYMBOL_COUNT) {
+          file.addSymbol(if (i % 2 == 0) "com.example.perf.Class${i / 10}.method$i" else "void perf::Class${i / 10}::fun$i(int)")
+        }
+        writeRecord(SimpleperfReport.Record.newBuilder().setFile(file).build())
+        for (tid in PID until PID + THREAD_COUNT) {
+          writeRecord(SimpleperfReport.Record.newBuilder().setThread(
+            SimpleperfReport.Thread.newBuilder().setThreadId(tid).setProcessId(PID).setThreadName("Thread-$tid")).build())
+        }
+
+        // Each thread walks its own stack, changing only the top frames between consecutive samples like a real call stack does.
+        val random = Random(0)
+        val stacks = Array(THREAD_COUNT) { IntArray(0) }
+        for (i in 0 until SAMPLE_COUNT) {
+          val thread = random.nextInt(THREAD_COUNT)
+          val kept = if (stacks[thread].isEmpty()) 0 else random.nextInt(stacks[thread].size)
+          val depth = (kept + 1 + random.nextInt(4)).coerceAtMost(MAX_CALLCHAIN_DEPTH)
+          val stack = IntArray(depth) { if (it < kept) stacks[thread][it] else random.nextInt(SYMBOL_COUNT) }
+          stacks[thread] = stack
+          val sample = SimpleperfReport.Sample.newBuilder().setTime(i * 100_000L).setThreadId(PID + thread)
+          // Simpleperf call chains are ordered from leaf to root.
+          for (frame in stack.indices.reversed()) {
+            sample.addCallchain(SimpleperfReport.Sample.CallChainEntry.newBuilder()
+                                  .setFileId(0).setSymbolId(stack[frame]).setVaddrInFile(stack[frame] * 16L))
+          }
+          writeRecord(SimpleperfReport.Record.newBuilder().setSample(sample).build())
+        }
+        writeRecord(SimpleperfReport.Record.newBuilder().setLost(
+          SimpleperfReport.LostSituation.newBuilder().setSampleCount(SAMPLE_COUNT.toLong()).setLostCount(0)).build())
+        out.writeInt(0)
+      }
+    }
+
+    @AfterClass
+    @JvmStatic
+    fun deleteTrace() {
+      FileUtil.delete(traceFile)
+    }
+  }
+
+  private val benchmark = Benchmark.Builder("Simpleperf Parser Timings (Millis)").setProject("Android Studio Profilers").build()
+
+  @Test
+  fun timeToFirstFlameChartSerial() {
+    benchmark.log("Serial-Time-To-First-Flame-Chart", measureTimeToFirstFlameChart(SimpleperfTraceParser(false)))
+  }
+
+  @Test
+  fun timeToFirstFlameChartParallel() {
+    benchmark.log("Parallel-Time-To-First-Flame-Chart", measureTimeToFirstFlameChart(SimpleperfTraceParser(true)))
+  }
+
+  private fun measureTimeToFirstFlameChart(parser: SimpleperfTraceParser): Long {
+    val startNs = System.nanoTime()
+    val capture = parser.parse(traceFile, 0)
+    val flameChartRoot = TopDownNode(capture.getCaptureNode(capture.mainThreadId)!!)
+    val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs)
+    assertThat(parser.captureTrees).hasSize(THREAD_COUNT)
+    assertThat(flameChartRoot.children).isNotEmpty()
+    return elapsedMs
+  }
+}
@@ -84,8 +84,7 @@ public class DataStoreDatabase {
           throw new RuntimeException("Characteristic not handled!");
       }
 
-      // Performance optimization.
-      // TODO: Create a timer and commit the database transaction every X seconds.
+      // Performance optimization. Transactions are committed in batches by the UnifiedEventsWriter.
       connection.setAutoCommit(false);
     }
     catch (ClassNotFoundException e) {
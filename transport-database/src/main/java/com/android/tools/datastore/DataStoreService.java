@@ -273,6 +273,7 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       client.getChannel().shutdownNow();
     }
     myConnectedClients.clear();
+    myTransportService.shutdown();
     myDatabases.forEach((name, db) -> db.disconnect());
     DataStoreTable.removeDataStoreErrorCallback(this);
   }
@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 /**
@@ -28,6 +29,10 @@ import java.util.function.Function;
  */
 public abstract class DataStoreTable<T extends Enum> {
   private static final Set<DataStoreTableErrorCallback> ERROR_CALLBACKS = ConcurrentHashMap.newKeySet();
+  /**
+   * Executor that errors raised on the current thread are reported on, if they must not be reported on the thread itself.
+   */
+  private static final ThreadLocal<Executor> ERROR_CALLBACK_EXECUTOR = new ThreadLocal<>();
 
   private Connection myConnection;
   private final ThreadLocal<Map<T, PreparedStatement>> myStatementMap = new ThreadLocal<>();
@@ -85,11 +90,29 @@ public abstract class DataStoreTable<T extends Enum> {
    * @param t A throwable object that contains information about the error encountered.
    */
   protected static void onError(Throwable t) {
+    Executor executor = ERROR_CALLBACK_EXECUTOR.get();
+    if (executor != null) {
+      executor.execute(() -> notifyErrorCallbacks(t));
+    }
+    else {
+      notifyErrorCallbacks(t);
+    }
+  }
+
+  private static void notifyErrorCallbacks(Throwable t) {
     for (DataStoreTableErrorCallback callback : ERROR_CALLBACKS) {
       callback.onDataStoreError(t);
     }
   }
 
+  /**
+   * Makes errors raised on the calling thread be reported to the callbacks on {@code executor}. This is for threads that the callbacks
+   * may wait on, such as the thread of a {@link UnifiedEventsWriter}: a callback disconnecting a stream waits for its events to be written.
+   */
+  static void setErrorCallbackExecutor(@NotNull Executor executor) {
+    ERROR_CALLBACK_EXECUTOR.set(executor);
+  }
+
   @NotNull
   protected Map<T, PreparedStatement> getStatementMap() {
     if (myStatementMap.get() == null) {
@@ -181,6 +204,22 @@ public abstract class DataStoreTable<T extends Enum> {
     }
   }
 
+  /**
+   * Commits the current transaction of the underlying connection. The connection is shared by every table of a
+   * {@link com.android.tools.datastore.DataStoreDatabase}, so this commits any pending writes from other tables as well.
+   */
+  protected void commit() {
+    if (isClosed()) {
+      return;
+    }
+    try {
+      myConnection.commit();
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+  }
+
   protected ResultSet executeQuery(@NotNull T statement, Object... params) throws SQLException {
     if (isClosed()) {
       return new EmptyResultSet();
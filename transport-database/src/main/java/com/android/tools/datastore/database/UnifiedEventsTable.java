@@ -106,6 +106,22 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
             event.toByteArray());
   }
 
+  /**
+   * Inserts a list of events belonging to the same stream with a single {@link java.sql.PreparedStatement#executeBatch()} call.
+   * This is used by the {@link UnifiedEventsWriter} to amortize statement overhead when events arrive faster than they can be written.
+   */
+  public void insertUnifiedEvents(long streamId, @NotNull List<Event> events) {
+    executeBatch(Statements.INSERT_EVENT, events, event -> new Object[]{
+      streamId,
+      event.getPid(),
+      event.getGroupId(),
+      event.getKind().getNumber(),
+      event.getCommandId(),
+      event.getTimestamp(),
+      event.getIsEnded() ? 1 : 0,
+      event.toByteArray()});
+  }
+
   public void deleteEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
     execute(Statements.DELETE_EVENTS, streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
   }
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common.Event;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Single writer stage in front of a {@link UnifiedEventsTable}. Producers (e.g. the
+ * {@link com.android.tools.datastore.poller.UnifiedEventsDataPoller}) publish events into a bounded queue, and a dedicated thread drains
+ * the queue, inserts the events with one batched statement per stream, and commits the database transaction once either
+ * {@link #getMaxBatchSize()} events have been written or {@link #getMaxCommitDelayNs()} has elapsed since the last commit.
+ * <p>
+ * Publishing blocks when the queue is full, which throttles the producers instead of letting the backlog grow without bounds.
+ * Queue depth and commit latency counters are exposed so the queue and batch sizes can be tuned.
+ * <p>
+ * Errors raised while writing are reported to the {@link DataStoreTable} error callbacks on a separate thread, since a callback that
+ * disconnects a stream waits for the events of its poller to be flushed by the writer thread.
+ */
+public class UnifiedEventsWriter {
+  public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 512;
+  public static final long DEFAULT_MAX_COMMIT_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(500);
+
+  @NotNull private final UnifiedEventsTable myTable;
+  @NotNull private final BlockingQueue<PendingEvent> myQueue;
+  private final int myMaxBatchSize;
+  private final long myMaxCommitDelayNs;
+
+  @Nullable private volatile Thread myWriterThread;
+  @Nullable private ExecutorService myErrorCallbackExecutor;
+  private volatile boolean myIsStopped;
+
+  private final AtomicLong myEventsWritten = new AtomicLong();
+  private final AtomicLong myMaxQueueDepth = new AtomicLong();
+  private final AtomicLong myCommitCount = new AtomicLong();
+  private final AtomicLong myTotalCommitLatencyNs = new AtomicLong();
+  private final AtomicLong myMaxCommitLatencyNs = new AtomicLong();
+  private final AtomicLong myLastCommitLatencyNs = new AtomicLong();
+
+  public UnifiedEventsWriter(@NotNull UnifiedEventsTable table) {
+    this(table, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_COMMIT_DELAY_NS);
+  }
+
+  @VisibleForTesting
+  public UnifiedEventsWriter(@NotNull UnifiedEventsTable table, int queueCapacity, int maxBatchSize, long maxCommitDelayNs) {
+    assert queueCapacity > 0 && maxBatchSize > 0 && maxCommitDelayNs > 0;
+    myTable = table;
+    myQueue = new ArrayBlockingQueue<>(queueCapacity);
+    myMaxBatchSize = maxBatchSize;
+    myMaxCommitDelayNs = maxCommitDelayNs;
+  }
+
+  /**
+   * Queues an event to be written to the table. The writer thread is started on first use. This call blocks while the queue is full.
+   */
+  public void publish(long streamId, @NotNull Event event) {
+    if (myIsStopped) {
+      return;
+    }
+    ensureStarted();
+    enqueue(new PendingEvent(streamId, event, null));
+    myMaxQueueDepth.accumulateAndGet(myQueue.size(), Math::max);
+  }
+
+  /**
+   * Blocks until every event published before this call has been written and committed.
+   */
+  public void flush() {
+    Thread thread = myWriterThread;
+    // Errors raised while writing can call back into a flush (e.g. via a stream disconnect), which must not wait on itself.
+    if (myIsStopped || thread == null || thread == Thread.currentThread()) {
+      return;
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    enqueue(new PendingEvent(0, null, latch));
+    try {
+      latch.await();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes and commits any pending events, then stops the writer thread. Events published afterwards are dropped.
+   */
+  public void stop() {
+    flush();
+    myIsStopped = true;
+    Thread thread = myWriterThread;
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  public int getQueueDepth() {
+    return myQueue.size();
+  }
+
+  public long getMaxQueueDepth() {
+    return myMaxQueueDepth.get();
+  }
+
+  public long getEventsWritten() {
+    return myEventsWritten.get();
+  }
+
+  public long getCommitCount() {
+    return myCommitCount.get();
+  }
+
+  public long getLastCommitLatencyNs() {
+    return myLastCommitLatencyNs.get();
+  }
+
+  public long getMaxCommitLatencyNs() {
+    return myMaxCommitLatencyNs.get();
+  }
+
+  public long getAverageCommitLatencyNs() {
+    long commits = myCommitCount.get();
+    return commits == 0 ? 0 : myTotalCommitLatencyNs.get() / commits;
+  }
+
+  public int getMaxBatchSize() {
+    return myMaxBatchSize;
+  }
+
+  public long getMaxCommitDelayNs() {
+    return myMaxCommitDelayNs;
+  }
+
+  private synchronized void ensureStarted() {
+    if (myWriterThread == null) {
+      myErrorCallbackExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DataStoreEventsWriterErrors");
+        thread.setDaemon(true);
+        return thread;
+      });
+      myWriterThread = new Thread(this::run, "DataStoreEventsWriter");
+      myWriterThread.setDaemon(true);
+      myWriterThread.start();
+    }
+  }
+
+  private void enqueue(@NotNull PendingEvent pending) {
+    try {
+      myQueue.put(pending);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    ExecutorService errorCallbackExecutor = myErrorCallbackExecutor;
+    assert errorCallbackExecutor != null;
+    DataStoreTable.setErrorCallbackExecutor(errorCallbackExecutor);
+    List<PendingEvent> drained = new ArrayList<>(myMaxBatchSize);
+    int uncommitted = 0;
+    long lastCommitNs = System.nanoTime();
+    while (!myIsStopped || !myQueue.isEmpty()) {
+      try {
+        long waitNs = uncommitted == 0 ? myMaxCommitDelayNs : Math.max(0, lastCommitNs + myMaxCommitDelayNs - System.nanoTime());
+        PendingEvent first = myQueue.poll(waitNs, TimeUnit.NANOSECONDS);
+        if (first != null) {
+          drained.add(first);
+          myQueue.drainTo(drained, myMaxBatchSize - 1);
+        }
+      }
+      catch (InterruptedException e) {
+        // Interrupted by stop(); write out whatever is left in the queue before exiting.
+        myQueue.drainTo(drained);
+      }
+
+      List<CountDownLatch> flushRequests = new ArrayList<>();
+      uncommitted += write(drained, flushRequests);
+      drained.clear();
+
+      if (uncommitted > 0 &&
+          (uncommitted >= myMaxBatchSize || !flushRequests.isEmpty() || myIsStopped ||
+           System.nanoTime() - lastCommitNs >= myMaxCommitDelayNs)) {
+        commit();
+        uncommitted = 0;
+        lastCommitNs = System.nanoTime();
+      }
+      flushRequests.forEach(CountDownLatch::countDown);
+    }
+    // Errors already queued are still reported.
+    errorCallbackExecutor.shutdown();
+  }
+
+  /**
+   * Inserts the drained events grouped by stream, preserving the publishing order within each stream.
+   *
+   * @return the number of events inserted.
+   */
+  private int write(@NotNull List<PendingEvent> drained, @NotNull List<CountDownLatch> flushRequests) {
+    Map<Long, List<Event>> eventsByStream = new LinkedHashMap<>();
+    int count = 0;
+    for (PendingEvent pending : drained) {
+      if (pending.myFlushLatch != null) {
+        flushRequests.add(pending.myFlushLatch);
+      }
+      else {
+        eventsByStream.computeIfAbsent(pending.myStreamId, id -> new ArrayList<>()).add(pending.myEvent);
+        count++;
+      }
+    }
+    eventsByStream.forEach(myTable::insertUnifiedEvents);
+    myEventsWritten.addAndGet(count);
+    return count;
+  }
+
+  private void commit() {
+    long startNs = System.nanoTime();
+    myTable.commit();
+    long latencyNs = System.nanoTime() - startNs;
+    myCommitCount.incrementAndGet();
+    myTotalCommitLatencyNs.addAndGet(latencyNs);
+    myLastCommitLatencyNs.set(latencyNs);
+    myMaxCommitLatencyNs.accumulateAndGet(latencyNs, Math::max);
+  }
+
+  private static final class PendingEvent {
+    private final long myStreamId;
+    @Nullable private final Event myEvent;
+    @Nullable private final CountDownLatch myFlushLatch;
+
+    private PendingEvent(long streamId, @Nullable Event event, @Nullable CountDownLatch flushLatch) {
+      myStreamId = streamId;
+      myEvent = event;
+      myFlushLatch = flushLatch;
+    }
+  }
+}
@@ -17,7 +17,7 @@ package com.android.tools.datastore.poller;
 
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.database.DataStoreTable;
-import com.android.tools.datastore.database.UnifiedEventsTable;
+import com.android.tools.datastore.database.UnifiedEventsWriter;
 import com.android.tools.profiler.proto.Common.Event;
 import com.android.tools.profiler.proto.Transport.GetEventsRequest;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
@@ -29,24 +29,25 @@ import org.jetbrains.annotations.NotNull;
 
 /**
  * This is a thread safe class to poll events from a grpc service. This class cannot be restarted once
- * stop is called it is guaranteed that run will not be executing.
+ * stop is called it is guaranteed that run will not be executing. Received events are handed to a {@link UnifiedEventsWriter}
+ * instead of being inserted on the polling thread.
  */
 public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataStoreTableErrorCallback {
   private final long myStreamId;
-  @NotNull private final UnifiedEventsTable myTable;
+  @NotNull private final UnifiedEventsWriter myWriter;
   @NotNull private final TransportServiceGrpc.TransportServiceBlockingStub myEventPollingService;
   @NotNull private final DataStoreService myDataStoreService;
   @NotNull private final CountDownLatch myRunningLatch;
   @NotNull private final AtomicBoolean myIsRunning = new AtomicBoolean(false);
 
   public UnifiedEventsDataPoller(long streamId,
-                                 @NotNull UnifiedEventsTable unifiedEventsTable,
+                                 @NotNull UnifiedEventsWriter unifiedEventsWriter,
                                  @NotNull TransportServiceGrpc.TransportServiceBlockingStub pollingService,
                                  @NotNull DataStoreService dataStoreService) {
     myEventPollingService = pollingService;
     myDataStoreService = dataStoreService;
     myStreamId = streamId;
-    myTable = unifiedEventsTable;
+    myWriter = unifiedEventsWriter;
     myRunningLatch = new CountDownLatch(1);
   }
 
@@ -75,13 +76,15 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
       while (events.hasNext()) {
         Event event = events.next();
         if (event != null) {
-          myTable.insertUnifiedEvent(myStreamId, event);
+          myWriter.publish(myStreamId, event);
         }
       }
     }
     catch (StatusRuntimeException exception) {
       // device disconnect logic handle via TransportDeviceManager
     }
+    // Make sure everything received from the stream is in the database before signaling that we are done.
+    myWriter.flush();
     // Signal end of run.
     myRunningLatch.countDown();
   }
@@ -20,6 +20,7 @@ import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.DataStoreTable;
 import com.android.tools.datastore.database.DeviceProcessTable;
 import com.android.tools.datastore.database.UnifiedEventsTable;
+import com.android.tools.datastore.database.UnifiedEventsWriter;
 import com.android.tools.datastore.poller.DeviceProcessPoller;
 import com.android.tools.datastore.poller.UnifiedEventsDataPoller;
 import com.android.tools.idea.flags.StudioFlags;
@@ -68,6 +69,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
   private final Map<Channel, DeviceProcessPoller> myLegacyPollers = Maps.newHashMap();
   private final Consumer<Runnable> myFetchExecutor;
   @NotNull private final UnifiedEventsTable myTable;
+  @NotNull private final UnifiedEventsWriter myWriter;
   @NotNull private final DeviceProcessTable myLegacyTable;
   @NotNull private final DataStoreService myService;
   private final boolean myLegacyPipelineForProfilers;
@@ -89,6 +91,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     myService = service;
     myFetchExecutor = fetchExecutor;
     myTable = unifiedTable;
+    myWriter = new UnifiedEventsWriter(unifiedTable);
     myLegacyTable = new DeviceProcessTable();
     myLegacyPipelineForProfilers = legacyPipelineForProfilers;
   }
@@ -119,7 +122,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     TransportServiceGrpc.TransportServiceBlockingStub stub = myService.getTransportClient(streamId);
     assert (stub != null);
     streamConnected(stream);
-    UnifiedEventsDataPoller unifiedPoller = new UnifiedEventsDataPoller(stream.getStreamId(), myTable, stub, myService);
+    UnifiedEventsDataPoller unifiedPoller = new UnifiedEventsDataPoller(stream.getStreamId(), myWriter, stub, myService);
     myUnifiedEventsPollers.put(channel, unifiedPoller);
     myChannelToStream.put(channel, stream);
     DataStoreTable.addDataStoreErrorCallback(unifiedPoller);
@@ -141,10 +144,25 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
       UnifiedEventsDataPoller poller = myUnifiedEventsPollers.remove(channel);
       poller.stop();
       DataStoreTable.removeDataStoreErrorCallback(poller);
+      // Ensure the disconnected event is ordered after any events the poller received.
+      myWriter.flush();
       streamDisconnected(myChannelToStream.remove(channel));
     }
   }
 
+  /**
+   * Writes out and commits any events still queued in the {@link UnifiedEventsWriter}. Must be called before the backing database is
+   * disconnected.
+   */
+  public void shutdown() {
+    myWriter.stop();
+  }
+
+  @NotNull
+  public UnifiedEventsWriter getUnifiedEventsWriter() {
+    return myWriter;
+  }
+
   private void streamConnected(Stream stream) {
     myTable.insertUnifiedEvent(DataStoreService.DATASTORE_RESERVED_STREAM_ID, Event.newBuilder()
       .setKind(Event.Kind.STREAM)
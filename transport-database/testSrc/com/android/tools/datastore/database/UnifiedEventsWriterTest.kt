@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database
+
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.profiler.proto.Common
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.sql.SQLException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+class UnifiedEventsWriterTest {
+  private lateinit var dbFile: File
+  private lateinit var database: DataStoreDatabase
+  private lateinit var table: UnifiedEventsTable
+
+  @Before
+  fun setUp() {
+    dbFile = File.createTempFile("UnifiedEventsWriterTest", "mysql")
+    dbFile.deleteOnExit()
+    database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    table = UnifiedEventsTable()
+    table.initialize(database.connection)
+  }
+
+  @After
+  fun tearDown() {
+    database.disconnect()
+  }
+
+  @Test
+  fun flushWritesAllPublishedEvents() {
+    val writer = UnifiedEventsWriter(table, 16, 4, TimeUnit.SECONDS.toNanos(10))
+    val events = (1..10).map { createEvent(it.toLong()) }
+    events.forEach { writer.publish(1, it) }
+    writer.flush()
+
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(events)
+    assertThat(writer.eventsWritten).isEqualTo(10)
+    assertThat(writer.queueDepth).isEqualTo(0)
+    assertThat(writer.commitCount).isAtLeast(1)
+    writer.stop()
+  }
+
+  @Test
+  fun eventsFromMultipleStreamsAreWritten() {
+    val writer = UnifiedEventsWriter(table)
+    writer.publish(1, createEvent(1))
+    writer.publish(2, createEvent(1))
+    writer.publish(1, createEvent(2))
+    writer.stop()
+
+    assertThat(table.queryUnifiedEvents()).hasSize(3)
+    assertThat(writer.commitCount).isAtLeast(1)
+    assertThat(writer.averageCommitLatencyNs).isAtMost(writer.maxCommitLatencyNs)
+  }
+
+  @Test
+  fun eventsPublishedAfterStopAreDropped() {
+    val writer = UnifiedEventsWriter(table)
+    writer.publish(1, createEvent(1))
+    writer.stop()
+    writer.publish(1, createEvent(2))
+    writer.flush()
+
+    assertThat(table.queryUnifiedEvents()).hasSize(1)
+  }
+
+  @Test
+  fun errorCallbacksCanWaitForFlush() {
+    val failingTable = object : UnifiedEventsTable() {
+      override fun insertUnifiedEvents(streamId: Long, events: List<Common.Event>) {
+        onError(SQLException("Failed to insert events"))
+      }
+    }
+    val writer = UnifiedEventsWriter(failingTable)
+    val flushed = CountDownLatch(1)
+    val callbackSawFlush = AtomicBoolean()
+    val callbackDone = CountDownLatch(1)
+    // Like a poller stopped on a datastore error, the callback waits for the events received by the poller to be flushed.
+    val callback = DataStoreTable.DataStoreTableErrorCallback {
+      callbackSawFlush.set(flushed.await(10, TimeUnit.SECONDS))
+      callbackDone.countDown()
+    }
+    DataStoreTable.addDataStoreErrorCallback(callback)
+    try {
+      val poller = Thread {
+        writer.publish(1, createEvent(1))
+        writer.flush()
+        flushed.countDown()
+      }
+      poller.start()
+
+      assertThat(callbackDone.await(20, TimeUnit.SECONDS)).isTrue()
+      assertThat(callbackSawFlush.get()).isTrue()
+      poller.join()
+    }
+    finally {
+      DataStoreTable.removeDataStoreErrorCallback(callback)
+      writer.stop()
+    }
+  }
+
+  private fun createEvent(timestamp: Long): Common.Event {
+    return Common.Event.newBuilder().setKind(Common.Event.Kind.SESSION).setPid(1).setGroupId(timestamp).setTimestamp(timestamp).build()
+  }
+}
@@ -20,6 +20,7 @@ import com.android.tools.datastore.DataStorePollerTest
 import com.android.tools.datastore.DataStoreService
 import com.android.tools.datastore.FakeLogService
 import com.android.tools.datastore.database.UnifiedEventsTable
+import com.android.tools.datastore.database.UnifiedEventsWriter
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Transport.GetEventsRequest
 import com.android.tools.profiler.proto.TransportServiceGrpc
@@ -39,6 +40,7 @@ class UnifiedEventsDataPollerTest : DataStorePollerTest() {
   private lateinit var dataStore: DataStoreService
   private lateinit var transportService: FakeTransportService
   private lateinit var table: UnifiedEventsTable
+  private lateinit var writer: UnifiedEventsWriter
   private lateinit var server: Server
   private lateinit var poller: UnifiedEventsDataPoller
 
@@ -51,13 +53,14 @@ class UnifiedEventsDataPollerTest : DataStorePollerTest() {
     val database = dataStore.createDatabase(servicePath + namespace.myNamespace, namespace.myCharacteristic) { _ -> }
     table = UnifiedEventsTable()
     table.initialize(database.connection)
+    writer = UnifiedEventsWriter(table)
 
     server = InProcessServerBuilder.forName("UnifiedEventsPollerServer").addService(transportService).build()
     server.start()
     val managedChannel = InProcessChannelBuilder.forName("UnifiedEventsPollerServer").build()
     val serviceStub = TransportServiceGrpc.newBlockingStub(managedChannel)
 
-    poller = UnifiedEventsDataPoller(1, table, serviceStub, dataStore)
+    poller = UnifiedEventsDataPoller(1, writer, serviceStub, dataStore)
   }
 
   @After
@@ -65,6 +68,7 @@ class UnifiedEventsDataPollerTest : DataStorePollerTest() {
     server.shutdownNow()
     dataStore.shutdown()
     poller.stop()
+    writer.stop()
   }
 
   @Test